@@ -38,6 +38,7 @@ import java.util.Date;
 import de.k3b.LibGlobal;
 import de.k3b.android.GuiUtil;
 import de.k3b.android.androFotoFinder.imagedetail.HugeImageLoader;
+import de.k3b.android.androFotoFinder.queries.CachedMediaRepository;
 import de.k3b.android.androFotoFinder.queries.DatabaseHelper;
 import de.k3b.android.androFotoFinder.queries.FotoSql;
 import de.k3b.android.androFotoFinder.queries.FotoSqlBase;
@@ -51,11 +52,13 @@ import de.k3b.android.androFotoFinder.queries.MergedMediaRepository;
 import de.k3b.android.osmdroid.forge.MapsForgeSupport;
 import de.k3b.android.util.LogCat;
 import de.k3b.android.util.PhotoChangeNotifyer;
+import de.k3b.android.util.PhotoPropertiesMediaFilesScanner;
 import de.k3b.android.widget.ActivityWithCallContext;
 import de.k3b.android.widget.LocalizedActivity;
 import de.k3b.database.QueryParameter;
 import de.k3b.io.PhotoAutoprocessingDto;
 import de.k3b.media.ExifInterface;
+import de.k3b.media.PhotoPropertiesCache;
 import de.k3b.media.PhotoPropertiesImageReader;
 import de.k3b.zip.ZipConfigRepository;
 import uk.co.senab.photoview.PhotoViewAttacher;
@@ -106,14 +109,21 @@ public class AndroFotoFinderApp extends Application {
             if (Global.useAo10MediaImageDbReplacement) {
                 final SQLiteDatabase writableDatabase = DatabaseHelper.getWritableDatabase(context);
                 final MediaDBRepository mediaDBRepository = new MediaDBRepository(writableDatabase);
-                FotoSql.setMediaDBApi(new MergedMediaRepository(mediaDBRepository, mediaContentproviderRepository));
-
-                MediaContent2DBUpdateService.instance = new MediaContent2DBUpdateService(context, writableDatabase);
-
-                if (FotoSql.getCount(new QueryParameter().addWhere("1 = 1")) == 0) {
-                    // database is empty; reload from Contentprovider
-                    MediaContent2DBUpdateService.instance.rebuild(context, null);
-                }
+                FotoSql.setMediaDBApi(new CachedMediaRepository(
+                        new MergedMediaRepository(mediaDBRepository, mediaContentproviderRepository)));
+
+                final MediaContent2DBUpdateService updateService = new MediaContent2DBUpdateService(context, writableDatabase);
+                MediaContent2DBUpdateService.instance = updateService;
+
+                // #155: load changes from Contentprovider (everything if database is empty).
+                // Not in the gui thread: called from onCreate and a full sync may take seconds.
+                final Context appContext = context.getApplicationContext();
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateService.sync(appContext, false, null);
+                    }
+                }, "MediaContent2DBUpdateService.sync").start();
 
                 PhotoChangeNotifyer.registerContentObserver(context, GlobalMediaContentObserver.getInstance(context));
 
@@ -153,6 +163,8 @@ public class AndroFotoFinderApp extends Application {
         LibGlobal.appVersion = GuiUtil.getAppVersionName(this);
 
         Global.pickHistoryFile = getDatabasePath("pickHistory.geouri.txt");
+        PhotoPropertiesMediaFilesScanner.setPropertiesCache(
+                new PhotoPropertiesCache(new File(getCacheDir(), "photoProperties.cache")));
         SettingsActivity.prefs2Global(this);
 
         // create sensible defaults for andorid-independant files from android string resources
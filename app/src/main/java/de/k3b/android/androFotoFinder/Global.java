@@ -65,6 +65,13 @@ public class Global {
      * (memoryefficient, fast, but low-quality). -1: default to screenresolution */
     public static int imageDetailThumbnailIfBiggerThan = -1;
 
+    /** memory used by {@link de.k3b.android.androFotoFinder.queries.CachedMediaRepository}
+     * to remember query results (folder, date, map, statistics). 0: no caching */
+    public static int queryCacheMaxBytes = 2 * 1024 * 1024;
+
+    /** query results with more rows (i.e. the gallery) are not cached */
+    public static int queryCacheMaxRows = 2000;
+
     /** where thumbnails are strored. defaults to /extDir/DCIM/.thumbCache */
     public static File thumbCacheRoot = null;
 
@@ -114,7 +114,7 @@ public class GalleryCursorAdapterFromArray extends GalleryCursorAdapter {
             rotationAngle = PhotoPropertiesUtil.exifOrientationCode2RotationDegrees(rotationAngle, rotationAngle);
             holder.image.setRotation(rotationAngle);
 
-            Bitmap bitmap = HugeImageLoader.loadImage(file, 32, 32);
+            Bitmap bitmap = HugeImageLoader.loadThumbnail(file, 32, 32);
             holder.image.setImageBitmap(bitmap);
 
             holder.image.setImageURI(Uri.parse(holder.url));
@@ -286,9 +286,11 @@ public class GalleryCursorFragment extends Fragment implements Queryable, Direct
         if (savedInstanceState != null) {
             this.mLastVisiblePosition = savedInstanceState.getInt(INSTANCE_STATE_LAST_VISIBLE_POSITION, this.mLastVisiblePosition);
             this.loaderID = savedInstanceState.getInt(INSTANCE_STATE_LOADER_ID, this.loaderID);
-            String old = mSelectedItems.toString();
-            mSelectedItems.clear();
-            mSelectedItems.parse(savedInstanceState.getString(INSTANCE_STATE_SELECTED_ITEM_IDS, old));
+            byte[] selectedItemIds = savedInstanceState.getByteArray(INSTANCE_STATE_SELECTED_ITEM_IDS);
+            if (selectedItemIds != null) {
+                mSelectedItems.clear();
+                mSelectedItems.parse(selectedItemIds);
+            }
             this.mOldTitle = savedInstanceState.getString(INSTANCE_STATE_OLD_TITLE, this.mOldTitle);
             this.mShowSelectedOnly = savedInstanceState.getBoolean(INSTANCE_STATE_SEL_ONLY, this.mShowSelectedOnly);
             if (isMultiSelectionActive()) {
@@ -311,7 +313,8 @@ public class GalleryCursorFragment extends Fragment implements Queryable, Direct
         mLastVisiblePosition = mGalleryView.getLastVisiblePosition();
         outState.putInt(INSTANCE_STATE_LAST_VISIBLE_POSITION, mLastVisiblePosition);
         outState.putInt(INSTANCE_STATE_LOADER_ID, loaderID);
-        outState.putString(INSTANCE_STATE_SELECTED_ITEM_IDS, this.mSelectedItems.toString());
+        // binary: the komma seperated list is limited to 32767 items
+        outState.putByteArray(INSTANCE_STATE_SELECTED_ITEM_IDS, this.mSelectedItems.toByteArray());
         outState.putString(INSTANCE_STATE_OLD_TITLE, this.mOldTitle);
         outState.putBoolean(INSTANCE_STATE_SEL_ONLY, this.mShowSelectedOnly);
     }
@@ -563,7 +566,7 @@ public class GalleryCursorFragment extends Fragment implements Queryable, Direct
             private int mResultCount = 0;
 
             @Override
-            protected void doInBackground(Long id, Cursor cursor) {
+            protected void doInBackground(long id, Cursor cursor) {
                 if (mPathColNo == -2) mPathColNo = cursor.getColumnIndex(FotoSql.SQL_COL_PATH);
                 mResultCount += PhotoPropertiesMediaFilesScanner.getInstance(getActivity()).updatePathRelatedFields(getActivity(), cursor, cursor.getString(mPathColNo), mColumnIndexPK, mPathColNo);
             }
@@ -940,7 +943,7 @@ public class GalleryCursorFragment extends Fragment implements Queryable, Direct
     private void removeDuplicates() {
         SqlJobTaskBase task = new SqlJobTaskBase(this.getActivity(), "Searching for duplcates in media database:\n", null) {
             @Override
-            protected void doInBackground(Long id, Cursor cursor) {
+            protected void doInBackground(long id, Cursor cursor) {
                 this.mSelectedItems.add(id);
                 if (mStatus != null) {
                     mStatus
@@ -1286,7 +1289,7 @@ showActivity(String debugContext, Activity context,
     private void removeAllFromSelection() {
         SqlJobTaskBase task = new SqlJobTaskBase(this.getActivity(), "removeAllFromSelection", this.mSelectedItems) {
             @Override
-            protected void doInBackground(Long id, Cursor cursor) {
+            protected void doInBackground(long id, Cursor cursor) {
                 this.mSelectedItems.remove(id);
             }
 
@@ -1303,7 +1306,7 @@ showActivity(String debugContext, Activity context,
     private void addAllToSelection() {
         SqlJobTaskBase task = new SqlJobTaskBase(this.getActivity(), "addAllToSelection", this.mSelectedItems) {
             @Override
-            protected void doInBackground(Long id, Cursor cursor) {
+            protected void doInBackground(long id, Cursor cursor) {
                 this.mSelectedItems.add(id);
             }
 
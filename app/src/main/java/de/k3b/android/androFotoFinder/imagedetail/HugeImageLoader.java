@@ -13,6 +13,11 @@ import android.view.Display;
 import android.view.WindowManager;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import de.k3b.media.ExifInterface;
 
 import uk.co.senab.photoview.log.LogManager;
 
@@ -107,6 +112,60 @@ public class HugeImageLoader {
         return BitmapFactory.decodeFile(file.getAbsolutePath(), options);
     }
 
+    /**
+     * Loads a small preview: the thumbnail embedded in the exif of a jpg if it is big enough.
+     * The thumbnail is read from a memory mapped region that is reused while scrolling back
+     * over the same files ({@link ExifInterface#getThumbnailBuffer()}).
+     * Else the image file is decoded like {@link #loadImage(File, int, int)}.
+     */
+    public static Bitmap loadThumbnail(File file, int maxWidth, int maxHeight) {
+        try {
+            ByteBuffer thumbnail = new ExifInterface(file.getAbsolutePath()).getThumbnailBuffer();
+            if (thumbnail != null) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeStream(new ByteBufferInputStream(thumbnail.duplicate()), null, options);
+                if ((options.outWidth >= maxWidth) && (options.outHeight >= maxHeight)) {
+                    options.inSampleSize = calculateInSampleSize(options, maxWidth, maxHeight);
+                    options.inJustDecodeBounds = false;
+                    Bitmap result = BitmapFactory.decodeStream(new ByteBufferInputStream(thumbnail), null, options);
+                    if (result != null) return result;
+                }
+            }
+        } catch (IOException ignore) {
+            // no jpg or corrupt thumbnail: decode the image itself
+        }
+        return loadImage(file, maxWidth, maxHeight);
+    }
+
+    /** reads a {@link ByteBuffer} without copying it into a byte[] first */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? (mBuffer.get() & 0xff) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!mBuffer.hasRemaining()) return -1;
+            length = Math.min(length, mBuffer.remaining());
+            mBuffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+
     private static int calculateInSampleSize(
             BitmapFactory.Options options, int reqWidth, int reqHeight) {
         // Raw height and width of image
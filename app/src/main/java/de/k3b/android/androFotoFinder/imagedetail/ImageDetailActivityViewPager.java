@@ -518,6 +518,7 @@ public class ImageDetailActivityViewPager extends ActivityWithAutoCloseDialogs i
         // getLoaderManager().destroyLoader(ACTIVITY_ID);
         if (mAdapter != null) {
             mViewPager.setAdapter(null);
+            mAdapter.close();
             mFileCommands.closeLogFile();
             mFileCommands.closeAll();
             mFileCommands.setContext(null);
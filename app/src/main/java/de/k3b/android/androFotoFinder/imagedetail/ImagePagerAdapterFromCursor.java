@@ -62,6 +62,15 @@ import de.k3b.media.PhotoPropertiesBulkUpdateService;
 public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoChangeNotifyer.PhotoChangedListener {
     private static final int MAX_IMAGE_DIMENSION = HugeImageLoader.getMaxTextureSize();
 
+    /** #155: number of cursor rows before and after the current page that are cached */
+    private static final int ROW_CACHE_RADIUS = 10;
+
+    /**
+     * #155: ViewPager already has the pages next to the current page (offscreenPageLimit=1).
+     * The pages after them are prefetched.
+     */
+    private static final int PREFETCH_DISTANCE = 2;
+
     /** colum alias for optinal sql expression to show ContextDetails */
     public static final String CONTEXT_COLUMN_FIELD = "ContextDetails";
 
@@ -74,6 +83,11 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
     private final int mMaxTitleLength;
 
     private Cursor mCursor = null; // the content of the page
+    private final ImagePagerRowCache mRows = new ImagePagerRowCache(ROW_CACHE_RADIUS);
+
+    private final ImagePrefetcher mPrefetcher;
+    /** position of last {@link #prefetchNeighbours(int)} */
+    private int mPrefetchPosition = -1;
 
     protected DisplayImageOptions mDisplayImageOptions;
     private Menu mMenu = null;
@@ -87,6 +101,8 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
         mMaxTitleLength = context.getResources().getInteger(R.integer.title_length_in_chars);
 
         mImageButtonController = new ImageButtonControllerImpl();
+        mPrefetcher = new ImagePrefetcher(MAX_IMAGE_DIMENSION, (int) Math.min(
+                Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE));
         mDisplayImageOptions = new DisplayImageOptions.Builder()
                 .showImageOnLoading(R.drawable.image_loading)
                 .showImageForEmptyUri(R.drawable.image_loading)
@@ -121,6 +137,9 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
         }
         Cursor oldCursor = mCursor;
         mCursor = newCursor;
+        mRows.setCursor(newCursor);
+        mPrefetcher.clear();
+        mPrefetchPosition = -1;
         return oldCursor;
     }
 
@@ -149,39 +168,39 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
      * @return A title for the requested page
      */
     public CharSequence getPageTitle(int position) {
-        Cursor cursor = getCursorAt(position);
-        if (cursor != null) {
-            String name = DBUtils.getString(cursor,FotoSql.SQL_COL_DISPLAY_TEXT, null);
-            if (name != null) {
-                StringBuilder result = new StringBuilder();
-
-                if (Global.debugEnabled) {
-                    long imageID = DBUtils.getLong(cursor, FotoSql.SQL_COL_PK,0);
-                    result.append("#").append(imageID).append(":");
-                }
+        String name = mRows.getPath(position);
+        if (name != null) {
+            StringBuilder result = new StringBuilder();
 
-                // workaround because setEllipsize(TextUtils.TruncateAt.MIDDLE) is not possible for title
-                if (name.length() > mMaxTitleLength) {
-                    result.append("..").append(name.substring(name.length() - (mMaxTitleLength - 2)));
-                } else {
-                    result.append(name);
-                }
+            if (Global.debugEnabled) {
+                long imageID = mRows.getId(position);
+                result.append("#").append(imageID).append(":");
+            }
 
-                return result.toString();
+            // workaround because setEllipsize(TextUtils.TruncateAt.MIDDLE) is not possible for title
+            if (name.length() > mMaxTitleLength) {
+                result.append("..").append(name.substring(name.length() - (mMaxTitleLength - 2)));
+            } else {
+                result.append(name);
             }
+
+            return result.toString();
         }
         return mActivity.getString(R.string.image_loading_at_position_format, position);
     }
 
     public String getFullFilePath(int position) {
-        Cursor cursor = getCursorAt(position);
-        return DBUtils.getString(cursor,FotoSql.SQL_COL_DISPLAY_TEXT, null);
+        return mRows.getPath(position);
     }
 
     /** translates offset in adapter to id of image */
     public long getImageId(int position) {
-        Cursor cursor = getCursorAt(position);
-        return DBUtils.getLong(cursor, FotoSql.SQL_COL_PK,0);
+        return mRows.getId(position);
+    }
+
+    /** max(with,height) of image or {@link ImagePagerRowCache#SIZE_UNKNOWN} */
+    protected int getImageSize(int position) {
+        return mRows.getSize(position);
     }
 
     public Date getDatePhotoTaken(int position) {
@@ -209,23 +228,12 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
      */
     @Override
     public View instantiateItem(ViewGroup container, int position) {
-        Cursor cursor = getCursorAt(position);
-        if (cursor != null) {
+        if (mRows.isAvailable(position)) {
             String fullPhotoPath = getFullFilePath(position);
 
-            // determine max(with,height) from db
-            // new col id for with since ver 0.6.3
-            int colSize = cursor.getColumnIndex(FotoSql.SQL_COL_WIDTH);
-
-            if (colSize < 0) {
-                // backward compatibility old col id for with before ver 0.6.3
-                colSize = cursor.getColumnIndex(FotoSql.SQL_COL_SIZE);
-            }
-
-            int size = (colSize >= 0) ? cursor.getInt(colSize) : 32767;
-
             if (fullPhotoPath != null) {
-                return createViewWithContent(position, container, fullPhotoPath, "instantiateItemFromCursor(#", size);
+                return createViewWithContent(position, container, fullPhotoPath, "instantiateItemFromCursor(#",
+                        mRows.getSize(position));
             }
 
         }
@@ -284,7 +292,7 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
         }
 
         if (contextTextView != null) {
-            String contextText = DBUtils.getString(getCursorAt(position), CONTEXT_COLUMN_FIELD, null);
+            String contextText = mRows.getContextText(position);
 
             if ((contextText != null) && (contextText.length() > 0)) {
                 contextTextView.setVisibility(View.VISIBLE);
@@ -299,6 +307,9 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
 
         final File imageFile = new File(fullPhotoPath);
 
+        // #155: null if not loaded in background by prefetchNeighbours()
+        final ImagePrefetcher.Entry prefetched = mPrefetcher.take(fullPhotoPath);
+
         String loadType;
 
         // if image is big use memoryefficient, fast, low-quality thumbnail (old code)
@@ -309,7 +320,12 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
             try {
                 // #53 Optimisation: no need for thumbnail - saves cache memory but may throw OutOfMemoryError
                 loadType = "image small enough ";
-                Bitmap bitmap = HugeImageLoader.loadImage(imageFile, MAX_IMAGE_DIMENSION, MAX_IMAGE_DIMENSION);
+                Bitmap bitmap = (prefetched == null) ? null : prefetched.getBitmap();
+                if (bitmap == null) {
+                    bitmap = HugeImageLoader.loadImage(imageFile, MAX_IMAGE_DIMENSION, MAX_IMAGE_DIMENSION);
+                } else {
+                    loadType = "image prefetched ";
+                }
                 // rotation is done by photoView
                 photoView.setImageBitmap(bitmap);
                 photoView.setImageReloadFile(null);
@@ -319,7 +335,9 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
                 setImageFromThumbnail(photoView, imageFile);
             }
         }
-        final int rotationInDegrees = PhotoPropertiesBulkUpdateService.getRotationFromExifOrientation(fullPhotoPath, null);
+        final int rotationInDegrees = (prefetched != null)
+                ? prefetched.getRotation()
+                : PhotoPropertiesBulkUpdateService.getRotationFromExifOrientation(fullPhotoPath, null);
         if (Global.debugEnabledViewItem) {
             Log.i(Global.LOG_CONTEXT, mDebugPrefix + debugContext + position +", rotation=" +
                     rotationInDegrees + ", "
@@ -388,6 +406,36 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
         if (object != null) {
             mImageButtonController.create((ImageButton) ((View) object).findViewById(R.id.cmd_any));
         }
+        prefetchNeighbours(position);
+    }
+
+    /**
+     * #155: load the images in background that ViewPager will instantiate after the next swipe.
+     * Requests for images that are not neighbours any more (fast fling) are canceled.
+     */
+    private void prefetchNeighbours(int position) {
+        if (position == mPrefetchPosition) return;
+        mPrefetchPosition = position;
+
+        final int count = getCount();
+        String[] paths = new String[2];
+        boolean[] decodeBitmap = new boolean[2];
+        int i = 0;
+        // swipe forward is more likely than backward
+        for (int neighbour : new int[]{position + PREFETCH_DISTANCE, position - PREFETCH_DISTANCE}) {
+            if ((neighbour >= 0) && (neighbour < count)) {
+                paths[i] = getFullFilePath(neighbour);
+                // same condition as in createViewWithContent
+                decodeBitmap[i] = getImageSize(neighbour) <= Global.imageDetailThumbnailIfBiggerThan;
+            }
+            i++;
+        }
+        mPrefetcher.prefetch(paths, decodeBitmap);
+    }
+
+    /** free background resources. Adapter cannot be used any more */
+    public void close() {
+        mPrefetcher.close();
     }
 
     public void setIconResourceName(String name) {
@@ -470,6 +518,9 @@ public class ImagePagerAdapterFromCursor extends PagerAdapter implements PhotoCh
      **/
     @Override
     public void onNotifyPhotoChanged() {
+        // prefetched images may be outdated
+        mPrefetcher.clear();
+        mPrefetchPosition = -1;
         notifyDataSetChanged();
     }
 }
@@ -84,6 +84,12 @@ public class ImagePagerAdapterFromCursorArray extends ImagePagerAdapterFromCurso
         return super.getImageId(position);
     }
 
+    @Override
+    protected int getImageSize(int position) {
+        if (mArrayImpl != null) return ImagePagerRowCache.SIZE_UNKNOWN;
+        return super.getImageSize(position);
+    }
+
     @Override
     public Date getDatePhotoTaken(int position) {
         if (mArrayImpl != null) return null;
@@ -96,7 +102,7 @@ public class ImagePagerAdapterFromCursorArray extends ImagePagerAdapterFromCurso
         if (fullPhotoPath != null) {
             // special case image from ".nomedia" folder via absolute path not via content: uri
 
-            return createViewWithContent(position, container, fullPhotoPath, "instantiateItemFromArray(#", 32767);
+            return createViewWithContent(position, container, fullPhotoPath, "instantiateItemFromArray(#", ImagePagerRowCache.SIZE_UNKNOWN);
         }
 
         // no array avaliable. Use original cursor baed implementation
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.android.androFotoFinder.imagedetail;
+
+import android.database.Cursor;
+
+import de.k3b.android.androFotoFinder.queries.FotoSql;
+
+/**
+ * Sliding window of cursor rows used by {@link ImagePagerAdapterFromCursor}.
+ *
+ * Instead of moving the shared cursor for every title, path, id and page request
+ * the rows around the requested position (+/- radius) are copied into compact arrays.
+ * The window is reloaded with one sequential cursor pass when a position outside of it is requested.
+ *
+ * Created by k3b on 05.04.2020.
+ */
+public class ImagePagerRowCache {
+    /** value of {@link #getSize(int)} if size is unknown */
+    public static final int SIZE_UNKNOWN = 32767;
+
+    private final int mRadius;
+
+    private final long[] mIds;
+    private final String[] mPaths;
+    private final int[] mSizes;
+    private final String[] mContextTexts;
+
+    private Cursor mCursor = null;
+    private int mColId = -1;
+    private int mColPath = -1;
+    private int mColSize = -1;
+    private int mColContext = -1;
+
+    /** position of the first row in the arrays */
+    private int mFirst = 0;
+    /** number of valid rows in the arrays */
+    private int mLoaded = 0;
+
+    public ImagePagerRowCache(int radius) {
+        mRadius = radius;
+        final int capacity = 2 * radius + 1;
+        mIds = new long[capacity];
+        mPaths = new String[capacity];
+        mSizes = new int[capacity];
+        mContextTexts = new String[capacity];
+    }
+
+    /** cursor changed: old rows are invalid */
+    public void setCursor(Cursor cursor) {
+        mCursor = cursor;
+        mLoaded = 0;
+        if (cursor != null) {
+            mColId = cursor.getColumnIndex(FotoSql.SQL_COL_PK);
+            mColPath = cursor.getColumnIndex(FotoSql.SQL_COL_DISPLAY_TEXT);
+
+            // determine max(with,height) from db
+            // new col id for with since ver 0.6.3
+            mColSize = cursor.getColumnIndex(FotoSql.SQL_COL_WIDTH);
+            if (mColSize < 0) {
+                // backward compatibility old col id for with before ver 0.6.3
+                mColSize = cursor.getColumnIndex(FotoSql.SQL_COL_SIZE);
+            }
+            mColContext = cursor.getColumnIndex(ImagePagerAdapterFromCursor.CONTEXT_COLUMN_FIELD);
+        }
+    }
+
+    public boolean isAvailable(int position) {
+        return getIndex(position) >= 0;
+    }
+
+    /** @return id of image at position or 0 if not available */
+    public long getId(int position) {
+        int index = getIndex(position);
+        return (index >= 0) ? mIds[index] : 0;
+    }
+
+    /** @return path of image at position or null if not available */
+    public String getPath(int position) {
+        int index = getIndex(position);
+        return (index >= 0) ? mPaths[index] : null;
+    }
+
+    /** @return max(with,height) from media db or {@link #SIZE_UNKNOWN} */
+    public int getSize(int position) {
+        int index = getIndex(position);
+        return (index >= 0) ? mSizes[index] : SIZE_UNKNOWN;
+    }
+
+    /** @return value of optional {@link ImagePagerAdapterFromCursor#CONTEXT_COLUMN_FIELD} or null */
+    public String getContextText(int position) {
+        int index = getIndex(position);
+        return (index >= 0) ? mContextTexts[index] : null;
+    }
+
+    /** @return index into arrays or -1 if position is not available */
+    private int getIndex(int position) {
+        if ((mCursor == null) || (position < 0)) return -1;
+        if ((position < mFirst) || (position >= mFirst + mLoaded)) {
+            load(position);
+        }
+        return ((position >= mFirst) && (position < mFirst + mLoaded)) ? (position - mFirst) : -1;
+    }
+
+    /** loads the rows around position with one sequential cursor pass */
+    private void load(int position) {
+        final int count = mCursor.getCount();
+        mLoaded = 0;
+        if (position >= count) return;
+
+        mFirst = Math.max(0, position - mRadius);
+        final int last = Math.min(count, mFirst + mIds.length);
+        if (mCursor.moveToPosition(mFirst)) {
+            do {
+                final int index = mLoaded++;
+                mIds[index] = (mColId >= 0) ? mCursor.getLong(mColId) : 0;
+                mPaths[index] = (mColPath >= 0) ? mCursor.getString(mColPath) : null;
+                mSizes[index] = (mColSize >= 0) ? mCursor.getInt(mColSize) : SIZE_UNKNOWN;
+                mContextTexts[index] = (mColContext >= 0) ? mCursor.getString(mColContext) : null;
+            } while ((mFirst + mLoaded < last) && mCursor.moveToNext());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.android.androFotoFinder.imagedetail;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.k3b.android.androFotoFinder.Global;
+import de.k3b.media.PhotoPropertiesBulkUpdateService;
+
+/**
+ * Loads the images next to the current page of {@link ImagePagerAdapterFromCursor}
+ * on a background thread so that swiping does not have to wait for decoding.
+ *
+ * Results are kept in a pool that is limited by bitmap bytes.
+ * Requests that are not needed any more (i.e. while flinging) are canceled before they start.
+ * All methods except the background decoding are called in the gui thread.
+ *
+ * Created by k3b on 05.04.2020.
+ */
+public class ImagePrefetcher {
+    private static final String LOG_TAG = HugeImageLoader.LOG_TAG;
+
+    /** Result of a prefetch */
+    public static class Entry {
+        private final Bitmap mBitmap;
+        private final int mRotation;
+
+        Entry(Bitmap bitmap, int rotation) {
+            mBitmap = bitmap;
+            mRotation = rotation;
+        }
+
+        /** decoded image or null if image was not decoded */
+        public Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        /** rotation in degrees from exif */
+        public int getRotation() {
+            return mRotation;
+        }
+    }
+
+    private final int mMaxImageDimension;
+    private final LruCache<String, Entry> mPool;
+    private final Map<String, PrefetchTask> mPending = new HashMap<String, PrefetchTask>();
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ImagePrefetcher");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+    private volatile boolean mClosed = false;
+
+    /**
+     * @param maxImageDimension max width and height of decoded images
+     * @param maxPoolBytes max number of bytes of all bitmaps in the pool
+     */
+    public ImagePrefetcher(int maxImageDimension, int maxPoolBytes) {
+        mMaxImageDimension = maxImageDimension;
+        mPool = new LruCache<String, Entry>(maxPoolBytes) {
+            @Override
+            protected int sizeOf(String path, Entry entry) {
+                final Bitmap bitmap = entry.getBitmap();
+                return (bitmap == null) ? 1 : bitmap.getRowBytes() * bitmap.getHeight();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String path, Entry oldEntry, Entry newEntry) {
+                // taken entries (evicted == false and newEntry == null) are used by a view.
+                if ((evicted || (newEntry != null)) && (oldEntry.getBitmap() != null)) {
+                    oldEntry.getBitmap().recycle();
+                }
+            }
+        };
+    }
+
+    /**
+     * Requests the images to be loaded in the background. Pending requests for other paths are canceled.
+     *
+     * @param paths images to load. Most important first. May contain null.
+     * @param decodeBitmap false: only the rotation is loaded because the image is shown as thumbnail.
+     */
+    public void prefetch(String[] paths, boolean[] decodeBitmap) {
+        if (mClosed) return;
+
+        Iterator<Map.Entry<String, PrefetchTask>> pending = mPending.entrySet().iterator();
+        while (pending.hasNext()) {
+            Map.Entry<String, PrefetchTask> request = pending.next();
+            if (request.getValue().mFuture.isDone() || (indexOf(paths, request.getKey()) < 0)) {
+                // stale: not started yet requests are not executed any more
+                request.getValue().mFuture.cancel(false);
+                pending.remove();
+            }
+        }
+
+        for (int i = 0; i < paths.length; i++) {
+            final String path = paths[i];
+            if ((path != null) && (mPool.get(path) == null) && !mPending.containsKey(path)) {
+                final PrefetchTask task = new PrefetchTask(path, decodeBitmap[i]);
+                task.mFuture = mExecutor.submit(task);
+                mPending.put(path, task);
+            }
+        }
+    }
+
+    /**
+     * Removes the prefetched image from the pool. The caller is responsible for the bitmap.
+     *
+     * @return null if path was not prefetched.
+     */
+    public Entry take(String path) {
+        Entry result = mPool.remove(path);
+        if (result == null) {
+            PrefetchTask request = mPending.remove(path);
+            if (request != null) {
+                if (request.mStarted.compareAndSet(false, true)) {
+                    // not started yet: the caller loads it without waiting for other prefetches
+                    request.mFuture.cancel(false);
+                } else {
+                    // already loading: waiting is faster than loading again
+                    try {
+                        request.mFuture.get();
+                    } catch (Exception ignore) {
+                        // loaded without prefetch
+                    }
+                    result = mPool.remove(path);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** images may have changed: forget all prefetched images */
+    public void clear() {
+        for (PrefetchTask request : mPending.values()) {
+            request.mFuture.cancel(false);
+        }
+        mPending.clear();
+        mPool.evictAll();
+    }
+
+    public void close() {
+        mClosed = true;
+        clear();
+        mExecutor.shutdownNow();
+    }
+
+    private static int indexOf(String[] paths, String path) {
+        for (int i = 0; i < paths.length; i++) {
+            if (path.equals(paths[i])) return i;
+        }
+        return -1;
+    }
+
+    private class PrefetchTask implements Callable<Entry> {
+        private final String mPath;
+        private final boolean mDecodeBitmap;
+
+        /** set when call() starts or when {@link #take(String)} does not want the result any more */
+        private final AtomicBoolean mStarted = new AtomicBoolean(false);
+        private Future<Entry> mFuture = null;
+
+        PrefetchTask(String path, boolean decodeBitmap) {
+            mPath = path;
+            mDecodeBitmap = decodeBitmap;
+        }
+
+        @Override
+        public Entry call() {
+            if (!mStarted.compareAndSet(false, true) || mClosed) return null;
+
+            final int rotation = PhotoPropertiesBulkUpdateService.getRotationFromExifOrientation(mPath, null);
+            Bitmap bitmap = null;
+            if (mDecodeBitmap) {
+                try {
+                    bitmap = HugeImageLoader.loadImage(new File(mPath), mMaxImageDimension, mMaxImageDimension);
+                } catch (OutOfMemoryError err) {
+                    // gui thread tries again or uses thumbnail
+                    Log.w(LOG_TAG, "ImagePrefetcher out of memory for " + mPath);
+                }
+            }
+
+            final Entry result = new Entry(bitmap, rotation);
+            if (mClosed) {
+                if (bitmap != null) bitmap.recycle();
+            } else {
+                mPool.put(mPath, result);
+            }
+            if (Global.debugEnabledViewItem) {
+                Log.i(Global.LOG_CONTEXT, "ImagePrefetcher loaded " + mPath + " decoded=" + (bitmap != null));
+            }
+            return result;
+        }
+    }
+}
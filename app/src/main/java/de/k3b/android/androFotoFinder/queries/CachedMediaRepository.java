@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+package de.k3b.android.androFotoFinder.queries;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.k3b.android.androFotoFinder.Global;
+import de.k3b.database.CompiledQuery;
+import de.k3b.database.QueryParameter;
+import de.k3b.io.VISIBILITY;
+
+/**
+ * Caching decorator for {@link IMediaRepositoryApi#createCursorForQuery(StringBuilder, String, QueryParameter, VISIBILITY, CancellationSignal)}.
+ * <p>
+ * Results of small queries (folder-, date-picker, map markers, statistics) are kept as
+ * materialized rows in a memory bounded lru cache so that switching between
+ * Folder/Date/Map does not rescan the whole media table each time.
+ * The key is the {@link CompiledQuery} of the query (after visibility was applied).
+ * The whole cache is cleared if {@link #mustRequery(long)} reports a modified database.
+ * <p>
+ * Created by k3b on 29.03.2020.
+ */
+public class CachedMediaRepository extends MediaRepositoryApiWrapper {
+    private static final String LOG_TAG = MediaDBRepository.LOG_TAG;
+
+    /** overhead per cached row and per cached value in bytes (estimated) */
+    private static final int ROW_SIZE = 24;
+    private static final int VALUE_SIZE = 16;
+
+    private final Map<CompiledQuery, Result> cache = new LinkedHashMap<CompiledQuery, Result>(16, 0.75f, true);
+    private long cacheUpdateId;
+    private int cacheSize = 0;
+
+    public CachedMediaRepository(IMediaRepositoryApi child) {
+        super(child);
+        cacheUpdateId = child.getCurrentUpdateId();
+    }
+
+    @Override
+    public Cursor createCursorForQuery(StringBuilder out_debugMessage, String dbgContext,
+                                       QueryParameter parameters, VISIBILITY visibility,
+                                       CancellationSignal cancellationSignal) {
+        if ((Global.queryCacheMaxBytes <= 0) || (out_debugMessage != null)) {
+            return super.createCursorForQuery(out_debugMessage, dbgContext, parameters, visibility, cancellationSignal);
+        }
+
+        if (visibility != null) FotoSql.setWhereVisibility(parameters, visibility);
+        CompiledQuery key = parameters.compile();
+
+        Result found;
+        long updateId;
+        synchronized (cache) {
+            updateId = getCurrentUpdateId();
+            if (mustRequery(cacheUpdateId)) {
+                clear();
+                cacheUpdateId = updateId;
+            }
+            found = cache.get(key);
+        }
+        if (found != null) {
+            if (Global.debugEnabledSql) {
+                Log.i(LOG_TAG, dbgContext + ": CachedMediaRepository hit " + found.rows.size() + " rows");
+            }
+            return found.createCursor();
+        }
+
+        // visibility was already applied
+        Cursor cursor = super.createCursorForQuery(null, dbgContext, parameters, null, cancellationSignal);
+        if ((cursor == null) || (cursor.getCount() > Global.queryCacheMaxRows)) return cursor;
+
+        Result result;
+        try {
+            result = new Result(cursor);
+        } finally {
+            cursor.close();
+        }
+
+        synchronized (cache) {
+            // do not cache if database was modified while reading
+            if ((updateId == cacheUpdateId) && !mustRequery(updateId)
+                    && (result.size <= Global.queryCacheMaxBytes)) {
+                Result old = cache.put(key, result);
+                if (old != null) cacheSize -= old.size;
+                cacheSize += result.size;
+                trim();
+            }
+        }
+        return result.createCursor();
+    }
+
+    /** removes least recently used results until the cache fits into Global.queryCacheMaxBytes */
+    private void trim() {
+        Iterator<Result> iterator = cache.values().iterator();
+        while ((cacheSize > Global.queryCacheMaxBytes) && iterator.hasNext()) {
+            cacheSize -= iterator.next().size;
+            iterator.remove();
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+            cacheSize = 0;
+        }
+    }
+
+    /** materialized query result */
+    private static class Result {
+        private final String[] columnNames;
+        private final List<Object[]> rows;
+        private final int size;
+
+        Result(Cursor cursor) {
+            columnNames = cursor.getColumnNames();
+            int colCount = columnNames.length;
+            rows = new ArrayList<Object[]>(cursor.getCount());
+            int size = 0;
+            while (cursor.moveToNext()) {
+                Object[] row = new Object[colCount];
+                for (int i = 0; i < colCount; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        case Cursor.FIELD_TYPE_STRING:
+                            String value = cursor.getString(i);
+                            size += value.length() * 2;
+                            row[i] = value;
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            byte[] blob = cursor.getBlob(i);
+                            size += blob.length;
+                            row[i] = blob;
+                            break;
+                        default:
+                            row[i] = null;
+                            break;
+                    }
+                }
+                size += ROW_SIZE + colCount * VALUE_SIZE;
+                rows.add(row);
+            }
+            this.size = size;
+        }
+
+        Cursor createCursor() {
+            MatrixCursor result = new MatrixCursor(columnNames, rows.size());
+            for (Object[] row : rows) {
+                result.addRow(row);
+            }
+            return result;
+        }
+    }
+}
@@ -24,6 +24,8 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
+import de.k3b.android.androFotoFinder.tagDB.MediaSearchSql;
+import de.k3b.android.androFotoFinder.tagDB.MediaTagSql;
 import de.k3b.android.androFotoFinder.transactionlog.TransactionLogSql;
 import de.k3b.android.util.DatabaseContext;
 
@@ -37,8 +39,11 @@ import de.k3b.android.util.DatabaseContext;
 public class DatabaseHelper extends SQLiteOpenHelper {
     public static final int DATABASE_VERSION_1_TransactionLog = 1;
     public static final int DATABASE_VERSION_2_MEDIA_DB_COPY = 2;
+    public static final int DATABASE_VERSION_3_MEDIA_TAG = 3;
+    public static final int DATABASE_VERSION_4_MEDIA_SEARCH = 4;
+    public static final int DATABASE_VERSION_5_GEO_CELL = 5;
 
-    public static final int DATABASE_VERSION = DatabaseHelper.DATABASE_VERSION_2_MEDIA_DB_COPY;
+    public static final int DATABASE_VERSION = DatabaseHelper.DATABASE_VERSION_5_GEO_CELL;
 
     private static DatabaseHelper instance = null;
 
@@ -57,6 +62,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         for (String sql : MediaDBRepository.Impl.DDL) {
             db.execSQL(sql);
         }
+        MediaGeoCellSql.createTables(db);
+        MediaTagSql.createTables(db);
+        MediaSearchSql.createTables(db);
     }
 
     /**
@@ -76,6 +84,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + oldVersion + " to " + newVersion + ". (Old data is kept.)");
         if (oldVersion < DatabaseHelper.DATABASE_VERSION_2_MEDIA_DB_COPY) {
             this.version2Upgrade_RecreateMediDbCopy(db);
+        } else {
+            if (oldVersion < DatabaseHelper.DATABASE_VERSION_3_MEDIA_TAG) {
+                MediaTagSql.rebuild(db);
+            }
+            if (oldVersion < DatabaseHelper.DATABASE_VERSION_4_MEDIA_SEARCH) {
+                MediaSearchSql.rebuild(db);
+            }
+            if (oldVersion < DatabaseHelper.DATABASE_VERSION_5_GEO_CELL) {
+                MediaGeoCellSql.createTables(db);
+            }
         }
     }
 }
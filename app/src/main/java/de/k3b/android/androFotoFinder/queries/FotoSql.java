@@ -33,6 +33,8 @@ import org.osmdroid.api.IGeoPoint;
 import org.osmdroid.util.GeoPoint;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -43,14 +45,15 @@ import de.k3b.android.androFotoFinder.Global;
 import de.k3b.android.androFotoFinder.R;
 import de.k3b.android.util.DBUtils;
 import de.k3b.database.QueryParameter;
+import de.k3b.database.SelectionChunks;
 import de.k3b.io.AlbumFile;
 import de.k3b.io.DirectoryFormatter;
 import de.k3b.io.FileCommands;
 import de.k3b.io.GalleryFilterParameter;
+import de.k3b.io.GeoGrid;
 import de.k3b.io.GeoRectangle;
 import de.k3b.io.IGalleryFilter;
 import de.k3b.io.IGeoRectangle;
-import de.k3b.io.ListUtils;
 import de.k3b.io.StringUtils;
 import de.k3b.io.VISIBILITY;
 import de.k3b.io.collections.SelectedFiles;
@@ -163,6 +166,13 @@ public class FotoSql extends FotoSqlBase {
     private static final String FILTER_EXPR_NO_GPS = SQL_COL_LAT + " is null AND " + SQL_COL_LON + " is null";
     private static final String FILTER_EXPR_LON_MAX = SQL_COL_LON + " < ?";
     private static final String FILTER_EXPR_LON_MIN = SQL_COL_LON + " >= ?";
+
+    // #155: index friendly version of FILTER_EXPR_LAT_XXX/FILTER_EXPR_LON_XXX. See MediaGeoCellSql
+    private static final String FILTER_EXPR_LAT_CELL_MAX = MediaGeoCellSql.SQL_COL_GEO_LAT_CELL + " <= ?";
+    private static final String FILTER_EXPR_LAT_CELL_MIN = MediaGeoCellSql.SQL_COL_GEO_LAT_CELL + " >= ?";
+    private static final String FILTER_EXPR_LON_CELL_MAX = MediaGeoCellSql.SQL_COL_GEO_LON_CELL + " <= ?";
+    private static final String FILTER_EXPR_LON_CELL_MIN = MediaGeoCellSql.SQL_COL_GEO_LON_CELL + " >= ?";
+
     protected static final String FILTER_EXPR_RATING_MIN = SQL_COL_EXT_RATING + " >= ?";
 
     // SQL_COL_DATE_TAKEN and "?" in milli-seconds since 1970
@@ -263,7 +273,7 @@ public class FotoSql extends FotoSqlBase {
             ;
 
     // the bigger the smaller the area
-    private static final double GROUPFACTOR_FOR_Z0 = 0.025;
+    private static final double GROUPFACTOR_FOR_Z0 = GeoGrid.GROUPFACTOR_FOR_Z0;
 
     /** to avoid cascade delete of linked file when mediaDB-item is deleted
      *  the links are first set to null before delete. */
@@ -305,9 +315,11 @@ public class FotoSql extends FotoSqlBase {
         return result;
     }
 
-    public static final QueryParameter queryGroupByPlace = getQueryGroupByPlace(100);
-
     public static QueryParameter getQueryGroupByPlace(double groupingFactor) {
+        if (MediaGeoCellSql.isGeoGridEnabled()) {
+            return getQueryGroupByPlaceCell(GeoGrid.getShift(groupingFactor));
+        }
+
         //String SQL_EXPR_LAT = "(round(" + SQL_COL_LAT + " - 0.00499, 2))";
         //String SQL_EXPR_LON = "(round(" + SQL_COL_LON + " - 0.00499, 2))";
 
@@ -334,6 +346,27 @@ public class FotoSql extends FotoSqlBase {
         return result;
     }
 
+    /** #155: group by the indexed integer grid cells. shift is calculated by GeoGrid.getShift(groupingFactor) */
+    private static QueryParameter getQueryGroupByPlaceCell(int shift) {
+        String SQL_EXPR_LAT_CELL = GeoGrid.getSqlGroupCell(MediaGeoCellSql.SQL_COL_GEO_LAT_CELL, shift);
+        String SQL_EXPR_LON_CELL = GeoGrid.getSqlGroupCell(MediaGeoCellSql.SQL_COL_GEO_LON_CELL, shift);
+
+        QueryParameter result = new QueryParameter();
+
+        result.setID(QUERY_TYPE_GROUP_PLACE)
+                .addColumn(
+                        "max(" + SQL_COL_PK + ") AS " + SQL_COL_PK,
+                        GeoGrid.getSqlLatitudeCenter(MediaGeoCellSql.SQL_COL_GEO_LAT_CELL, shift) + " AS " + SQL_COL_LAT,
+                        GeoGrid.getSqlLongitudeCenter(MediaGeoCellSql.SQL_COL_GEO_LON_CELL, shift) + " AS " + SQL_COL_LON,
+                        "count(*) AS " + SQL_COL_COUNT)
+                .addFrom(SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME)
+                .addWhere(FILTER_EXPR_PRIVATE_PUBLIC)
+                .addGroupBy(SQL_EXPR_LAT_CELL, SQL_EXPR_LON_CELL)
+                .addOrderBy(SQL_EXPR_LAT_CELL, SQL_EXPR_LON_CELL);
+
+        return result;
+    }
+
     public static final String[] DEFAULT_GALLERY_COLUMNS = new String[]{SQL_COL_PK,
             SQL_COL_PATH + " AS " + SQL_COL_DISPLAY_TEXT,
             // "0 AS " + SQL_COL_COUNT,
@@ -437,6 +470,12 @@ public class FotoSql extends FotoSqlBase {
             final String lonMax = getParam(srcQuery, FILTER_EXPR_LON_MAX, removeFromSourceQuery);
             final String latMin = getParam(srcQuery, FILTER_EXPR_LAT_MIN, removeFromSourceQuery);
             final String latMax = getParam(srcQuery, FILTER_EXPR_LAT_MAX, removeFromSourceQuery);
+
+            // cell filters are recalculated from lat/lon
+            getParam(srcQuery, FILTER_EXPR_LON_CELL_MIN, removeFromSourceQuery);
+            getParam(srcQuery, FILTER_EXPR_LON_CELL_MAX, removeFromSourceQuery);
+            getParam(srcQuery, FILTER_EXPR_LAT_CELL_MIN, removeFromSourceQuery);
+            getParam(srcQuery, FILTER_EXPR_LAT_CELL_MAX, removeFromSourceQuery);
             if (destFilter != null) {
                 destFilter.setLogitude(lonMin, lonMax);
                 destFilter.setLatitude(latMin, latMax);
@@ -493,16 +532,24 @@ public class FotoSql extends FotoSqlBase {
         return query.getWhereParameter(expresion, removeFromSourceQuery);
     }
 
+    /** #155: consecutive ids are translated to "between" so that "select all" does not create megabytes of sql */
     public static QueryParameter setWhereSelectionPks(QueryParameter query, SelectedItems selectedItems) {
         if ((query != null) && (selectedItems != null) && (!selectedItems.isEmpty())) {
-            String pksAsListString = selectedItems.toString();
-            setWhereSelectionPks(query, pksAsListString);
+            SelectionChunks.addWhereInIds(query.clearWhere(), FotoSql.SQL_COL_PK, selectedItems.toLongArray());
         }
         return query;
     }
 
     public static QueryParameter setWhereSelectionPks(QueryParameter query, String pksAsListString) {
         if ((pksAsListString != null) && (pksAsListString.length() > 0)) {
+            SelectedItems selectedItems = null;
+            try {
+                selectedItems = new SelectedItems().parse(pksAsListString);
+            } catch (NumberFormatException ignore) {
+                // not a list of numbers: use as is
+            }
+            if (selectedItems != null) return setWhereSelectionPks(query, selectedItems);
+
             query.clearWhere()
                     .addWhere(FotoSql.SQL_COL_PK + " in (" + pksAsListString + ")")
             ;
@@ -512,16 +559,17 @@ public class FotoSql extends FotoSqlBase {
 
     public static void setWhereSelectionPaths(QueryParameter query, SelectedFiles selectedItems) {
         if ((query != null) && (selectedItems != null) && (selectedItems.size() > 0)) {
-            query.clearWhere()
-                    .addWhere(FotoSql.SQL_COL_PATH + " in (" + selectedItems.toString() + ")")
-            ;
+            setWhereFileNames(query, selectedItems.getFileNames());
         }
     }
 
+    /**
+     * @param fileNames as bound parameters. Big lists must be split with {@link #getFileNameChunks(String...)}
+     */
     public static void setWhereFileNames(QueryParameter query, String... fileNames) {
         if ((query != null) && (fileNames != null) && (fileNames.length > 0)) {
             query.clearWhere()
-                    .addWhere(getWhereInFileNames(fileNames))
+                    .addWhere(getWhereInFileNames(fileNames.length), fileNames)
             ;
         }
     }
@@ -555,6 +603,15 @@ public class FotoSql extends FotoSqlBase {
         if (!Double.isNaN(latitudeMax)) query.addWhere(FILTER_EXPR_LAT_MAX, DirectoryFormatter.formatLatLon(latitudeMax));
         if (!Double.isNaN(logituedMin)) query.addWhere(FILTER_EXPR_LON_MIN, DirectoryFormatter.formatLatLon(logituedMin));
         if (!Double.isNaN(logituedMax)) query.addWhere(FILTER_EXPR_LON_MAX, DirectoryFormatter.formatLatLon(logituedMax));
+
+        if (MediaGeoCellSql.isGeoGridEnabled()) {
+            // #155: same area as grid cell range that can use geo_cell_index.
+            // The cell range may be a little bit bigger. The exact lat/lon filter above removes the rest.
+            if (!Double.isNaN(latitudeMin)) query.addWhere(FILTER_EXPR_LAT_CELL_MIN, "" + GeoGrid.getLatitudeCell(latitudeMin));
+            if (!Double.isNaN(latitudeMax)) query.addWhere(FILTER_EXPR_LAT_CELL_MAX, "" + GeoGrid.getLatitudeCell(latitudeMax));
+            if (!Double.isNaN(logituedMin)) query.addWhere(FILTER_EXPR_LON_CELL_MIN, "" + GeoGrid.getLongitudeCell(logituedMin));
+            if (!Double.isNaN(logituedMax)) query.addWhere(FILTER_EXPR_LON_CELL_MAX, "" + GeoGrid.getLongitudeCell(logituedMax));
+        }
     }
 
     public static void addPathWhere(QueryParameter newQuery, String selectedAbsolutePath, int dirQueryID) {
@@ -636,7 +693,7 @@ public class FotoSql extends FotoSqlBase {
                 return queryGroupByDir;
             case QUERY_TYPE_GROUP_PLACE:
             case QUERY_TYPE_GROUP_PLACE_MAP:
-                return queryGroupByPlace;
+                return getQueryGroupByPlace(100);
             case QUERY_TYPE_GROUP_COPY:
             case QUERY_TYPE_GROUP_MOVE:
                 return null;
@@ -921,13 +978,12 @@ public class FotoSql extends FotoSqlBase {
     public static Map<String, Long> execGetPathIdMap(String... fileNames) {
         Map<String, Long> result = new HashMap<String, Long>();
 
-        String whereFileNames = getWhereInFileNames(fileNames);
-        if (whereFileNames != null) {
+        for (String[] chunk : getFileNameChunks(fileNames)) {
             QueryParameter query = new QueryParameter()
                     .setID(QUERY_TYPE_UNDEFINED)
                     .addColumn(SQL_COL_PK, SQL_COL_PATH)
                     .addFrom(SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME)
-                    .addWhere(whereFileNames);
+                    .addWhere(getWhereInFileNames(chunk.length), chunk);
 
             Cursor c = null;
             try {
@@ -944,68 +1000,59 @@ public class FotoSql extends FotoSqlBase {
         return result;
     }
 
-    public static String getWhereInFileNames(String... fileNames) {
-        if (fileNames != null) {
-            StringBuilder filter = new StringBuilder();
-            filter.append(SQL_COL_PATH).append(" in (");
+    /** @return "path in (?,?,...)" with count parameters */
+    public static String getWhereInFileNames(int count) {
+        return SelectionChunks.getWhereIn(SQL_COL_PATH, count);
+    }
 
-            int count = 0;
+    /**
+     * #155: big lists of file names are transported as bound parameters in chunks
+     * instead of one huge sql with quoted names.
+     *
+     * @return fileNames without null and without sidecar files in chunks for {@link #getWhereInFileNames(int)}
+     */
+    public static List<String[]> getFileNameChunks(String... fileNames) {
+        List<String> mediaFileNames = new ArrayList<String>();
+        if (fileNames != null) {
             for (String fileName : fileNames) {
-                if ((fileName != null) &&!FileCommands.isSidecar(fileName)) {
-                    if (count > 0) filter.append(", ");
-                    filter.append("'").append(fileName).append("'");
-                    count++;
+                if ((fileName != null) && !FileCommands.isSidecar(fileName)) {
+                    mediaFileNames.add(fileName);
                 }
             }
-
-            filter.append(")");
-
-            if (count > 0) return filter.toString();
         }
-        return null;
+        return SelectionChunks.split(mediaFileNames, SelectionChunks.MAX_PARAMETERS);
     }
 
     /**
-     * execRenameFolder(getActivity(),"/storage/sdcard0/testFolder/", "/storage/sdcard0/renamedFolder/")
+     * execRenameFolder("/storage/sdcard0/testFolder/", "/storage/sdcard0/renamedFolder/")
      *    "/storage/sdcard0/testFolder/image.jpg" becomes "/storage/sdcard0/renamedFolder/image.jpg"
      * @return number of updated items
      */
     public static int execRenameFolder(String pathOld, String pathNew) {
         final String dbgContext = "FotoSql.execRenameFolder('" +
                 pathOld + "' => '" + pathNew + "')";
-        // sql update file set path = newBegin + substing(path, begin+len) where path like newBegin+'%'
-        // public static final String SQL_EXPR_FOLDER = "substr(" + SQL_COL_PATH + ",1,length(" + SQL_COL_PATH + ") - length(" + MediaStore.Images.Media.DISPLAY_NAME + "))";
-
-        final String sqlColNewPathAlias = "new_path";
-        final String sql_col_pathnew = "'" + pathNew + "' || substr(" + SQL_COL_PATH +
-            "," + (pathOld.length() + 1) + ",255) AS " + sqlColNewPathAlias;
+        return mediaDBApi.execRenameFolder(dbgContext, pathOld, pathNew);
+    }
 
-        QueryParameter queryAffectedFiles = new QueryParameter()
-                .setID(QUERY_TYPE_DEFAULT)
-                .addColumn(SQL_COL_PK,
-                        sql_col_pathnew)
-                .addFrom(SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME)
-                .addWhere(SQL_COL_PATH + " like '" + pathOld + "%'")
+    /**
+     * #155: where for all media items below folder pathPrefix.
+     * Unlike "path like 'pathPrefix%'" "%" and "_" in pathPrefix are no wildcards and
+     * the prefix compare is case sensitive.
+     *
+     * @return where with parameters {@link #getFilterArgsPathPrefix(String)}
+     */
+    public static String getFilterExprPathPrefix(String pathPrefix) {
+        return "(" + SQL_COL_PATH + " like ? escape '\\' AND substr(" + SQL_COL_PATH +
+                ",1," + pathPrefix.codePointCount(0, pathPrefix.length()) + ") = ?" +
                 // SQL_COL_EXT_MEDIA_TYPE IS NOT NULL enshures that all media types (mp3, mp4, txt,...) are updated
-                .addWhere(SQL_COL_EXT_MEDIA_TYPE + " IS NOT NULL")
-                ;
-
-        SelectedFiles selectedFiles = getSelectedfiles(queryAffectedFiles, sqlColNewPathAlias, null);
+                " AND " + SQL_COL_EXT_MEDIA_TYPE + " IS NOT NULL)";
+    }
 
-        String[] paths = selectedFiles.getFileNames();
-        Long[] ids = selectedFiles.getIds();
-        ContentValues values = new ContentValues();
-        String[] selectionArgs = new String[1];
-        String _dbgContext = dbgContext + "(" +
-                ids.length + " times)";
-        for (int i = 0; i < ids.length; i++) {
-            values.put(SQL_COL_PATH, paths[i]);
-            selectionArgs[0] = ids[i].toString();
-            if (mediaDBApi.exexUpdateImpl(_dbgContext, values, FILTER_COL_PK, selectionArgs) < 0)
-                return -1;
-            _dbgContext = null;
-        }
-        return ids.length;
+    /** @return parameters for {@link #getFilterExprPathPrefix(String)} */
+    public static String[] getFilterArgsPathPrefix(String pathPrefix) {
+        String likePattern = pathPrefix.replace("\\", "\\\\")
+                .replace("%", "\\%").replace("_", "\\_") + "%";
+        return new String[]{likePattern, pathPrefix};
     }
 
     protected static String getFilterExprPathLikeWithVisibility(VISIBILITY visibility) {
@@ -1031,11 +1078,21 @@ public class FotoSql extends FotoSqlBase {
 
     public static int deleteMedia(String dbgContext, List<String> pathsToBeRemoved,
                                   boolean preventDeleteImageFile) {
-        if ((pathsToBeRemoved != null) && (pathsToBeRemoved.size() > 0)) {
-            String whereDelete = SQL_COL_PATH + " in ('" + ListUtils.toString("','", pathsToBeRemoved) + "')";
-            return mediaDBApi.deleteMedia(dbgContext, whereDelete, null, preventDeleteImageFile);
+        int delCount = 0;
+        for (String[] chunk : SelectionChunks.split(pathsToBeRemoved, SelectionChunks.MAX_PARAMETERS)) {
+            delCount += mediaDBApi.deleteMedia(dbgContext, getWhereInFileNames(chunk.length), chunk, preventDeleteImageFile);
         }
-        return 0;
+        return delCount;
+    }
+
+    /** #155: deletes in chunks with bound parameters. */
+    public static int deleteMediaByIds(String dbgContext, String pksAsListString, boolean preventDeleteImageFile) {
+        int delCount = 0;
+        for (String[] chunk : SelectionChunks.splitIds(pksAsListString, SelectionChunks.MAX_PARAMETERS)) {
+            delCount += mediaDBApi.deleteMedia(dbgContext,
+                    SelectionChunks.getWhereIn(SQL_COL_PK, chunk.length), chunk, preventDeleteImageFile);
+        }
+        return delCount;
     }
 
     public static int deleteMediaWithNullPath() {
@@ -1048,13 +1105,7 @@ public class FotoSql extends FotoSqlBase {
 
         SelectedFiles filesWitoutPath = getSelectedfiles(wherePathIsNull, FotoSql.SQL_COL_PATH, VISIBILITY.PRIVATE_PUBLIC);
         String pksAsString = filesWitoutPath.toIdString();
-        if ((pksAsString != null) && (pksAsString.length() > 0)) {
-            QueryParameter whereInIds = new QueryParameter();
-            FotoSql.setWhereSelectionPks(whereInIds, pksAsString);
-
-            return mediaDBApi.deleteMedia("delete without path (_data = null)", whereInIds.toAndroidWhere(), null, true);
-        }
-        return 0;
+        return deleteMediaByIds("delete without path (_data = null)", pksAsString, true);
     }
 
     /** converts imageID to content-uri */
@@ -1230,11 +1281,8 @@ public class FotoSql extends FotoSqlBase {
     /** converts internal ID-list to string array of filenNames via media database. */
     public static List<String> getFileNames(SelectedItems items, List<Long> ids, List<String> paths, List<Date> datesPhotoTaken) {
         if (!items.isEmpty()) {
-            // query ordered by DatePhotoTaken so that lower rename-numbers correspond to older images.
-            QueryParameter parameters = new QueryParameter(queryAutoRename);
-            setWhereSelectionPks(parameters, items);
-
-            List<String> result = getFileNamesImpl(parameters, ids, paths, datesPhotoTaken);
+            List<String> result = getFileNamesImpl(SelectionChunks.split(items, SelectionChunks.MAX_PARAMETERS),
+                    ids, paths, datesPhotoTaken);
             int size = result.size();
 
             if (size > 0) {
@@ -1248,11 +1296,8 @@ public class FotoSql extends FotoSqlBase {
     /** converts internal ID-list to string array of filenNames via media database. */
     public static String[] getFileNames(String pksAsListString, List<Long> ids, List<String> paths, List<Date> datesPhotoTaken) {
         if ((pksAsListString != null) && !pksAsListString.isEmpty()) {
-            // query ordered by DatePhotoTaken so that lower rename-numbers correspond to older images.
-            QueryParameter parameters = new QueryParameter(queryAutoRename);
-            setWhereSelectionPks(parameters, pksAsListString);
-
-            List<String> result = getFileNamesImpl(parameters, ids, paths, datesPhotoTaken);
+            List<String> result = getFileNamesImpl(SelectionChunks.splitIds(pksAsListString, SelectionChunks.MAX_PARAMETERS),
+                    ids, paths, datesPhotoTaken);
             int size = result.size();
 
             if (size > 0) {
@@ -1262,9 +1307,31 @@ public class FotoSql extends FotoSqlBase {
         return null;
     }
 
-    private static List<String> getFileNamesImpl(QueryParameter parameters, List<Long> ids, List<String> paths, List<Date> datesPhotoTaken) {
+    /** #155: ids are queried in chunks with bound parameters */
+    private static List<String> getFileNamesImpl(List<String[]> idChunks, List<Long> ids, List<String> paths, List<Date> datesPhotoTaken) {
+        List<FileNameRow> rows = new ArrayList<FileNameRow>();
+        for (String[] chunk : idChunks) {
+            // query ordered by DatePhotoTaken so that lower rename-numbers correspond to older images.
+            QueryParameter parameters = new QueryParameter(queryAutoRename)
+                    .addWhere(SelectionChunks.getWhereIn(SQL_COL_PK, chunk.length), chunk);
+            loadFileNameRows(parameters, rows);
+        }
+
+        if (idChunks.size() > 1) {
+            // same order as one query for all ids
+            Collections.sort(rows, FileNameRow.BY_DATE);
+        }
+
         List<String> result = (paths != null) ? paths : new ArrayList<String>();
+        for (FileNameRow row : rows) {
+            result.add(row.path);
+            if (ids != null) ids.add(row.id);
+            if (datesPhotoTaken != null) datesPhotoTaken.add(row.dateTaken);
+        }
+        return result;
+    }
 
+    private static void loadFileNameRows(QueryParameter parameters, List<FileNameRow> rows) {
         Cursor cursor = null;
 
         try {
@@ -1272,19 +1339,50 @@ public class FotoSql extends FotoSqlBase {
 
             int colPath = cursor.getColumnIndex(SQL_COL_DISPLAY_TEXT);
             if (colPath == -1) colPath = cursor.getColumnIndex(SQL_COL_PATH);
-            int colIds = (ids == null) ? -1 : cursor.getColumnIndex(SQL_COL_PK);
-            int colDates = (datesPhotoTaken == null) ? -1 : cursor.getColumnIndex(SQL_COL_DATE_TAKEN);
+            int colIds = cursor.getColumnIndex(SQL_COL_PK);
+            int colDates = cursor.getColumnIndex(SQL_COL_DATE_TAKEN);
+            int colModified = cursor.getColumnIndex(SQL_COL_LAST_MODIFIED);
             while (cursor.moveToNext()) {
-                result.add(cursor.getString(colPath));
-                if (colIds >= 0) ids.add(cursor.getLong(colIds));
-                if (colDates >= 0) datesPhotoTaken.add(getDate(cursor, colDates));
+                rows.add(new FileNameRow(cursor.getLong(colIds), cursor.getString(colPath),
+                        getDate(cursor, colDates), (colModified == -1) ? 0 : cursor.getLong(colModified)));
             }
         } finally {
             if (cursor != null) {
                 cursor.close();
             }
         }
-        return result;
+    }
+
+    /** one result row of {@link #queryAutoRename} */
+    private static class FileNameRow {
+        /** same as order by of queryAutoRename */
+        static final Comparator<FileNameRow> BY_DATE = new Comparator<FileNameRow>() {
+            @Override
+            public int compare(FileNameRow lhs, FileNameRow rhs) {
+                int result = compareLong(getTime(lhs.dateTaken), getTime(rhs.dateTaken));
+                return (result != 0) ? result : compareLong(lhs.lastModified, rhs.lastModified);
+            }
+        };
+
+        final long id;
+        final String path;
+        final Date dateTaken;
+        final long lastModified;
+
+        FileNameRow(long id, String path, Date dateTaken, long lastModified) {
+            this.id = id;
+            this.path = path;
+            this.dateTaken = dateTaken;
+            this.lastModified = lastModified;
+        }
+
+        private static long getTime(Date date) {
+            return (date == null) ? 0 : date.getTime();
+        }
+
+        private static int compareLong(long lhs, long rhs) {
+            return (lhs < rhs) ? -1 : ((lhs == rhs) ? 0 : 1);
+        }
     }
 
     protected static String getFilterExpressionVisibility(VISIBILITY _visibility) {
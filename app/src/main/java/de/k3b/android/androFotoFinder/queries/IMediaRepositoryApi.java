@@ -62,6 +62,14 @@ public interface IMediaRepositoryApi {
      */
     int deleteMedia(String dbgContext, String where, String[] selectionArgs, boolean preventDeleteImageFile);
 
+    /**
+     * execRenameFolder("/storage/sdcard0/testFolder/", "/storage/sdcard0/renamedFolder/")
+     *    "/storage/sdcard0/testFolder/image.jpg" becomes "/storage/sdcard0/renamedFolder/image.jpg"
+     *
+     * @return number of updated items or -1 on error
+     */
+    int execRenameFolder(String dbgContext, String pathOld, String pathNew);
+
     ContentValues getDbContent(long id);
 
     long getCurrentUpdateId();
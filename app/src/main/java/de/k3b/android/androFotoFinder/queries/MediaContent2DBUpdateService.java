@@ -19,13 +19,20 @@
 package de.k3b.android.androFotoFinder.queries;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.database.ContentObserver;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.util.Log;
 import android.widget.Toast;
 
 import java.util.Date;
 
+import de.k3b.android.androFotoFinder.Global;
+import de.k3b.database.MediaSyncDiff;
+import de.k3b.database.MediaSyncStatistics;
+import de.k3b.database.MediaSyncWatermark;
 import de.k3b.io.IProgessListener;
 
 /**
@@ -33,6 +40,9 @@ import de.k3b.io.IProgessListener;
  * {@link MediaContentproviderRepository} are transfered to {@link MediaDBRepository}
  */
 public class MediaContent2DBUpdateService {
+    /** {@link MediaSyncWatermark} of the contentprovider after the last sync */
+    private static final String PREF_KEY_SYNC_WATERMARK = "MediaDbSyncWatermark";
+
     // called when image-/file-mediacontent has changed to indicate that data must
     // be loaded from content-provider to content-copy
     private static final ContentObserver mMediaObserverDirectory = new ContentObserver(null) {
@@ -47,6 +57,7 @@ public class MediaContent2DBUpdateService {
     public static MediaContent2DBUpdateService instance = null;
     private final Context context;
     private final SQLiteDatabase writableDatabase;
+    private MediaSyncStatistics lastSyncStatistics = null;
 
     public MediaContent2DBUpdateService(Context context, SQLiteDatabase writableDatabase) {
         this.context = context;
@@ -55,17 +66,66 @@ public class MediaContent2DBUpdateService {
 
     public void clearMediaCopy() {
         DatabaseHelper.version2Upgrade_RecreateMediDbCopy(writableDatabase);
+        saveWatermark(null);
     }
 
     public void rebuild(Context context, IProgessListener progessListener) {
         long start = new Date().getTime();
         clearMediaCopy();
-        MediaDBRepository.Impl.updateMedaiCopy(context, writableDatabase, null, progessListener);
+        sync(context, true, progessListener);
         start = (new Date().getTime() - start) / 1000;
         final String text = "load db " + start + " secs";
         Toast.makeText(context, text, Toast.LENGTH_LONG).show();
         if (progessListener != null) progessListener.onProgress(0, 0, text);
     }
 
+    /**
+     * #155: transfers only the changes (inserted, updated and deleted media) from
+     * {@link MediaContentproviderRepository} to {@link MediaDBRepository}.
+     *
+     * @param force false: nothing is done if the contentprovider has the same watermark
+     *              (count, max id, max modification date) as after the last sync.
+     * @return statistics or null if sync was canceled or failed
+     */
+    public MediaSyncStatistics sync(Context context, boolean force, IProgessListener progessListener) {
+        long start = new Date().getTime();
+        MediaSyncWatermark lastWatermark = loadWatermark();
+        if (!force && (lastWatermark != null)
+                && lastWatermark.equals(MediaDBRepository.Impl.getSourceWatermark(context))
+                && (lastWatermark.getCount() == MediaDBRepository.Impl.getCopyCount(writableDatabase))) {
+            lastSyncStatistics = new MediaSyncStatistics().setStartTime(start)
+                    .setSkipped(true).setEndTime(new Date().getTime());
+        } else {
+            MediaSyncDiff diff = MediaDBRepository.Impl.syncMediaCopy(context, writableDatabase, progessListener);
+            if (diff == null) return null;
+
+            saveWatermark(diff.getSourceWatermark());
+            lastSyncStatistics = diff.getStatistics();
+        }
+
+        if (Global.debugEnabledSql) {
+            Log.i(MediaDBRepository.LOG_TAG, "MediaContent2DBUpdateService.sync " + lastSyncStatistics);
+        }
+        return lastSyncStatistics;
+    }
 
+    /** @return statistics of the last successful {@link #sync(Context, boolean, IProgessListener)} or null */
+    public MediaSyncStatistics getLastSyncStatistics() {
+        return lastSyncStatistics;
+    }
+
+    private MediaSyncWatermark loadWatermark() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return MediaSyncWatermark.parse(prefs.getString(PREF_KEY_SYNC_WATERMARK, null));
+    }
+
+    private void saveWatermark(MediaSyncWatermark watermark) {
+        SharedPreferences.Editor edit = PreferenceManager.getDefaultSharedPreferences(context).edit();
+        if (watermark == null) {
+            edit.remove(PREF_KEY_SYNC_WATERMARK);
+        } else {
+            edit.putString(PREF_KEY_SYNC_WATERMARK, watermark.toString());
+        }
+        edit.apply();
+    }
 }
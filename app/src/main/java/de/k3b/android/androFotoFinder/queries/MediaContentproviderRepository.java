@@ -101,6 +101,11 @@ public class MediaContentproviderRepository implements IMediaRepositoryApi {
         return MediaContentproviderRepositoryImpl.deleteMedia(dbgContext, context, where, selectionArgs, preventDeleteImageFile);
     }
 
+    @Override
+    public int execRenameFolder(String dbgContext, String pathOld, String pathNew) {
+        return MediaContentproviderRepositoryImpl.execRenameFolder(dbgContext, context, pathOld, pathNew);
+    }
+
     @Override
     public ContentValues getDbContent(final long id) {
         return MediaContentproviderRepositoryImpl.getDbContent(context, id);
@@ -33,6 +33,7 @@ import java.util.ArrayList;
 
 import de.k3b.LibGlobal;
 import de.k3b.android.androFotoFinder.Global;
+import de.k3b.database.CompiledQuery;
 import de.k3b.database.QueryParameter;
 import de.k3b.io.StringUtils;
 import de.k3b.io.VISIBILITY;
@@ -48,10 +49,11 @@ public class MediaContentproviderRepositoryImpl {
             StringBuilder out_debugMessage, String dbgContext, final Context context,
             QueryParameter parameters, VISIBILITY visibility, CancellationSignal cancellationSignal) {
         if (visibility != null) FotoSql.setWhereVisibility(parameters, visibility);
-        return createCursorForQuery(out_debugMessage, dbgContext, context, parameters.toFrom(),
-                parameters.toAndroidWhere(),
-                parameters.toAndroidParameters(), parameters.toOrderBy(),
-                cancellationSignal, parameters.toColumns()
+        CompiledQuery query = parameters.compile();
+        return createCursorForQuery(out_debugMessage, dbgContext, context, query.toFrom(),
+                query.toAndroidWhere(),
+                query.toAndroidParameters(), query.toOrderBy(),
+                cancellationSignal, query.toColumns()
         );
     }
 
@@ -220,6 +222,50 @@ public class MediaContentproviderRepositoryImpl {
         return delCount;
     }
 
+    /**
+     * execRenameFolder("/storage/sdcard0/testFolder/", "/storage/sdcard0/renamedFolder/")
+     * "/storage/sdcard0/testFolder/image.jpg" becomes "/storage/sdcard0/renamedFolder/image.jpg"
+     *
+     * The contentprovider has no set based update with sql expressions so every item is updated on its own.
+     *
+     * @return number of updated items or -1 on error
+     */
+    public static int execRenameFolder(String dbgContext, Context context, String pathOld, String pathNew) {
+        final String where = FotoSql.getFilterExprPathPrefix(pathOld);
+        final String[] whereArgs = FotoSql.getFilterArgsPathPrefix(pathOld);
+        ArrayList<Long> ids = new ArrayList<Long>();
+        ArrayList<String> paths = new ArrayList<String>();
+
+        Cursor c = null;
+        try {
+            c = createCursorForQuery(null, dbgContext, context,
+                    FotoSqlBase.SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME, where, whereArgs, null, null,
+                    FotoSql.SQL_COL_PK, FotoSql.SQL_COL_PATH);
+            while (c.moveToNext()) {
+                ids.add(c.getLong(0));
+                paths.add(pathNew + c.getString(1).substring(pathOld.length()));
+            }
+        } catch (Exception ex) {
+            Log.e(LOG_TAG, dbgContext + "-getAffected error :", ex);
+            return -1;
+        } finally {
+            if (c != null) c.close();
+        }
+
+        ContentValues values = new ContentValues();
+        String[] selectionArgs = new String[1];
+        String _dbgContext = dbgContext + "(" +
+                ids.size() + " times)";
+        for (int i = 0; i < ids.size(); i++) {
+            values.put(FotoSql.SQL_COL_PATH, paths.get(i));
+            selectionArgs[0] = ids.get(i).toString();
+            if (exexUpdateImpl(_dbgContext, context, values, FotoSql.FILTER_COL_PK, selectionArgs) < 0)
+                return -1;
+            _dbgContext = null;
+        }
+        return ids.size();
+    }
+
     /**
      * execRenameFolder(getActivity(),"/storage/sdcard0/testFolder/", "/storage/sdcard0/renamedFolder/")
      * "/storage/sdcard0/testFolder/image.jpg" becomes "/storage/sdcard0/renamedFolder/image.jpg"
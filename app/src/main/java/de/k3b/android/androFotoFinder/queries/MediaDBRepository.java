@@ -30,18 +30,26 @@ import android.os.CancellationSignal;
 import android.provider.MediaStore;
 import android.util.Log;
 
-import java.sql.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import de.k3b.LibGlobal;
 import de.k3b.android.androFotoFinder.Global;
 import de.k3b.android.androFotoFinder.R;
+import de.k3b.android.androFotoFinder.tagDB.MediaSearchSql;
+import de.k3b.android.androFotoFinder.tagDB.MediaTagSql;
+import de.k3b.database.CompiledQuery;
+import de.k3b.database.MediaFingerprint;
+import de.k3b.database.MediaSyncDiff;
+import de.k3b.database.MediaSyncWatermark;
 import de.k3b.database.QueryParameter;
+import de.k3b.database.SelectionChunks;
 import de.k3b.io.AlbumFile;
 import de.k3b.io.IProgessListener;
 import de.k3b.io.StringUtils;
 import de.k3b.io.VISIBILITY;
+import de.k3b.io.collections.LongIdSet;
 
-import static de.k3b.android.androFotoFinder.queries.FotoSql.QUERY_TYPE_UNDEFINED;
 import static de.k3b.android.androFotoFinder.queries.FotoSql.SQL_COL_DATE_ADDED;
 import static de.k3b.android.androFotoFinder.queries.FotoSql.SQL_COL_DATE_TAKEN;
 import static de.k3b.android.androFotoFinder.queries.FotoSql.SQL_COL_EXT_MEDIA_TYPE;
@@ -87,11 +95,12 @@ public class MediaDBRepository implements IMediaRepositoryApi {
                                        QueryParameter parameters, VISIBILITY visibility,
                                        CancellationSignal cancellationSignal) {
         if (visibility != null) FotoSql.setWhereVisibility(parameters, visibility);
+        CompiledQuery query = parameters.compile();
         return createCursorForQuery(out_debugMessage, dbgContext,
-                parameters.toWhere(), parameters.toAndroidParameters(),
-                parameters.toGroupBy(), parameters.toHaving(),
-                parameters.toOrderBy(),
-                cancellationSignal, parameters.toColumns()
+                query.toWhere(), query.toAndroidParameters(),
+                query.toGroupBy(), query.toHaving(),
+                query.toOrderBy(),
+                cancellationSignal, query.toColumns()
         );
     }
 
@@ -186,8 +195,21 @@ public class MediaDBRepository implements IMediaRepositoryApi {
     public int exexUpdateImpl(String dbgContext, ContentValues values, String sqlWhere, String[] selectionArgs) {
         int result = -1;
         Exception excpetion = null;
+        final boolean updateTagIndex = values.containsKey(SQL_COL_EXT_TAGS);
+        final boolean updateSearchIndex = MediaSearchSql.containsSearchColumn(values);
+        final boolean updateIndex = updateTagIndex || updateSearchIndex;
         try {
-            result = db.update(Impl.table, values, sqlWhere, selectionArgs);
+            if (updateIndex) {
+                db.beginTransaction();
+                // where may not match any more after update
+                long[] ids = getIds(sqlWhere, selectionArgs);
+                result = db.update(Impl.table, values, sqlWhere, selectionArgs);
+                if (updateTagIndex) updateTagIndex(ids, values.getAsString(SQL_COL_EXT_TAGS));
+                if (updateSearchIndex) updateSearchIndex(ids);
+                db.setTransactionSuccessful();
+            } else {
+                result = db.update(Impl.table, values, sqlWhere, selectionArgs);
+            }
             if (result != 0) {
                 currentUpdateId++;
                 currentUpdateReason = dbgContext;
@@ -195,6 +217,7 @@ public class MediaDBRepository implements IMediaRepositoryApi {
         } catch (Exception ex) {
             excpetion = ex;
         } finally {
+            if (updateIndex) db.endTransaction();
             if ((excpetion != null) || ((dbgContext != null) && (Global.debugEnabledSql || LibGlobal.debugEnabledJpg))) {
                 Log.i(LOG_TAG, dbgContext + ":" +
                         MODUL_NAME +
@@ -206,6 +229,45 @@ public class MediaDBRepository implements IMediaRepositoryApi {
         return result;
     }
 
+    private long[] getIds(String sqlWhere, String[] selectionArgs) {
+        Cursor c = null;
+        try {
+            c = db.query(Impl.table, new String[]{SQL_COL_PK}, sqlWhere, selectionArgs, null, null, null);
+            long[] result = new long[c.getCount()];
+            int i = 0;
+            while (c.moveToNext()) {
+                result[i++] = c.getLong(0);
+            }
+            return result;
+        } finally {
+            if (c != null) c.close();
+        }
+    }
+
+    /** keeps {@link MediaTagSql#TABLE_MEDIA_TAG} in sync with the tags column */
+    private void updateTagIndex(long[] ids, String dbTags) {
+        MediaTagSql.Writer writer = new MediaTagSql.Writer(db);
+        try {
+            for (long id : ids) {
+                writer.update(id, dbTags);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /** keeps {@link MediaSearchSql#TABLE_SEARCH} in sync with the media table */
+    private void updateSearchIndex(long[] ids) {
+        MediaSearchSql.Writer writer = new MediaSearchSql.Writer(db);
+        try {
+            for (long id : ids) {
+                writer.update(id);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
     @Override
     public ContentValues getDbContent(long id) {
         Cursor c = null;
@@ -239,6 +301,12 @@ public class MediaDBRepository implements IMediaRepositoryApi {
         try {
             // on my android-4.4 insert with media_type=1001 (private) does insert with media_type=1 (image)
             result = db.insert(Impl.table, null, values);
+            if ((result > 0) && (values.getAsString(SQL_COL_EXT_TAGS) != null)) {
+                updateTagIndex(new long[]{result}, values.getAsString(SQL_COL_EXT_TAGS));
+            }
+            if (result > 0) {
+                updateSearchIndex(new long[]{result});
+            }
             if (result > 0) {
                 currentUpdateId++;
                 currentUpdateReason = dbgContext;
@@ -321,6 +389,54 @@ public class MediaDBRepository implements IMediaRepositoryApi {
         return delCount;
     }
 
+    /**
+     * #155: one set based "update ... set _data = ? || substr(_data, ?)" inside a transaction
+     * instead of one update per media item.
+     */
+    @Override
+    public int execRenameFolder(String dbgContext, String pathOld, String pathNew) {
+        final String sqlWhere = FotoSql.getFilterExprPathPrefix(pathOld);
+        final String[] selectionArgs = FotoSql.getFilterArgsPathPrefix(pathOld);
+        final String sqlUpdate = "UPDATE " + Impl.table + " SET " + SQL_COL_PATH + " = ? || substr(" +
+                SQL_COL_PATH + ", ?) WHERE " + sqlWhere;
+        int result = -1;
+        Exception excpetion = null;
+        SQLiteStatement sql = null;
+        db.beginTransaction();
+        try {
+            // where does not match any more after update
+            long[] ids = getIds(sqlWhere, selectionArgs);
+
+            sql = db.compileStatement(sqlUpdate);
+            sql.bindString(1, pathNew);
+            sql.bindLong(2, pathOld.codePointCount(0, pathOld.length()) + 1);
+            sql.bindString(3, selectionArgs[0]);
+            sql.bindString(4, selectionArgs[1]);
+            result = sql.executeUpdateDelete();
+
+            updateSearchIndex(ids);
+            db.setTransactionSuccessful();
+            if (result != 0) {
+                currentUpdateId++;
+                currentUpdateReason = dbgContext;
+            }
+        } catch (Exception ex) {
+            excpetion = ex;
+            result = -1;
+        } finally {
+            if (sql != null) sql.close();
+            db.endTransaction();
+            if ((excpetion != null) || Global.debugEnabledSql || LibGlobal.debugEnabledJpg) {
+                Log.i(LOG_TAG, dbgContext + ":" +
+                        MODUL_NAME +
+                        ".execRenameFolder " + excpetion + "\n" +
+                        sqlUpdate + " " + pathNew + ", " + StringUtils.appendMessage(null, (Object[]) selectionArgs) +
+                        " => " + result, excpetion);
+            }
+        }
+        return result;
+    }
+
     @Override
     public long getCurrentUpdateId() {
         return currentUpdateId;
@@ -435,16 +551,19 @@ public class MediaDBRepository implements IMediaRepositoryApi {
         private static final int colID = 0;
         private static final int colDATE_ADDED = 1;
         private static final int colLAST_MODIFIED = 2;
+        private static final int colPATH = 11;
+        private static final int colTITLE = 12;
+        private static final int colDESCRIPTION = 13;
+        private static final int colTAGS = 16;
         private static final String FILTER_EXPR_AFFECTED_FILES
                 = "(" + FotoSql.FILTER_EXPR_PRIVATE_PUBLIC
                 + " OR " + SQL_COL_PATH + " like '%" + AlbumFile.SUFFIX_VALBUM + "' "
                 + " OR " + SQL_COL_PATH + " like '%" + AlbumFile.SUFFIX_QUERY + "' "
                 + ")";
-        private static final QueryParameter queryGetAllColumns = new QueryParameter()
-                .setID(QUERY_TYPE_UNDEFINED)
-                .addColumn(USED_MEDIA_COLUMNS)
-                .addFrom(SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME)
-                .addWhere(FILTER_EXPR_AFFECTED_FILES);
+
+        /** #155: columns compared by {@link MediaSyncDiff} in the order of {@link FingerprintIterator} */
+        private static final String[] FINGERPRINT_COLUMNS = new String[]{
+                SQL_COL_PK, SQL_COL_PATH, SQL_COL_SIZE, SQL_COL_LAST_MODIFIED};
 
         private static boolean isLomg(int index) {
             return index >= intMin && index <= intMax;
@@ -557,113 +676,180 @@ public class MediaDBRepository implements IMediaRepositoryApi {
             } catch (Exception ex) {
                 // Log.e(LOG_TAG, "FotoSql.execGetFotoPaths() Cannot get path from: " + FotoSql.SQL_COL_PATH + " like '" + pathFilter +"'", ex);
             } finally {
+                currentUpdateId++;
+                currentUpdateReason = "clearMedaiCopy";
             }
         }
 
+        /**
+         * #155: count, max id and max modification date of the media in the contentprovider.
+         *
+         * Calculated from the plain id and modification date columns because android-10 and later
+         * do not accept sql functions like count(*) or max(...) as contentprovider columns.
+         *
+         * @return null on error
+         */
+        public static MediaSyncWatermark getSourceWatermark(Context context) {
+            Cursor c = null;
+            try {
+                c = MediaContentproviderRepositoryImpl.createCursorForQuery(null, "getSourceWatermark", context,
+                        SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME, FILTER_EXPR_AFFECTED_FILES, null, null, null,
+                        SQL_COL_PK, SQL_COL_LAST_MODIFIED);
+                if (c != null) {
+                    long maxId = 0;
+                    long maxLastModified = 0;
+                    while (c.moveToNext()) {
+                        maxId = Math.max(maxId, c.getLong(0));
+                        maxLastModified = Math.max(maxLastModified, c.getLong(1));
+                    }
+                    return new MediaSyncWatermark(c.getCount(), maxId, maxLastModified);
+                }
+            } catch (Exception ex) {
+                Log.e(LOG_TAG, "MediaDBRepository.getSourceWatermark failed", ex);
+            } finally {
+                if (c != null) c.close();
+            }
+            return null;
+        }
 
-        public static int updateMedaiCopy(Context context, SQLiteDatabase db, Date lastUpdate, IProgessListener progessListener) {
-            int progress = 0;
-            java.util.Date startTime = new java.util.Date();
+        public static long getCopyCount(SQLiteDatabase db) {
+            return DatabaseUtils.queryNumEntries(db, table);
+        }
+
+        /**
+         * #155: delta sync from contentprovider to the media copy.
+         * Instead of copying all (or all modified) rows the fingerprints (id, path, size, date_modified)
+         * of both are compared ({@link MediaSyncDiff}) and only inserted, updated and deleted rows
+         * are applied to the copy in one transaction.
+         *
+         * @return diff with statistics and the watermark of the source
+         * or null if canceled or the contentprovider cannot be read.
+         */
+        public static MediaSyncDiff syncMediaCopy(Context context, SQLiteDatabase db, IProgessListener progessListener) {
+            long startTime = new java.util.Date().getTime();
+            if (progessListener != null) progessListener.onProgress(0, 0,
+                    context.getString(R.string.load_db_menu_title));
+
+            MediaSyncDiff diff = new MediaSyncDiff();
+            diff.getStatistics().setStartTime(startTime);
+            Cursor source = null;
+            Cursor copy = null;
+            try {
+                source = MediaContentproviderRepositoryImpl.createCursorForQuery(null, "syncMediaCopy-source", context,
+                        SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME, FILTER_EXPR_AFFECTED_FILES, null,
+                        SQL_COL_PK, null, FINGERPRINT_COLUMNS);
+                if (source == null) return null; // else all items of the copy would be deleted
+
+                copy = db.query(table, FINGERPRINT_COLUMNS, null, null, null, null, SQL_COL_PK);
+                diff.diff(new FingerprintIterator(source), new FingerprintIterator(copy));
+            } catch (Exception ex) {
+                Log.e(LOG_TAG, "MediaDBRepository.syncMediaCopy cannot compare " + diff.getStatistics(), ex);
+                return null;
+            } finally {
+                if (source != null) source.close();
+                if (copy != null) copy.close();
+            }
 
-            QueryParameter query = queryGetAllColumns;
-            long _lastUpdate = (lastUpdate != null) ? (lastUpdate.getTime() / 1000L) : 0L;
+            if (!applyMediaCopyChanges(context, db, diff, progessListener)) return null;
 
-            if (_lastUpdate != 0) {
-                query = new QueryParameter().getFrom(queryGetAllColumns);
-                FotoSql.addWhereDateModifiedMinMax(query, _lastUpdate, 0);
-                // FotoSql.createCursorForQuery()
+            diff.getStatistics().setEndTime(new java.util.Date().getTime());
+            if (Global.debugEnabledSql) {
+                Log.i(LOG_TAG, "MediaDBRepository.syncMediaCopy " + diff.getStatistics());
             }
+            return diff;
+        }
+
+        /** @return false if canceled or error */
+        private static boolean applyMediaCopyChanges(Context context, SQLiteDatabase db, MediaSyncDiff diff,
+                                                     IProgessListener progessListener) {
+            final LongIdSet changedIds = new LongIdSet(diff.getInserted());
+            changedIds.addAll(diff.getUpdated());
+            final int itemCount = changedIds.size() + diff.getDeleted().size();
+            if (itemCount == 0) return true;
+
+            int progress = 0;
             Cursor c = null;
             SQLiteStatement sqlInsert = null;
             SQLiteStatement sqlUpdate = null;
-            SQLiteStatement lastSql = null;
-            boolean isUpdate = false;
-            int itemCount = 0;
-            int insertCout = 0;
-            int updateCount = 0;
-            // ContentValues contentValues = new ContentValues();
+            MediaTagSql.Writer tagIndex = null;
+            MediaSearchSql.Writer searchIndex = null;
             try {
                 db.beginTransaction(); // Performance boost: all db-inserts/updates in one transaction
 
-                if (progessListener != null) progessListener.onProgress(progress, 0,
-                        context.getString(R.string.load_db_menu_title));
-
-                c = MediaContentproviderRepositoryImpl.createCursorForQuery(null, "updateMedaiCopy-source", context,
-                        query, null, null);
-                itemCount = c.getCount();
+                // first delete so that inserted items can reuse the path of deleted items
+                for (String[] ids : SelectionChunks.split(diff.getDeleted(), SelectionChunks.MAX_PARAMETERS)) {
+                    db.delete(table, SelectionChunks.getWhereIn(SQL_COL_PK, ids.length), ids);
+                    progress += ids.length;
+                }
 
                 sqlInsert = db.compileStatement(getSqlInsertWithParams());
                 sqlUpdate = db.compileStatement(getSqlUpdateWithParams());
-                while (c.moveToNext()) {
-                    // getContentValues(c, contentValues);
-
-                    isUpdate = (c.getLong(colDATE_ADDED) <= _lastUpdate);
-
-                    if (isUpdate) {
-                        updateCount++;
-                        lastSql = sqlUpdate;
-                        isUpdate = bindAndExecUpdate(c, sqlUpdate) > 0;
-                        // 0 affected update rows: must insert
-                    }
-
-                    if (!isUpdate) {
-                        insertCout++;
-                        lastSql = sqlInsert;
-                        bindAndExecInsert(c, sqlInsert);
+                tagIndex = new MediaTagSql.Writer(db);
+                searchIndex = new MediaSearchSql.Writer(db);
+                for (String[] ids : SelectionChunks.split(changedIds, SelectionChunks.MAX_PARAMETERS)) {
+                    c = MediaContentproviderRepositoryImpl.createCursorForQuery(null, "syncMediaCopy-changes", context,
+                            SQL_TABLE_EXTERNAL_CONTENT_URI_FILE_NAME, SelectionChunks.getWhereIn(SQL_COL_PK, ids.length),
+                            ids, null, null, USED_MEDIA_COLUMNS);
+                    while (c.moveToNext()) {
+                        final long id = c.getLong(colID);
+                        if (diff.getInserted().contains(id) || (bindAndExecUpdate(c, sqlUpdate) == 0)) {
+                            bindAndExecInsert(c, sqlInsert);
+                        }
+                        tagIndex.update(id, c.getString(colTAGS));
+                        searchIndex.update(id, c.getString(colPATH), c.getString(colTITLE),
+                                c.getString(colDESCRIPTION), c.getString(colTAGS));
+                        progress++;
                     }
+                    c.close();
+                    c = null;
 
-                    lastSql = null;
-                    // save(db, c, contentValues, _lastUpdate);
-                    if ((progessListener != null) && (progress % 100) == 0) {
-                        if (!progessListener.onProgress(progress, itemCount, context.getString(R.string.scanner_update_result_format, progress))) {
-                            // canceled in gui thread
-                            return -progress;
-                        }
+                    if ((progessListener != null) && !progessListener.onProgress(progress, itemCount,
+                            context.getString(R.string.scanner_update_result_format, progress))) {
+                        // canceled in gui thread
+                        return false;
                     }
-                    progress++;
                 }
                 db.setTransactionSuccessful(); // This commits the transaction if there were no exceptions
-                if (Global.debugEnabledSql) {
-                    java.util.Date endTime = new java.util.Date();
-                    final String message = "MediaDBRepository.updateMedaiCopy(inserted:" + insertCout +
-                            ", updated:" + updateCount +
-                            ", toal:" + progress +
-                            " / " + itemCount +
-                            ") in " + ((endTime.getTime() - startTime.getTime()) / 1000) +
-                            " Secs";
-                    Log.i(LOG_TAG, message);
-                }
+                return true;
             } catch (Exception ex) {
-                java.util.Date endTime = new java.util.Date();
-                final String message = "MediaDBRepository.updateMedaiCopy(inserted:" + insertCout +
-                        ", updated:" + updateCount +
-                        ", toal:" + progress +
-                        " / " + itemCount +
-                        ") in " + ((endTime.getTime() - startTime.getTime()) / 1000) +
-                        " Secs";
-                Log.e(LOG_TAG, "Cannot insert/update: " + lastSql + " from " + c + " in " + message, ex);
+                Log.e(LOG_TAG, "MediaDBRepository.syncMediaCopy cannot apply " + progress +
+                        " / " + itemCount + " changes of " + diff.getStatistics(), ex);
+                return false;
             } finally {
-                sqlInsert.close();
-                sqlUpdate.close();
-                db.endTransaction();
                 if (c != null) c.close();
+                if (sqlInsert != null) sqlInsert.close();
+                if (sqlUpdate != null) sqlUpdate.close();
+                if (tagIndex != null) tagIndex.close();
+                if (searchIndex != null) searchIndex.close();
+                db.endTransaction();
+                currentUpdateId++;
+                currentUpdateReason = "syncMediaCopy";
             }
+        }
+
+        /** streams the {@link #FINGERPRINT_COLUMNS} of a cursor. Every row reuses the same fingerprint. */
+        private static class FingerprintIterator implements Iterator<MediaFingerprint> {
+            private final Cursor cursor;
+            private final MediaFingerprint fingerprint = new MediaFingerprint();
 
-            if (Global.debugEnabled) {
-                // Log.d(LOG_TAG, "FotoSql.execGetFotoPaths() result count=" + result.size());
+            FingerprintIterator(Cursor cursor) {
+                this.cursor = cursor;
             }
-            return progress;
-        }
 
-        private static void save(SQLiteDatabase db, Cursor c, ContentValues contentValues, long lastUpdate) {
-            boolean isNew = (c.getLong(colDATE_ADDED) > lastUpdate);
+            @Override
+            public boolean hasNext() {
+                return cursor.getPosition() + 1 < cursor.getCount();
+            }
 
-            if (isNew) {
-                db.insert(table, null, contentValues);
-            } else {
-                String[] params = new String[]{"" + c.getLong(colID)};
-                contentValues.remove(SQL_COL_PK);
-                db.update(table, contentValues, FotoSql.FILTER_COL_PK, params);
+            @Override
+            public MediaFingerprint next() {
+                if (!cursor.moveToNext()) throw new NoSuchElementException();
+                return fingerprint.set(cursor.getLong(0), cursor.getString(1), cursor.getLong(2), cursor.getLong(3));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
             }
         }
     }
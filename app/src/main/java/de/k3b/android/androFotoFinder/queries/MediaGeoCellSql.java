@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.android.androFotoFinder.queries;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import de.k3b.android.androFotoFinder.Global;
+import de.k3b.io.GeoGrid;
+
+/**
+ * Spatial grid index of the local media database copy ({@link MediaDBRepository}).
+ * <p>
+ * The columns geo_lat_cell and geo_lon_cell contain the {@link GeoGrid} base cells
+ * of latitude/longitude and are maintained by triggers. They are used by
+ * {@link FotoSql#getQueryGroupByPlace(double)} to group map markers with integer shifts
+ * and by {@link FotoSql#addWhereFilterLatLon(QueryParameter, double, double, double, double)}
+ * to find the points in a rectangle via index.
+ * <p>
+ * Created by k3b on 01.04.2020.
+ */
+public class MediaGeoCellSql {
+    public static final String SQL_COL_GEO_LAT_CELL = "geo_lat_cell";
+    public static final String SQL_COL_GEO_LON_CELL = "geo_lon_cell";
+
+    private static final String SQL_SET_CELLS = " SET "
+            + SQL_COL_GEO_LAT_CELL + " = " + GeoGrid.getSqlLatitudeCell(FotoSql.SQL_COL_LAT) + ", "
+            + SQL_COL_GEO_LON_CELL + " = " + GeoGrid.getSqlLongitudeCell(FotoSql.SQL_COL_LON);
+
+    private static final String SQL_UPDATE_CELLS = "UPDATE " + MediaDBRepository.Impl.table + SQL_SET_CELLS;
+
+    /** must be executed after the table files was (re-)created. Calculates the cells of existing rows. */
+    public static final String[] DDL = new String[]{
+            "ALTER TABLE " + MediaDBRepository.Impl.table + " ADD COLUMN " + SQL_COL_GEO_LAT_CELL + " INTEGER",
+            "ALTER TABLE " + MediaDBRepository.Impl.table + " ADD COLUMN " + SQL_COL_GEO_LON_CELL + " INTEGER",
+            "CREATE INDEX geo_cell_index ON " + MediaDBRepository.Impl.table
+                    + "(" + SQL_COL_GEO_LAT_CELL + ", " + SQL_COL_GEO_LON_CELL + ")",
+            "CREATE TRIGGER geo_cell_insert AFTER INSERT ON " + MediaDBRepository.Impl.table
+                    + " WHEN new." + FotoSql.SQL_COL_LAT + " IS NOT NULL"
+                    + " BEGIN " + SQL_UPDATE_CELLS + " WHERE _id = new._id; END",
+            "CREATE TRIGGER geo_cell_update AFTER UPDATE OF " + FotoSql.SQL_COL_LAT + ", " + FotoSql.SQL_COL_LON
+                    + " ON " + MediaDBRepository.Impl.table
+                    + " BEGIN " + SQL_UPDATE_CELLS + " WHERE _id = new._id; END",
+            SQL_UPDATE_CELLS + " WHERE " + FotoSql.SQL_COL_LAT + " IS NOT NULL",
+    };
+
+    public static void createTables(SQLiteDatabase db) {
+        for (String sql : DDL) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * #155: true if geo queries can use the grid cells of the local media database copy.
+     * Else the contentprovider is used that has no cell columns.
+     */
+    public static boolean isGeoGridEnabled() {
+        return Global.useAo10MediaImageDbReplacement;
+    }
+}
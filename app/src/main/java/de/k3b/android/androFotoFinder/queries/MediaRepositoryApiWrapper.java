@@ -110,6 +110,11 @@ public class MediaRepositoryApiWrapper implements IMediaRepositoryApi {
         return writeChild.deleteMedia(dbgContext, where, selectionArgs, preventDeleteImageFile);
     }
 
+    @Override
+    public int execRenameFolder(String dbgContext, String pathOld, String pathNew) {
+        return writeChild.execRenameFolder(dbgContext, pathOld, pathNew);
+    }
+
     @Override
     public ContentValues getDbContent(long id) {
         return readChild.getDbContent(id);
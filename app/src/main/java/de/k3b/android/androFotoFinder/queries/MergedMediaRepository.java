@@ -124,4 +124,22 @@ public class MergedMediaRepository extends MediaRepositoryApiWrapper {
         database.deleteMedia(dbgContext, where, selectionArgs, preventDeleteImageFile);
         return result;
     }
+
+    /**
+     * #155: contentprovider is updated row by row, database with one set based update.
+     *
+     * @return -1 if contentprovider or database failed so that the caller can undo the rename.
+     */
+    @Override
+    public int execRenameFolder(String dbgContext, String pathOld, String pathNew) {
+        int result = super.execRenameFolder(dbgContext, pathOld, pathNew);
+        if (result < 0) return -1;
+
+        if (database.execRenameFolder(dbgContext, pathOld, pathNew) < 0) {
+            // caller renames the folder back: contentprovider must point to the old path again
+            super.execRenameFolder(dbgContext + "-undo", pathNew, pathOld);
+            return -1;
+        }
+        return result;
+    }
 }
@@ -82,7 +82,7 @@ public abstract class SqlJobTaskBase extends AsyncTask<QueryParameter, Integer,
 
             int increment = PROGRESS_INCREMENT;
             while (cursor.moveToNext()) {
-                Long id = cursor.getLong(mColumnIndexPK);
+                long id = cursor.getLong(mColumnIndexPK);
 
                 doInBackground(id, cursor);
 
@@ -96,7 +96,8 @@ public abstract class SqlJobTaskBase extends AsyncTask<QueryParameter, Integer,
                 }
             }
 
-            return this.mSelectedItems;
+            // i.e. "select all" creates ranges of consecutive ids
+            return this.mSelectedItems.runOptimize();
         } catch (Exception ex){
             Log.e(Global.LOG_CONTEXT, mDebugPrefix + query, ex);
             throw new RuntimeException(mDebugPrefix + query + "\n" + ex.getMessage(), ex);
@@ -107,5 +108,5 @@ public abstract class SqlJobTaskBase extends AsyncTask<QueryParameter, Integer,
         }
     }
 
-    abstract protected void doInBackground(Long id, Cursor cursor);
+    abstract protected void doInBackground(long id, Cursor cursor);
 }
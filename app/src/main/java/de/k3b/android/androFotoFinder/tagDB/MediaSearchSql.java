@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+package de.k3b.android.androFotoFinder.tagDB;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import de.k3b.android.androFotoFinder.queries.FotoSql;
+import de.k3b.android.androFotoFinder.queries.MediaDBRepository;
+import de.k3b.database.SearchTokenizer;
+
+/**
+ * Full text search index media_search of the local media database copy ({@link MediaDBRepository})
+ * for the "in any field" filter.
+ * <p>
+ * Every media item has one fts row (docid = media _id) with the tokens of
+ * path, title, description and tags created by {@link SearchTokenizer}.
+ * The filter uses prefix match ("camera*") instead of four "like '%camera%'" full table scans.
+ * <p>
+ * Created by k3b on 31.03.2020.
+ */
+public class MediaSearchSql {
+    public static final String TABLE_SEARCH = "media_search";
+
+    /** columns of the media table that are part of the search index */
+    public static final String[] SEARCH_COLUMNS = new String[]{FotoSql.SQL_COL_PATH,
+            FotoSql.SQL_COL_EXT_TITLE, TagSql.SQL_COL_EXT_DESCRIPTION, TagSql.SQL_COL_EXT_TAGS};
+
+    /** media ids that match ?. Parameter is created by {@link SearchTokenizer#toPrefixMatch(String)} */
+    public static final String SQL_SELECT_MEDIA_MATCHING = "SELECT docid FROM " + TABLE_SEARCH
+            + " WHERE " + TABLE_SEARCH + " MATCH ?";
+
+    /** must be executed after the table files was (re-)created */
+    public static final String[] DDL = new String[]{
+            "DROP TABLE IF EXISTS " + TABLE_SEARCH,
+            "CREATE VIRTUAL TABLE " + TABLE_SEARCH + " USING fts4(content)",
+            "CREATE TRIGGER media_search_delete AFTER DELETE ON " + MediaDBRepository.Impl.table
+                    + " BEGIN DELETE FROM " + TABLE_SEARCH + " WHERE docid = old._id; END",
+    };
+
+    public static void createTables(SQLiteDatabase db) {
+        for (String sql : DDL) {
+            db.execSQL(sql);
+        }
+    }
+
+    /** recreates the index from all media items */
+    public static int rebuild(SQLiteDatabase db) {
+        int count = 0;
+        Cursor c = null;
+        Writer writer = null;
+        try {
+            db.beginTransaction();
+            createTables(db);
+            writer = new Writer(db);
+            c = db.query(MediaDBRepository.Impl.table, getColumnsWithPk(), null, null, null, null, null);
+            while (c.moveToNext()) {
+                writer.insert(c.getLong(0), c.getString(1), c.getString(2), c.getString(3), c.getString(4));
+                count++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            if (c != null) c.close();
+            if (writer != null) writer.close();
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /** @return true if an update with values must update the search index */
+    public static boolean containsSearchColumn(ContentValues values) {
+        for (String column : SEARCH_COLUMNS) {
+            if (values.containsKey(column)) return true;
+        }
+        return false;
+    }
+
+    private static String[] getColumnsWithPk() {
+        return new String[]{FotoSql.SQL_COL_PK, SEARCH_COLUMNS[0], SEARCH_COLUMNS[1], SEARCH_COLUMNS[2], SEARCH_COLUMNS[3]};
+    }
+
+    /**
+     * Updates media_search for many media items with compiled statements.
+     * Should be used inside a transaction.
+     */
+    public static class Writer {
+        private final SQLiteDatabase db;
+        private final SQLiteStatement delete;
+        private final SQLiteStatement insert;
+
+        public Writer(SQLiteDatabase db) {
+            this.db = db;
+            delete = db.compileStatement("DELETE FROM " + TABLE_SEARCH + " WHERE docid = ?");
+            insert = db.compileStatement("INSERT INTO " + TABLE_SEARCH + "(docid, content) VALUES (?, ?)");
+        }
+
+        /** replaces the index entry of mediaId */
+        public void update(long mediaId, String path, String title, String description, String dbTags) {
+            delete.bindLong(1, mediaId);
+            delete.executeUpdateDelete();
+            insert(mediaId, path, title, description, dbTags);
+        }
+
+        /** adds the index entry for a media item that has no entry yet */
+        public void insert(long mediaId, String path, String title, String description, String dbTags) {
+            String content = SearchTokenizer.toIndexText(path, title, description, dbTags);
+            if (content != null) {
+                insert.bindLong(1, mediaId);
+                insert.bindString(2, content);
+                insert.executeInsert();
+            }
+        }
+
+        /** replaces the index entry of mediaId with the current values from the media table */
+        public void update(long mediaId) {
+            Cursor c = null;
+            try {
+                c = db.query(MediaDBRepository.Impl.table, getColumnsWithPk(), FotoSql.FILTER_COL_PK,
+                        new String[]{Long.toString(mediaId)}, null, null, null);
+                if (c.moveToFirst()) {
+                    update(mediaId, c.getString(1), c.getString(2), c.getString(3), c.getString(4));
+                }
+            } finally {
+                if (c != null) c.close();
+            }
+        }
+
+        public void close() {
+            delete.close();
+            insert.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+package de.k3b.android.androFotoFinder.tagDB;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.k3b.android.androFotoFinder.queries.FotoSql;
+import de.k3b.android.androFotoFinder.queries.MediaDBRepository;
+import de.k3b.tagDB.TagConverter;
+
+/**
+ * Normalized tag index media_tag(media_id, tag_id) of the local media database copy
+ * ({@link MediaDBRepository}).
+ * <p>
+ * The tags column contains ";tag1;tag2;" that can only be searched with "tags like ?"
+ * (full table scan). The tag filters of {@link TagSql} use indexed joins on media_tag instead.
+ * <p>
+ * media_tag is updated by {@link MediaDBRepository} (insert, update, syncMediaCopy).
+ * Deleted media rows are removed by a trigger.
+ * <p>
+ * Created by k3b on 30.03.2020.
+ */
+public class MediaTagSql {
+    public static final String TABLE_TAG = "tag";
+    public static final String TABLE_MEDIA_TAG = "media_tag";
+
+    /** media ids that contain tag ?. Tag names are compared case insensitive like "tags like ?" did */
+    public static final String SQL_SELECT_MEDIA_WITH_TAG = "SELECT media_id FROM " + TABLE_MEDIA_TAG
+            + " WHERE tag_id = (SELECT _id FROM " + TABLE_TAG + " WHERE name = ?)";
+
+    /** must be executed after the table files was (re-)created */
+    public static final String[] DDL = new String[]{
+            "DROP TABLE IF EXISTS " + TABLE_MEDIA_TAG,
+            "DROP TABLE IF EXISTS " + TABLE_TAG,
+            "CREATE TABLE " + TABLE_TAG + " (\n" +
+                    "\t_id INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
+                    "\tname TEXT NOT NULL UNIQUE COLLATE NOCASE\n" +
+                    "\t )",
+            "CREATE TABLE " + TABLE_MEDIA_TAG + " (\n" +
+                    "\ttag_id INTEGER NOT NULL,\n" +
+                    "\tmedia_id INTEGER NOT NULL,\n" +
+                    "\tUNIQUE (tag_id, media_id)\n" +
+                    "\t )",
+            "CREATE INDEX media_tag_media_idx ON " + TABLE_MEDIA_TAG + "(media_id)",
+            "CREATE TRIGGER media_tag_delete AFTER DELETE ON " + MediaDBRepository.Impl.table
+                    + " BEGIN DELETE FROM " + TABLE_MEDIA_TAG + " WHERE media_id = old._id; END",
+    };
+
+    public static void createTables(SQLiteDatabase db) {
+        for (String sql : DDL) {
+            db.execSQL(sql);
+        }
+    }
+
+    /** recreates the index from the tags column of all media items */
+    public static int rebuild(SQLiteDatabase db) {
+        int count = 0;
+        Cursor c = null;
+        Writer writer = null;
+        try {
+            db.beginTransaction();
+            createTables(db);
+            writer = new Writer(db);
+            c = db.query(MediaDBRepository.Impl.table, new String[]{FotoSql.SQL_COL_PK, TagSql.SQL_COL_EXT_TAGS},
+                    TagSql.SQL_COL_EXT_TAGS + " is not null", null, null, null, null);
+            while (c.moveToNext()) {
+                writer.insert(c.getLong(0), c.getString(1));
+                count++;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            if (c != null) c.close();
+            if (writer != null) writer.close();
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /** @return tag name as stored in the tags column by {@link TagConverter#asDbString(String, String...)} */
+    public static String getTagName(String tag) {
+        return (tag == null) ? null : tag.replace(",", "").replace(" ", "");
+    }
+
+    /**
+     * @return tag names of a tags column value ";tag1;tag2;" or null if there are none.
+     * Unlike {@link TagConverter#fromString(Object)} only {@link TagConverter#TAG_DB_DELIMITER}
+     * separates tags so that a tag like "a:b" is indexed as one tag.
+     */
+    public static List<String> getTagNames(String dbTags) {
+        List<String> result = null;
+        if (dbTags != null) {
+            for (String tag : dbTags.split(TagConverter.TAG_DB_DELIMITER)) {
+                tag = tag.trim();
+                if (tag.length() > 0) {
+                    if (result == null) result = new ArrayList<String>();
+                    result.add(tag);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Updates media_tag for many media items with compiled statements.
+     * Should be used inside a transaction.
+     */
+    public static class Writer {
+        private final SQLiteStatement deleteMedia;
+        private final SQLiteStatement insertTag;
+        private final SQLiteStatement selectTag;
+        private final SQLiteStatement insertMediaTag;
+
+        /** tag name to tag id */
+        private final Map<String, Long> tagIds = new HashMap<String, Long>();
+
+        public Writer(SQLiteDatabase db) {
+            deleteMedia = db.compileStatement("DELETE FROM " + TABLE_MEDIA_TAG + " WHERE media_id = ?");
+            insertTag = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_TAG + "(name) VALUES (?)");
+            selectTag = db.compileStatement("SELECT _id FROM " + TABLE_TAG + " WHERE name = ?");
+            insertMediaTag = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_MEDIA_TAG
+                    + "(tag_id, media_id) VALUES (?, ?)");
+        }
+
+        /** replaces the index entries of mediaId by dbTags (";tag1;tag2;" or null) */
+        public void update(long mediaId, String dbTags) {
+            deleteMedia.bindLong(1, mediaId);
+            deleteMedia.executeUpdateDelete();
+            insert(mediaId, dbTags);
+        }
+
+        /** adds dbTags for a media item that has no index entries yet */
+        public void insert(long mediaId, String dbTags) {
+            List<String> tags = getTagNames(dbTags);
+            if (tags != null) {
+                for (String tag : tags) {
+                    insertMediaTag.bindLong(1, getTagId(tag));
+                    insertMediaTag.bindLong(2, mediaId);
+                    insertMediaTag.executeInsert();
+                }
+            }
+        }
+
+        private long getTagId(String tag) {
+            Long result = tagIds.get(tag);
+            if (result == null) {
+                insertTag.bindString(1, tag);
+                insertTag.executeInsert();
+                selectTag.bindString(1, tag);
+                result = selectTag.simpleQueryForLong();
+                tagIds.put(tag, result);
+            }
+            return result;
+        }
+
+        public void close() {
+            deleteMedia.close();
+            insertTag.close();
+            selectTag.close();
+            insertMediaTag.close();
+        }
+    }
+}
@@ -36,6 +36,8 @@ import de.k3b.android.androFotoFinder.queries.AndroidAlbumUtils;
 import de.k3b.android.androFotoFinder.queries.FotoSql;
 import de.k3b.android.util.PhotoPropertiesMediaFilesScanner;
 import de.k3b.database.QueryParameter;
+import de.k3b.database.SearchTokenizer;
+import de.k3b.database.SelectionChunks;
 import de.k3b.io.GalleryFilterParameter;
 import de.k3b.io.IGalleryFilter;
 import de.k3b.io.ListUtils;
@@ -81,9 +83,24 @@ public class TagSql extends FotoSql {
     protected static final String FILTER_EXPR_TAG_NONE_OR_EXCLUDED = "(" + FILTER_EXPR_TAGS_NONE
             + " OR " + FILTER_EXPR_TAG_EXCLUDED + ")";
 
+    // #155 indexed versions for the local media database copy. See MediaTagSql
+    protected static final String FILTER_EXPR_TAG_INDEX_INCLUDED = "(" + SQL_COL_PK + " in ("
+            + MediaTagSql.SQL_SELECT_MEDIA_WITH_TAG + "))";
+    protected static final String FILTER_EXPR_TAG_INDEX_NONE_OR_INCLUDED = "(" + FILTER_EXPR_TAGS_NONE
+            + " or " + FILTER_EXPR_TAG_INDEX_INCLUDED + ")";
+    // same as "not like": items without tags are not included
+    protected static final String FILTER_EXPR_TAG_INDEX_EXCLUDED = "(" + SQL_COL_EXT_TAGS + " is not null and "
+            + SQL_COL_PK + " not in (" + MediaTagSql.SQL_SELECT_MEDIA_WITH_TAG + "))";
+    protected static final String FILTER_EXPR_TAG_INDEX_NONE_OR_EXCLUDED = "(" + SQL_COL_PK + " not in ("
+            + MediaTagSql.SQL_SELECT_MEDIA_WITH_TAG + "))";
+
     protected static final String FILTER_EXPR_ANY_LIKE = "((" + SQL_COL_PATH + " like ?) OR  (" + SQL_COL_EXT_DESCRIPTION
             + " like ?) OR " + FILTER_EXPR_TAGS_INCLUDED + " OR  (" + SQL_COL_EXT_TITLE + " like ?))";
 
+    /** indexed version of FILTER_EXPR_ANY_LIKE with prefix match. See MediaSearchSql */
+    protected static final String FILTER_EXPR_ANY_MATCH = "(" + SQL_COL_PK + " in ("
+            + MediaSearchSql.SQL_SELECT_MEDIA_MATCHING + "))";
+
 
     /** translates a query back to filter */
     public static IGalleryFilter parseQueryEx(QueryParameter query, boolean remove) {
@@ -101,6 +118,17 @@ public class TagSql extends FotoSql {
 
                 }
             }
+            List<String> matches = getParamOfAll(query, FILTER_EXPR_ANY_MATCH, remove);
+            if (matches != null) {
+                for (String match : matches) {
+                    if (any == null) {
+                        any = new StringBuilder();
+                    } else {
+                        any.append(" ");
+                    }
+                    any.append(SearchTokenizer.fromPrefixMatch(match));
+                }
+            }
             if (any != null) resultFilter.setInAnyField(any.toString());
 
             parseTagsFromQuery(query, remove, resultFilter);
@@ -143,13 +171,27 @@ public class TagSql extends FotoSql {
                 param = getParam(query, filter, remove);
             } while (remove && (param != null));
             resultFilter.setTagsAllExcluded(excluded);
+        } else {
+            // indexed version: one expression per tag
+            List<String> excluded = getParamOfAll(query, FILTER_EXPR_TAG_INDEX_NONE_OR_EXCLUDED, remove);
+            if (excluded != null) {
+                resultFilter.setWithNoTags(true);
+            } else {
+                excluded = getParamOfAll(query, FILTER_EXPR_TAG_INDEX_EXCLUDED, remove);
+            }
+            if (excluded != null) resultFilter.setTagsAllExcluded(excluded);
         }
 
         // different possible combinations of "tags is null" and "tag list"
+        List<String> included;
         if ((param = getParam(query, FILTER_EXPR_TAGS_NONE_OR_INCLUDED, remove)) != null) {
             resultFilter.setWithNoTags(true).setTagsAllIncluded(TagConverter.fromString(param));
         } else if ((param = getParam(query, FILTER_EXPR_TAGS_INCLUDED, remove)) != null) {
             resultFilter.setTagsAllIncluded(TagConverter.fromString(param));
+        } else if ((included = getParamOfAll(query, FILTER_EXPR_TAG_INDEX_NONE_OR_INCLUDED, remove)) != null) {
+            resultFilter.setWithNoTags(true).setTagsAllIncluded(included);
+        } else if ((included = getParamOfAll(query, FILTER_EXPR_TAG_INDEX_INCLUDED, remove)) != null) {
+            resultFilter.setTagsAllIncluded(included);
         } else if (getParams(query, FILTER_EXPR_TAGS_NONE, remove) != null) {
             resultFilter.setWithNoTags(true).setTagsAllIncluded(null).setTagsAllExcluded(null);
         }
@@ -157,6 +199,39 @@ public class TagSql extends FotoSql {
 
     }
 
+    /** @return the param of every occurence of expression in query or null if not found */
+    private static List<String> getParamOfAll(QueryParameter query, String expression, boolean remove) {
+        // without remove only the first occurence would be found
+        QueryParameter source = (remove) ? query : new QueryParameter(query);
+        List<String> result = null;
+        String param;
+        while ((param = getParam(source, expression, true)) != null) {
+            if (result == null) result = new ArrayList<String>();
+            result.add(param);
+        }
+        return result;
+    }
+
+    /**
+     * #155: true if tag filters can use the normalized tag index of the local media database copy.
+     * Else the tags column is searched with "like".
+     */
+    public static boolean isTagIndexEnabled() {
+        return Global.useAo10MediaImageDbReplacement;
+    }
+
+    /**
+     * #155: true if the "in any field" filter can use the full text index of the local media database copy.
+     * Else path, description, tags and title are searched with "like".
+     */
+    public static boolean isSearchIndexEnabled() {
+        return Global.useAo10MediaImageDbReplacement;
+    }
+
+    private static boolean canUseTagIndex(String tag) {
+        return isTagIndexEnabled() && !tag.contains("%");
+    }
+
     public static QueryParameter filter2NewQuery(IGalleryFilter filter) {
         return AndroidAlbumUtils.getAsMergedNewQuery(null, filter);
     }
@@ -202,6 +277,12 @@ public class TagSql extends FotoSql {
         if (allAny != null) {
             for (String any : allAny.split(" ")) {
                 if ((any != null) && (any.length() > 0)) {
+                    String match = (isSearchIndexEnabled() && !any.contains("%"))
+                            ? SearchTokenizer.toPrefixMatch(any) : null;
+                    if (match != null) {
+                        resultQuery.addWhere(FILTER_EXPR_ANY_MATCH, match);
+                        continue;
+                    }
                     if (!any.contains("%")) {
                         any = "%" + any + "%";
                     }
@@ -212,11 +293,17 @@ public class TagSql extends FotoSql {
     }
 
     private static QueryParameter addWhereTagExcluded(QueryParameter resultQuery, String tag, boolean withNoTags) {
+        if (canUseTagIndex(tag)) {
+            return resultQuery.addWhere((withNoTags) ? FILTER_EXPR_TAG_INDEX_NONE_OR_EXCLUDED : FILTER_EXPR_TAG_INDEX_EXCLUDED,
+                    MediaTagSql.getTagName(tag));
+        }
         return resultQuery.addWhere((withNoTags) ? FILTER_EXPR_TAG_NONE_OR_EXCLUDED : FILTER_EXPR_TAG_EXCLUDED, "%;" + tag + ";%");
     }
 
     /** return number of applied tags */
     public static int addWhereAnyOfTags(QueryParameter resultQuery, List<Tag> tags) {
+        if (isTagIndexEnabled()) return addWhereAnyOfTagsIndexed(resultQuery, tags);
+
         StringBuilder sqlWhereStatement = new StringBuilder();
         int index = 0;
         String[] params = null;
@@ -244,8 +331,42 @@ public class TagSql extends FotoSql {
         }
         return index;
     }
+    /** return number of applied tags */
+    private static int addWhereAnyOfTagsIndexed(QueryParameter resultQuery, List<Tag> tags) {
+        StringBuilder sqlWhereStatement = new StringBuilder();
+        List<String> params = new ArrayList<String>();
+
+        if (tags != null) {
+            for (Tag tag : tags) {
+                String tagValue = (tag != null) ? MediaTagSql.getTagName(tag.getName()) : null;
+                if ((tagValue != null) && (tagValue.length() > 0)) {
+                    sqlWhereStatement.append((params.size() == 0) ? "" : ", ").append("?");
+                    params.add(tagValue);
+                }
+            }
+        }
+
+        if (params.size() > 0) {
+            resultQuery.addWhere("(" + SQL_COL_PK + " in (SELECT media_id FROM " + MediaTagSql.TABLE_MEDIA_TAG
+                    + " WHERE tag_id in (SELECT _id FROM " + MediaTagSql.TABLE_TAG
+                    + " WHERE name in (" + sqlWhereStatement + "))))",
+                    params.toArray(new String[params.size()]));
+        }
+        return params.size();
+    }
+
     public static void addWhereTagsIncluded(QueryParameter resultQuery, List<String> includes, boolean withNoTags) {
-        if (includes != null) {
+        if ((includes != null) && isTagIndexEnabled() && !includes.toString().contains("%")) {
+            // all tags must be included: one indexed expression per tag.
+            // "(tags is null or a) and (tags is null or b)" is the same as "tags is null or (a and b)"
+            for (String tag : includes) {
+                String tagValue = MediaTagSql.getTagName(tag);
+                if ((tagValue != null) && (tagValue.length() > 0)) {
+                    resultQuery.addWhere((withNoTags) ? FILTER_EXPR_TAG_INDEX_NONE_OR_INCLUDED : FILTER_EXPR_TAG_INDEX_INCLUDED,
+                            tagValue);
+                }
+            }
+        } else if (includes != null) {
             String includesWhere = TagConverter.asDbString("%", includes);
             if (includesWhere != null) {
                 if (withNoTags) {
@@ -415,40 +536,50 @@ public class TagSql extends FotoSql {
      * @return
      */
     public static List<TagWorflowItem> loadTagWorflowItems(String selectedItemPks, List<Tag> anyOfTags) {
-        QueryParameter query = new QueryParameter()
-                .addColumn(TagSql.SQL_COL_PK, TagSql.SQL_COL_PATH, TagSql.SQL_COL_EXT_TAGS, TagSql.SQL_COL_EXT_XMP_LAST_MODIFIED_DATE);
-
-        int filterCount = 0;
+        List<TagWorflowItem> result = new ArrayList<TagWorflowItem>();
         if (selectedItemPks != null) {
-            filterCount += selectedItemPks.trim().length();
-            TagSql.setWhereSelectionPks(query, selectedItemPks);
+            // #155: big selections are loaded in chunks with bound parameters
+            List<String[]> chunks = SelectionChunks.splitIds(selectedItemPks, SelectionChunks.MAX_PARAMETERS);
+            for (String[] chunk : chunks) {
+                QueryParameter query = createTagWorflowQuery()
+                        .addWhere(SelectionChunks.getWhereIn(TagSql.SQL_COL_PK, chunk.length), chunk);
+                if (anyOfTags != null) {
+                    TagSql.addWhereAnyOfTags(query, anyOfTags);
+                }
+                loadTagWorflowItems(query, result);
+            }
+            if (!chunks.isEmpty()) return result;
         }
 
-        if (anyOfTags != null) {
-            filterCount += TagSql.addWhereAnyOfTags(query, anyOfTags);
+        QueryParameter query = createTagWorflowQuery();
+        if ((anyOfTags != null) && (TagSql.addWhereAnyOfTags(query, anyOfTags) > 0)) {
+            loadTagWorflowItems(query, result);
+        } else {
+            Log.e(Global.LOG_CONTEXT, "TagSql.loadTagWorflowItems(): error no items because no filter in " + query);
         }
+        return result;
+    }
 
-        Cursor c = null;
-        List<TagWorflowItem> result = new ArrayList<TagWorflowItem>();
+    private static QueryParameter createTagWorflowQuery() {
+        return new QueryParameter()
+                .addColumn(TagSql.SQL_COL_PK, TagSql.SQL_COL_PATH, TagSql.SQL_COL_EXT_TAGS, TagSql.SQL_COL_EXT_XMP_LAST_MODIFIED_DATE);
+    }
 
-        if (filterCount > 0) {
-            try {
-                c = getMediaDBApi().createCursorForQuery(null, "loadTagWorflowItems", query, VISIBILITY.PRIVATE_PUBLIC, null);
-                if (c.moveToFirst()) {
-                    do {
-                        result.add(new TagWorflowItem(c.getLong(0), c.getString(1), TagConverter.fromString(c.getString(2)),
-                                c.getLong(3)));
-                    } while (c.moveToNext());
-                }
-            } catch (Exception ex) {
-                Log.e(Global.LOG_CONTEXT, "TagSql.loadTagWorflowItems(): error executing " + query, ex);
-            } finally {
-                if (c != null) c.close();
+    private static void loadTagWorflowItems(QueryParameter query, List<TagWorflowItem> result) {
+        Cursor c = null;
+        try {
+            c = getMediaDBApi().createCursorForQuery(null, "loadTagWorflowItems", query, VISIBILITY.PRIVATE_PUBLIC, null);
+            if (c.moveToFirst()) {
+                do {
+                    result.add(new TagWorflowItem(c.getLong(0), c.getString(1), TagConverter.fromString(c.getString(2)),
+                            c.getLong(3)));
+                } while (c.moveToNext());
             }
-        } else {
-            Log.e(Global.LOG_CONTEXT, "TagSql.loadTagWorflowItems(): error no items because no filter in " + query);
+        } catch (Exception ex) {
+            Log.e(Global.LOG_CONTEXT, "TagSql.loadTagWorflowItems(): error executing " + query, ex);
+        } finally {
+            if (c != null) c.close();
         }
-        return result;
     }
 
 }
@@ -20,7 +20,13 @@
 package de.k3b.android.androFotoFinder.transactionlog;
 
 import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 
+import java.io.IOException;
+
+import de.k3b.transactionlog.BinaryTransactionLogWriter;
+import de.k3b.transactionlog.MediaTransactionLogEntryDto;
 import de.k3b.transactionlog.MediaTransactionLogEntryType;
 
 /**
@@ -45,6 +51,9 @@ public class TransactionLogSql {
             + COL_commandData + " TEXT"
             + ")";
 
+    /** number of rows that are read at once by {@link #exportTo(SQLiteDatabase, BinaryTransactionLogWriter)} */
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
     public static ContentValues set(ContentValues valuesOrNull, long currentMediaID, String fileFullPath,
                            long modificationDate,
                            MediaTransactionLogEntryType mediaTransactionLogEntryType,
@@ -62,4 +71,40 @@ public class TransactionLogSql {
         values.put(COL_commandData, commandData);
         return values;
     }
+
+    /**
+     * Converter: appends all rows in insert order to the binary transaction log dest.
+     * Rows are read page by page so memory usage does not depend on the number of rows.
+     *
+     * @return number of converted rows
+     */
+    public static int exportTo(SQLiteDatabase db, BinaryTransactionLogWriter dest) throws IOException {
+        final String[] columns = {COL_PK, COL_mediaID, COL_modificationdate, COL_fullPath, COL_command, COL_commandData};
+        MediaTransactionLogEntryDto entry = new MediaTransactionLogEntryDto();
+        int count = 0;
+        long lastPk = -1;
+        int pageCount;
+        do {
+            pageCount = 0;
+            Cursor c = null;
+            try {
+                c = db.query(TABLE, columns, COL_PK + " > ?", new String[]{Long.toString(lastPk)},
+                        null, null, COL_PK, Integer.toString(EXPORT_PAGE_SIZE));
+                while (c.moveToNext()) {
+                    lastPk = c.getLong(0);
+                    entry.setMediaID(c.getLong(1))
+                            .setModificationDate(c.getLong(2))
+                            .setFullPath(c.getString(3))
+                            .setCommand(MediaTransactionLogEntryType.get(c.getString(4)))
+                            .setCommandData(c.getString(5));
+                    dest.add(entry);
+                    pageCount++;
+                }
+            } finally {
+                if (c != null) c.close();
+            }
+            count += pageCount;
+        } while (pageCount == EXPORT_PAGE_SIZE);
+        return count;
+    }
 }
@@ -45,9 +45,9 @@ import de.k3b.android.androFotoFinder.directory.DirectoryPickerFragment;
 import de.k3b.android.androFotoFinder.media.AndroidPhotoPropertiesBulkUpdateService;
 import de.k3b.android.androFotoFinder.queries.DatabaseHelper;
 import de.k3b.android.androFotoFinder.queries.FotoSql;
+import de.k3b.android.androFotoFinder.queries.IMediaRepositoryApi;
 import de.k3b.android.androFotoFinder.tagDB.TagSql;
 import de.k3b.android.androFotoFinder.transactionlog.TransactionLogSql;
-import de.k3b.database.QueryParameter;
 import de.k3b.io.DirectoryFormatter;
 import de.k3b.io.FileCommands;
 import de.k3b.io.FileUtils;
@@ -219,20 +219,31 @@ public class AndroidFileCommands extends FileCommands {
             destDirFile.getParentFile().mkdirs();
             boolean isDir = srcDirFile.isDirectory();
             if (srcDirFile.renameTo(destDirFile)) {
-                if (isDir) {
-                    modifyCount = FotoSql.execRenameFolder(srcDirFile.getAbsolutePath() + "/", destDirFile.getAbsolutePath() + "/");
-                } else {
-                    modifyCount = FotoSql.execRename(srcDirFile.getAbsolutePath(), destDirFile.getAbsolutePath());
+                // #155: database update and transaction log in one transaction
+                final IMediaRepositoryApi mediaDBApi = FotoSql.getMediaDBApi();
+                try {
+                    mediaDBApi.beginTransaction();
+                    if (isDir) {
+                        modifyCount = FotoSql.execRenameFolder(srcDirFile.getAbsolutePath() + "/", destDirFile.getAbsolutePath() + "/");
+                    } else {
+                        modifyCount = FotoSql.execRename(srcDirFile.getAbsolutePath(), destDirFile.getAbsolutePath());
+                    }
+                    if (modifyCount >= 0) {
+                        // one MOVE_DIR entry for the whole folder instead of one entry per media item
+                        long now = new Date().getTime();
+                        this.addTransactionLog(-1, srcDirFile.getAbsolutePath(), now,
+                                MediaTransactionLogEntryType.MOVE_DIR,
+                                destDirFile.getAbsolutePath());
+                        mediaDBApi.setTransactionSuccessful();
+                    }
+                } finally {
+                    mediaDBApi.endTransaction();
                 }
+
                 if (modifyCount < 0) {
                     destDirFile.renameTo(srcDirFile); // error: undo change
                     return -1;
                 } else {
-                    long now = new Date().getTime();
-                    this.addTransactionLog(-1, srcDirFile.getAbsolutePath(), now,
-                            MediaTransactionLogEntryType.MOVE_DIR,
-                            destDirFile.getAbsolutePath());
-
                     PhotoPropertiesMediaFilesScanner.notifyChanges(this.mContext,"renamed dir");
                 }
             }
@@ -340,10 +351,7 @@ public class AndroidFileCommands extends FileCommands {
 
         if ((nameCount == 0) || (nameCount == deleteCount)) {
             // no delete file error so also delete media-items
-            QueryParameter where = new QueryParameter();
-            FotoSql.setWhereSelectionPks (where, fotos.toIdString());
-
-            FotoSql.getMediaDBApi().deleteMedia("AndroidFileCommands.deleteFiles", where.toAndroidWhere(), null, true);
+            FotoSql.deleteMediaByIds("AndroidFileCommands.deleteFiles", fotos.toIdString(), true);
         }
         return deleteCount;
     }
@@ -471,6 +479,7 @@ public class AndroidFileCommands extends FileCommands {
                 int countdown = 0;
                 int maxCount = files.length+1;
                 openLogfile();
+                beginGroupCommit();
                 int resultFile = 0;
                 long now = new Date().getTime();
 
@@ -490,6 +499,7 @@ public class AndroidFileCommands extends FileCommands {
                 }
                 onProgress(itemcount, maxCount, null);
 
+                sync();
                 closeLogFile();
                 onProgress(++itemcount, maxCount, null);
 
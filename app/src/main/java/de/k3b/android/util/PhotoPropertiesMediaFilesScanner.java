@@ -53,7 +53,10 @@ import de.k3b.geo.api.IGeoPointInfo;
 import de.k3b.io.FileUtils;
 import de.k3b.io.VISIBILITY;
 import de.k3b.media.IPhotoProperties;
+import de.k3b.media.ImageGeometry;
+import de.k3b.media.PhotoPropertiesCache;
 import de.k3b.media.PhotoPropertiesChainReader;
+import de.k3b.media.PhotoPropertiesSinglePassReader;
 import de.k3b.media.PhotoPropertiesUtil;
 import de.k3b.media.PhotoPropertiesXmpSegment;
 import de.k3b.tagDB.TagRepository;
@@ -92,6 +95,9 @@ abstract public class PhotoPropertiesMediaFilesScanner {
     /** singelton */
     private static PhotoPropertiesMediaFilesScanner sInstance = null;
 
+    /** if not null: image properties are only extracted if image or sidecar has changed */
+    private static PhotoPropertiesCache sPropertiesCache = null;
+
     public final Context mContext;
 
     public PhotoPropertiesMediaFilesScanner(Context context) {
@@ -255,14 +261,16 @@ abstract public class PhotoPropertiesMediaFilesScanner {
         int modifyCount = 0;
 
         if ((oldPathNames != null) && (oldPathNames.length > 0)) {
-            String sqlWhere = FotoSql.getWhereInFileNames(oldPathNames);
             try {
-                modifyCount = FotoSql.getMediaDBApi().deleteMedia(CONTEXT + "deleteInMediaDatabase", sqlWhere, null, true);
+                for (String[] chunk : FotoSql.getFileNameChunks(oldPathNames)) {
+                    modifyCount += FotoSql.getMediaDBApi().deleteMedia(CONTEXT + "deleteInMediaDatabase",
+                            FotoSql.getWhereInFileNames(chunk.length), chunk, true);
+                }
                 if (Global.debugEnabled) {
                     Log.d(Global.LOG_CONTEXT, CONTEXT + "deleteInMediaDatabase(len=" + oldPathNames.length + ", files='" + oldPathNames[0] + "'...) result count=" + modifyCount);
                 }
             } catch (Exception ex) {
-                Log.e(Global.LOG_CONTEXT, CONTEXT + "deleteInMediaDatabase(" + sqlWhere + ") error :", ex);
+                Log.e(Global.LOG_CONTEXT, CONTEXT + "deleteInMediaDatabase('" + oldPathNames[0] + "'...) error :", ex);
             }
         }
 
@@ -307,22 +315,24 @@ abstract public class PhotoPropertiesMediaFilesScanner {
     private int renameInMediaDatabase(Context context, Map<String, String> old2NewFileNames) {
         int modifyCount = 0;
         if (old2NewFileNames.size() > 0) {
-            QueryParameter query = new QueryParameter(FotoSql.queryChangePath);
-            FotoSql.setWhereFileNames(query, old2NewFileNames.keySet().toArray(new String[old2NewFileNames.size()]));
-
-            Cursor c = null;
-            try {
-                c = FotoSql.getMediaDBApi().createCursorForQuery(null, "renameInMediaDatabase", query, VISIBILITY.PRIVATE_PUBLIC, null);
-                int pkColNo = c.getColumnIndex(FotoSql.SQL_COL_PK);
-                int pathColNo = c.getColumnIndex(FotoSql.SQL_COL_PATH);
-                while (c.moveToNext()) {
-                    String oldPath = c.getString(pathColNo);
-                    modifyCount += updatePathRelatedFields(context, c, old2NewFileNames.get(oldPath), pkColNo, pathColNo);
+            for (String[] chunk : FotoSql.getFileNameChunks(old2NewFileNames.keySet().toArray(new String[old2NewFileNames.size()]))) {
+                QueryParameter query = new QueryParameter(FotoSql.queryChangePath);
+                FotoSql.setWhereFileNames(query, chunk);
+
+                Cursor c = null;
+                try {
+                    c = FotoSql.getMediaDBApi().createCursorForQuery(null, "renameInMediaDatabase", query, VISIBILITY.PRIVATE_PUBLIC, null);
+                    int pkColNo = c.getColumnIndex(FotoSql.SQL_COL_PK);
+                    int pathColNo = c.getColumnIndex(FotoSql.SQL_COL_PATH);
+                    while (c.moveToNext()) {
+                        String oldPath = c.getString(pathColNo);
+                        modifyCount += updatePathRelatedFields(context, c, old2NewFileNames.get(oldPath), pkColNo, pathColNo);
+                    }
+                } catch (Exception ex) {
+                    Log.e(Global.LOG_CONTEXT, CONTEXT + "execChangePaths() error :", ex);
+                } finally {
+                    if (c != null) c.close();
                 }
-            } catch (Exception ex) {
-                Log.e(Global.LOG_CONTEXT, CONTEXT + "execChangePaths() error :", ex);
-            } finally {
-                if (c != null) c.close();
             }
 
             if (Global.debugEnabled) {
@@ -341,28 +351,60 @@ abstract public class PhotoPropertiesMediaFilesScanner {
     protected PhotoPropertiesMediaDBContentValues getExifFromFile(ContentValues values, File jpgFile) {
         String absoluteJpgPath = FileUtils.tryGetCanonicalPath(jpgFile, jpgFile.getAbsolutePath());
 
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true; // only need with/height but not content
-        BitmapFactory.decodeFile(absoluteJpgPath, options);
-        int mHeight = options.outHeight;
-        int mWidth = options.outWidth;
-        String imageType = options.outMimeType;
-
-        PhotoPropertiesXmpSegment xmpContent = PhotoPropertiesXmpSegment.loadXmpSidecarContentOrNull(absoluteJpgPath, "getExifFromFile");
-        final long xmpFilelastModified = getXmpFilelastModified(xmpContent);
+        PhotoPropertiesCache cache = getPropertiesCache();
+        PhotoPropertiesCache.Entry extracted = (cache == null) ? null : cache.get(jpgFile, absoluteJpgPath);
+        if (extracted == null) {
+            extracted = extract(absoluteJpgPath);
+            if (cache != null) cache.put(jpgFile, absoluteJpgPath, extracted);
+        }
 
         values.put(FotoSql.SQL_COL_LAST_MODIFIED, jpgFile.lastModified() / 1000);
         values.put(DB_SIZE, jpgFile.length());
 
+        int mWidth = extracted.getWidth();
+        int mHeight = extracted.getHeight();
         if ((Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) && mWidth > 0 && mHeight > 0) {
             values.put(DB_WIDTH, mWidth);
             values.put(DB_HEIGHT, mHeight);
         }
-        values.put(DB_MIME_TYPE, imageType);
+        values.put(DB_MIME_TYPE, extracted.getMimeType());
+
+        TagSql.setXmpFileModifyDate(values, extracted.getXmpFilelastModified());
+
+        if (extracted.getOrientation() != null) {
+            values.put(DB_ORIENTATION, extracted.getOrientation());
+        }
+
+        IPhotoProperties src = extracted.getProperties();
+        PhotoPropertiesMediaDBContentValues dest = new PhotoPropertiesMediaDBContentValues().set(values, null);
+
+        if (src != null) {
+            // image has valid exif
+            getExifValues(dest, jpgFile, src);
+
+            updateTagRepository(src.getTags());
+        }
+
+        setPathRelatedFieldsIfNeccessary(values, absoluteJpgPath, null);
 
-        TagSql.setXmpFileModifyDate(values, xmpFilelastModified);
+        return dest;
+    }
 
-        IPhotoProperties exif = loadNonMediaValues(values, absoluteJpgPath, xmpContent);
+    /** reads image size, xmp-sidecar and exif of absoluteJpgPath. This is what {@link PhotoPropertiesCache} saves. */
+    private PhotoPropertiesCache.Entry extract(String absoluteJpgPath) {
+        PhotoPropertiesXmpSegment xmpContent = PhotoPropertiesXmpSegment.loadXmpSidecarContentOrNull(absoluteJpgPath, "getExifFromFile");
+
+        // jpg: size, orientation and exif come from the same header read
+        PhotoPropertiesSinglePassReader jpg = null;
+        ImageGeometry geometry = null;
+        if (PhotoPropertiesUtil.isImage(absoluteJpgPath, PhotoPropertiesUtil.IMG_TYPE_JPG | PhotoPropertiesUtil.IMG_TYPE_PRIVATE)) {
+            jpg = PhotoPropertiesSinglePassReader.load(absoluteJpgPath, xmpContent, "getExifFromFile");
+            geometry = jpg.getGeometry();
+        } else {
+            geometry = ImageGeometry.probe(new File(absoluteJpgPath));
+        }
+
+        IPhotoProperties exif = ((jpg != null) && jpg.isValidJpg()) ? loadNonMediaValues(jpg) : null;
 
         IPhotoProperties src = null;
         if (exif == null) {
@@ -373,18 +415,46 @@ abstract public class PhotoPropertiesMediaFilesScanner {
                     ? exif
                     : new PhotoPropertiesChainReader(xmpContent, exif);
         }
-        PhotoPropertiesMediaDBContentValues dest = new PhotoPropertiesMediaDBContentValues().set(values, null);
 
-        if (src != null) {
-            // image has valid exif
-            getExifValues(dest, jpgFile, src);
+        PhotoPropertiesCache.Entry result = new PhotoPropertiesCache.Entry()
+                .setXmpFilelastModified(getXmpFilelastModified(xmpContent))
+                .setProperties(src);
 
-            updateTagRepository(src.getTags());
+        if (geometry != null) {
+            result.setWidth(geometry.getWidth())
+                    .setHeight(geometry.getHeight())
+                    .setMimeType(geometry.getMimeType());
+            if (exif != null) result.setOrientation(geometry.getOrientation());
+        } else {
+            // format not supported by ImageGeometry
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true; // only need with/height but not content
+            BitmapFactory.decodeFile(absoluteJpgPath, options);
+            result.setWidth(options.outWidth)
+                    .setHeight(options.outHeight)
+                    .setMimeType(options.outMimeType);
         }
+        return result;
+    }
 
-        setPathRelatedFieldsIfNeccessary(values, absoluteJpgPath, null);
+    /** @return cache that belongs to the current {@link LibGlobal#mediaUpdateStrategy} or null if there is no cache. */
+    private PhotoPropertiesCache getPropertiesCache() {
+        PhotoPropertiesCache cache = sPropertiesCache;
+        if (cache != null) {
+            cache.setVariant(getClass().getSimpleName() + ":" + LibGlobal.mediaUpdateStrategy.contains("J"));
+        }
+        return cache;
+    }
 
-        return dest;
+    /** null: disables the cache */
+    public static void setPropertiesCache(PhotoPropertiesCache propertiesCache) {
+        sPropertiesCache = propertiesCache;
+    }
+
+    /** writes changes of the {@link PhotoPropertiesCache} to disk */
+    public static void savePropertiesCache() {
+        PhotoPropertiesCache cache = sPropertiesCache;
+        if (cache != null) cache.save();
     }
 
     private void updateTagRepository(List<String> tags) {
@@ -423,7 +493,8 @@ abstract public class PhotoPropertiesMediaFilesScanner {
         return null;
     }
 
-    abstract protected IPhotoProperties loadNonMediaValues(ContentValues destinationValues, String absoluteJpgPath, IPhotoProperties xmpContent);
+    /** @return exif (and other jpg embedded) properties of the already loaded jpg header or null */
+    abstract protected IPhotoProperties loadNonMediaValues(PhotoPropertiesSinglePassReader jpg);
 
     /** @return number of copied properties */
     protected int getExifValues(PhotoPropertiesMediaDBContentValues dest, File file, IPhotoProperties src) {
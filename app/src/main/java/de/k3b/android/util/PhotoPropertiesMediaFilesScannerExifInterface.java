@@ -20,7 +20,6 @@
 package de.k3b.android.util;
 
 
-import android.content.ContentValues;
 import android.content.Context;
 
 import java.io.IOException;
@@ -28,6 +27,7 @@ import java.io.IOException;
 import de.k3b.geo.api.IGeoPointInfo;
 import de.k3b.media.ExifInterfaceEx;
 import de.k3b.media.IPhotoProperties;
+import de.k3b.media.PhotoPropertiesSinglePassReader;
 
 /**
  * PhotoPropertiesMediaFilesScanner based on android ExifInterface.
@@ -41,20 +41,8 @@ public class PhotoPropertiesMediaFilesScannerExifInterface extends PhotoProperti
     }
 
     @Override
-    protected IPhotoProperties loadNonMediaValues(ContentValues destinationValues, String absoluteJpgPath, IPhotoProperties xmpContent) {
-        ExifInterfaceEx exif = null;
-        try {
-            exif = new ExifInterfaceEx(absoluteJpgPath, null, xmpContent, "PhotoPropertiesMediaFilesScannerExifInterface.loadNonMediaValues");
-            if (!exif.isValidJpgExifFormat()) exif = null;
-        } catch (IOException ex) {
-            // exif is null
-        }
-
-        if ((exif != null) && (destinationValues != null)) {
-            int degree = exif.getOrientationInDegrees();
-            destinationValues.put(DB_ORIENTATION, degree);
-        }
-        return exif;
+    protected IPhotoProperties loadNonMediaValues(PhotoPropertiesSinglePassReader jpg) {
+        return jpg.getExif();
     }
 
     @Override
@@ -19,7 +19,6 @@
 
 package de.k3b.android.util;
 
-import android.content.ContentValues;
 import android.content.Context;
 
 import java.io.IOException;
@@ -27,6 +26,7 @@ import java.io.IOException;
 import de.k3b.geo.api.IGeoPointInfo;
 import de.k3b.media.IPhotoProperties;
 import de.k3b.media.PhotoPropertiesImageReader;
+import de.k3b.media.PhotoPropertiesSinglePassReader;
 
 /**
  * PhotoPropertiesMediaFilesScanner implementation based on Drewnoakes image meta reader.
@@ -39,19 +39,8 @@ public class PhotoPropertiesMediaFilesScannerImageMetaReader extends PhotoProper
     }
 
     @Override
-    protected IPhotoProperties loadNonMediaValues(ContentValues destinationValues, String absoluteJpgPath, IPhotoProperties xmpContent) {
-        PhotoPropertiesImageReader exif = null;
-        try {
-            exif = new PhotoPropertiesImageReader().load(absoluteJpgPath, null, xmpContent, "PhotoPropertiesMediaFilesScannerImageMetaReader load");
-        } catch (IOException ex) {
-            // exif is null
-        }
-
-        if ((exif != null) && (destinationValues != null)) {
-            int degree = exif.getOrientationInDegrees();
-            destinationValues.put(DB_ORIENTATION, degree);
-        }
-        return exif;
+    protected IPhotoProperties loadNonMediaValues(PhotoPropertiesSinglePassReader jpg) {
+        return jpg.getImageReader();
     }
 
     @Override
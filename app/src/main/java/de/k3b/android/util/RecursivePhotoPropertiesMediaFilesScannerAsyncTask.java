@@ -24,18 +24,16 @@ import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Handler;
 import android.view.View;
 import android.widget.TextView;
 
-import java.io.File;
-import java.io.FileFilter;
 import java.util.ArrayList;
 import java.util.List;
 
 import de.k3b.android.androFotoFinder.R;
-import de.k3b.io.FileUtils;
-import de.k3b.media.PhotoPropertiesUtil;
+import de.k3b.media.RecursiveMediaFilesScanner;
 
 /**
  * Special PhotoPropertiesMediaFilesScanner that can only handle inserNew/updateExisting for directories or jp(e)g files.
@@ -46,6 +44,9 @@ import de.k3b.media.PhotoPropertiesUtil;
  * Created by k3b on 22.10.2015.
  */
 public class RecursivePhotoPropertiesMediaFilesScannerAsyncTask extends PhotoPropertiesMediaFilesScannerAsyncTask {
+    /** max number of photos per database update */
+    private static final int BATCH_SIZE = 100;
+
     /** Either
      * - current running scanner instance
      * - or reumable instanc */
@@ -62,7 +63,7 @@ public class RecursivePhotoPropertiesMediaFilesScannerAsyncTask extends PhotoPro
     /** if not null scanner is either
      * - in resume mode (can be started without parameters to resume interrupted scan)
      * - or in pausing mode collecting all canceled scans here to be processed in resumeIfNecessary() */
-    private List<String> mPaused = null;
+    private volatile List<String> mPaused = null;
 
     public RecursivePhotoPropertiesMediaFilesScannerAsyncTask(PhotoPropertiesMediaFilesScanner scanner, Context context, String why) {
         super(scanner, context, why);
@@ -71,61 +72,42 @@ public class RecursivePhotoPropertiesMediaFilesScannerAsyncTask extends PhotoPro
     @Override
     protected Integer doInBackground(String[]... pathNames) {
         // do not call super.doInBackground here because logic is different
-        int resultCount = 0;
-        for (String[] pathArray : pathNames) {
-            if (pathArray != null) {
-                for (String pathName : pathArray) {
-                    if ((pathName != null) && (pathName.length() > 0)) {
-                        resultCount += scanDirOrFile(new File(pathName));
-                    }
-                }
+        RecursiveMediaFilesScanner scanner = new RecursiveMediaFilesScanner(getThreadCount(), BATCH_SIZE) {
+            @Override
+            protected int onMediaFiles(String folderPath, String[] fullPaths) {
+                return runScanner(folderPath, fullPaths);
             }
-        }
-        return resultCount;
-    }
-
-    private int scanDirOrFile(File file) {
-        int resultCount = 0;
-        final String fullFilePath = FileUtils.tryGetCanonicalPath(file, null);
-        if (fullFilePath != null) {
-            if (!isCancelled()) {
-                if (file.isDirectory()) {
-                    String[] childFileNames = file.list(PhotoPropertiesUtil.JPG_FILENAME_FILTER);
-
-                    if (childFileNames != null) {
-                        // #33
-                        // convert to absolute paths
-                        for (int i = 0; i < childFileNames.length; i++) {
-                            childFileNames[i] = fullFilePath + "/" + childFileNames[i];
-                        }
-                        resultCount += runScanner(fullFilePath, childFileNames);
-                    }
 
-                    File[] subDirs = file.listFiles(new FileFilter() {
-                        @Override
-                        public boolean accept(File file) {
-                            return ((file != null) && (file.isDirectory()) && (!file.getName().startsWith(".")));
-                        }
-                    });
-
-                    if (subDirs != null) {
-                        // #33
-                        for (File subDir : subDirs) {
-                            if (subDir != null) {
-                                resultCount += scanDirOrFile(subDir);
-                            }
-                        }
+            @Override
+            protected void onSkipped(String fullPath) {
+                List<String> paused = mPaused;
+                if (paused != null) {
+                    synchronized (paused) {
+                        paused.add(fullPath);
                     }
-                } else if (PhotoPropertiesUtil.isImage(file.getName(), PhotoPropertiesUtil.IMG_TYPE_ALL)) {
-                    resultCount += runScanner(fullFilePath, fullFilePath);
                 }
-            } else if (mPaused != null) {
-                mPaused.add(fullFilePath);
             }
+
+            @Override
+            public boolean isCancelled() {
+                return RecursivePhotoPropertiesMediaFilesScannerAsyncTask.this.isCancelled();
+            }
+        };
+
+        int resultCount = 0;
+        for (String[] pathArray : pathNames) {
+            resultCount += scanner.scan(pathArray);
         }
+        PhotoPropertiesMediaFilesScanner.savePropertiesCache();
         return resultCount;
     }
 
+    /** ForkJoinPool used by parallel scan requires android-5.0 (api 21) */
+    private static int getThreadCount() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return 1;
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     /** @return true if scanner was resumable and started resume operation. */
     public boolean resumeIfNeccessary() {
         if ((getStatus() == AsyncTask.Status.PENDING) && (mPaused != null))
@@ -138,13 +120,14 @@ public class RecursivePhotoPropertiesMediaFilesScannerAsyncTask extends PhotoPro
     }
 
     /** call the original background scanner and update the statistics */
-    private Integer runScanner(String parentPath, String... fileNames) {
+    private int runScanner(String parentPath, String... fileNames) {
         this.mCurrentFolder = parentPath;
         final Integer resultCount = super.doInBackground(null, fileNames);
         if (resultCount != null) {
             this.mCount += resultCount.intValue();
+            return resultCount.intValue();
         }
-        return resultCount;
+        return 0;
     }
 
     @Override protected void onPostExecute(Integer modifyCount) {
@@ -19,8 +19,13 @@
 
 package de.k3b.android.androFotoFinder.tagDB;
 
+import org.junit.After;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
+import de.k3b.android.androFotoFinder.Global;
 import de.k3b.database.QueryParameter;
 import de.k3b.io.GalleryFilterParameter;
 import de.k3b.io.VISIBILITY;
@@ -34,6 +39,13 @@ import static org.junit.Assert.*;
  * @see <a href="http://d.android.com/tools/testing">Testing documentation</a>
  */
 public class TagSqlQueryParserTests {
+    private final boolean useAo10MediaImageDbReplacement = Global.useAo10MediaImageDbReplacement;
+
+    @After
+    public void tearDown() {
+        Global.useAo10MediaImageDbReplacement = useAo10MediaImageDbReplacement;
+    }
+
     @Test
     public void shouldParseFull() {
         String FILTER_STRING = "1.23,2.34;3.45,4.56;2001-02-03,2005-12-31;/some/path/;q,^;%filter%;tag1,tag2,tag3;utag1,utag2,utag3;notags;3;4;2004-02-03,2009-12-31";
@@ -197,4 +209,124 @@ public class TagSqlQueryParserTests {
         assertFilterQueryFilter(FILTER_STRING,"shouldTagsIncludeExcludeOrNone");
     }
 
+
+    //################ #155 tag index support (local media database copy)
+    @Test
+    public void shouldTagsIncludeIndexed() {
+        QueryParameter query = assertIndexedFilterQueryFilter(";;;;;;tag1,tag2,tag3");
+        assertWhereCount(3, query, TagSql.FILTER_EXPR_TAG_INDEX_INCLUDED);
+    }
+
+    @Test
+    public void shouldTagsIncludeOrNoneIndexed() {
+        QueryParameter query = assertIndexedFilterQueryFilter(";;;;;;tag1,tag2,tag3;;notags");
+        assertWhereCount(3, query, TagSql.FILTER_EXPR_TAG_INDEX_NONE_OR_INCLUDED);
+    }
+
+    @Test
+    public void shouldTagsExcludeIndexed() {
+        QueryParameter query = assertIndexedFilterQueryFilter(";;;;;;;tagexcl1,tagexcl2,tagexcl3");
+        assertWhereCount(3, query, TagSql.FILTER_EXPR_TAG_INDEX_EXCLUDED);
+    }
+
+    @Test
+    public void shouldTagsExcludeOrNoneIndexed() {
+        QueryParameter query = assertIndexedFilterQueryFilter(";;;;;;;tagexcl1,tagexcl2,tagexcl3;notags");
+        assertWhereCount(3, query, TagSql.FILTER_EXPR_TAG_INDEX_NONE_OR_EXCLUDED);
+    }
+
+    @Test
+    public void shouldTagsIncludeExcludeOrNoneIndexed() {
+        QueryParameter query = assertIndexedFilterQueryFilter(";;;;;;tag1,tag2;tagexcl1,tagexcl2;notags");
+        assertWhereCount(2, query, TagSql.FILTER_EXPR_TAG_INDEX_NONE_OR_INCLUDED);
+        assertWhereCount(2, query, TagSql.FILTER_EXPR_TAG_INDEX_NONE_OR_EXCLUDED);
+    }
+
+    @Test
+    public void shouldTagsWithWildcardsNotUseIndex() {
+        QueryParameter query = assertIndexedFilterQueryFilter(";;;;;;%tag%;%utag%");
+        assertWhereCount(0, query, TagSql.FILTER_EXPR_TAG_INDEX_INCLUDED);
+        assertWhereCount(0, query, TagSql.FILTER_EXPR_TAG_INDEX_EXCLUDED);
+    }
+
+    /** getParamOfAll without remove must find all occurences and must not modify the query */
+    @Test
+    public void shouldParseIndexedTagsWithoutRemove() {
+        Global.useAo10MediaImageDbReplacement = true;
+        GalleryFilterParameter initialFilter = GalleryFilterParameter.parse(";;;;;;tag1,tag2;tagexcl1,tagexcl2",
+                new GalleryFilterParameter());
+        QueryParameter query = new QueryParameter();
+        TagSql.filter2QueryEx(query, initialFilter, true);
+        String sqlBefore = query.toSqlString();
+
+        GalleryFilterParameter parsedFilter = (GalleryFilterParameter) TagSql.parseQueryEx(query, false);
+
+        assertEquals(Arrays.asList("tag1", "tag2"), parsedFilter.getTagsAllIncluded());
+        assertEquals(Arrays.asList("tagexcl1", "tagexcl2"), parsedFilter.getTagsAllExcluded());
+        assertEquals(sqlBefore, query.toSqlString());
+    }
+
+    @Test
+    public void shouldGetTagNamesSplitOnlyOnDbDelimiter() {
+        assertEquals(Arrays.asList("tag1", "a:b", "c,d"), MediaTagSql.getTagNames(";tag1;a:b;;c,d;"));
+        assertNull(MediaTagSql.getTagNames(";;"));
+        assertNull(MediaTagSql.getTagNames(null));
+    }
+
+    //################ #155 full text index support (local media database copy)
+    @Test
+    public void shouldFilterFindIndexed() {
+        Global.useAo10MediaImageDbReplacement = true;
+        QueryParameter query = assertFilterFind("hello world", null);
+        assertWhereCount(2, query, TagSql.FILTER_EXPR_ANY_MATCH);
+        assertParams(query, "hello*", "world*");
+    }
+
+    /** quotes and "*" are fts syntax and must not get into the match expression */
+    @Test
+    public void shouldFilterFindIndexedWithQuotesAndWildcard() {
+        Global.useAo10MediaImageDbReplacement = true;
+        GalleryFilterParameter initialFilter = new GalleryFilterParameter().setInAnyField("\"hello\" wor* \"x*y");
+
+        QueryParameter query = new QueryParameter();
+        GalleryFilterParameter parsedFilter = getParsedGalleryFilterParameter(query, initialFilter, null);
+
+        assertWhereCount(3, query, TagSql.FILTER_EXPR_ANY_MATCH);
+        assertParams(query, "hello*", "wor*", "x* y*");
+        assertEquals(query.toSqlString(), "hello wor x y", parsedFilter.getInAnyField());
+        for (String param : query.toAndroidParameters()) {
+            assertFalse(param, param.contains("\""));
+        }
+    }
+
+    /** a search word without letters or digits cannot use the fts index */
+    @Test
+    public void shouldFilterFindIndexedWithoutTokens() {
+        Global.useAo10MediaImageDbReplacement = true;
+        QueryParameter query = assertFilterFind("\"*\"", null);
+        assertWhereCount(0, query, TagSql.FILTER_EXPR_ANY_MATCH);
+        assertWhereCount(1, query, TagSql.FILTER_EXPR_ANY_LIKE);
+    }
+
+    private static void assertParams(QueryParameter query, String... expectedParams) {
+        List<String> params = Arrays.asList(query.toAndroidParameters());
+        for (String expected : expectedParams) {
+            assertTrue(expected + " in " + params, params.contains(expected));
+        }
+    }
+
+    // same as assertFilterQueryFilter but with the tag index of the local media database copy enabled
+    private QueryParameter assertIndexedFilterQueryFilter(String expectedFilterString) {
+        Global.useAo10MediaImageDbReplacement = true;
+        return assertFilterQueryFilter(expectedFilterString, null);
+    }
+
+    private static void assertWhereCount(int expected, QueryParameter query, String expression) {
+        String sql = query.toSqlString();
+        int count = 0;
+        int pos = -1;
+        while ((pos = sql.indexOf(expression, pos + 1)) >= 0) count++;
+        assertEquals(expression, expected, count);
+    }
+
 }
\ No newline at end of file
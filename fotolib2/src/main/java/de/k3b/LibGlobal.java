@@ -76,4 +76,25 @@ public class LibGlobal {
 
     /** progressbar advances after processing x photos */
     public static final int itemsPerProgress = 10;
+
+    /**
+     * number of photos that are updated in parallel by bulk exif/xmp changes. 1: sequential.
+     * Values > 1 only parallelize reading/writing the files. Media db updates are serialized.
+     *
+     * Parallel processing is opt-in (default 1): the app must set a value > 1 before
+     * {@link de.k3b.io.FileCommands} uses it for exif changes without copy/move.
+     */
+    public static int maxBulkUpdateThreads = 1;
+
+    /** buffered log of bulk operations is written to disk after this many lines. 1: after every line */
+    public static int logGroupCommitMaxLines = 100;
+
+    /**
+     * buffered log of bulk operations is written to disk if the oldest unwritten line is older than this.
+     * Checked when the next line is logged. The last lines are written when the bulk operation finishes.
+     */
+    public static long logGroupCommitMaxMillis = 2000;
+
+    /** max number of images in the persistent cache of extracted photo properties */
+    public static int photoPropertiesCacheMaxEntries = 100000;
 }
@@ -22,13 +22,13 @@ package de.k3b.csv2db.csv;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.Vector;
 
 /**
  * Raw processing of csv reader
  * That gets lines of csv-columns.
  * Features: Infer column-Delimiter
  * Handle multiline columns if surrounded with ""
+ * Reads the content in blocks so the reader does not need to be buffered.
  * @author EVE
  *
  */
@@ -38,11 +38,20 @@ public class CsvReader implements Closeable {
 
 	public static final char FIELDLEN_DELIMITER = ':';
 	private static final char CHAR_IGNORE = '\r';
+	private static final int BUFFER_SIZE = 8192;
 
 	private char fieldDelimiter = 0;
 
 	private Reader reader;
 
+	/** window of the reader content that is not processed yet: buffer[bufferPos..bufferEnd-1] */
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int bufferPos = 0;
+	private int bufferEnd = 0;
+
+	/** reused by {@link #readRecord()} */
+	private final CsvRecord record = new CsvRecord();
+
 	// csv file source line number for error messages. (lineNumber >  recordNumber) if there is a record with multiline data.
 	private int lineNumber = 0;
 
@@ -57,42 +66,52 @@ public class CsvReader implements Closeable {
 		if (reader != null) reader.close();
 		reader = null;
 	}
+	/** @return fields of the next csv record or null if there is no more data. */
 	public String[] readLine() {
-		Vector<String> result = new Vector<String>();
-		StringBuffer content = new StringBuffer();
+		CsvRecord result = readRecord();
+		return (result == null) ? null : result.toStringArray();
+	}
+
+	/**
+	 * Same as {@link #readLine()} but without allocating strings for the fields.
+	 *
+	 * @return fields of the next csv record or null if there is no more data.
+	 * The result is reused and overwritten by the next call.
+	 */
+	public CsvRecord readRecord() {
+		CsvRecord result = this.record;
+		result.clear();
 
 		// != 0: look for matching -"- to allow multiline fields
 		int fieldSurrounder = 0;
-		
+
 		try {
-			// this.reader = new Reader(getClass().getResourceAsStream("/data.csv"));
-			int ch;
-			while ((ch=this.reader.read()) != -1) // ,0,cbuf.length) > 0)
+			while ((bufferPos < bufferEnd) || fill())
 			{
+				char ch = buffer[bufferPos++];
 				if (ch== CsvItem.DEFAULT_CHAR_LINE_DELIMITER) this.lineNumber++;
-				
+
 				if (fieldSurrounder == 0) {
 					if ((fieldDelimiter == 0) && POSSIBLE_DELIMITER_CHARS.indexOf(ch) >= 0) {
 						// fieldDelimiter unknown: infer
- 						fieldDelimiter = (char) ch;
+ 						fieldDelimiter = ch;
 					}
 					if (ch == fieldDelimiter) {
-						result.addElement(getStringWithoutDelimiters(content));
-						content.setLength(0);
+						result.endField();
 					} else if (ch== CsvItem.DEFAULT_CHAR_LINE_DELIMITER) {
-						result.addElement(getStringWithoutDelimiters(content));
+						result.endField();
 						this.recordNumber++;
-						return toStringArray(result);
+						return result;
 					} else if (ch != CHAR_IGNORE){
-						content.append((char) ch);
+						result.append(ch);
 					}
-					
+
 					if (ch == CsvItem.CHAR_FIELD_SURROUNDER)
-						fieldSurrounder = (char) ch; // start -"- area
+						fieldSurrounder = ch; // start -"- area
 				} else {
 					// waiting for end--"-
 					if (ch != CHAR_IGNORE){
-						content.append((char) ch);
+						result.append(ch);
 						if (ch == fieldSurrounder)
 							fieldSurrounder = 0;
 					}
@@ -101,47 +120,31 @@ public class CsvReader implements Closeable {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		if (content.length() > 0) {
-			result.addElement(getStringWithoutDelimiters(content));			
+		if (!result.isCurrentFieldEmpty()) {
+			result.endField();
 		}
-		
-		if (result.isEmpty()) {
+
+		if (result.size() == 0) {
 			return null;
 		} else {
 			this.recordNumber++;
-			return toStringArray(result);    	
+			return result;
 		}
 	}
 
-	private String[] toStringArray(Vector<String> result) {
-		int len = result.size();
-		if (len == 0) {
-			return null;
-		}
-		
-		String[] array = new String[len];
-		result.copyInto(array);
-		return array;
+	/** @return false if there is no more data */
+	private boolean fill() throws IOException {
+		if (reader == null) return false;
+		int count;
+		do {
+			count = reader.read(buffer, 0, buffer.length);
+		} while (count == 0);
+
+		bufferPos = 0;
+		bufferEnd = Math.max(0, count);
+		return count > 0;
 	}
 
-	/**
-	 * @param content that may contain starting and ending -"-
-	 * @return string without starting and ending -"-
-	 */
-	static private String getStringWithoutDelimiters(StringBuffer content)
-    {
-		if (content.length() > 0)
-		{
-			if (content.charAt(0) == CsvItem.CHAR_FIELD_SURROUNDER)
-				content.deleteCharAt(0);
-			if (content.charAt(content.length() -1 ) == CsvItem.CHAR_FIELD_SURROUNDER)
-				content.deleteCharAt(content.length() -1);
-			if (content.length() > 0)
-				return content.toString();
-		} 
-		return null;
-    }
-
 	public int getLineNumner() {
 		return this.lineNumber;
 	}
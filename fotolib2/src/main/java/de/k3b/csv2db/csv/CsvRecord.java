@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.csv2db.csv;
+
+import java.util.Arrays;
+
+/**
+ * One csv record as returned by {@link CsvReader#readRecord()}.
+ *
+ * All fields are slices of one char array: field i is
+ * getChars()[getStart(i) .. getEnd(i)-1] without surrounding -"-.
+ * An empty field is treated as null.
+ *
+ * The instance is reused for every record so strings are only
+ * allocated if {@link #get(int)} or {@link #toStringArray()} is called.
+ *
+ * Created by k3b on 23.03.2020.
+ */
+public class CsvRecord {
+    private char[] mChars = new char[256];
+    private int mLength = 0;
+
+    /** position in mChars where the current field that is not finished yet starts */
+    private int mFieldStart = 0;
+
+    private int[] mStarts = new int[16];
+    private int[] mEnds = new int[16];
+    private int mSize = 0;
+
+    void clear() {
+        mLength = 0;
+        mFieldStart = 0;
+        mSize = 0;
+    }
+
+    void append(char ch) {
+        if (mLength == mChars.length) {
+            mChars = Arrays.copyOf(mChars, mLength * 2);
+        }
+        mChars[mLength++] = ch;
+    }
+
+    boolean isCurrentFieldEmpty() {
+        return mLength == mFieldStart;
+    }
+
+    /** finishes the current field and removes starting and ending -"- */
+    void endField() {
+        int start = mFieldStart;
+        int end = mLength;
+        if ((end > start) && (mChars[start] == CsvItem.CHAR_FIELD_SURROUNDER)) start++;
+        if ((end > start) && (mChars[end - 1] == CsvItem.CHAR_FIELD_SURROUNDER)) end--;
+
+        if (mSize == mStarts.length) {
+            mStarts = Arrays.copyOf(mStarts, mSize * 2);
+            mEnds = Arrays.copyOf(mEnds, mSize * 2);
+        }
+        mStarts[mSize] = start;
+        mEnds[mSize] = end;
+        mSize++;
+        mFieldStart = mLength;
+    }
+
+    /** @return number of fields */
+    public int size() {
+        return mSize;
+    }
+
+    public char[] getChars() {
+        return mChars;
+    }
+
+    public int getStart(int index) {
+        return mStarts[index];
+    }
+
+    public int getEnd(int index) {
+        return mEnds[index];
+    }
+
+    public boolean isNull(int index) {
+        return mStarts[index] == mEnds[index];
+    }
+
+    /** @return field content without surrounding -"- or null if empty */
+    public String get(int index) {
+        if (isNull(index)) return null;
+        return new String(mChars, mStarts[index], mEnds[index] - mStarts[index]);
+    }
+
+    /** @return field contents as in {@link CsvReader#readLine()} */
+    public String[] toStringArray() {
+        String[] result = new String[mSize];
+        for (int i = 0; i < mSize; i++) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toStringArray());
+    }
+}
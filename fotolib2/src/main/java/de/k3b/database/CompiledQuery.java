@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+ 
+package de.k3b.database;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, pre-compiled form of a {@link QueryParameter}.
+ *
+ * All sql fragments (columns, from, where, parameters, ...) are rendered exactly once
+ * by {@link #compile(QueryParameter)} so a query that is executed does not render
+ * the same parts again for every step (logging, android where, raw sql).
+ * The {@link QueryParameter} itself is not retained.
+ *
+ * Equal queries (same query type id, same sql text and same parameters) have
+ * equal hashCode()/equals() so a CompiledQuery can be used as key of a result cache.
+ *
+ * Arrays returned by {@link #toColumns()} and {@link #toAndroidParameters()} are shared
+ * and must not be modified.
+ *
+ * Created by k3b on 28.03.2020.
+ */
+public class CompiledQuery {
+    private final int mID;
+    private final String[] mColumns;
+    private final String mFrom;
+    private final String mWhere;
+    private final String mAndroidWhere;
+    private final String[] mAndroidParameters;
+    private final String mGroupBy;
+    private final String mHaving;
+    private final String mOrderBy;
+
+    /** sql text including parameters. Used as key for equals/hashCode */
+    private final String mSqlString;
+    private final int mHashCode;
+
+    private CompiledQuery(QueryParameter query) {
+        mID = query.getID();
+        mColumns = query.toColumns();
+        mFrom = query.toFrom();
+        mWhere = query.toWhere();
+        mAndroidWhere = query.toAndroidWhere();
+        mAndroidParameters = query.toAndroidParameters();
+        mGroupBy = query.toGroupBy();
+        mHaving = query.toHaving();
+        mOrderBy = query.toOrderBy();
+        mSqlString = query.toSqlString();
+        mHashCode = 31 * mID + ((mSqlString == null) ? 0 : mSqlString.hashCode());
+    }
+
+    /**
+     * @return the compiled form of query.
+     * Later changes to query do not change the result.
+     */
+    public static CompiledQuery compile(QueryParameter query) {
+        if (query == null) return null;
+        return new CompiledQuery(query);
+    }
+
+    public int getID() {
+        return mID;
+    }
+
+    /** see {@link QueryParameter#toColumns()}. Shared array: must not be modified. */
+    public String[] toColumns() {
+        return mColumns;
+    }
+
+    public String toFrom() {
+        return mFrom;
+    }
+
+    public String toWhere() {
+        return mWhere;
+    }
+
+    public String toAndroidWhere() {
+        return mAndroidWhere;
+    }
+
+    /** see {@link QueryParameter#toAndroidParameters()}. Shared array: must not be modified. */
+    public String[] toAndroidParameters() {
+        return mAndroidParameters;
+    }
+
+    public String toGroupBy() {
+        return mGroupBy;
+    }
+
+    public String toHaving() {
+        return mHaving;
+    }
+
+    public String toOrderBy() {
+        return mOrderBy;
+    }
+
+    public String toSqlString() {
+        return mSqlString;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompiledQuery)) return false;
+        CompiledQuery other = (CompiledQuery) o;
+        // parameters are compared separately: the sql text does not show parameter boundaries
+        return (mHashCode == other.mHashCode)
+                && (mID == other.mID)
+                && ((mSqlString == null) ? (other.mSqlString == null) : mSqlString.equals(other.mSqlString))
+                && Arrays.equals(mAndroidParameters, other.mAndroidParameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    @Override
+    public String toString() {
+        return (mSqlString == null) ? "" : mSqlString.replace("\n", " ");
+    }
+}
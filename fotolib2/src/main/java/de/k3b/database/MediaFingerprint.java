@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.database;
+
+/**
+ * The columns of a media item that are compared by {@link MediaSyncDiff}:
+ * id, path, size and modification date.
+ *
+ * A streaming source may reuse one instance for every row ({@link #set(long, String, long, long)}).
+ *
+ * Created by k3b on 04.04.2020.
+ */
+public class MediaFingerprint {
+    private long mId;
+    private String mPath;
+    private long mSize;
+    private long mLastModified;
+
+    public MediaFingerprint() {
+    }
+
+    public MediaFingerprint(long id, String path, long size, long lastModified) {
+        set(id, path, size, lastModified);
+    }
+
+    public MediaFingerprint set(long id, String path, long size, long lastModified) {
+        mId = id;
+        mPath = path;
+        mSize = size;
+        mLastModified = lastModified;
+        return this;
+    }
+
+    /** @return true if path, size and modification date are the same. */
+    public boolean isSameContent(MediaFingerprint other) {
+        return (other != null) && (mSize == other.mSize) && (mLastModified == other.mLastModified)
+                && ((mPath == null) ? (other.mPath == null) : mPath.equals(other.mPath));
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public String getPath() {
+        return mPath;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public long getLastModified() {
+        return mLastModified;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + mId + " " + mPath + " size=" + mSize + " modified=" + mLastModified;
+    }
+}
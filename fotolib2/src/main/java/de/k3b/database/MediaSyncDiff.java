@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.database;
+
+import java.util.Iterator;
+
+import de.k3b.io.collections.LongIdSet;
+
+/**
+ * Delta sync core: compares the {@link MediaFingerprint}s of a source (i.e. the android media
+ * contentprovider) with the fingerprints of its copy (i.e. the local media database).
+ *
+ * Both sides are read in one streaming pass (merge join), so they must be sorted by ascending id.
+ * Only the ids of the items that must be inserted into, updated in or deleted from the copy are kept
+ * in memory ({@link LongIdSet}).
+ *
+ * Created by k3b on 04.04.2020.
+ */
+public class MediaSyncDiff {
+    private final LongIdSet mInserted = new LongIdSet();
+    private final LongIdSet mUpdated = new LongIdSet();
+    private final LongIdSet mDeleted = new LongIdSet();
+    private final MediaSyncStatistics mStatistics = new MediaSyncStatistics();
+
+    private long mSourceMaxId = 0;
+    private long mSourceMaxLastModified = 0;
+
+    /**
+     * Compares source with copy. Both must be sorted by ascending id.
+     *
+     * @throws IllegalArgumentException if source or copy is not sorted by id.
+     */
+    public MediaSyncStatistics diff(Iterator<MediaFingerprint> source, Iterator<MediaFingerprint> copy) {
+        SortedReader sourceReader = new SortedReader(source, "source");
+        SortedReader copyReader = new SortedReader(copy, "copy");
+
+        MediaFingerprint sourceItem = readSource(sourceReader);
+        MediaFingerprint copyItem = readCopy(copyReader);
+        while ((sourceItem != null) || (copyItem != null)) {
+            if ((copyItem == null) || ((sourceItem != null) && (sourceItem.getId() < copyItem.getId()))) {
+                // only in source
+                mInserted.add(sourceItem.getId());
+                mStatistics.onInsert();
+                sourceItem = readSource(sourceReader);
+            } else if ((sourceItem == null) || (copyItem.getId() < sourceItem.getId())) {
+                // only in copy
+                mDeleted.add(copyItem.getId());
+                mStatistics.onDelete();
+                copyItem = readCopy(copyReader);
+            } else {
+                if (sourceItem.isSameContent(copyItem)) {
+                    mStatistics.onUnchanged();
+                } else {
+                    mUpdated.add(sourceItem.getId());
+                    mStatistics.onUpdate();
+                }
+                sourceItem = readSource(sourceReader);
+                copyItem = readCopy(copyReader);
+            }
+        }
+        return mStatistics;
+    }
+
+    private MediaFingerprint readSource(SortedReader sourceReader) {
+        MediaFingerprint result = sourceReader.next();
+        if (result != null) {
+            mStatistics.onSource();
+            mSourceMaxId = Math.max(mSourceMaxId, result.getId());
+            mSourceMaxLastModified = Math.max(mSourceMaxLastModified, result.getLastModified());
+        }
+        return result;
+    }
+
+    private MediaFingerprint readCopy(SortedReader copyReader) {
+        MediaFingerprint result = copyReader.next();
+        if (result != null) mStatistics.onCopy();
+        return result;
+    }
+
+    /** ids that are in source but not in copy */
+    public LongIdSet getInserted() {
+        return mInserted;
+    }
+
+    /** ids that are in source and copy with different path, size or modification date */
+    public LongIdSet getUpdated() {
+        return mUpdated;
+    }
+
+    /** ids that are in copy but not in source */
+    public LongIdSet getDeleted() {
+        return mDeleted;
+    }
+
+    public MediaSyncStatistics getStatistics() {
+        return mStatistics;
+    }
+
+    /** @return watermark of the source to be persisted after the changes were applied to the copy */
+    public MediaSyncWatermark getSourceWatermark() {
+        return new MediaSyncWatermark(mStatistics.getSourceCount(), mSourceMaxId, mSourceMaxLastModified);
+    }
+
+    /** checks that the ids are ascending */
+    private static class SortedReader {
+        private final Iterator<MediaFingerprint> mIterator;
+        private final String mName;
+        private boolean mFirst = true;
+        private long mLastId = 0;
+
+        SortedReader(Iterator<MediaFingerprint> iterator, String name) {
+            mIterator = iterator;
+            mName = name;
+        }
+
+        /** @return next item or null if there are no more items */
+        MediaFingerprint next() {
+            if ((mIterator == null) || !mIterator.hasNext()) return null;
+
+            MediaFingerprint result = mIterator.next();
+            if (!mFirst && (result.getId() <= mLastId)) {
+                throw new IllegalArgumentException("MediaSyncDiff: " + mName +
+                        " must be sorted by id but " + result + " follows #" + mLastId);
+            }
+            mFirst = false;
+            mLastId = result.getId();
+            return result;
+        }
+    }
+}
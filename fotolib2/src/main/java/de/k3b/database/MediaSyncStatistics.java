@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.database;
+
+/**
+ * Result of a media sync: how many items were compared, inserted, updated and deleted.
+ *
+ * Created by k3b on 04.04.2020.
+ */
+public class MediaSyncStatistics {
+    private int mSourceCount = 0;
+    private int mCopyCount = 0;
+    private int mInserted = 0;
+    private int mUpdated = 0;
+    private int mDeleted = 0;
+    private int mUnchanged = 0;
+
+    /** true if diff was not necessary because the watermark did not change */
+    private boolean mSkipped = false;
+    private long mStartTime = System.currentTimeMillis();
+    private long mEndTime = 0;
+
+    void onSource() {
+        mSourceCount++;
+    }
+
+    void onCopy() {
+        mCopyCount++;
+    }
+
+    void onInsert() {
+        mInserted++;
+    }
+
+    void onUpdate() {
+        mUpdated++;
+    }
+
+    void onDelete() {
+        mDeleted++;
+    }
+
+    void onUnchanged() {
+        mUnchanged++;
+    }
+
+    public MediaSyncStatistics setSkipped(boolean skipped) {
+        mSkipped = skipped;
+        return this;
+    }
+
+    public MediaSyncStatistics setStartTime(long startTime) {
+        mStartTime = startTime;
+        return this;
+    }
+
+    /** called when sync is completed */
+    public MediaSyncStatistics setEndTime(long endTime) {
+        mEndTime = endTime;
+        return this;
+    }
+
+    public int getSourceCount() {
+        return mSourceCount;
+    }
+
+    public int getCopyCount() {
+        return mCopyCount;
+    }
+
+    public int getInserted() {
+        return mInserted;
+    }
+
+    public int getUpdated() {
+        return mUpdated;
+    }
+
+    public int getDeleted() {
+        return mDeleted;
+    }
+
+    public int getUnchanged() {
+        return mUnchanged;
+    }
+
+    /** @return number of inserted, updated and deleted items */
+    public int getModified() {
+        return mInserted + mUpdated + mDeleted;
+    }
+
+    public boolean isSkipped() {
+        return mSkipped;
+    }
+
+    /** @return milliseconds from start to end or 0 if not completed yet */
+    public long getDuration() {
+        return (mEndTime == 0) ? 0 : (mEndTime - mStartTime);
+    }
+
+    @Override
+    public String toString() {
+        if (mSkipped) {
+            return "MediaSync(unchanged, skipped in " + getDuration() + " ms)";
+        }
+        return "MediaSync(source:" + mSourceCount +
+                ", copy:" + mCopyCount +
+                ", inserted:" + mInserted +
+                ", updated:" + mUpdated +
+                ", deleted:" + mDeleted +
+                ", unchanged:" + mUnchanged +
+                ") in " + getDuration() + " ms";
+    }
+}
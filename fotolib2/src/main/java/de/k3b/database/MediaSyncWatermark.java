@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.database;
+
+/**
+ * Summary of all media items at the time of the last sync: count, max id and max modification date.
+ *
+ * If the watermark of the source is the same as the one persisted after the last sync
+ * (and the copy still has the same count) the diff can be skipped.
+ * An insert changes count and max id, a delete changes count,
+ * a file modification changes the max modification date.
+ *
+ * Limitation: a change that keeps count, max id and max modification date is not detected,
+ * i.e. a file renamed or moved by another app where the media item keeps its id and
+ * modification date. Such changes are only transfered by a forced (full) sync.
+ *
+ * Created by k3b on 04.04.2020.
+ */
+public class MediaSyncWatermark {
+    private static final String DELIMITER = ";";
+
+    private final long mCount;
+    private final long mMaxId;
+    private final long mMaxLastModified;
+
+    public MediaSyncWatermark(long count, long maxId, long maxLastModified) {
+        mCount = count;
+        mMaxId = maxId;
+        mMaxLastModified = maxLastModified;
+    }
+
+    /** @return watermark from {@link #toString()} or null if value is empty or invalid. */
+    public static MediaSyncWatermark parse(String value) {
+        if (value != null) {
+            String[] parts = value.split(DELIMITER);
+            if (parts.length == 3) {
+                try {
+                    return new MediaSyncWatermark(Long.parseLong(parts[0]),
+                            Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                } catch (NumberFormatException ignore) {
+                    // invalid watermark is handled like no watermark
+                }
+            }
+        }
+        return null;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMaxId() {
+        return mMaxId;
+    }
+
+    public long getMaxLastModified() {
+        return mMaxLastModified;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof MediaSyncWatermark)) return false;
+        MediaSyncWatermark that = (MediaSyncWatermark) other;
+        return (mCount == that.mCount) && (mMaxId == that.mMaxId) && (mMaxLastModified == that.mMaxLastModified);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mCount ^ (mMaxId * 31) ^ (mMaxLastModified * 961));
+    }
+
+    /** persisted format "count;maxId;maxLastModified" */
+    @Override
+    public String toString() {
+        return mCount + DELIMITER + mMaxId + DELIMITER + mMaxLastModified;
+    }
+}
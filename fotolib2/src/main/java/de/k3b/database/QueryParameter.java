@@ -446,6 +446,11 @@ public class QueryParameter {
         return result.toString();
     }
 
+    /** @return immutable compiled form with all sql fragments rendered once. */
+    public CompiledQuery compile() {
+        return CompiledQuery.compile(this);
+    }
+
     public String toSqlStringAndroid() {
         return toString(toColumns(), null, toFrom(), toAndroidWhere(), toAndroidParameters(), toOrderBy(), -1);
     }
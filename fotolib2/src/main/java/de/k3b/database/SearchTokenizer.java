@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+ 
+package de.k3b.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Tokenizer for the full text search index of the "in any field" filter.
+ * No dependencies to android so it can be unittested.
+ *
+ * Index and query use the same rules: a token is a sequence of letters or digits in lower case.
+ * Everything else (space, "/", ".", "_", ",", ";", ...) is a separator so that path segments,
+ * file name parts and tags become tokens.
+ *
+ * The generated texts contain only tokens separated by blank so that sqlite's
+ * "simple" fts tokenizer gets the same tokens.
+ *
+ * Created by k3b on 31.03.2020.
+ */
+public class SearchTokenizer {
+    private SearchTokenizer() {
+    }
+
+    /** @return distinct tokens of all texts in order of first occurence. null texts are ignored */
+    public static List<String> tokenize(String... texts) {
+        Set<String> result = new LinkedHashSet<String>();
+        if (texts != null) {
+            for (String text : texts) {
+                addTokens(result, text);
+            }
+        }
+        return new ArrayList<String>(result);
+    }
+
+    private static void addTokens(Set<String> result, String text) {
+        if (text == null) return;
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean isTokenChar = (i < length) && Character.isLetterOrDigit(text.charAt(i));
+            if (isTokenChar) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                result.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    /** @return content for the search index of a media item with these fields or null if there are no tokens */
+    public static String toIndexText(String... fields) {
+        List<String> tokens = tokenize(fields);
+        if (tokens.isEmpty()) return null;
+        return join(tokens, "");
+    }
+
+    /**
+     * @return fts match expression where every token of searchText is a prefix
+     * ("Camera 20" becomes "camera* 20*"). null if searchText has no tokens
+     */
+    public static String toPrefixMatch(String searchText) {
+        List<String> tokens = tokenize(searchText);
+        if (tokens.isEmpty()) return null;
+        return join(tokens, "*");
+    }
+
+    /** reverse of {@link #toPrefixMatch(String)} */
+    public static String fromPrefixMatch(String match) {
+        return (match == null) ? null : match.replace("*", "");
+    }
+
+    private static String join(List<String> tokens, String suffix) {
+        StringBuilder result = new StringBuilder();
+        for (String token : tokens) {
+            if (result.length() > 0) result.append(' ');
+            result.append(token).append(suffix);
+        }
+        return result.toString();
+    }
+}
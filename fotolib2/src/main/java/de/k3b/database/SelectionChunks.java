@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Transports big selections (ids or paths) into sql without megabyte sized "in (...)" lists.
+ *
+ * <ul>
+ *     <li>{@link #split(Collection, int)} splits values into chunks that are used as
+ *     bound parameters of "column in (?,?,...)" ({@link #getWhereIn(String, int)}):
+ *     the sql is parsed once per chunk size, values need no quoting
+ *     and the sqlite parameter limit is not exceeded.</li>
+ *     <li>{@link #getWhereInIds(String, long[])} is used where a single where is needed
+ *     (i.e. a cursor for the gallery): ranges of consecutive ids become "between".</li>
+ * </ul>
+ *
+ * Created by k3b on 03.04.2020.
+ */
+public class SelectionChunks {
+    /** number of parameters per chunk. Sqlite default for SQLITE_MAX_VARIABLE_NUMBER is 999 */
+    public static final int MAX_PARAMETERS = 500;
+
+    /** consecutive ids of at least this length are translated to "between" */
+    private static final int MIN_RANGE_LENGTH = 3;
+
+    /** max number of terms in one "a OR b OR ..." */
+    private static final int MAX_OR_TERMS = 8;
+
+    private SelectionChunks() {
+    }
+
+    /** @return "column in (?,?,...)" with count parameters. */
+    public static String getWhereIn(String column, int count) {
+        StringBuilder result = new StringBuilder(column.length() + 6 + count * 2);
+        result.append(column).append(" in (");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) result.append(',');
+            result.append('?');
+        }
+        return result.append(')').toString();
+    }
+
+    /** @return values without null in chunks with at most maxChunkSize elements. Empty if there are no values */
+    public static List<String[]> split(Collection<?> values, int maxChunkSize) {
+        List<String[]> result = new ArrayList<String[]>();
+        if (values != null) {
+            List<String> chunk = new ArrayList<String>(Math.min(maxChunkSize, values.size()));
+            for (Object value : values) {
+                if (value != null) {
+                    chunk.add(value.toString());
+                    if (chunk.size() >= maxChunkSize) {
+                        result.add(chunk.toArray(new String[chunk.size()]));
+                        chunk.clear();
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) result.add(chunk.toArray(new String[chunk.size()]));
+        }
+        return result;
+    }
+
+    /** @return chunks of the ids of a komma seperated list like "1,2,3". Empty if there are no ids */
+    public static List<String[]> splitIds(String idsAsListString, int maxChunkSize) {
+        List<String> ids = new ArrayList<String>();
+        if (idsAsListString != null) {
+            for (String id : idsAsListString.split(",")) {
+                String trimmed = id.trim();
+                if (trimmed.length() > 0) ids.add(trimmed);
+            }
+        }
+        return split(ids, maxChunkSize);
+    }
+
+    /**
+     * @param sortedIds ascending ids
+     * @return sql expression for column with ids as number literals.
+     * Consecutive ids are combined as "(column between first and last)".
+     * null if there are no ids.
+     */
+    public static String getWhereInIds(String column, long[] sortedIds) {
+        return getWhereInIds(column, sortedIds, null);
+    }
+
+    /**
+     * Adds {@link #getWhereInIds(String, long[])} to query with bound parameters instead of literals.
+     * If that needs more than {@link #MAX_PARAMETERS} parameters number literals are used
+     * so that the sqlite parameter limit is not exceeded.
+     *
+     * @param sortedIds ascending ids
+     */
+    public static QueryParameter addWhereInIds(QueryParameter query, String column, long[] sortedIds) {
+        List<String> parameters = new ArrayList<String>();
+        String where = getWhereInIds(column, sortedIds, parameters);
+        if (where != null) {
+            if (parameters.size() > MAX_PARAMETERS) {
+                where = getWhereInIds(column, sortedIds, null);
+                parameters.clear();
+            }
+            query.addWhere(where, parameters.toArray(new String[parameters.size()]));
+        }
+        return query;
+    }
+
+    /**
+     * @param parameters if not null values are added here and the expression contains "?".
+     *                   Else the expression contains number literals.
+     */
+    private static String getWhereInIds(String column, long[] sortedIds, List<String> parameters) {
+        if ((sortedIds == null) || (sortedIds.length == 0)) return null;
+
+        List<String> terms = new ArrayList<String>();
+        List<Long> singles = new ArrayList<Long>();
+        int i = 0;
+        while (i < sortedIds.length) {
+            int end = i;
+            while ((end + 1 < sortedIds.length) && (sortedIds[end + 1] == sortedIds[end] + 1)) end++;
+
+            if (end - i + 1 >= MIN_RANGE_LENGTH) {
+                terms.add("(" + column + " between " + getValue(sortedIds[i], parameters)
+                        + " and " + getValue(sortedIds[end], parameters) + ")");
+            } else {
+                for (int j = i; j <= end; j++) {
+                    singles.add(sortedIds[j]);
+                }
+            }
+            i = end + 1;
+        }
+
+        for (int first = 0; first < singles.size(); first += MAX_PARAMETERS) {
+            StringBuilder in = new StringBuilder().append(column).append(" in (");
+            int last = Math.min(first + MAX_PARAMETERS, singles.size());
+            for (int j = first; j < last; j++) {
+                if (j > first) in.append(',');
+                in.append(getValue(singles.get(j), parameters));
+            }
+            terms.add(in.append(')').toString());
+        }
+
+        return getOr(terms, 0, terms.size());
+    }
+
+    private static String getValue(long value, List<String> parameters) {
+        if (parameters == null) return String.valueOf(value);
+        parameters.add(String.valueOf(value));
+        return "?";
+    }
+
+    /**
+     * Sqlite parses "a OR b OR c" as nested expressions. More than SQLITE_MAX_EXPR_DEPTH (1000)
+     * terms in one "OR" would fail. So terms are combined in groups of at most {@link #MAX_OR_TERMS}
+     * and the depth grows only with log(number of terms).
+     *
+     * @return terms[from] OR ... OR terms[to - 1]
+     */
+    private static String getOr(List<String> terms, int from, int to) {
+        int count = to - from;
+        if (count == 1) return terms.get(from);
+
+        int groupSize = (count + MAX_OR_TERMS - 1) / MAX_OR_TERMS;
+        StringBuilder result = new StringBuilder().append('(');
+        for (int first = from; first < to; first += groupSize) {
+            if (first > from) result.append(" OR ");
+            result.append(getOr(terms, first, Math.min(first + groupSize, to)));
+        }
+        return result.append(')').toString();
+    }
+}
@@ -20,8 +20,13 @@
 package de.k3b.io;
 
 import java.io.File;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 /**
  * Class to represent a Directory-Structure where a Directory can have several SubDirectories.
@@ -43,7 +48,73 @@ public class Directory implements IDirectory {
     private String relPath = null;
     private Boolean apmDir = null;
     private Directory parent = null;
-    private List<IDirectory> children = null;
+    private ChildList children = null;
+
+    /**
+     * case insensitive index of children where key is {@link StringUtils#toIgnoreCaseKey(String)} of relPath.
+     * null if not build yet or invalidated by {@link #setChildren(List)} or by renaming a child.
+     */
+    private Map<String, IDirectory> childIndex = null;
+
+    /** {@link ChildList#getVersion()} when {@link #childIndex} was build to detect modifications through {@link #getChildren()} */
+    private int childIndexVersion = 0;
+
+    /** List of children that counts every modification (add, remove, set, sort, sub list) */
+    private static class ChildList extends AbstractList<IDirectory> implements RandomAccess {
+        private final ArrayList<IDirectory> items;
+        private int version = 0;
+
+        ChildList() {
+            items = new ArrayList<>();
+        }
+
+        ChildList(Collection<? extends IDirectory> items) {
+            this.items = new ArrayList<>(items);
+        }
+
+        /** changes with every modification */
+        int getVersion() {
+            return version;
+        }
+
+        @Override
+        public IDirectory get(int index) {
+            return items.get(index);
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+        @Override
+        public IDirectory set(int index, IDirectory child) {
+            version++;
+            return items.set(index, child);
+        }
+
+        @Override
+        public void add(int index, IDirectory child) {
+            items.add(index, child);
+            modCount++;
+            version++;
+        }
+
+        @Override
+        public IDirectory remove(int index) {
+            IDirectory result = items.remove(index);
+            modCount++;
+            version++;
+            return result;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            items.subList(fromIndex, toIndex).clear();
+            modCount++;
+            version++;
+        }
+    }
 
     private int nonDirItemCount = 0;
     private int nonDirSubItemCount = 0;
@@ -68,7 +139,7 @@ public class Directory implements IDirectory {
 
         if (children != null) {
             for (IDirectory child : children) {
-                addChild(child);
+                result.addChild(child);
             }
         }
         return result;
@@ -82,14 +153,76 @@ public class Directory implements IDirectory {
             }
             children = null;
         }
+        childIndex = null;
         parent = null;
     }
 
     protected void addChild(IDirectory child) {
         if (this.children == null)
-            this.children = new ArrayList<>();
+            this.children = new ChildList();
+        boolean indexValid = (childIndex != null) && (childIndexVersion == this.children.getVersion());
         this.children.add(child);
 
+        if (indexValid) {
+            addToChildIndex(childIndex, child);
+            childIndexVersion = this.children.getVersion();
+        } else {
+            childIndex = null;
+        }
+    }
+
+    /**
+     * @return first child where relPath equals ignoring case or null if not found.
+     * Uses a hash index instead of comparing with every child.
+     */
+    public IDirectory findChildIgnoreCase(String relPath) {
+        if ((relPath == null) || (children == null)) return null;
+
+        String key = StringUtils.toIgnoreCaseKey(relPath);
+        IDirectory result = getChildIndex().get(key);
+        if ((result != null) && !key.equals(StringUtils.toIgnoreCaseKey(result.getRelPath()))) {
+            // child was renamed without telling its parent
+            childIndex = null;
+            result = getChildIndex().get(key);
+        }
+        return result;
+    }
+
+    /** @return first child where relPath equals (case sensitive) or null if not found. */
+    protected IDirectory findChildByRelPath(String relPath) {
+        IDirectory result = findChildIgnoreCase(relPath);
+        if ((result != null) && !relPath.equals(result.getRelPath())) {
+            // index contains a sibling that only differs in case. Rare so it is ok to scan.
+            result = null;
+            for (IDirectory child : children) {
+                if (relPath.equals(child.getRelPath())) return child;
+            }
+        }
+        return result;
+    }
+
+    private Map<String, IDirectory> getChildIndex() {
+        if ((childIndex == null) || (childIndexVersion != children.getVersion())) {
+            childIndex = new HashMap<>(Math.max(16, children.size() * 2));
+            for (IDirectory child : children) {
+                addToChildIndex(childIndex, child);
+            }
+            childIndexVersion = children.getVersion();
+        }
+        return childIndex;
+    }
+
+    private static void addToChildIndex(Map<String, IDirectory> index, IDirectory child) {
+        String key = StringUtils.toIgnoreCaseKey(child.getRelPath());
+        // first child in list order wins
+        if ((key != null) && !index.containsKey(key)) {
+            index.put(key, child);
+        }
+    }
+
+    /** called after a child has been renamed */
+    protected void onChildRenamed(IDirectory child) {
+        childIndex = null;
     }
 
     /*------------------- simple properties ------------------------*/
@@ -100,7 +233,11 @@ public class Directory implements IDirectory {
     }
 
     public void setRelPath(String relPath) {
+        boolean changed = !StringUtils.equals(this.relPath, relPath);
         this.relPath = relPath;
+        if (changed && (parent != null)) {
+            parent.onChildRenamed(this);
+        }
     }
 
     private boolean isApmDir() {
@@ -124,8 +261,12 @@ public class Directory implements IDirectory {
         return children;
     }
 
+    /** children that are not from an other {@link Directory} are copied */
     public void setChildren(List<IDirectory> children) {
-        this.children = children;
+        this.children = ((children == null) || (children instanceof ChildList))
+                ? (ChildList) children
+                : new ChildList(children);
+        this.childIndex = null;
     }
 
     /*------------------- formatting ------------------------*/
@@ -257,7 +398,26 @@ public class Directory implements IDirectory {
         int pathLen = path.length();
         if (pathLen == 0) return parent;
 
-        if (parent.getChildren() != null) {
+        if (parent instanceof Directory) {
+            if (parent.getChildren() != null) {
+                // relPath of a child may contain PATH_DELIMITER after DirectoryBuilder.compress
+                // so every path prefix that ends before a delimiter is a candidate.
+                int childLen = path.indexOf(PATH_DELIMITER);
+                while (true) {
+                    if (childLen < 0) childLen = pathLen;
+
+                    IDirectory child = ((Directory) parent).findChildByRelPath(path.substring(0, childLen));
+                    if (child != null) {
+                        if (childLen == pathLen) return child; // found last path element
+                        path.delete(0,childLen);
+                        return find(child, path);
+                    }
+
+                    if (childLen == pathLen) break;
+                    childLen = path.indexOf(PATH_DELIMITER, childLen + 1);
+                }
+            }
+        } else if (parent.getChildren() != null) {
             for(IDirectory child : parent.getChildren()) {
                 if (path.indexOf(child.getRelPath()) == 0) {
                     int childLen = child.getRelPath().length();
@@ -301,6 +461,6 @@ public class Directory implements IDirectory {
     public void rename(String oldFolderName, String newFolderName) {
         String relPath = this.getRelPath();
         relPath = relPath.replace(oldFolderName, newFolderName);
-        this.relPath = relPath;
+        this.setRelPath(relPath);
     }
 }
@@ -105,9 +105,9 @@ public class DirectoryFormatter {
         result.append("/ ").append(getInt(latitude, 10)).append(",").append(getInt(longitude, 10)).append("/");
         result.append((int) latitude).append(",").append((int) longitude).append("/");
 
-        String lat = latLonFormatter6.format(latitude);
+        String lat = formatLatLon6(latitude);
         int latPos = lat.indexOf(".") + 1;
-        String lon = latLonFormatter6.format(longitude);
+        String lon = formatLatLon6(longitude);
         int lonPos = lon.indexOf(".") + 1;
 
         for (int i = 1; i <= 2; i++) {
@@ -135,7 +135,14 @@ public class DirectoryFormatter {
 
     public static String formatLatLon(double latOrLon) {
         if (is0(latOrLon)) return "0";
-        return latLonFormatter6.format(latOrLon);
+        return formatLatLon6(latOrLon);
+    }
+
+    private static String formatLatLon6(double latOrLon) {
+        // DecimalFormat is not thread safe
+        synchronized (latLonFormatter6) {
+            return latLonFormatter6.format(latOrLon);
+        }
     }
 
     protected static boolean is0(double latOrLon) {
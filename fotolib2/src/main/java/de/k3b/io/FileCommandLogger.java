@@ -22,11 +22,21 @@ package de.k3b.io;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.Date;
 
+import de.k3b.LibGlobal;
+
 /**
+ * Writes the log of file operations.
+ *
+ * Every line is written to disk immediately unless {@link #beginGroupCommit()} was called:
+ * Then lines are buffered and written after {@link LibGlobal#logGroupCommitMaxLines} lines,
+ * after {@link LibGlobal#logGroupCommitMaxMillis}, on {@link #sync()} and on {@link #closeLogFile()}.
+ * There is no timer: {@link LibGlobal#logGroupCommitMaxMillis} is checked when the next line is logged.
+ * Lines logged last are written by {@link #sync()} or {@link #closeLogFile()}.
+ *
  * Created by k3b on 09.10.2017.
  */
 
@@ -34,6 +44,14 @@ public class FileCommandLogger implements IFileCommandLogger {
     protected String mLogFilePath;
     protected PrintWriter mLogFile;
 
+    /** not null if the log file is open. Used by {@link #sync()} */
+    private FileOutputStream mLogStream = null;
+
+    /** true: buffered logging until {@link #closeLogFile()} */
+    private boolean mGroupCommit = false;
+    private int mPendingLines = 0;
+    private long mFirstPendingTime = 0;
+
     public void setLogFilePath(String logFilePath) {
         closeLogFile();
         mLogFilePath = logFilePath;
@@ -42,14 +60,15 @@ public class FileCommandLogger implements IFileCommandLogger {
     public void openLogfile() {
         closeLogFile();
         if (mLogFilePath != null) {
-            OutputStream stream = null;
+            FileOutputStream stream = null;
             try {
                 File logFile = new File(mLogFilePath);
                 if (logFile.exists()) {
                     // open existing in append mode
                     long ageInHours = (new Date().getTime() - logFile.lastModified()) / (1000 * 60 * 60);
                     stream = new FileOutputStream(logFile, true);
-                    mLogFile = new PrintWriter(stream, true);
+                    mLogFile = new PrintWriter(stream);
+                    mLogStream = stream;
 
                     if (ageInHours > 15) {
                         log();
@@ -57,7 +76,9 @@ public class FileCommandLogger implements IFileCommandLogger {
                     }
                 } else {
                     // create new
-                    mLogFile = new PrintWriter(logFile, "UTF-8");
+                    stream = new FileOutputStream(logFile);
+                    mLogFile = new PrintWriter(new OutputStreamWriter(stream, "UTF-8"));
+                    mLogStream = stream;
                     log("rem " , new Date());
                 }
             } catch (Throwable e) {
@@ -77,11 +98,41 @@ public class FileCommandLogger implements IFileCommandLogger {
         closeLogFile();
     }
 
+    /** writes all buffered lines and closes the log */
     public void closeLogFile() {
         if (mLogFile != null) {
+            flush();
             mLogFile.close();
             mLogFile = null;
         }
+        mLogStream = null;
+        mGroupCommit = false;
+        mPendingLines = 0;
+    }
+
+    /**
+     * Buffer log lines until {@link #closeLogFile()} instead of writing every line to disk.
+     * Used by bulk operations that log several lines per file.
+     */
+    public void beginGroupCommit() {
+        mGroupCommit = (mLogFile != null) && (LibGlobal.logGroupCommitMaxLines > 1);
+    }
+
+    /** write all buffered lines and make sure that they reached the disk */
+    public void sync() {
+        if (mLogFile != null) {
+            flush();
+            try {
+                mLogStream.getFD().sync();
+            } catch (IOException e) {
+                onException(e, "sync", mLogFilePath);
+            }
+        }
+    }
+
+    private void flush() {
+        mLogFile.flush();
+        mPendingLines = 0;
     }
 
     /** called for every cath(Exception...) */
@@ -98,7 +149,18 @@ public class FileCommandLogger implements IFileCommandLogger {
                 if (message != null) mLogFile.print(message);
             }
             mLogFile.println();
-            mLogFile.flush();
+
+            if (!mGroupCommit) {
+                flush();
+            } else {
+                long now = System.currentTimeMillis();
+                if (mPendingLines == 0) mFirstPendingTime = now;
+                mPendingLines++;
+                if ((mPendingLines >= LibGlobal.logGroupCommitMaxLines)
+                        || (now - mFirstPendingTime >= LibGlobal.logGroupCommitMaxMillis)) {
+                    flush();
+                }
+            }
         }
         return this;
     }
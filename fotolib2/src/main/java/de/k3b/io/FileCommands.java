@@ -92,6 +92,7 @@ public class FileCommands extends FileProcessor implements  Cloneable, IProgessL
                 int maxCount = fotos.size();
 
                 openLogfile();
+                beginGroupCommit();
                 onPreProcess(dbgContext, OP_DELETE, fotos, fileNames, null);
                 for (int i = 0; i < maxCount; i++) {
                     File file = fotos.getFile(i);
@@ -106,6 +107,7 @@ public class FileCommands extends FileProcessor implements  Cloneable, IProgessL
                         addTransactionLog(fotos.getId(i), file.getAbsolutePath(), now, MediaTransactionLogEntryType.DELETE, null);
                     }
                 }
+                sync();
                 onPostProcess(dbgContext, OP_DELETE, fotos, deleteCount, fileNames.length, fileNames, null);
                 if (LibGlobal.debugEnabledJpg || LibGlobal.debugEnabledJpgMetaIo) {
                     long dbgLoadEndTimestamp = new Date().getTime();
@@ -268,6 +270,7 @@ public class FileCommands extends FileProcessor implements  Cloneable, IProgessL
                 int maxCount = fotos.size();
 
                 openLogfile();
+                beginGroupCommit();
                 // onPreProcess(what, sourceFiles, destFiles, opCode);
                 onPreProcess(what, opCode, fotos, null, null);
                 int pos = 0;
@@ -276,6 +279,13 @@ public class FileCommands extends FileProcessor implements  Cloneable, IProgessL
                 TransactionLoggerBase logger = (exifChanges == null) ? null : createTransactionLogger(now);
                 boolean sameFile;
 
+                if ((exifChanges != null) && (LibGlobal.maxBulkUpdateThreads > 1)
+                        && isSameFiles(sourceFiles, destFiles)) {
+                    // exif changes only: process files in parallel
+                    itemCount = applyExifChangesInParallel(move, what, exifChanges, fotos, logger);
+                    pos = fileCount;
+                }
+
                 while (pos < fileCount) {
                     File sourceFile = FileUtils.tryGetCanonicalFile(sourceFiles[pos]);
                     File destFile = FileUtils.tryGetCanonicalFile(destFiles[pos]);
@@ -346,6 +356,7 @@ public class FileCommands extends FileProcessor implements  Cloneable, IProgessL
                     }
                     pos++;
                 } // foreach selected file
+                sync();
                 int modifyCount = mModifiedDestFiles.size();
 
                 String[] modifiedSourceFiles = ((mModifiedSrcFiles != null) && (mModifiedSrcFiles.size() > 0)) ? mModifiedSrcFiles.toArray(new String[modifyCount]) : null;
@@ -372,6 +383,37 @@ public class FileCommands extends FileProcessor implements  Cloneable, IProgessL
         return itemCount;
     }
 
+    private static boolean isSameFiles(File[] sourceFiles, File[] destFiles) {
+        if (sourceFiles.length != destFiles.length) return false;
+        for (int i = 0; i < sourceFiles.length; i++) {
+            if ((sourceFiles[i] == null) || !sourceFiles[i].equals(destFiles[i])) return false;
+        }
+        return true;
+    }
+
+    /** exif changes without copy/move using {@link LibGlobal#maxBulkUpdateThreads} threads */
+    private int applyExifChangesInParallel(boolean move, String what, PhotoPropertiesDiffCopy exifChanges,
+                                           SelectedFiles fotos, TransactionLoggerBase logger) {
+        PhotoPropertiesUpdateHandler[] exifProcessors = createWorkflow(logger, what)
+                .applyChanges(fotos, exifChanges, LibGlobal.maxBulkUpdateThreads, this);
+
+        int itemCount = 0;
+        for (int i = 0; i < exifProcessors.length; i++) {
+            PhotoPropertiesUpdateHandler exifProcessor = exifProcessors[i];
+            if (exifProcessor != null) {
+                itemCount++;
+                File sourceFile = FileUtils.tryGetCanonicalFile(fotos.getFile(i));
+
+                // destFile might have renamed it-s extension for private images
+                String modifiedOutPath = exifProcessor.getAbsoluteJpgOutPath();
+                File destFile = (modifiedOutPath != null) ? new File(modifiedOutPath) : sourceFile;
+
+                addProcessedFiles(move, destFile, sourceFile);
+            }
+        }
+        return itemCount;
+    }
+
     protected TransactionLoggerBase createTransactionLogger(long now) {
         return new TransactionLoggerBase(this, now);
     }
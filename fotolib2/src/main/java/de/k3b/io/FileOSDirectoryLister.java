@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link IOSDirectoryLister} based on java.io.File that works on every platform.
+ *
+ * Needs several file system calls per entry: isHidden, isSymlinkDir (canonical path) and isDirectory.
+ *
+ * Created by k3b on 25.03.2020.
+ */
+public class FileOSDirectoryLister implements IOSDirectoryLister {
+    @Override
+    public List<OSDirectoryEntry> listVisible(File directory) {
+        File[] files = (directory == null) ? null : directory.listFiles();
+        if (files == null) return null;
+
+        List<OSDirectoryEntry> result = new ArrayList<OSDirectoryEntry>(files.length);
+        for (File file : files) {
+            if ((file != null)
+                    && !file.isHidden()
+                    && !file.getName().startsWith(".")
+                    && !FileUtils.isSymlinkDir(file,true)
+                    // && file.canWrite() // bugfix: must be visible because writeprotected parentdir may contain writeenabled subdirs
+                    ) {
+                result.add(new OSDirectoryEntry(file, file.isDirectory()));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+ 
+package de.k3b.io;
+
+/**
+ * Multi resolution grid for latitude/longitude used to index and group geo points.
+ *
+ * A point has an integer latitude cell and longitude cell at the finest resolution {@link #BASE_ZOOM}.
+ * The cell at map zoom level z is the base cell shifted right by (BASE_ZOOM - z) bits,
+ * so every zoom level can group on the same two indexed integer columns.
+ *
+ * At zoom level z a cell is 1 / (GROUPFACTOR_FOR_Z0 * 2^z) degrees wide (40 degrees at z=0).
+ *
+ * Created by k3b on 01.04.2020.
+ */
+public class GeoGrid {
+    /** number of cells per degree at zoom level 0. The bigger the smaller the area */
+    public static final double GROUPFACTOR_FOR_Z0 = 0.025;
+
+    /** finest resolution: about 4 meters */
+    public static final int BASE_ZOOM = 20;
+
+    /** number of base cells per degree */
+    public static final double BASE_FACTOR = GROUPFACTOR_FOR_Z0 * (1 << BASE_ZOOM);
+
+    // offsets so that cells are never negative
+    private static final int LAT_OFFSET = 90;
+    private static final int LON_OFFSET = 180;
+
+    private GeoGrid() {
+    }
+
+    public static long getLatitudeCell(double latitude) {
+        return (long) Math.floor((latitude + LAT_OFFSET) * BASE_FACTOR);
+    }
+
+    public static long getLongitudeCell(double longitude) {
+        return (long) Math.floor((longitude + LON_OFFSET) * BASE_FACTOR);
+    }
+
+    /** @return south border of base cell */
+    public static double getLatitude(long latitudeCell) {
+        return latitudeCell / BASE_FACTOR - LAT_OFFSET;
+    }
+
+    /** @return west border of base cell */
+    public static double getLongitude(long longitudeCell) {
+        return longitudeCell / BASE_FACTOR - LON_OFFSET;
+    }
+
+    /**
+     * @param groupingFactor number of groups per degree
+     *                       (GROUPFACTOR_FOR_Z0 * 2^zoom. Other values are rounded to the next zoom)
+     * @return number of bits a base cell must be shifted right to get the cell for groupingFactor
+     */
+    public static int getShift(double groupingFactor) {
+        if (groupingFactor <= 0) return BASE_ZOOM;
+        long zoom = Math.round(Math.log(groupingFactor / GROUPFACTOR_FOR_Z0) / Math.log(2));
+        return (int) Math.max(0, Math.min(62, BASE_ZOOM - zoom));
+    }
+
+    /** @return sql that calculates the latitude base cell from latitudeColumn */
+    public static String getSqlLatitudeCell(String latitudeColumn) {
+        return getSqlCell(latitudeColumn, LAT_OFFSET);
+    }
+
+    /** @return sql that calculates the longitude base cell from longitudeColumn */
+    public static String getSqlLongitudeCell(String longitudeColumn) {
+        return getSqlCell(longitudeColumn, LON_OFFSET);
+    }
+
+    private static String getSqlCell(String column, int offset) {
+        // values are never negative so cast truncation is the same as floor
+        return "CAST(((" + column + " + " + offset + ") * " + BASE_FACTOR + ") AS INTEGER)";
+    }
+
+    /** @return sql for the cell of cellColumn at resolution shift (see {@link #getShift(double)}) */
+    public static String getSqlGroupCell(String cellColumn, int shift) {
+        return "(" + cellColumn + " >> " + shift + ")";
+    }
+
+    /** @return sql for the latitude of the center of the latitude cell at resolution shift */
+    public static String getSqlLatitudeCenter(String latitudeCellColumn, int shift) {
+        return getSqlCenter(latitudeCellColumn, shift, LAT_OFFSET);
+    }
+
+    /** @return sql for the longitude of the center of the longitude cell at resolution shift */
+    public static String getSqlLongitudeCenter(String longitudeCellColumn, int shift) {
+        return getSqlCenter(longitudeCellColumn, shift, LON_OFFSET);
+    }
+
+    private static String getSqlCenter(String cellColumn, int shift, int offset) {
+        return "(((" + getSqlGroupCell(cellColumn, shift) + " + 0.5) / " + (BASE_FACTOR / (1L << shift))
+                + ") - " + offset + ")";
+    }
+}
@@ -124,7 +124,9 @@ public class GeoUtil {
             remaining *= 60;
         }
 
-        result.append(doubleFormatter.format(remaining));
+        synchronized (doubleFormatter) {
+            result.append(doubleFormatter.format(remaining));
+        }
         if (sign != 0) result.append(sign);
 
         return result.toString();
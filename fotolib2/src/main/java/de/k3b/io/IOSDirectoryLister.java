@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Strategy used by {@link OSDirectory} to enumerate the entries of a directory.
+ *
+ * Created by k3b on 25.03.2020.
+ */
+public interface IOSDirectoryLister {
+    /**
+     * @return all entries of directory that are not hidden, do not start with "."
+     * and are no symlinks, or null if directory cannot be read.
+     */
+    List<OSDirectoryEntry> listVisible(File directory);
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded pool of recently memory mapped file regions.
+ *
+ * {@link #getSlice(File, int, int)} returns a read-only view into the mapped
+ * region without copying the bytes. Asking again for the same file region
+ * (i.e. while scrolling back in the gallery) reuses the existing mapping.
+ *
+ * The mappings are released by the garbage collector after they have been
+ * removed from the pool.
+ *
+ * Created by k3b on 18.03.2020.
+ */
+public class MappedFilePool {
+    private final int mMaxEntries;
+
+    /** key is absolute path. Iteration order is least recently used first. */
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    private static class Entry {
+        private final long fileLength;
+        private final long lastModified;
+        private final int offset;
+        private final int length;
+        private final ByteBuffer slice;
+
+        Entry(long fileLength, long lastModified, int offset, int length, ByteBuffer slice) {
+            this.fileLength = fileLength;
+            this.lastModified = lastModified;
+            this.offset = offset;
+            this.length = length;
+            this.slice = slice;
+        }
+
+        boolean isValid(long fileLength, long lastModified, int offset, int length) {
+            return (this.fileLength == fileLength) && (this.lastModified == lastModified)
+                    && (this.offset == offset) && (this.length == length);
+        }
+    }
+
+    public MappedFilePool(int maxEntries) {
+        mMaxEntries = maxEntries;
+        mEntries = new LinkedHashMap<String, Entry>(maxEntries + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return read-only view of length bytes starting at offset inside file.
+     * The mapping is (re)created if file has changed since it was mapped.
+     * @throws IOException if file cannot be read or is smaller than offset + length.
+     */
+    public ByteBuffer getSlice(File file, int offset, int length) throws IOException {
+        String key = file.getAbsolutePath();
+        long fileLength = file.length();
+        long lastModified = file.lastModified();
+
+        synchronized (mEntries) {
+            Entry entry = mEntries.get(key);
+            if ((entry != null) && entry.isValid(fileLength, lastModified, offset, length)) {
+                return entry.slice.duplicate();
+            }
+        }
+
+        if (offset + length > fileLength) {
+            throw new IOException("Cannot map " + file + " [" + offset + "+" + length
+                    + "] beyond end of file " + fileLength);
+        }
+
+        ByteBuffer slice = map(file, offset, length);
+        synchronized (mEntries) {
+            mEntries.put(key, new Entry(fileLength, lastModified, offset, length, slice));
+        }
+        return slice.duplicate();
+    }
+
+    private static ByteBuffer map(File file, int offset, int length) throws IOException {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).asReadOnlyBuffer();
+        } finally {
+            FileUtils.close(in, file);
+        }
+    }
+
+    /** removes file from pool i.e. after file has been modified or deleted */
+    public void remove(File file) {
+        synchronized (mEntries) {
+            mEntries.remove(file.getAbsolutePath());
+        }
+    }
+
+    public void clear() {
+        synchronized (mEntries) {
+            mEntries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (mEntries) {
+            return mEntries.size();
+        }
+    }
+}
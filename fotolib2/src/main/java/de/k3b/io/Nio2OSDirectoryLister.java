@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import de.k3b.LibGlobal;
+
+/**
+ * {@link IOSDirectoryLister} based on java.nio.file that gets type, hidden and symlink state
+ * of an entry with one stat call without following links.
+ *
+ * java.nio.file is not available on android before api 26 (8.0).
+ * Only created by {@link OSDirectory#getDirectoryLister()} if java.nio.file exists.
+ *
+ * Created by k3b on 25.03.2020.
+ */
+public class Nio2OSDirectoryLister implements IOSDirectoryLister {
+    private static final Logger logger = LoggerFactory.getLogger(LibGlobal.LOG_TAG);
+
+    /** true: file system has a hidden attribute (windows). Else hidden means name starts with "." */
+    private final boolean mHasDosAttributes;
+
+    public Nio2OSDirectoryLister() {
+        // linux also supports "dos" view via extended attributes which would cost extra syscalls
+        Set<String> views = FileSystems.getDefault().supportedFileAttributeViews();
+        mHasDosAttributes = views.contains("dos") && !views.contains("posix");
+    }
+
+    @Override
+    public List<OSDirectoryEntry> listVisible(File directory) {
+        if (directory == null) return null;
+
+        List<OSDirectoryEntry> result = new ArrayList<OSDirectoryEntry>();
+        DirectoryStream<Path> entries = null;
+        try {
+            entries = Files.newDirectoryStream(directory.toPath());
+            for (Path entry : entries) {
+                Path name = entry.getFileName();
+                if ((name == null) || name.toString().startsWith(".")) continue;
+
+                BasicFileAttributes attributes = readAttributes(entry);
+                if ((attributes != null)
+                        && (LibGlobal.ignoreSymLinks || !attributes.isSymbolicLink())
+                        && !(mHasDosAttributes && ((DosFileAttributes) attributes).isHidden())) {
+                    result.add(new OSDirectoryEntry(entry.toFile(), attributes.isDirectory()));
+                }
+            }
+        } catch (IOException ex) {
+            return onError(directory, ex);
+        } catch (DirectoryIteratorException ex) {
+            return onError(directory, ex);
+        } catch (SecurityException ex) {
+            return onError(directory, ex);
+        } finally {
+            FileUtils.close(entries, directory);
+        }
+        return result;
+    }
+
+    /** @return null if entry was deleted meanwhile or cannot be read */
+    private BasicFileAttributes readAttributes(Path entry) {
+        try {
+            if (mHasDosAttributes) {
+                return Files.readAttributes(entry, DosFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            }
+            return Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private List<OSDirectoryEntry> onError(File directory, Exception ex) {
+        if (LibGlobal.debugEnabled) {
+            logger.debug("Nio2OSDirectoryLister.listVisible('" + directory + "') failed: " + ex.getMessage());
+        }
+        return null;
+    }
+}
@@ -52,9 +52,9 @@ public class OSDirOrVirtualAlbumFile extends OSDirectory {
     }
 
     @Override
-    protected boolean isDirectory(File candidate) {
+    protected boolean isDirectory(OSDirectoryEntry candidate) {
         if (super.isDirectory(candidate)) return true;
-        return isAlbum(candidate);
+        return isAlbum(candidate.getFile());
     }
 
     /** factory method to be overwrittern by derived classes, if tree should consist of derived classes. */
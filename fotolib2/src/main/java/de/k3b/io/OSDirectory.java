@@ -43,6 +43,9 @@ public class OSDirectory implements IDirectory {
 
     private int mDirFlags = DIR_FLAG_NONE;
 
+    /** how {@link #getChildren()} enumerates the os directory. null: not initialized yet */
+    private static IOSDirectoryLister sDirectoryLister = null;
+
     // protected constructor to allow unittesting with fake children
     public OSDirectory(File current, OSDirectory parent, List<IDirectory> childen) {
         setCurrent(current);
@@ -126,20 +129,11 @@ public class OSDirectory implements IDirectory {
     public List<IDirectory> getChildren() {
         if ((mCurrent != null) && (mChilden == null)) {
             mChilden = new ArrayList<IDirectory>();
-            File[] files = mCurrent.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if ((file != null)
-                            && !file.isHidden()
-                            && !file.getName().startsWith(".")
-                            && !FileUtils.isSymlinkDir(file,true)
-                            // && file.canWrite() // bugfix: must be visible because writeprotected parentdir may contain writeenabled subdirs
-                            ) {
-                        if (isDirectory(file)) {
-                            mChilden.add(createOsDirectory(file, this, null));
-                        }
-//                    } else if (LibGlobal.debugEnabled) {
-//                        logger.debug(FileUtils.getDebugString("OSDirectory.getChildren() rejected ", file));
+            List<OSDirectoryEntry> entries = getDirectoryLister().listVisible(mCurrent);
+            if (entries != null) {
+                for (OSDirectoryEntry entry : entries) {
+                    if (isDirectory(entry)) {
+                        mChilden.add(createOsDirectory(entry.getFile(), this, null));
                     }
                 }
             }
@@ -147,8 +141,33 @@ public class OSDirectory implements IDirectory {
         return mChilden;
     }
 
-    protected boolean isDirectory(File file) {
-        return file.isDirectory();
+    protected boolean isDirectory(OSDirectoryEntry entry) {
+        return entry.isDirectory();
+    }
+
+    /** @return java.nio.file based lister if available on this platform else java.io.File based lister */
+    public static IOSDirectoryLister getDirectoryLister() {
+        if (sDirectoryLister == null) {
+            sDirectoryLister = isNio2Available()
+                    ? new Nio2OSDirectoryLister()
+                    : new FileOSDirectoryLister();
+        }
+        return sDirectoryLister;
+    }
+
+    /** Nio2OSDirectoryLister must not be loaded if java.nio.file does not exist (android before 8.0) */
+    private static boolean isNio2Available() {
+        try {
+            Class.forName("java.nio.file.Files");
+            return true;
+        } catch (Throwable ignore) {
+            return false;
+        }
+    }
+
+    /** null: use default */
+    public static void setDirectoryLister(IOSDirectoryLister directoryLister) {
+        sDirectoryLister = directoryLister;
     }
 
     // package to allow unit testing
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import java.io.File;
+
+/**
+ * One entry of a directory as returned by {@link IOSDirectoryLister}.
+ *
+ * Created by k3b on 25.03.2020.
+ */
+public class OSDirectoryEntry {
+    private final File mFile;
+    private final boolean mDirectory;
+
+    public OSDirectoryEntry(File file, boolean directory) {
+        mFile = file;
+        mDirectory = directory;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public boolean isDirectory() {
+        return mDirectory;
+    }
+
+    @Override
+    public String toString() {
+        return mFile + (mDirectory ? "/" : "");
+    }
+}
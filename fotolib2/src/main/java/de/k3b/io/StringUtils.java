@@ -126,6 +126,19 @@ public class StringUtils {
         return result.toString();
     }
 
+    /**
+     * Key where two strings get the same key if {@link String#equalsIgnoreCase(String)}.
+     * Uses the same per char mapping as equalsIgnoreCase which is locale independent.
+     */
+    public static String toIgnoreCaseKey(String str) {
+        if (str == null) return null;
+        char[] chars = str.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
     public static StringBuilder createDebugMessage(boolean enabled, final Object... parameters) {
         if (enabled) return appendMessage(null, parameters);
         return null;
@@ -0,0 +1,794 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io.collections;
+
+import java.io.ByteArrayOutputStream;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compressed sorted set of primitive long ids (i.e. media ids) that implements the {@link java.util.Set} contract.
+ *
+ * Ids are split into a high part (id >>> 16) and a 16 bit low part. All ids with the same high part
+ * are stored in one container (similar to "roaring bitmaps"):
+ * <ul>
+ *     <li>array container: sorted char[] if there are up to {@link #ARRAY_MAX} ids.</li>
+ *     <li>bitmap container: 65536 bits (8 kbytes) if there are more ids.</li>
+ *     <li>run container: sorted ranges (first, last). Created by {@link #runOptimize()}
+ *     if this is smaller, i.e. after "select all" on consecutive ids.</li>
+ * </ul>
+ * Negative ids are sorted after all positive ids (unsigned order).
+ *
+ * Unlike {@link java.util.TreeSet} there is no object per id: 100000 consecutive ids need
+ * a few bytes instead of several mega bytes.
+ *
+ * {@link #addAll(Collection)}, {@link #removeAll(Collection)} and {@link #retainAll(Collection)}
+ * work container by container if the parameter is also a LongIdSet.
+ *
+ * Created by k3b on 02.04.2020.
+ */
+public class LongIdSet extends AbstractSet<Long> {
+    /** containers with more ids are stored as bitmap */
+    static final int ARRAY_MAX = 4096;
+
+    private static final int VERSION = 1;
+
+    private long[] mKeys = new long[4];
+    private Container[] mContainers = new Container[4];
+    private int mContainerCount = 0;
+    private int mSize = 0;
+
+    public LongIdSet() {
+    }
+
+    public LongIdSet(Collection<? extends Long> ids) {
+        addAll(ids);
+    }
+
+    // ----- primitive api
+
+    public boolean contains(long id) {
+        int index = indexOf(high(id));
+        return (index >= 0) && mContainers[index].contains(low(id));
+    }
+
+    public boolean add(long id) {
+        long high = high(id);
+        int index = indexOf(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new ArrayContainer());
+        }
+        Container container = mContainers[index];
+        int oldCount = container.cardinality();
+        container = container.add(low(id));
+        mContainers[index] = container;
+        if (container.cardinality() == oldCount) return false;
+        mSize++;
+        return true;
+    }
+
+    public boolean remove(long id) {
+        int index = indexOf(high(id));
+        if (index < 0) return false;
+        Container container = mContainers[index];
+        int oldCount = container.cardinality();
+        container = container.remove(low(id));
+        if (container.cardinality() == oldCount) return false;
+        mSize--;
+        setOrRemoveContainer(index, container);
+        return true;
+    }
+
+    /** @throws NoSuchElementException if empty (same as TreeSet) */
+    public long first() {
+        if (mContainerCount == 0) throw new NoSuchElementException();
+        return toId(mKeys[0], mContainers[0].next(0));
+    }
+
+    /** @throws NoSuchElementException if empty (same as TreeSet) */
+    public long last() {
+        if (mContainerCount == 0) throw new NoSuchElementException();
+        int index = mContainerCount - 1;
+        return toId(mKeys[index], mContainers[index].last());
+    }
+
+    public long[] toLongArray() {
+        long[] result = new long[mSize];
+        int pos = 0;
+        for (int i = 0; i < mContainerCount; i++) {
+            long base = mKeys[i] << 16;
+            Container container = mContainers[i];
+            for (int low = container.next(0); low >= 0; low = container.next(low + 1)) {
+                result[pos++] = base | low;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts containers to run containers where this needs less memory.
+     *
+     * @return this
+     */
+    public LongIdSet runOptimize() {
+        for (int i = 0; i < mContainerCount; i++) {
+            mContainers[i] = mContainers[i].runOptimize();
+        }
+        return this;
+    }
+
+    // ----- Set<Long> api
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public boolean contains(Object id) {
+        return (id instanceof Long) && contains(((Long) id).longValue());
+    }
+
+    @Override
+    public boolean add(Long id) {
+        return add(id.longValue());
+    }
+
+    @Override
+    public boolean remove(Object id) {
+        return (id instanceof Long) && remove(((Long) id).longValue());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mContainers, 0, mContainerCount, null);
+        mContainerCount = 0;
+        mSize = 0;
+    }
+
+    /** union. Fast if ids is a LongIdSet */
+    @Override
+    public boolean addAll(Collection<? extends Long> ids) {
+        if (!(ids instanceof LongIdSet)) return super.addAll(ids);
+
+        LongIdSet other = (LongIdSet) ids;
+        int oldSize = mSize;
+        for (int i = 0; i < other.mContainerCount; i++) {
+            long high = other.mKeys[i];
+            int index = indexOf(high);
+            if (index < 0) {
+                Container copy = other.mContainers[i].copy();
+                insertContainer(-index - 1, high, copy);
+                mSize += copy.cardinality();
+            } else {
+                Container container = mContainers[index];
+                mSize -= container.cardinality();
+                container = container.or(other.mContainers[i]);
+                mSize += container.cardinality();
+                mContainers[index] = container;
+            }
+        }
+        return mSize != oldSize;
+    }
+
+    /** difference. Fast if ids is a LongIdSet */
+    @Override
+    public boolean removeAll(Collection<?> ids) {
+        if (!(ids instanceof LongIdSet)) {
+            boolean modified = false;
+            for (Object id : ids) {
+                modified |= remove(id);
+            }
+            return modified;
+        }
+
+        LongIdSet other = (LongIdSet) ids;
+        int oldSize = mSize;
+        for (int i = mContainerCount - 1; i >= 0; i--) {
+            int otherIndex = other.indexOf(mKeys[i]);
+            if (otherIndex >= 0) {
+                mSize -= mContainers[i].cardinality();
+                Container container = mContainers[i].andNot(other.mContainers[otherIndex]);
+                mSize += container.cardinality();
+                setOrRemoveContainer(i, container);
+            }
+        }
+        return mSize != oldSize;
+    }
+
+    /** intersection. Fast if ids is a LongIdSet */
+    @Override
+    public boolean retainAll(Collection<?> ids) {
+        if (!(ids instanceof LongIdSet)) return super.retainAll(ids);
+
+        LongIdSet other = (LongIdSet) ids;
+        int oldSize = mSize;
+        for (int i = mContainerCount - 1; i >= 0; i--) {
+            int otherIndex = other.indexOf(mKeys[i]);
+            mSize -= mContainers[i].cardinality();
+            Container container = (otherIndex < 0)
+                    ? null
+                    : mContainers[i].andNot(mContainers[i].andNot(other.mContainers[otherIndex]));
+            if (container != null) mSize += container.cardinality();
+            setOrRemoveContainer(i, container);
+        }
+        return mSize != oldSize;
+    }
+
+    /** ids in ascending order */
+    @Override
+    public Iterator<Long> iterator() {
+        return new IdIterator();
+    }
+
+    // ----- serialisation
+
+    /**
+     * Compact binary form for i.e. Bundle.putByteArray():
+     * VERSION followed by (gap, length-1) varint pairs for every range of consecutive ids.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(VERSION);
+        long previousLast = -1;
+        long[] ids = toLongArray();
+        int i = 0;
+        while (i < ids.length) {
+            long first = ids[i];
+            while ((i + 1 < ids.length) && (ids[i + 1] == ids[i] + 1)) i++;
+            writeVarLong(out, first - previousLast - 1);
+            writeVarLong(out, ids[i] - first);
+            previousLast = ids[i];
+            i++;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * add ids from {@link #toByteArray()} to this.
+     *
+     * @throws IllegalArgumentException if data has an invalid format
+     */
+    public LongIdSet parse(byte[] data) {
+        if ((data == null) || (data.length == 0)) return this;
+        if (data[0] != VERSION) throw new IllegalArgumentException("LongIdSet: unsupported format " + data[0]);
+
+        int[] pos = {1};
+        long previousLast = -1;
+        while (pos[0] < data.length) {
+            long first = previousLast + 1 + readVarLong(data, pos);
+            long last = first + readVarLong(data, pos);
+            for (long id = first; ; id++) {
+                add(id);
+                if (id == last) break; // no overflow for Long.MAX_VALUE
+            }
+            previousLast = last;
+        }
+        return runOptimize();
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] data, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            if ((pos[0] >= data.length) || (shift > 63)) {
+                throw new IllegalArgumentException("LongIdSet: invalid data");
+            }
+            b = data[pos[0]++] & 0xff;
+            result |= ((long) (b & 0x7f)) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    // ----- implementation
+
+    private static long high(long id) {
+        return id >>> 16;
+    }
+
+    private static int low(long id) {
+        return (int) (id & 0xffff);
+    }
+
+    private static long toId(long high, int low) {
+        return (high << 16) | low;
+    }
+
+    /** binary search. @return index or (-(insertion point) - 1) if not found */
+    private int indexOf(long high) {
+        return Arrays.binarySearch(mKeys, 0, mContainerCount, high);
+    }
+
+    private void insertContainer(int index, long high, Container container) {
+        if (mContainerCount == mKeys.length) {
+            int newLength = mKeys.length * 2;
+            mKeys = Arrays.copyOf(mKeys, newLength);
+            mContainers = Arrays.copyOf(mContainers, newLength);
+        }
+        System.arraycopy(mKeys, index, mKeys, index + 1, mContainerCount - index);
+        System.arraycopy(mContainers, index, mContainers, index + 1, mContainerCount - index);
+        mKeys[index] = high;
+        mContainers[index] = container;
+        mContainerCount++;
+    }
+
+    /** container == null or empty removes the container */
+    private void setOrRemoveContainer(int index, Container container) {
+        if ((container != null) && (container.cardinality() > 0)) {
+            mContainers[index] = container;
+        } else {
+            mContainerCount--;
+            System.arraycopy(mKeys, index + 1, mKeys, index, mContainerCount - index);
+            System.arraycopy(mContainers, index + 1, mContainers, index, mContainerCount - index);
+            mContainers[mContainerCount] = null;
+        }
+    }
+
+    private class IdIterator implements Iterator<Long> {
+        /** container of the last returned id */
+        private int mIndex = 0;
+        private long mHigh = -1;
+        /** low part of the next id or -1 */
+        private int mNextLow;
+        private long mLastReturned = -1;
+        private boolean mCanRemove = false;
+
+        IdIterator() {
+            mNextLow = (mContainerCount > 0) ? mContainers[0].next(0) : -1;
+            if (mContainerCount > 0) mHigh = mKeys[0];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNextLow >= 0;
+        }
+
+        @Override
+        public Long next() {
+            if (mNextLow < 0) throw new NoSuchElementException();
+            mLastReturned = toId(mHigh, mNextLow);
+            mCanRemove = true;
+            findNext(mNextLow + 1);
+            return mLastReturned;
+        }
+
+        /** find next id in current or following containers starting with low part from */
+        private void findNext(int from) {
+            mNextLow = (from <= 0xffff) ? mContainers[mIndex].next(from) : -1;
+            while ((mNextLow < 0) && (++mIndex < mContainerCount)) {
+                mHigh = mKeys[mIndex];
+                mNextLow = mContainers[mIndex].next(0);
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (!mCanRemove) throw new IllegalStateException();
+            mCanRemove = false;
+            LongIdSet.this.remove(mLastReturned);
+
+            if (mNextLow >= 0) {
+                // containers may have been moved
+                mIndex = indexOf(mHigh);
+            }
+        }
+    }
+
+    // ----- containers for the 16 bit low part
+
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /** @return this or a converted container that contains low */
+        abstract Container add(int low);
+
+        /** @return this or a converted container that does not contain low */
+        abstract Container remove(int low);
+
+        /** @return smallest value >= from or -1 */
+        abstract int next(int from);
+
+        abstract int last();
+
+        abstract Container copy();
+
+        abstract void setBits(long[] words);
+
+        /** @return container that needs the least memory */
+        Container runOptimize() {
+            int runs = countRuns();
+            if (runs * 2 < Math.min(cardinality(), ARRAY_MAX) && !(this instanceof RunContainer)) {
+                return RunContainer.of(this, runs);
+            }
+            return this;
+        }
+
+        int countRuns() {
+            int runs = 0;
+            int previous = -2;
+            for (int low = next(0); low >= 0; low = next(low + 1)) {
+                if (low != previous + 1) runs++;
+                previous = low;
+            }
+            return runs;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer result = new BitmapContainer();
+            setBits(result.mWords);
+            result.mCardinality = cardinality();
+            return result;
+        }
+
+        Container or(Container other) {
+            if ((this instanceof ArrayContainer) && (other instanceof ArrayContainer)
+                    && (cardinality() + other.cardinality() <= ARRAY_MAX)) {
+                return ((ArrayContainer) this).merge((ArrayContainer) other);
+            }
+            BitmapContainer result = toBitmap();
+            other.setBits(result.mWords);
+            return result.updateCardinality().shrink();
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other);
+            }
+            BitmapContainer result = toBitmap();
+            long[] otherWords = new long[BitmapContainer.WORDS];
+            other.setBits(otherWords);
+            for (int i = 0; i < BitmapContainer.WORDS; i++) {
+                result.mWords[i] &= ~otherWords[i];
+            }
+            return result.updateCardinality().shrink();
+        }
+    }
+
+    private static class ArrayContainer extends Container {
+        private char[] mValues;
+        private int mCardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            mValues = values;
+            mCardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return mCardinality;
+        }
+
+        private int indexOf(int low) {
+            return Arrays.binarySearch(mValues, 0, mCardinality, (char) low);
+        }
+
+        @Override
+        boolean contains(int low) {
+            return indexOf(low) >= 0;
+        }
+
+        @Override
+        Container add(int low) {
+            int index = indexOf(low);
+            if (index >= 0) return this;
+            if (mCardinality >= ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            index = -index - 1;
+            if (mCardinality == mValues.length) {
+                mValues = Arrays.copyOf(mValues, Math.min(ARRAY_MAX, Math.max(4, mValues.length * 2)));
+            }
+            System.arraycopy(mValues, index, mValues, index + 1, mCardinality - index);
+            mValues[index] = (char) low;
+            mCardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            int index = indexOf(low);
+            if (index >= 0) {
+                mCardinality--;
+                System.arraycopy(mValues, index + 1, mValues, index, mCardinality - index);
+            }
+            return this;
+        }
+
+        @Override
+        int next(int from) {
+            if (from > 0xffff) return -1;
+            int index = indexOf(from);
+            if (index < 0) index = -index - 1;
+            return (index < mCardinality) ? mValues[index] : -1;
+        }
+
+        @Override
+        int last() {
+            return mValues[mCardinality - 1];
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(mValues, mCardinality), mCardinality);
+        }
+
+        @Override
+        void setBits(long[] words) {
+            for (int i = 0; i < mCardinality; i++) {
+                int low = mValues[i];
+                words[low >>> 6] |= 1L << low;
+            }
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            char[] result = new char[mCardinality + other.mCardinality];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while ((i < mCardinality) && (j < other.mCardinality)) {
+                char a = mValues[i];
+                char b = other.mValues[j];
+                if (a < b) {
+                    result[count++] = a;
+                    i++;
+                } else if (b < a) {
+                    result[count++] = b;
+                    j++;
+                } else {
+                    result[count++] = a;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < mCardinality) result[count++] = mValues[i++];
+            while (j < other.mCardinality) result[count++] = other.mValues[j++];
+            return new ArrayContainer(result, count);
+        }
+
+        ArrayContainer filter(Container remove) {
+            char[] result = new char[mCardinality];
+            int count = 0;
+            for (int i = 0; i < mCardinality; i++) {
+                if (!remove.contains(mValues[i])) result[count++] = mValues[i];
+            }
+            return new ArrayContainer(result, count);
+        }
+    }
+
+    private static class BitmapContainer extends Container {
+        static final int WORDS = 65536 / 64;
+
+        final long[] mWords = new long[WORDS];
+        int mCardinality = 0;
+
+        @Override
+        int cardinality() {
+            return mCardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (mWords[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(int low) {
+            long before = mWords[low >>> 6];
+            long after = before | (1L << low);
+            if (before != after) {
+                mWords[low >>> 6] = after;
+                mCardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            long before = mWords[low >>> 6];
+            long after = before & ~(1L << low);
+            if (before != after) {
+                mWords[low >>> 6] = after;
+                mCardinality--;
+                return shrink();
+            }
+            return this;
+        }
+
+        @Override
+        int next(int from) {
+            int index = from >>> 6;
+            if (index >= WORDS) return -1;
+            long word = mWords[index] & (-1L << from);
+            while (true) {
+                if (word != 0) return (index << 6) + Long.numberOfTrailingZeros(word);
+                if (++index >= WORDS) return -1;
+                word = mWords[index];
+            }
+        }
+
+        @Override
+        int last() {
+            for (int index = WORDS - 1; index >= 0; index--) {
+                if (mWords[index] != 0) return (index << 6) + 63 - Long.numberOfLeadingZeros(mWords[index]);
+            }
+            return -1;
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer result = new BitmapContainer();
+            System.arraycopy(mWords, 0, result.mWords, 0, WORDS);
+            result.mCardinality = mCardinality;
+            return result;
+        }
+
+        @Override
+        void setBits(long[] words) {
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= mWords[i];
+            }
+        }
+
+        BitmapContainer updateCardinality() {
+            int count = 0;
+            for (long word : mWords) {
+                count += Long.bitCount(word);
+            }
+            mCardinality = count;
+            return this;
+        }
+
+        /** @return array container if it is smaller */
+        Container shrink() {
+            if (mCardinality > ARRAY_MAX) return this;
+            char[] values = new char[mCardinality];
+            int count = 0;
+            for (int low = next(0); low >= 0; low = next(low + 1)) {
+                values[count++] = (char) low;
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+
+    /** read only. Modifications convert it to an array or bitmap container */
+    private static class RunContainer extends Container {
+        /** pairs of (first, last) */
+        private final char[] mRuns;
+        private final int mCardinality;
+
+        private RunContainer(char[] runs, int cardinality) {
+            mRuns = runs;
+            mCardinality = cardinality;
+        }
+
+        static RunContainer of(Container source, int runCount) {
+            char[] runs = new char[runCount * 2];
+            int pos = -2;
+            int previous = -2;
+            for (int low = source.next(0); low >= 0; low = source.next(low + 1)) {
+                if (low != previous + 1) {
+                    pos += 2;
+                    runs[pos] = (char) low;
+                }
+                runs[pos + 1] = (char) low;
+                previous = low;
+            }
+            return new RunContainer(runs, source.cardinality());
+        }
+
+        @Override
+        int cardinality() {
+            return mCardinality;
+        }
+
+        /** @return index of run containing or following low */
+        private int runIndex(int low) {
+            int lo = 0;
+            int hi = mRuns.length / 2 - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (mRuns[mid * 2 + 1] < low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int run = runIndex(low);
+            return (run * 2 < mRuns.length) && (mRuns[run * 2] <= low);
+        }
+
+        @Override
+        Container add(int low) {
+            if (contains(low)) return this;
+            return toModifiable().add(low);
+        }
+
+        @Override
+        Container remove(int low) {
+            if (!contains(low)) return this;
+            return toModifiable().remove(low);
+        }
+
+        private Container toModifiable() {
+            return toBitmap().shrink();
+        }
+
+        @Override
+        int next(int from) {
+            int run = runIndex(from);
+            if (run * 2 >= mRuns.length) return -1;
+            return Math.max(from, mRuns[run * 2]);
+        }
+
+        @Override
+        int last() {
+            return mRuns[mRuns.length - 1];
+        }
+
+        @Override
+        Container copy() {
+            return this;
+        }
+
+        @Override
+        void setBits(long[] words) {
+            for (int i = 0; i < mRuns.length; i += 2) {
+                for (int low = mRuns[i]; low <= mRuns[i + 1]; low++) {
+                    words[low >>> 6] |= 1L << low;
+                }
+            }
+        }
+
+        @Override
+        int countRuns() {
+            return mRuns.length / 2;
+        }
+    }
+}
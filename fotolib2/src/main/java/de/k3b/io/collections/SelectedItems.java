@@ -26,9 +26,12 @@ import java.util.Set;
  * #1 Gallery-Multiselection
  * Container for selected items via ImageID.
  *
+ * Ids are stored compressed without an object per id (see {@link LongIdSet})
+ * so that "select all" works for huge galleries.
+ *
  * Created by k3b on 01.08.2015.
  */
-public class SelectedItems extends java.util.TreeSet<Long> implements Set<Long> {
+public class SelectedItems extends LongIdSet implements Set<Long> {
     private static final String DELIMITER = ",";
 
     /** converts this into komma seperated list of ID-s */
@@ -68,6 +71,19 @@ public class SelectedItems extends java.util.TreeSet<Long> implements Set<Long>
         return this;
     }
 
+    @Override
+    public SelectedItems runOptimize() {
+        super.runOptimize();
+        return this;
+    }
+
+    /** add ids from {@link #toByteArray()} to this. */
+    @Override
+    public SelectedItems parse(byte[] data) {
+        super.parse(data);
+        return this;
+    }
+
     public Long[]  getIds() {
         return toArray(new Long[this.size()]);
     }
@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.EOFException;
@@ -35,9 +36,11 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
@@ -51,6 +54,8 @@ import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import de.k3b.io.MappedFilePool;
+
 /**
  * This is a class for reading and writing Exif tags in a JPEG file.
  * It is based on ExifInterface of android-6 version.
@@ -73,6 +78,13 @@ public class ExifInterface {
     // false for unittests because UserComment = null is not implemented for COM - Marker
     protected static boolean fixDateOnSave = true;
 
+    /**
+     * if true {@link #saveAttributes()} overwrites only the exif segment of the jpg
+     * if the modified exif data fits into the existing segment.
+     * false: always rewrite the complete jpg file.
+     */
+    public static boolean updateInPlace = true;
+
     // The Exif tag names
     /** Type is String. */
     public static final String TAG_ARTIST = "Artist";
@@ -1061,23 +1073,9 @@ public class ExifInterface {
     // Identifier for EXIF APP1 segment in JPEG
     private static final byte[] IDENTIFIER_EXIF_APP1 = "Exif\0\0".getBytes(ASCII);
     // JPEG segment markers, that each marker consumes two bytes beginning with 0xff and ending with
-    // the indicator. There is no SOF4, SOF8, SOF16 markers in JPEG and SOFx markers indicates start
-    // of frame(baseline DCT) and the image size info exists in its beginning part.
+    // the indicator. SOFx markers used for reading are defined in JpegSegmentScanner.
     private static final byte MARKER = (byte) 0xff;
     private static final byte MARKER_SOI = (byte) 0xd8;
-    private static final byte MARKER_SOF0 = (byte) 0xc0;
-    private static final byte MARKER_SOF1 = (byte) 0xc1;
-    private static final byte MARKER_SOF2 = (byte) 0xc2;
-    private static final byte MARKER_SOF3 = (byte) 0xc3;
-    private static final byte MARKER_SOF5 = (byte) 0xc5;
-    private static final byte MARKER_SOF6 = (byte) 0xc6;
-    private static final byte MARKER_SOF7 = (byte) 0xc7;
-    private static final byte MARKER_SOF9 = (byte) 0xc9;
-    private static final byte MARKER_SOF10 = (byte) 0xca;
-    private static final byte MARKER_SOF11 = (byte) 0xcb;
-    private static final byte MARKER_SOF13 = (byte) 0xcd;
-    private static final byte MARKER_SOF14 = (byte) 0xce;
-    private static final byte MARKER_SOF15 = (byte) 0xcf;
     private static final byte MARKER_SOS = (byte) 0xda;
     private static final byte MARKER_APP1 = (byte) 0xe1;
     private static final byte MARKER_COM = (byte) 0xfe;
@@ -1108,6 +1106,8 @@ public class ExifInterface {
     private int mThumbnailOffset;
     private int mThumbnailLength;
     private byte[] mThumbnailBytes;
+    /** recently memory mapped thumbnails used by {@link #getThumbnailBuffer(File)} */
+    private static final MappedFilePool sThumbnailPool = new MappedFilePool(64);
     // Pattern to check non zero timestamp
     private static final Pattern sNonZeroTimePattern = Pattern.compile(".*[1-9].*");
     // Pattern to check gps timestamp
@@ -1138,6 +1138,20 @@ public class ExifInterface {
         }
     }
 
+    /**
+     * Reads Exif tags from a jpg header that has already been read by {@link JpegSegmentScanner}.
+     */
+    protected ExifInterface(JpegSegmentScanner header, String filename) {
+        mExifFile = (filename != null) ? new File(filename) : null;
+        try {
+            initAttributes();
+            getJpegAttributes(header);
+        } catch (IOException e) {
+            logWarn( "Invalid image.", e);
+            validJpgExifFormat = false;
+        }
+    }
+
     protected ExifInterface() {}
 
     /** false means this is no valid jpg format */
@@ -1421,10 +1435,7 @@ public class ExifInterface {
      */
     private void loadAttributes(InputStream in) {
         try {
-            // Initialize mAttributes.
-            for (int i = 0; i < EXIF_TAGS.length; ++i) {
-                mAttributes[i] = new HashMap();
-            }
+            initAttributes();
             getJpegAttributes(in);
         } catch (IOException e) {
             // Ignore exceptions in order to keep the compatibility with the old versions of
@@ -1438,6 +1449,13 @@ public class ExifInterface {
         }
     }
 
+    private void initAttributes() {
+        // Initialize mAttributes.
+        for (int i = 0; i < EXIF_TAGS.length; ++i) {
+            mAttributes[i] = new HashMap();
+        }
+    }
+
     @Override
     public String toString() {
         return getDebugString("\n", TAG_DATETIME, TAG_GPS_VERSION_ID);
@@ -1478,7 +1496,9 @@ public class ExifInterface {
     }
 
     /**
-     * Save the tag data into the original image file. This is expensive because it involves
+     * Save the tag data into the original image file. If the modified exif data fits into the
+     * existing exif segment (see {@link #updateInPlace}) only this segment is overwritten.
+     * Else this is expensive because it involves
      * copying all the data from one file to another and deleting the old file and renaming the
      * other. It's best to use {@link #setAttribute(String,String)} to set all attributes to write
      * and make a single call rather than multiple calls for each attribute.
@@ -1496,6 +1516,12 @@ public class ExifInterface {
 
         boolean overwriteOriginal = inFile.equals(outFile);
 
+        if (overwriteOriginal && updateInPlace && saveJpegAttributesInPlace(inFile, mThumbnailBytes)) {
+            mThumbnailBytes = null;
+            sThumbnailPool.remove(outFile);
+            return;
+        }
+
         if (overwriteOriginal) {
             // Move the original file to temporary file.
             renamedInFile = new File(inFile.getAbsolutePath() + ".tmp");
@@ -1523,12 +1549,68 @@ public class ExifInterface {
         }
         // Discard the thumbnail in memory
         mThumbnailBytes = null;
+        sThumbnailPool.remove(outFile);
     }
 
     protected boolean deleteFile(File renamedInFile) {
         return renamedInFile.delete();
     }
 
+    /**
+     * Overwrites the exif segment of jpgFile without copying the image data.
+     * If the new exif data is smaller than the existing segment the rest is padded with 0.
+     *
+     * @return false if jpgFile does not contain exactly one exif segment or if the new exif
+     * data does not fit into the existing segment. In this case jpgFile is not modified.
+     */
+    protected boolean saveJpegAttributesInPlace(File jpgFile, byte[] thumbnail) throws IOException {
+        JpegSegmentScanner header;
+        try {
+            header = JpegSegmentScanner.scan(jpgFile);
+        } catch (JpegSegmentScanner.InvalidJpegException ex) {
+            return false;
+        }
+
+        JpegSegmentScanner.Segment exifSegment = null;
+        for (JpegSegmentScanner.Segment segment : header.getSegments(JpegSegmentScanner.MARKER_APP1)) {
+            if (header.startsWith(segment, IDENTIFIER_EXIF_APP1)) {
+                // more than one exif segment: saveJpegAttributes will merge them
+                if (exifSegment != null) return false;
+                exifSegment = segment;
+            }
+        }
+        if (exifSegment == null) return false;
+
+        byte[] exifBytes = encodeExifSegment(exifSegment.getOffset() + 6, thumbnail);
+
+        // segment size including the 2 bytes of the length field
+        int segmentSize = exifSegment.getLength() + 2;
+        if ((exifBytes.length > segmentSize) || (segmentSize > 0xffff)) return false;
+
+        ByteBuffer buffer = ByteBuffer.allocate(segmentSize); // zero padded
+        buffer.put(exifBytes);
+        buffer.putShort(0, (short) segmentSize);
+        buffer.rewind();
+
+        if (DEBUG_INTERNAL) {
+            logDebug( "saveJpegAttributesInPlace(" + jpgFile + ") " + exifBytes.length
+                    + " bytes into segment of " + segmentSize + " bytes");
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(jpgFile, "rw");
+            FileChannel channel = file.getChannel();
+            long position = exifSegment.getOffset() - 2;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } finally {
+            closeQuietly(file);
+        }
+        return true;
+    }
+
     /** repairs wrong/missing attributes */
     protected void fixAttributes() {
         if (ExifInterface.fixDateOnSave) {
@@ -1623,6 +1705,31 @@ public class ExifInterface {
         return buffer;
     }
 
+    /**
+     * Returns the thumbnail inside the image file as read-only view into a memory mapped
+     * region of the file without copying it into a byte[] or {@code null} if there is no thumbnail
+     * or if this was created from a stream and the thumbnail is not in memory.
+     *
+     * Recently mapped files are kept in a bounded pool so asking again for the same
+     * thumbnail (i.e. while scrolling back in the gallery) does not map the file again.
+     */
+    public ByteBuffer getThumbnailBuffer() throws IOException {
+        return getThumbnailBuffer(mExifFile);
+    }
+
+    public ByteBuffer getThumbnailBuffer(File inFile) throws IOException {
+        if (!mHasThumbnail) {
+            return null;
+        }
+        if (mThumbnailBytes != null) {
+            return ByteBuffer.wrap(mThumbnailBytes).asReadOnlyBuffer();
+        }
+        if (inFile == null) {
+            return null;
+        }
+        return sThumbnailPool.getSlice(inFile, mThumbnailOffset, mThumbnailLength);
+    }
+
     private void closeQuietly(Closeable in) {
         if (in != null) {
             try {
@@ -1698,7 +1805,10 @@ public class ExifInterface {
         try {
             // The exif field is in local time. Parsing it as if it is UTC will yield time
             // since 1/1/1970 local time
-            Date datetime = sFormatter.parse(dateTimeString, pos);
+            Date datetime;
+            synchronized (sFormatter) {
+                datetime = sFormatter.parse(dateTimeString, pos);
+            }
             if (datetime == null) return -1;
             long msecs = datetime.getTime();
             String subSecs = getAttribute(TAG_SUBSEC_TIME);
@@ -1734,7 +1844,10 @@ public class ExifInterface {
         String dateTimeString = date + ' ' + time;
         ParsePosition pos = new ParsePosition(0);
         try {
-            Date datetime = sFormatter.parse(dateTimeString, pos);
+            Date datetime;
+            synchronized (sFormatter) {
+                datetime = sFormatter.parse(dateTimeString, pos);
+            }
             if (datetime == null) return -1;
             return datetime.getTime();
         } catch (IllegalArgumentException e) {
@@ -1766,127 +1879,54 @@ public class ExifInterface {
     }
     // Loads EXIF attributes from a JPEG input stream.
     private void getJpegAttributes(InputStream inputStream) throws IOException {
-        // See JPEG File Interchange Format Specification page 5.
         if (DEBUG_INTERNAL) {
             logDebug( "getJpegAttributes starting with: " + inputStream);
         }
-        DataInputStream dataInputStream = new DataInputStream(inputStream);
-        byte marker;
-        int bytesRead = 0;
-        if ((marker = dataInputStream.readByte()) != MARKER) {
-            throw new IOException("Invalid marker: " + Integer.toHexString(marker & 0xff));
-        }
-        ++bytesRead;
-        if (dataInputStream.readByte() != MARKER_SOI) {
-            throw new IOException("Invalid marker: " + Integer.toHexString(marker & 0xff));
-        }
-        ++bytesRead;
-        while (true) {
-            marker = dataInputStream.readByte();
-            if (marker != MARKER) {
-                throw new IOException("Invalid marker:" + Integer.toHexString(marker & 0xff));
-            }
-            ++bytesRead;
-            marker = dataInputStream.readByte();
-            if (DEBUG_INTERNAL) {
-                logDebug( "Found JPEG segment indicator: " + Integer.toHexString(marker & 0xff));
-            }
-            ++bytesRead;
-            // EOI indicates the end of an image and in case of SOS, JPEG image stream starts and
-            // the image data will terminate right after.
-            if (marker == MARKER_EOI || marker == MARKER_SOS) {
-                break;
-            }
-            int length = dataInputStream.readUnsignedShort() - 2;
-            bytesRead += 2;
+        getJpegAttributes(JpegSegmentScanner.scan(inputStream));
+    }
+
+    // Loads EXIF attributes from the segments found by the JpegSegmentScanner.
+    private void getJpegAttributes(JpegSegmentScanner scanner) throws IOException {
+        // See JPEG File Interchange Format Specification page 5.
+        for (JpegSegmentScanner.Segment segment : scanner.getSegments()) {
+            int marker = segment.getMarker();
+            int length = segment.getLength();
             if (DEBUG_INTERNAL) {
-                logDebug( "JPEG segment: " + Integer.toHexString(marker & 0xff) + " (length: "
+                logDebug( "JPEG segment: " + Integer.toHexString(marker) + " (length: "
                         + (length + 2) + ")");
             }
-            if (length < 0) {
-                throw new IOException("Invalid length");
-            }
-            switch (marker) {
-                case MARKER_APP1: {
-                    if (DEBUG_INTERNAL) {
-                        logDebug( "MARKER_APP1");
-                    }
-                    if (length < 6) {
-                        // Skip if it's not an EXIF APP1 segment.
-                        break;
-                    }
-                    byte[] identifier = new byte[6];
-                    if (inputStream.read(identifier) != 6) {
-                        throw new IOException("Invalid exif");
-                    }
-                    bytesRead += 6;
-                    length -= 6;
-                    if (!Arrays.equals(identifier, IDENTIFIER_EXIF_APP1)) {
-                        // Skip if it's not an EXIF APP1 segment.
-                        break;
-                    }
-                    if (length <= 0) {
-                        throw new IOException("Invalid exif");
-                    }
-                    if (DEBUG_INTERNAL) {
-                        logDebug( "readExifSegment with a byte array (length: " + length + ")");
-                    }
-                    byte[] bytes = new byte[length];
-                    if (dataInputStream.read(bytes) != length) {
-                        throw new IOException("Invalid exif");
-                    }
-                    readExifSegment(bytes, bytesRead);
-                    bytesRead += length;
-                    length = 0;
-                    break;
+            if (marker == JpegSegmentScanner.MARKER_APP1) {
+                if (DEBUG_INTERNAL) {
+                    logDebug( "MARKER_APP1");
                 }
-                case MARKER_COM: {
-                    byte[] bytes = new byte[length];
-                    if (dataInputStream.read(bytes) != length) {
-                        throw new IOException("Invalid exif");
-                    }
-                    length = 0;
-                    if (getAttribute(TAG_USER_COMMENT) == null) {
-                        setAttribute(IFD_EXIF_HINT, TAG_USER_COMMENT,ExifAttribute.createString(
-                                EXIF_TAG_USER_COMMENT,
-                                decodePrefixString(bytes.length, bytes,ASCII)));
-                    }
-                    break;
+                if ((length < 6) || !scanner.startsWith(segment, IDENTIFIER_EXIF_APP1)) {
+                    // Skip if it's not an EXIF APP1 segment.
+                    continue;
                 }
-                case MARKER_SOF0:
-                case MARKER_SOF1:
-                case MARKER_SOF2:
-                case MARKER_SOF3:
-                case MARKER_SOF5:
-                case MARKER_SOF6:
-                case MARKER_SOF7:
-                case MARKER_SOF9:
-                case MARKER_SOF10:
-                case MARKER_SOF11:
-                case MARKER_SOF13:
-                case MARKER_SOF14:
-                case MARKER_SOF15: {
-                    if (dataInputStream.skipBytes(1) != 1) {
-                        throw new IOException("Invalid SOFx");
-                    }
-                    setAttribute(IFD_TIFF_HINT, TAG_IMAGE_LENGTH, ExifAttribute.createULong(EXIF_TAG_IMAGE_LENGTH,
-                            dataInputStream.readUnsignedShort(), mExifByteOrder));
-                    setAttribute(IFD_TIFF_HINT, TAG_IMAGE_WIDTH, ExifAttribute.createULong(EXIF_TAG_IMAGE_WIDTH,
-                            dataInputStream.readUnsignedShort(), mExifByteOrder));
-                    length -= 5;
-                    break;
+                if (length - 6 <= 0) {
+                    throw new IOException("Invalid exif");
                 }
-                default: {
-                    break;
+                if (DEBUG_INTERNAL) {
+                    logDebug( "readExifSegment with a byte array (length: " + (length - 6) + ")");
                 }
+                readExifSegment(scanner.getBytes(segment, 6), segment.getOffset() + 6);
+            } else if (marker == JpegSegmentScanner.MARKER_COM) {
+                if (getAttribute(TAG_USER_COMMENT) == null) {
+                    byte[] bytes = scanner.getBytes(segment, 0);
+                    setAttribute(IFD_EXIF_HINT, TAG_USER_COMMENT,ExifAttribute.createString(
+                            EXIF_TAG_USER_COMMENT,
+                            decodePrefixString(bytes.length, bytes,ASCII)));
+                }
+            } else if (JpegSegmentScanner.isStartOfFrame(marker)) {
+                if (length < 5) {
+                    throw new IOException("Invalid SOFx");
+                }
+                int position = segment.getOffset() + 1;
+                setAttribute(IFD_TIFF_HINT, TAG_IMAGE_LENGTH, ExifAttribute.createULong(EXIF_TAG_IMAGE_LENGTH,
+                        scanner.getUnsignedShort(position), mExifByteOrder));
+                setAttribute(IFD_TIFF_HINT, TAG_IMAGE_WIDTH, ExifAttribute.createULong(EXIF_TAG_IMAGE_WIDTH,
+                        scanner.getUnsignedShort(position + 2), mExifByteOrder));
             }
-            if (length < 0) {
-                throw new IOException("Invalid length");
-            }
-            if (dataInputStream.skipBytes(length) != length) {
-                throw new IOException("Invalid JPEG segment");
-            }
-            bytesRead += length;
         }
     }
     // Stores a new JPEG image with EXIF attributes into a given output stream.
@@ -1912,7 +1952,7 @@ public class ExifInterface {
         dataOutputStream.writeByte(MARKER);
         dataOutputStream.writeByte(MARKER_APP1);
 
-        writeExifSegment(dataOutputStream, 6, thumbnail);
+        dataOutputStream.write(encodeExifSegment(6, thumbnail));
         byte[] bytes = new byte[4096];
         while (true) {
             byte marker = dataInputStream.readByte();
@@ -1960,7 +2000,11 @@ public class ExifInterface {
                     dataOutputStream.writeByte(MARKER);
                     dataOutputStream.writeByte(marker);
                     // Copy all the remaining data
-                    streamCopy(dataInputStream, dataOutputStream);
+                    if ((inputStream instanceof FileInputStream) && (outputStream instanceof FileOutputStream)) {
+                        transferCopy((FileInputStream) inputStream, (FileOutputStream) outputStream);
+                    } else {
+                        streamCopy(dataInputStream, dataOutputStream);
+                    }
                     return;
                 }
                 default: {
@@ -1985,6 +2029,20 @@ public class ExifInterface {
         }
     }
 
+    /** copies the image data from the current file position without copying through java heap */
+    private void transferCopy(FileInputStream inputStream, FileOutputStream outputStream) throws IOException {
+        FileChannel in = inputStream.getChannel();
+        FileChannel out = outputStream.getChannel();
+        long position = in.position();
+        long size = in.size();
+        while (position < size) {
+            long count = in.transferTo(position, size - position, out);
+            if (count <= 0) throw new EOFException("transferTo stopped at " + position + " of " + size);
+            position += count;
+        }
+        in.position(position);
+    }
+
     private void streamCopy(DataInputStream dataInputStream, ByteOrderAwarenessDataOutputStream dataOutputStream) throws IOException {
         byte[] buffer = new byte[1024];
         int n = 0;
@@ -2213,6 +2271,14 @@ public class ExifInterface {
         }
         return -1;
     }
+    /** @return the exif segment (starting with the length field) as it will be stored in the jpg. */
+    private byte[] encodeExifSegment(int exifOffsetFromBeginning, byte[] thumbnail) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeExifSegment(new ByteOrderAwarenessDataOutputStream(buffer, ByteOrder.BIG_ENDIAN),
+                exifOffsetFromBeginning, thumbnail);
+        return buffer.toByteArray();
+    }
+
     // Writes an Exif segment into the given output stream.
     private int writeExifSegment(ByteOrderAwarenessDataOutputStream dataOutputStream,
             int exifOffsetFromBeginning, byte[] thumbnail) throws IOException {
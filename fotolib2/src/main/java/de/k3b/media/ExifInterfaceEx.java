@@ -88,6 +88,23 @@ public class ExifInterfaceEx extends ExifInterface implements IPhotoProperties {
 
     }
 
+    /**
+     * Reads Exif tags from a jpg header that has already been read by {@link JpegSegmentScanner}.
+     *
+     * @param xmpExtern if not null content of xmp sidecar file
+     */
+    public ExifInterfaceEx(JpegSegmentScanner header, String absoluteJpgPath, IPhotoProperties xmpExtern, String dbg_context) {
+        super(header, absoluteJpgPath);
+        setFilelastModified(mExifFile);
+
+        this.xmpExtern = xmpExtern;
+        this.mDbg_context = dbg_context + "->ExifInterfaceEx(" + absoluteJpgPath+ ") ";
+        if (LibGlobal.debugEnabledJpgMetaIo) {
+            logger.debug(this.mDbg_context +
+                    " load: " + PhotoPropertiesFormatter.format(this, false, null, FieldID.path, FieldID.clasz));
+        }
+    }
+
     protected ExifInterfaceEx() {super();xmpExtern=null; mDbg_context = "";}
 
     @Override
@@ -107,6 +124,15 @@ public class ExifInterfaceEx extends ExifInterface implements IPhotoProperties {
         super.saveJpegAttributes(inputStream, outputStream, thumbnail);
     }
 
+    @Override
+    protected boolean saveJpegAttributesInPlace(File jpgFile, byte[] thumbnail) throws IOException {
+        boolean result = super.saveJpegAttributesInPlace(jpgFile, thumbnail);
+        if (LibGlobal.debugEnabledJpg || LibGlobal.debugEnabledJpgMetaIo) {
+            logger.debug(mDbg_context + " saveJpegAttributesInPlace: " + jpgFile + " => " + result);
+        }
+        return result;
+    }
+
     @Override
     protected boolean deleteFile(File file) {
         boolean result = super.deleteFile(file);
@@ -407,15 +433,19 @@ public class ExifInterfaceEx extends ExifInterface implements IPhotoProperties {
 
         ParsePosition pos = new ParsePosition(0);
         try {
-            return sExifDateTimeFormatter.parse(dateTimeString, pos);
+            synchronized (sExifDateTimeFormatter) {
+                return sExifDateTimeFormatter.parse(dateTimeString, pos);
+            }
         } catch (IllegalArgumentException ex) {
             return null;
         }
     }
 
     protected static String toExifDateTimeString(Date value) {
-        final String exifDate = (value != null) ? sExifDateTimeFormatter.format(value) : null;
-        return exifDate;
+        if (value == null) return null;
+        synchronized (sExifDateTimeFormatter) {
+            return sExifDateTimeFormatter.format(value);
+        }
     }
 
     private void loadLatLon() {
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import de.k3b.io.FileUtils;
+
+/**
+ * Width, height, orientation and mime type of an image as found in the file header.
+ *
+ * Unlike a bounds-only decode of the image the probe only reads the header:
+ * for jpg everything up to SOS (via {@link JpegSegmentScanner}), for png the IHDR chunk,
+ * for gif the logical screen descriptor and for webp the first chunk.
+ *
+ * Created by k3b on 26.03.2020.
+ */
+public class ImageGeometry {
+    public static final String MIME_JPEG = "image/jpeg";
+    public static final String MIME_PNG = "image/png";
+    public static final String MIME_GIF = "image/gif";
+    public static final String MIME_WEBP = "image/webp";
+
+    /** number of bytes needed to detect the format and to parse png, gif and webp */
+    private static final int PROBE_SIZE = 32;
+
+    private static final byte[] EXIF_PREFIX = {'E', 'x', 'i', 'f', 0, 0};
+    private static final int EXIF_TAG_ORIENTATION = 0x0112;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mOrientation;
+    private final String mMimeType;
+
+    public ImageGeometry(int width, int height, int orientation, String mimeType) {
+        mWidth = width;
+        mHeight = height;
+        mOrientation = orientation;
+        mMimeType = mimeType;
+    }
+
+    /** @return geometry of image file or null if file cannot be read or has an unsupported format. */
+    public static ImageGeometry probe(File imageFile) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(imageFile);
+            return probe(in);
+        } catch (IOException ignore) {
+            return null;
+        } finally {
+            FileUtils.close(in, imageFile);
+        }
+    }
+
+    /**
+     * Reads the image header from inputStream. The stream is not closed.
+     *
+     * @return geometry or null if the format is not supported
+     */
+    public static ImageGeometry probe(InputStream in) throws IOException {
+        byte[] head = new byte[PROBE_SIZE];
+        int fill = 0;
+        int read;
+        while ((fill < head.length) && ((read = in.read(head, fill, head.length - fill)) >= 0)) {
+            fill += read;
+        }
+
+        if ((fill >= 2) && ((head[0] & 0xff) == JpegSegmentScanner.MARKER)
+                && ((head[1] & 0xff) == JpegSegmentScanner.MARKER_SOI)) {
+            InputStream jpg = new SequenceInputStream(new ByteArrayInputStream(head, 0, fill), in);
+            try {
+                return fromJpeg(JpegSegmentScanner.scan(jpg));
+            } catch (JpegSegmentScanner.InvalidJpegException ignore) {
+                return null;
+            }
+        }
+        if (isPng(head, fill)) {
+            return new ImageGeometry(getInt32BigEndian(head, 16), getInt32BigEndian(head, 20), 0, MIME_PNG);
+        }
+        if (isGif(head, fill)) {
+            return new ImageGeometry(getInt16LittleEndian(head, 6), getInt16LittleEndian(head, 8), 0, MIME_GIF);
+        }
+        if (isWebp(head, fill)) {
+            return fromWebp(head);
+        }
+        return null;
+    }
+
+    /** @return geometry from a jpg header or null if it contains no SOFx segment */
+    public static ImageGeometry fromJpeg(JpegSegmentScanner header) {
+        if (header == null) return null;
+
+        int width = -1;
+        int height = -1;
+        int orientation = 0;
+        for (JpegSegmentScanner.Segment segment : header.getSegments()) {
+            int marker = segment.getMarker();
+            if ((width < 0) && JpegSegmentScanner.isStartOfFrame(marker) && (segment.getLength() >= 5)) {
+                // precision(1) height(2) width(2)
+                height = header.getUnsignedShort(segment.getOffset() + 1);
+                width = header.getUnsignedShort(segment.getOffset() + 3);
+            } else if ((marker == JpegSegmentScanner.MARKER_APP1) && header.startsWith(segment, EXIF_PREFIX)) {
+                int orientationCode = getExifOrientationCode(header.getBytes(segment, EXIF_PREFIX.length));
+                orientation = PhotoPropertiesUtil.exifOrientationCode2RotationDegrees(orientationCode, 0);
+            }
+        }
+        if (width < 0) return null;
+        return new ImageGeometry(width, height, orientation, MIME_JPEG);
+    }
+
+    /** @return value of the orientation tag in IFD0 of the tiff structure or 0 if not found */
+    private static int getExifOrientationCode(byte[] tiff) {
+        if (tiff.length < 8) return 0;
+        boolean littleEndian;
+        if ((tiff[0] == 'I') && (tiff[1] == 'I')) {
+            littleEndian = true;
+        } else if ((tiff[0] == 'M') && (tiff[1] == 'M')) {
+            littleEndian = false;
+        } else {
+            return 0;
+        }
+
+        int ifd0 = getInt32(tiff, 4, littleEndian);
+        if ((ifd0 < 8) || (ifd0 + 2 > tiff.length)) return 0;
+        int count = getInt16(tiff, ifd0, littleEndian);
+        for (int i = 0; i < count; i++) {
+            int entry = ifd0 + 2 + i * 12;
+            if (entry + 12 > tiff.length) return 0;
+            if (getInt16(tiff, entry, littleEndian) == EXIF_TAG_ORIENTATION) {
+                // type(2) count(4) value: unsigned short left aligned in 4 bytes
+                return getInt16(tiff, entry + 8, littleEndian);
+            }
+        }
+        return 0;
+    }
+
+    private static ImageGeometry fromWebp(byte[] head) {
+        // RIFF(4) size(4) WEBP(4) chunk-type(4) chunk-size(4) chunk-data
+        if (startsWith(head, 12, "VP8 ")) {
+            // lossy: frame-tag(3) start-code(3) width(2) height(2) with 14 significant bits each
+            return new ImageGeometry(getInt16LittleEndian(head, 26) & 0x3fff,
+                    getInt16LittleEndian(head, 28) & 0x3fff, 0, MIME_WEBP);
+        }
+        if (startsWith(head, 12, "VP8L") && ((head[20] & 0xff) == 0x2f)) {
+            // lossless: signature(1) then 14 bit width-1 and 14 bit height-1
+            int b1 = head[21] & 0xff;
+            int b2 = head[22] & 0xff;
+            int b3 = head[23] & 0xff;
+            int b4 = head[24] & 0xff;
+            int width = 1 + (((b2 & 0x3f) << 8) | b1);
+            int height = 1 + (((b4 & 0x0f) << 10) | (b3 << 2) | ((b2 & 0xc0) >> 6));
+            return new ImageGeometry(width, height, 0, MIME_WEBP);
+        }
+        if (startsWith(head, 12, "VP8X")) {
+            // extended: flags(4) then 24 bit canvas width-1 and 24 bit canvas height-1
+            return new ImageGeometry(1 + getInt24LittleEndian(head, 24),
+                    1 + getInt24LittleEndian(head, 27), 0, MIME_WEBP);
+        }
+        return null;
+    }
+
+    private static boolean isPng(byte[] head, int fill) {
+        return (fill >= 24) && ((head[0] & 0xff) == 0x89) && startsWith(head, 1, "PNG\r\n\u001a\n")
+                && startsWith(head, 12, "IHDR");
+    }
+
+    private static boolean isGif(byte[] head, int fill) {
+        return (fill >= 10) && (startsWith(head, 0, "GIF87a") || startsWith(head, 0, "GIF89a"));
+    }
+
+    private static boolean isWebp(byte[] head, int fill) {
+        return (fill >= 30) && startsWith(head, 0, "RIFF") && startsWith(head, 8, "WEBP");
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (data[offset + i] != (byte) ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int getInt16(byte[] data, int offset, boolean littleEndian) {
+        return littleEndian
+                ? getInt16LittleEndian(data, offset)
+                : ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+
+    private static int getInt32(byte[] data, int offset, boolean littleEndian) {
+        return littleEndian
+                ? (getInt16LittleEndian(data, offset + 2) << 16) | getInt16LittleEndian(data, offset)
+                : getInt32BigEndian(data, offset);
+    }
+
+    private static int getInt16LittleEndian(byte[] data, int offset) {
+        return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8);
+    }
+
+    private static int getInt24LittleEndian(byte[] data, int offset) {
+        return getInt16LittleEndian(data, offset) | ((data[offset + 2] & 0xff) << 16);
+    }
+
+    private static int getInt32BigEndian(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /** rotation in degrees (0, 90, 180, 270) from exif orientation. 0 if unknown */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    public String getMimeType() {
+        return mMimeType;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageGeometry[" + mMimeType + " " + mWidth + "x" + mHeight + " rotated " + mOrientation + "]";
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.k3b.io.FileUtils;
+
+/**
+ * Reads the header of a jpg file (everything before the image data that starts with SOS)
+ * in big chunks instead of byte by byte and remembers where each segment is located.
+ *
+ * The scanner stops at SOS (start of scan) or EOI (end of image) so the
+ * multi-megabyte entropy coded image data is never read.
+ *
+ * Created by k3b on 18.03.2020.
+ */
+public class JpegSegmentScanner {
+    public static final int MARKER = 0xff;
+    public static final int MARKER_SOI = 0xd8;
+    public static final int MARKER_SOF0 = 0xc0;
+    public static final int MARKER_SOF15 = 0xcf;
+    public static final int MARKER_DHT = 0xc4;
+    public static final int MARKER_JPG = 0xc8;
+    public static final int MARKER_DAC = 0xcc;
+    public static final int MARKER_SOS = 0xda;
+    public static final int MARKER_EOI = 0xd9;
+    public static final int MARKER_APP1 = 0xe1;
+    public static final int MARKER_APP13 = 0xed;
+    public static final int MARKER_COM = 0xfe;
+
+    /** number of bytes requested from the underlying stream per read */
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /** Thrown if the file content does not follow the jpg segment structure */
+    public static class InvalidJpegException extends IOException {
+        public InvalidJpegException(String message) {
+            super(message);
+        }
+    }
+
+    /** one jpg segment (marker + length + payload) inside the header */
+    public static class Segment {
+        private final int marker;
+        private final int offset;
+        private final int length;
+
+        private Segment(int marker, int offset, int length) {
+            this.marker = marker;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /** the segment type without the leading 0xff i.e. 0xe1 for APP1 */
+        public int getMarker() {
+            return marker;
+        }
+
+        /** position of the first payload byte (after marker and length) relative to start of file */
+        public int getOffset() {
+            return offset;
+        }
+
+        /** number of payload bytes (without marker and length) */
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return "Segment[" + Integer.toHexString(marker) + "@" + offset + "+" + length + "]";
+        }
+    }
+
+    /** file content from start of file up to (at least) the end of the last segment */
+    private byte[] mHeader = new byte[CHUNK_SIZE];
+    private int mFill = 0;
+    private final List<Segment> mSegments = new ArrayList<>();
+    /** file position of the first byte after SOS/EOI marker or -1 if not found */
+    private int mEndOfHeader = -1;
+    private int mEndMarker = -1;
+
+    private JpegSegmentScanner() {
+    }
+
+    /** Reads the jpg header from file. */
+    public static JpegSegmentScanner scan(File jpgFile) throws IOException {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(jpgFile);
+            return scan(in);
+        } finally {
+            FileUtils.close(in, jpgFile);
+        }
+    }
+
+    /**
+     * Reads the jpg header from inputStream. The stream is not closed.
+     *
+     * @throws InvalidJpegException if the stream does not contain a valid jpg header
+     */
+    public static JpegSegmentScanner scan(InputStream in) throws IOException {
+        JpegSegmentScanner result = new JpegSegmentScanner();
+        result.parse(in);
+        return result;
+    }
+
+    private void parse(InputStream in) throws IOException {
+        int pos = 0;
+        require(in, 2);
+        int marker = mHeader[pos] & 0xff;
+        if (marker != MARKER) {
+            throw new InvalidJpegException("Invalid marker: " + Integer.toHexString(marker));
+        }
+        if ((mHeader[pos + 1] & 0xff) != MARKER_SOI) {
+            throw new InvalidJpegException("Invalid marker: " + Integer.toHexString(marker));
+        }
+        pos += 2;
+
+        while (true) {
+            require(in, pos + 2);
+            marker = mHeader[pos] & 0xff;
+            if (marker != MARKER) {
+                throw new InvalidJpegException("Invalid marker:" + Integer.toHexString(marker));
+            }
+            marker = mHeader[pos + 1] & 0xff;
+            pos += 2;
+            // EOI indicates the end of an image and in case of SOS, JPEG image stream starts and
+            // the image data will terminate right after.
+            if (marker == MARKER_EOI || marker == MARKER_SOS) {
+                mEndOfHeader = pos;
+                mEndMarker = marker;
+                return;
+            }
+            require(in, pos + 2);
+            int length = (((mHeader[pos] & 0xff) << 8) | (mHeader[pos + 1] & 0xff)) - 2;
+            pos += 2;
+            if (length < 0) {
+                throw new InvalidJpegException("Invalid length");
+            }
+            require(in, pos + length);
+            mSegments.add(new Segment(marker, pos, length));
+            pos += length;
+        }
+    }
+
+    /** make shure that at least minFill bytes of the stream are in mHeader */
+    private void require(InputStream in, int minFill) throws IOException {
+        while (mFill < minFill) {
+            if (mHeader.length < minFill + CHUNK_SIZE) {
+                mHeader = Arrays.copyOf(mHeader, Math.max(mHeader.length * 2, minFill + CHUNK_SIZE));
+            }
+            int read = in.read(mHeader, mFill, mHeader.length - mFill);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of jpg header");
+            }
+            mFill += read;
+        }
+    }
+
+    /** all segments before SOS in file order */
+    public List<Segment> getSegments() {
+        return mSegments;
+    }
+
+    /** all segments of type marker in file order. */
+    public List<Segment> getSegments(int marker) {
+        List<Segment> result = new ArrayList<>();
+        for (Segment segment : mSegments) {
+            if (segment.getMarker() == marker) result.add(segment);
+        }
+        return result;
+    }
+
+    /** the first segment of type marker or null if not found */
+    public Segment getFirstSegment(int marker) {
+        for (Segment segment : mSegments) {
+            if (segment.getMarker() == marker) return segment;
+        }
+        return null;
+    }
+
+    /** true if marker is one of the SOF0..SOF15 (start of frame) markers that contain the image size */
+    public static boolean isStartOfFrame(int marker) {
+        return (marker >= MARKER_SOF0) && (marker <= MARKER_SOF15)
+                && (marker != MARKER_DHT) && (marker != MARKER_JPG) && (marker != MARKER_DAC);
+    }
+
+    /** true if the payload of segment starts with prefix */
+    public boolean startsWith(Segment segment, byte[] prefix) {
+        if (segment.getLength() < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (mHeader[segment.getOffset() + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /** copy of the payload of segment without the first skip bytes */
+    public byte[] getBytes(Segment segment, int skip) {
+        int start = segment.getOffset() + skip;
+        return Arrays.copyOfRange(mHeader, start, segment.getOffset() + segment.getLength());
+    }
+
+    /** the unsigned byte at absolute file position */
+    public int getUnsignedByte(int position) {
+        return mHeader[position] & 0xff;
+    }
+
+    /** the big endian unsigned short at absolute file position */
+    public int getUnsignedShort(int position) {
+        return ((mHeader[position] & 0xff) << 8) | (mHeader[position + 1] & 0xff);
+    }
+
+    /** file position of the first byte after the SOS/EOI marker that terminates the header */
+    public int getEndOfHeader() {
+        return mEndOfHeader;
+    }
+
+    /** MARKER_SOS or MARKER_EOI */
+    public int getEndMarker() {
+        return mEndMarker;
+    }
+
+    /**
+     * A stream containing the complete header including the terminating SOS/EOI marker
+     * but without image data. Can be used for 3rd party jpg-meta-data-readers that
+     * stop reading at SOS.
+     */
+    public InputStream createHeaderInputStream() {
+        return new ByteArrayInputStream(mHeader, 0, mEndOfHeader);
+    }
+
+    @Override
+    public String toString() {
+        return "JpegSegmentScanner" + mSegments + " header=" + mEndOfHeader;
+    }
+}
@@ -25,12 +25,23 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Date;
 import java.util.EnumSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import de.k3b.LibGlobal;
 import de.k3b.io.FileProcessor;
+import de.k3b.io.FileUtils;
+import de.k3b.io.IProgessListener;
 import de.k3b.io.VISIBILITY;
+import de.k3b.io.collections.SelectedFiles;
+import de.k3b.transactionlog.BufferedTransactionLogger;
 import de.k3b.transactionlog.TransactionLoggerBase;
 
 /**
@@ -42,6 +53,9 @@ public class PhotoPropertiesBulkUpdateService {
     private static final Logger logger = LoggerFactory.getLogger(LibGlobal.LOG_TAG);
     private final TransactionLoggerBase transactionLogger;
 
+    /** media db updates of parallel {@link #applyChanges(SelectedFiles, PhotoPropertiesDiffCopy, int, IProgessListener)} are serialized */
+    private final Object updateMediaDBLock = new Object();
+
     private StringBuilder debugExif(StringBuilder sb, String context, PhotoPropertiesUpdateHandler exif, File filePath) {
         if (sb != null) {
             sb.append("\n\t").append(context).append("\t: ");
@@ -75,6 +89,125 @@ public class PhotoPropertiesBulkUpdateService {
      * Returns new values or null if no change. */
     public PhotoPropertiesUpdateHandler applyChanges(File inFilePath, String outFilePath,
                                                      long id, boolean deleteOriginalWhenFinished, PhotoPropertiesDiffCopy metaDiffCopy) {
+        return applyChanges(inFilePath, outFilePath, id, deleteOriginalWhenFinished, metaDiffCopy, this.transactionLogger);
+    }
+
+    /**
+     * Applies metaDiffCopy to all files (without copy/move) using up to threadCount worker threads.
+     *
+     * Files, media db and transaction log get the same content as if
+     * {@link #applyChanges(File, String, long, boolean, PhotoPropertiesDiffCopy)}
+     * was called for every file one after the other: the log entries of every file are
+     * collected in memory and written in the order of files.
+     *
+     * Only reading and writing the files runs in parallel. Media db updates are serialized.
+     *
+     * Like the sequential loop in {@link de.k3b.io.FileCommands} processing stops at the
+     * first file without result (error or no change): files that have not been started yet are
+     * skipped. Files that are already running are finished and logged.
+     *
+     * @param threadCount 1 or less: process all files in the calling thread.
+     * @param progessListener if not null it is called every {@link LibGlobal#itemsPerProgress} files.
+     *                        If it returns false files that have not been started yet are skipped.
+     * @return for every file the new values or null if no change, error, canceled or skipped.
+     */
+    public PhotoPropertiesUpdateHandler[] applyChanges(SelectedFiles files, PhotoPropertiesDiffCopy metaDiffCopy,
+                                                       int threadCount, IProgessListener progessListener) {
+        final int size = files.size();
+        final PhotoPropertiesUpdateHandler[] result = new PhotoPropertiesUpdateHandler[size];
+
+        // bounded number of files in progress: memory for the logs is limited
+        final int maxPending = (threadCount > 1) ? (2 * threadCount) : 1;
+        final ExecutorService executor = (threadCount > 1) ? Executors.newFixedThreadPool(threadCount) : null;
+        final LinkedList<UpdateJob> pending = new LinkedList<UpdateJob>();
+        final long now = new Date().getTime();
+
+        boolean canceled = false;
+        int next = 0;
+        int done = 0;
+        try {
+            while (true) {
+                while (!canceled && (next < size) && (pending.size() < maxPending)) {
+                    UpdateJob job = new UpdateJob(next, files, metaDiffCopy, now);
+                    if (executor != null) job.future = executor.submit(job);
+                    pending.add(job);
+                    next++;
+                }
+
+                if (pending.isEmpty()) break;
+
+                UpdateJob job = pending.removeFirst();
+                result[job.index] = job.getResult(canceled);
+                if (result[job.index] == null) {
+                    // error or no change: stop as the sequential loop does
+                    canceled = true;
+                }
+                if ((transactionLogger != null) && (job.logger != null)) {
+                    job.logger.flushTo(transactionLogger);
+                }
+                done++;
+
+                if (!canceled && (progessListener != null) && ((done % LibGlobal.itemsPerProgress) == 0)) {
+                    canceled = !progessListener.onProgress(done, size, (job.file == null) ? null : job.file.toString());
+                }
+            }
+        } finally {
+            if (executor != null) executor.shutdown();
+        }
+
+        if (progessListener != null) progessListener.onProgress(done, size, null);
+        return result;
+    }
+
+    /** {@link #applyChanges(File, String, long, boolean, PhotoPropertiesDiffCopy)} for one of the {@link SelectedFiles} */
+    private class UpdateJob implements Callable<PhotoPropertiesUpdateHandler> {
+        private final int index;
+        private final File file;
+        private final long id;
+        private final PhotoPropertiesDiffCopy metaDiffCopy;
+        private final BufferedTransactionLogger logger;
+        private Future<PhotoPropertiesUpdateHandler> future = null;
+
+        UpdateJob(int index, SelectedFiles files, PhotoPropertiesDiffCopy metaDiffCopy, long now) {
+            this.index = index;
+            this.file = FileUtils.tryGetCanonicalFile(files.getFile(index));
+            Long id = files.getId(index);
+            this.id = (id == null) ? 0 : id.longValue();
+            this.metaDiffCopy = metaDiffCopy;
+            this.logger = (transactionLogger == null) ? null : new BufferedTransactionLogger(now);
+            if (this.logger != null) {
+                this.logger.set(this.id, (this.file == null) ? null : this.file.getAbsolutePath());
+            }
+        }
+
+        @Override
+        public PhotoPropertiesUpdateHandler call() {
+            if (file == null) return null;
+            return applyChanges(file, file.getAbsolutePath(), id, false, metaDiffCopy, logger);
+        }
+
+        /** waits for the result. If canceled: jobs that have not been started are not executed */
+        PhotoPropertiesUpdateHandler getResult(boolean canceled) {
+            if (future == null) {
+                return canceled ? null : call();
+            }
+            if (canceled && future.cancel(false)) return null;
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                PhotoPropertiesBulkUpdateService.logger.error("Error processing " + file, e.getCause());
+                return null;
+            }
+        }
+    }
+
+    private PhotoPropertiesUpdateHandler applyChanges(File inFilePath, String outFilePath,
+                                                      long id, boolean deleteOriginalWhenFinished,
+                                                      PhotoPropertiesDiffCopy metaDiffCopy,
+                                                      TransactionLoggerBase transactionLogger) {
         StringBuilder sb = (LibGlobal.debugEnabled)
                 ? createDebugStringBuilder(inFilePath)
                 : null;
@@ -89,7 +222,7 @@ public class PhotoPropertiesBulkUpdateService {
 
                 boolean sameFile = (outFile.equals(inFilePath));
 
-                File newOutFile = handleVisibility(metaDiffCopy.getVisibility(), outFile, exif);
+                File newOutFile = handleVisibility(metaDiffCopy.getVisibility(), outFile, exif, transactionLogger);
                 if (newOutFile != null) {
                     outFile = newOutFile;
                     outFilePath = outFile.getAbsolutePath();
@@ -111,7 +244,10 @@ public class PhotoPropertiesBulkUpdateService {
                         inFilePath.setLastModified(lastModified);
                     }
 
-                    id = updateMediaDB(id, inFilePath.getAbsolutePath(), outFile);
+                    synchronized (updateMediaDBLock) {
+                        // media db implementation is not thread safe
+                        id = updateMediaDB(id, inFilePath.getAbsolutePath(), outFile);
+                    }
 
                     if (sb != null) {
                         PhotoPropertiesUpdateHandler exifVerify = PhotoPropertiesUpdateHandler.create (inFilePath.getAbsolutePath(),
@@ -182,6 +318,11 @@ public class PhotoPropertiesBulkUpdateService {
 
     /** return modified out file or null if filename must not change due to visibility rule */
     protected File handleVisibility(VISIBILITY newVisibility, File outFile, PhotoPropertiesUpdateHandler exif) {
+        return handleVisibility(newVisibility, outFile, exif, this.transactionLogger);
+    }
+
+    private File handleVisibility(VISIBILITY newVisibility, File outFile, PhotoPropertiesUpdateHandler exif,
+                                  TransactionLoggerBase transactionLogger) {
         if (LibGlobal.renamePrivateJpg) {
             final String oldAbsoluteOutPath = (outFile == null) ? null : outFile.getAbsolutePath();
             String newAbsoluteOutPath = PhotoPropertiesUtil.getModifiedPath(oldAbsoluteOutPath, newVisibility);
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.k3b.LibGlobal;
+import de.k3b.io.FileProcessor;
+import de.k3b.io.FileUtils;
+import de.k3b.io.VISIBILITY;
+
+/**
+ * Persistent cache for photo properties that are expensive to extract
+ * (image size, exif, xmp sidecar).
+ *
+ * An {@link Entry} is only valid as long as file length, file lastModified and
+ * lastModified of both possible xmp sidecar files are unchanged,
+ * so a cache hit costs some file stats but no file read.
+ *
+ * The cache is kept in memory (lru with {@link LibGlobal#photoPropertiesCacheMaxEntries})
+ * and is loaded from/saved to a compact binary file.
+ *
+ * Created by k3b on 25.03.2020.
+ */
+public class PhotoPropertiesCache {
+    private static final Logger logger = LoggerFactory.getLogger(LibGlobal.LOG_TAG);
+
+    private static final int FILE_MAGIC = 0x4b334243; // "K3BC"
+    private static final int FILE_VERSION = 1;
+
+    /** marks a null string, date, int, double or visibility in the cache file */
+    private static final byte NULL = 0;
+    private static final byte NOT_NULL = 1;
+
+    private final File mCacheFile;
+
+    /** key is canonical path of the image file. in lru order */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PhotoPropertiesCache.Entry> eldest) {
+            return size() > LibGlobal.photoPropertiesCacheMaxEntries;
+        }
+    };
+
+    /** the entries are only valid for this variant of the extraction logic */
+    private String mVariant = "";
+
+    private boolean mLoaded = false;
+    private boolean mModified = false;
+
+    /** Cached properties of one image file */
+    public static class Entry {
+        private long mFileLength;
+        private long mFileLastModified;
+        private long mXmpLongLastModified;
+        private long mXmpShortLastModified;
+
+        private int mWidth = 0;
+        private int mHeight = 0;
+        private Integer mOrientation = null;
+        private String mMimeType = null;
+
+        /** value of {@link XmpSegment#getFilelastModified()} of the loaded sidecar. */
+        private long mXmpFilelastModified = 0;
+
+        private PhotoPropertiesDTO mProperties = null;
+
+        public int getWidth() {return mWidth;}
+        public Entry setWidth(int width) {mWidth = width; return this;}
+
+        public int getHeight() {return mHeight;}
+        public Entry setHeight(int height) {mHeight = height; return this;}
+
+        /** orientation in degrees or null if unknown */
+        public Integer getOrientation() {return mOrientation;}
+        public Entry setOrientation(Integer orientation) {mOrientation = orientation; return this;}
+
+        public String getMimeType() {return mMimeType;}
+        public Entry setMimeType(String mimeType) {mMimeType = mimeType; return this;}
+
+        public long getXmpFilelastModified() {return mXmpFilelastModified;}
+        public Entry setXmpFilelastModified(long xmpFilelastModified) {mXmpFilelastModified = xmpFilelastModified; return this;}
+
+        /** the extracted properties or null if the file has neither exif nor xmp */
+        public IPhotoProperties getProperties() {return mProperties;}
+        public Entry setProperties(IPhotoProperties properties) {
+            mProperties = (properties == null) ? null : new PhotoPropertiesDTO(properties);
+            return this;
+        }
+
+        /** remembers the file state this entry belongs to */
+        private void setFileState(File file, String canonicalPath) {
+            mFileLength = file.length();
+            mFileLastModified = file.lastModified();
+            mXmpLongLastModified = FileProcessor.getSidecar(canonicalPath, true).lastModified();
+            mXmpShortLastModified = FileProcessor.getSidecar(canonicalPath, false).lastModified();
+        }
+
+        private boolean isSameFileState(File file, String canonicalPath) {
+            return (mFileLastModified == file.lastModified())
+                    && (mFileLength == file.length())
+                    && (mXmpLongLastModified == FileProcessor.getSidecar(canonicalPath, true).lastModified())
+                    && (mXmpShortLastModified == FileProcessor.getSidecar(canonicalPath, false).lastModified());
+        }
+    }
+
+    public PhotoPropertiesCache(File cacheFile) {
+        mCacheFile = cacheFile;
+    }
+
+    /**
+     * Entries that were created by a different variant of the extraction logic
+     * (i.e. different {@link LibGlobal#mediaUpdateStrategy}) are discarded.
+     */
+    public synchronized PhotoPropertiesCache setVariant(String variant) {
+        if (variant == null) variant = "";
+        load();
+        if (!variant.equals(mVariant)) {
+            if (!mEntries.isEmpty()) {
+                mEntries.clear();
+                mModified = true;
+            }
+            mVariant = variant;
+        }
+        return this;
+    }
+
+    /** @return cached entry or null if not in cache or if file or sidecar has changed since. */
+    public synchronized Entry get(File file, String canonicalPath) {
+        load();
+        Entry result = mEntries.get(canonicalPath);
+        if ((result != null) && !result.isSameFileState(file, canonicalPath)) {
+            mEntries.remove(canonicalPath);
+            mModified = true;
+            result = null;
+        }
+        return result;
+    }
+
+    /** adds entry to the cache, valid for the current state of file and its sidecars */
+    public synchronized void put(File file, String canonicalPath, Entry entry) {
+        load();
+        entry.setFileState(file, canonicalPath);
+        mEntries.put(canonicalPath, entry);
+        mModified = true;
+    }
+
+    public synchronized void remove(String canonicalPath) {
+        load();
+        if (mEntries.remove(canonicalPath) != null) mModified = true;
+    }
+
+    public synchronized void clear() {
+        mLoaded = true;
+        mEntries.clear();
+        mModified = true;
+    }
+
+    public synchronized int size() {
+        load();
+        return mEntries.size();
+    }
+
+    /** writes the cache file if there were changes since load */
+    public synchronized void save() {
+        if (!mModified || (mCacheFile == null)) return;
+
+        File tempFile = new File(mCacheFile.getAbsolutePath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            File parent = mCacheFile.getParentFile();
+            if (parent != null) parent.mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            write(out);
+            out.close();
+            out = null;
+            if (mCacheFile.exists()) mCacheFile.delete();
+            if (!tempFile.renameTo(mCacheFile)) {
+                throw new IOException("cannot rename to " + mCacheFile);
+            }
+            mModified = false;
+        } catch (IOException ex) {
+            logger.warn("PhotoPropertiesCache.save(" + mCacheFile + ") failed " + ex.getMessage(), ex);
+            tempFile.delete();
+        } finally {
+            FileUtils.close(out, mCacheFile);
+        }
+    }
+
+    /** loads the cache file once. A missing or invalid cache file results in an empty cache. */
+    private void load() {
+        if (mLoaded) return;
+        mLoaded = true;
+
+        if ((mCacheFile == null) || !mCacheFile.exists()) return;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mCacheFile)));
+            read(in, mCacheFile.length());
+        } catch (IOException ex) {
+            logger.warn("PhotoPropertiesCache.load(" + mCacheFile + ") failed " + ex.getMessage());
+            mEntries.clear();
+            mModified = true;
+        } finally {
+            FileUtils.close(in, mCacheFile);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeUTF(mVariant);
+        out.writeInt(mEntries.size());
+
+        // eldest first so that lru order survives save and load
+        for (Map.Entry<String, Entry> item : mEntries.entrySet()) {
+            Entry entry = item.getValue();
+            out.writeUTF(item.getKey());
+            out.writeLong(entry.mFileLength);
+            out.writeLong(entry.mFileLastModified);
+            out.writeLong(entry.mXmpLongLastModified);
+            out.writeLong(entry.mXmpShortLastModified);
+            out.writeInt(entry.mWidth);
+            out.writeInt(entry.mHeight);
+            writeInteger(out, entry.mOrientation);
+            writeString(out, entry.mMimeType);
+            out.writeLong(entry.mXmpFilelastModified);
+
+            PhotoPropertiesDTO properties = entry.mProperties;
+            if (properties == null) {
+                out.writeByte(NULL);
+            } else {
+                out.writeByte(NOT_NULL);
+                writeString(out, properties.getTitle());
+                writeString(out, properties.getDescription());
+                Date dateTimeTaken = properties.getDateTimeTaken();
+                if (dateTimeTaken == null) {
+                    out.writeByte(NULL);
+                } else {
+                    out.writeByte(NOT_NULL);
+                    out.writeLong(dateTimeTaken.getTime());
+                }
+                writeDouble(out, properties.getLatitude());
+                writeDouble(out, properties.getLongitude());
+                writeInteger(out, properties.getRating());
+                VISIBILITY visibility = properties.getVisibility();
+                out.writeByte((visibility == null) ? -1 : visibility.ordinal());
+
+                List<String> tags = properties.getTags();
+                out.writeInt((tags == null) ? -1 : tags.size());
+                if (tags != null) {
+                    for (String tag : tags) {
+                        writeString(out, tag);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param maxLength size of the cache file. Lengths and counts that do not fit into it are corrupt:
+     *                  they would throw OutOfMemoryError or NegativeArraySizeException.
+     */
+    private void read(DataInputStream in, long maxLength) throws IOException {
+        if ((in.readInt() != FILE_MAGIC) || (in.readInt() != FILE_VERSION)) {
+            throw new IOException("unsupported cache file format");
+        }
+        mVariant = in.readUTF();
+
+        VISIBILITY[] visibilities = VISIBILITY.values();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            Entry entry = new Entry();
+            entry.mFileLength = in.readLong();
+            entry.mFileLastModified = in.readLong();
+            entry.mXmpLongLastModified = in.readLong();
+            entry.mXmpShortLastModified = in.readLong();
+            entry.mWidth = in.readInt();
+            entry.mHeight = in.readInt();
+            entry.mOrientation = readInteger(in);
+            entry.mMimeType = readString(in, maxLength);
+            entry.mXmpFilelastModified = in.readLong();
+
+            if (in.readByte() != NULL) {
+                PhotoPropertiesDTO properties = new PhotoPropertiesDTO();
+                properties.setTitle(readString(in, maxLength));
+                properties.setDescription(readString(in, maxLength));
+                if (in.readByte() != NULL) {
+                    properties.setDateTimeTaken(new Date(in.readLong()));
+                }
+                Double latitude = readDouble(in);
+                properties.setLatitudeLongitude(latitude, readDouble(in));
+                properties.setRating(readInteger(in));
+                int visibility = in.readByte();
+                if ((visibility >= 0) && (visibility < visibilities.length)) {
+                    properties.setVisibility(visibilities[visibility]);
+                }
+
+                // every tag needs at least 4 bytes for its length
+                int tagCount = checkLength(in.readInt(), maxLength / 4);
+                if (tagCount >= 0) {
+                    List<String> tags = new ArrayList<String>(tagCount);
+                    for (int t = 0; t < tagCount; t++) {
+                        tags.add(readString(in, maxLength));
+                    }
+                    properties.setTags(tags);
+                }
+                entry.mProperties = properties;
+            }
+            mEntries.put(path, entry);
+        }
+        mModified = false;
+    }
+
+    /** unlike {@link DataOutputStream#writeUTF(String)} there is no 64k limit (i.e. long descriptions) */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in, long maxLength) throws IOException {
+        int length = checkLength(in.readInt(), maxLength);
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /** @return value if it is -1 (null) or not bigger than max. Else the cache file is corrupt. */
+    private static int checkLength(int value, long max) throws IOException {
+        if ((value < -1) || (value > max)) {
+            throw new IOException("corrupt cache file: invalid length " + value);
+        }
+        return value;
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else {
+            out.writeByte(NOT_NULL);
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return (in.readByte() == NULL) ? null : Integer.valueOf(in.readInt());
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else {
+            out.writeByte(NOT_NULL);
+            out.writeDouble(value);
+        }
+    }
+
+    private static Double readDouble(DataInputStream in) throws IOException {
+        return (in.readByte() == NULL) ? null : Double.valueOf(in.readDouble());
+    }
+
+    @Override
+    public String toString() {
+        return "PhotoPropertiesCache(" + mCacheFile + ", " + mEntries.size() + " entries)";
+    }
+}
@@ -108,22 +108,44 @@ public class PhotoPropertiesImageReader implements IPhotoProperties, Closeable {
         mExternalXmpDir = externalXmpContent;
         this.dbg_context = _dbg_context + "->PhotoPropertiesImageReader(" + mFilename+ ") ";
 
-        Metadata metadata = null;
+        JpegSegmentScanner header = null;
         File jpegFile = (inputStream == null) ? new File(filename) : null;
         try {
-            if (inputStream != null) {
+            // JpegSegmentScanner reads the header in big chunks and stops at image data
+            // so JpegMetadataReader does not need to read the file byte by byte.
+            header = (inputStream != null)
+                    ? JpegSegmentScanner.scan(inputStream)
+                    : JpegSegmentScanner.scan(jpegFile);
+        } catch (JpegSegmentScanner.InvalidJpegException e) {
+            logger.error(dbg_context +" Error open file " + e.getMessage(), e);
+        }
+        return load(header);
+    }
+
+    /**
+     * Reads Meta data from a jpg header that has already been read by {@link JpegSegmentScanner}.
+     */
+    public PhotoPropertiesImageReader load(JpegSegmentScanner header, String filename, IPhotoProperties externalXmpContent, String _dbg_context) throws IOException {
+        mInitExecuted = false;
+        mFilename = filename;
+        mExternalXmpDir = externalXmpContent;
+        this.dbg_context = _dbg_context + "->PhotoPropertiesImageReader(" + mFilename+ ") ";
+        return load(header);
+    }
+
+    private PhotoPropertiesImageReader load(JpegSegmentScanner header) throws IOException {
+        Metadata metadata = null;
+        if (header != null) {
+            try {
                 // so proguard can eleminate support for gif, png and other image formats
-                metadata = JpegMetadataReader.readMetadata(inputStream);
+                metadata = JpegMetadataReader.readMetadata(header.createHeaderInputStream());
                 // metadata = ImageMetadataReader.readMetadata(inputStream);
-            } else {
-                metadata = JpegMetadataReader.readMetadata(jpegFile);
-                // metadata = ImageMetadataReader.readMetadata(jpegFile);
-            }
-            // IptcDirectory.TAG_ARM_VERSION
-        } catch (ImageProcessingException e) {
-            logger.error(dbg_context +" Error open file " + e.getMessage(), e);
+                // IptcDirectory.TAG_ARM_VERSION
+            } catch (ImageProcessingException e) {
+                logger.error(dbg_context +" Error open file " + e.getMessage(), e);
 
-            metadata = null;
+                metadata = null;
+            }
         }
         mMetadata = metadata;
 
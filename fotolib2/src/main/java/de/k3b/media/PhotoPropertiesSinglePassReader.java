@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.k3b.LibGlobal;
+
+/**
+ * Reads all meta data of a jpg file with one single pass over the jpg header:
+ * exif ({@link ExifInterfaceEx}), embedded xmp, iptc and jpg-comment
+ * ({@link PhotoPropertiesImageReader}) are decoded from the same in-memory copy of the header
+ * that was read once by {@link JpegSegmentScanner}.
+ *
+ * The xmp sidecar file (if it exists) is also loaded only once and shared by all decoders.
+ *
+ * Created by k3b on 19.03.2020.
+ */
+public class PhotoPropertiesSinglePassReader {
+    private static final Logger logger = LoggerFactory.getLogger(LibGlobal.LOG_TAG);
+
+    private final String mAbsoluteJpgPath;
+    private final String mDbg_context;
+    private final PhotoPropertiesXmpSegment mXmpSidecar;
+
+    /** null if jpg does not exist or is not a valid jpg */
+    private final JpegSegmentScanner mHeader;
+
+    private ExifInterfaceEx mExif = null;
+    private PhotoPropertiesImageReader mImageReader = null;
+    private boolean mImageReaderLoaded = false;
+
+    private PhotoPropertiesSinglePassReader(String absoluteJpgPath, JpegSegmentScanner header,
+                                            PhotoPropertiesXmpSegment xmpSidecar, String dbg_context) {
+        mAbsoluteJpgPath = absoluteJpgPath;
+        mHeader = header;
+        mXmpSidecar = xmpSidecar;
+        mDbg_context = dbg_context + "->PhotoPropertiesSinglePassReader(" + absoluteJpgPath + ") ";
+    }
+
+    /** loads jpg header and the corresponding xmp sidecar file */
+    public static PhotoPropertiesSinglePassReader load(String absoluteJpgPath, String dbg_context) {
+        return load(absoluteJpgPath,
+                PhotoPropertiesXmpSegment.loadXmpSidecarContentOrNull(absoluteJpgPath, dbg_context),
+                dbg_context);
+    }
+
+    /**
+     * loads jpg header.
+     *
+     * @param xmpSidecar if not null content of xmp sidecar file that has already been loaded
+     */
+    public static PhotoPropertiesSinglePassReader load(String absoluteJpgPath,
+                                                       PhotoPropertiesXmpSegment xmpSidecar,
+                                                       String dbg_context) {
+        JpegSegmentScanner header = null;
+        try {
+            header = JpegSegmentScanner.scan(new File(absoluteJpgPath));
+        } catch (IOException ex) {
+            if (LibGlobal.debugEnabledJpgMetaIo) {
+                logger.debug(dbg_context + " cannot read jpg header of " + absoluteJpgPath
+                        + ": " + ex.getMessage());
+            }
+        }
+        return new PhotoPropertiesSinglePassReader(absoluteJpgPath, header, xmpSidecar, dbg_context);
+    }
+
+    /** true if jpg file exists and has a valid jpg header */
+    public boolean isValidJpg() {
+        return mHeader != null;
+    }
+
+    /** the jpg header or null if not a valid jpg */
+    public JpegSegmentScanner getHeader() {
+        return mHeader;
+    }
+
+    /** size, orientation and mime type from the jpg header or null if not a valid jpg */
+    public ImageGeometry getGeometry() {
+        return ImageGeometry.fromJpeg(mHeader);
+    }
+
+    /** content of xmp sidecar file or null if there is none */
+    public PhotoPropertiesXmpSegment getXmpSidecar() {
+        return mXmpSidecar;
+    }
+
+    /** exif data or null if not a valid jpg. Can be used to modify and save exif data. */
+    public ExifInterfaceEx getExif() {
+        if ((mExif == null) && (mHeader != null)) {
+            ExifInterfaceEx exif = new ExifInterfaceEx(mHeader, mAbsoluteJpgPath, mXmpSidecar, mDbg_context);
+            if (exif.isValidJpgExifFormat()) mExif = exif;
+        }
+        return mExif;
+    }
+
+    /** exif, embedded xmp, iptc and comment or null if not a valid jpg. */
+    public PhotoPropertiesImageReader getImageReader() {
+        if (!mImageReaderLoaded && (mHeader != null)) {
+            mImageReaderLoaded = true;
+            try {
+                mImageReader = new PhotoPropertiesImageReader().load(mHeader, mAbsoluteJpgPath, mXmpSidecar, mDbg_context);
+            } catch (IOException ex) {
+                logger.error(mDbg_context + " Error decoding " + ex.getMessage(), ex);
+                mImageReader = null;
+            }
+        }
+        return mImageReader;
+    }
+
+    /**
+     * Combined view of all meta data sources using strategy {@link LibGlobal#mediaUpdateStrategy}
+     * as {@link PhotoPropertiesChainReader} would do:
+     * values from jpg only (J) or xmp-sidecar values preferred over jpg values.
+     *
+     * @return null if there is neither a valid jpg nor a xmp sidecar file.
+     */
+    public IPhotoProperties getPhotoProperties() {
+        IPhotoProperties jpg = getImageReader();
+        if (jpg == null) return mXmpSidecar;
+        if (LibGlobal.mediaUpdateStrategy.contains("J")) return jpg;
+        return new PhotoPropertiesChainReader(mXmpSidecar, jpg);
+    }
+}
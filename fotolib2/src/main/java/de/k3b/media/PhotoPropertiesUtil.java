@@ -24,7 +24,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FilenameFilter;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumSet;
@@ -355,18 +354,14 @@ public class PhotoPropertiesUtil {
         return notFoundValue;
     }
 
-    /** loads IPhotoProperties from jpg and corresponding xmp */
+    /**
+     * loads IPhotoProperties from jpg and corresponding xmp.
+     * If fileName is not a (valid) jpg only the xmp sidecar content is returned.
+     */
     public static IPhotoProperties loadExifAndXmp(String fileName, String dbg_context) {
-        try {
-            PhotoPropertiesXmpSegment xmp = PhotoPropertiesXmpSegment.loadXmpSidecarContentOrNull(fileName, dbg_context);
-
-            PhotoPropertiesImageReader jpg = new PhotoPropertiesImageReader().load(fileName, null, xmp, dbg_context);
-
-            return jpg;
-        } catch (IOException ex) {
-            logger.error(dbg_context, "PhotoPropertiesUtil.loadExifAndXmp", ex);
-        }
-        return null;
+        PhotoPropertiesSinglePassReader reader = PhotoPropertiesSinglePassReader.load(fileName, dbg_context);
+        IPhotoProperties jpg = reader.getImageReader();
+        return (jpg != null) ? jpg : reader.getXmpSidecar();
     }
 
     /** #132: reads lat,lon,description,tags from files until tags and lat/long are found */
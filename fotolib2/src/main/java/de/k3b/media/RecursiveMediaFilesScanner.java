@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.k3b.io.FileUtils;
+
+/**
+ * Platform neutral engine that finds all photos below some folders.
+ *
+ * Every folder is listed only once. Symlinked folders are scanned under their canonical
+ * path and only if that path was not scanned yet. Sub folders are scanned in parallel with a
+ * {@link ForkJoinPool} if threadCount > 1. The paths of found photos are given to
+ * {@link #onMediaFiles(String, String[])} in batches.
+ *
+ * If scanning is canceled every folder or file that was not scanned yet is given to
+ * {@link #onSkipped(String)} so that scanning can be resumed later.
+ *
+ * ForkJoinPool is not available on android before 5.0 (api 21). Use threadCount 1 there.
+ *
+ * Created by k3b on 26.03.2020.
+ */
+public abstract class RecursiveMediaFilesScanner {
+    private final int mThreadCount;
+    private final int mBatchSize;
+    private volatile boolean mCancelled = false;
+
+    /** {@link #onMediaFiles(String, String[])} is never called in parallel */
+    private final Object mConsumerLock = new Object();
+    private int mResultCount = 0;
+
+    /** canonical paths of all folders that are scanned. Prevents duplicates and symlink loops. */
+    private final Set<String> mScannedDirs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * @param threadCount number of folders that are listed in parallel. 1: sequential without ForkJoinPool.
+     * @param batchSize max number of photos per {@link #onMediaFiles(String, String[])} call.
+     */
+    public RecursiveMediaFilesScanner(int threadCount, int batchSize) {
+        mThreadCount = threadCount;
+        mBatchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Called for photos found in one folder. Calls are serialized.
+     *
+     * @param folderPath canonical path of the folder containing the photos.
+     * @param fullPaths absolute path of photos.
+     * @return number of processed photos.
+     */
+    protected abstract int onMediaFiles(String folderPath, String[] fullPaths);
+
+    /** Called for every folder or file that was not scanned because scanning was canceled. */
+    protected void onSkipped(String fullPath) {
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Scans folders recursively or single photo files.
+     *
+     * @return sum of {@link #onMediaFiles(String, String[])} results.
+     */
+    public int scan(String... pathNames) {
+        List<File> dirs = new ArrayList<File>();
+        if (pathNames != null) {
+            for (String pathName : pathNames) {
+                if ((pathName != null) && (pathName.length() > 0)) {
+                    scanRoot(new File(pathName), dirs);
+                }
+            }
+        }
+
+        if (!dirs.isEmpty()) {
+            if (mThreadCount > 1) {
+                ForkJoinScanner.scan(this, dirs, mThreadCount);
+            } else {
+                for (File dir : dirs) {
+                    scanRecursive(dir);
+                }
+            }
+        }
+        return mResultCount;
+    }
+
+    /** photos are processed immediately. Folders are added to dirs */
+    private void scanRoot(File file, List<File> dirs) {
+        final String fullFilePath = FileUtils.tryGetCanonicalPath(file, null);
+        if (fullFilePath != null) {
+            if (isCancelled()) {
+                onSkipped(fullFilePath);
+            } else if (file.isDirectory()) {
+                // photo paths below are build from the canonical folder path without resolving every photo
+                dirs.add(new File(fullFilePath));
+            } else if (PhotoPropertiesUtil.isImage(file.getName(), PhotoPropertiesUtil.IMG_TYPE_ALL)) {
+                onMediaFilesSerialized(fullFilePath, new String[]{fullFilePath});
+            }
+        }
+    }
+
+    private void scanRecursive(File dir) {
+        List<File> subDirs = scanDir(dir);
+        if (subDirs != null) {
+            for (File subDir : subDirs) {
+                scanRecursive(subDir);
+            }
+        }
+    }
+
+    /**
+     * Lists dir once: photos are given to {@link #onMediaFiles(String, String[])},
+     * visible sub folders are returned.
+     *
+     * @return null if canceled or if there are no sub folders
+     */
+    List<File> scanDir(File dir) {
+        String dirPath = dir.getPath();
+        if (isCancelled()) {
+            onSkipped(dirPath);
+            return null;
+        }
+
+        if (!mScannedDirs.add(dirPath)) return null; // already scanned via an other path
+
+        String[] names = dir.list();
+        if (names == null) return null;
+
+        List<String> photos = new ArrayList<String>();
+        List<File> subDirs = null;
+        for (String name : names) {
+            if (PhotoPropertiesUtil.isImage(name, PhotoPropertiesUtil.IMG_TYPE_ALL)) {
+                // no isDirectory() for photos: most entries are photos
+                photos.add(dirPath + "/" + name);
+            } else if (!name.startsWith(".")) {
+                File candidate = new File(dir, name);
+                if (candidate.isDirectory()) {
+                    // paths below dir are canonical unless candidate is a symlink
+                    String canonicalPath = FileUtils.tryGetCanonicalPath(candidate, null);
+                    if (canonicalPath != null) {
+                        if (subDirs == null) subDirs = new ArrayList<File>();
+                        subDirs.add(canonicalPath.equals(candidate.getPath()) ? candidate : new File(canonicalPath));
+                    }
+                }
+            }
+        }
+
+        for (int start = 0; start < photos.size(); start += mBatchSize) {
+            List<String> batch = photos.subList(start, Math.min(photos.size(), start + mBatchSize));
+            onMediaFilesSerialized(dirPath, batch.toArray(new String[batch.size()]));
+        }
+        return subDirs;
+    }
+
+    private void onMediaFilesSerialized(String folderPath, String[] fullPaths) {
+        synchronized (mConsumerLock) {
+            mResultCount += onMediaFiles(folderPath, fullPaths);
+        }
+    }
+
+    /** Only loaded if threadCount > 1 because ForkJoinPool does not exist on older platforms. */
+    private static class ForkJoinScanner extends RecursiveAction {
+        private final RecursiveMediaFilesScanner mOwner;
+
+        /** null: scan mSubDirs only */
+        private final File mDir;
+        private final List<File> mSubDirs;
+
+        private ForkJoinScanner(RecursiveMediaFilesScanner owner, File dir, List<File> subDirs) {
+            mOwner = owner;
+            mDir = dir;
+            mSubDirs = subDirs;
+        }
+
+        static void scan(RecursiveMediaFilesScanner owner, List<File> dirs, int threadCount) {
+            ForkJoinPool pool = new ForkJoinPool(threadCount);
+            try {
+                pool.invoke(new ForkJoinScanner(owner, null, dirs));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        @Override
+        protected void compute() {
+            List<File> subDirs = (mDir == null) ? mSubDirs : mOwner.scanDir(mDir);
+            if (subDirs != null) {
+                List<ForkJoinScanner> tasks = new ArrayList<ForkJoinScanner>(subDirs.size());
+                for (File subDir : subDirs) {
+                    tasks.add(new ForkJoinScanner(mOwner, subDir, null));
+                }
+                invokeAll(tasks);
+            }
+        }
+    }
+}
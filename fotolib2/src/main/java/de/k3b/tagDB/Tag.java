@@ -55,11 +55,17 @@ public class Tag{
     private String name;
     private Tag parent;
 
+    /** if not null the {@link TagList} that must be informed about changes of name or parent */
+    private TagList owner = null;
+
     public String getName() {
         return name;
     }
     public Tag setName(String name) {
+        TagList owner = this.owner;
+        if (owner != null) owner.onChanging(this);
         this.name = name;
+        if (owner != null) owner.onChanged(this);
         return this;
     }
 
@@ -75,10 +81,21 @@ public class Tag{
         }
 
         // there is no recursion
+        TagList owner = (this.parent != parent) ? this.owner : null;
+        if (owner != null) owner.onChanging(this);
         this.parent = parent;
+        if (owner != null) owner.onChanged(this);
         return this;
     }
 
+    TagList getOwner() {
+        return owner;
+    }
+
+    void setOwner(TagList owner) {
+        this.owner = owner;
+    }
+
     @Override
     public String toString() {
         return getName();
@@ -151,7 +168,7 @@ public class Tag{
     private List<Tag> getChildren(List<Tag> result, List<Tag> all, boolean recursive, boolean includeThis) {
         if (includeThis) result.add(this);
         if (all != null) {
-            for(Tag candidate : all) {
+            for(Tag candidate : TagList.getByParent(all, this)) {
                 if ((candidate != null) && (candidate.parent == this)) {
                     result.add(candidate);
                     if (recursive) candidate.getChildren(result, all, true, includeThis);
@@ -164,7 +181,7 @@ public class Tag{
 
     public static Tag findFirstChildByName(List<Tag> all, Tag parent, String name) {
         if (all != null) {
-            for(Tag candidate : all) {
+            for(Tag candidate : TagList.getByName(all, name)) {
                 if ((candidate != null) && (candidate.parent == parent) && name.equals(candidate.getName())) {
 					return candidate;
                 }
@@ -206,7 +223,7 @@ public class Tag{
                         if (recursive) {
                             result += child.delete(all, recursive);
                         } else {
-                            child.parent = this.parent;
+                            child.setParent(this.parent);
                         }
                     }
                 }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.tagDB;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.k3b.io.StringUtils;
+
+/**
+ * List of {@link Tag}s with a hash index on
+ * lowercase name and on parent so that finding a tag by name
+ * or finding the children of a tag does not have to scan all tags.
+ *
+ * The index is maintained for appends and removes. Any other modification
+ * (insert in the middle, sort, {@link Tag#setName(String)}, {@link Tag#setParent(Tag)})
+ * invalidates the index which is then rebuilt on next lookup.
+ *
+ * An optional {@link ChangeListener} is informed about added, removed and moved tags.
+ * {@link #set(int, Tag)} is treated as reordering (i.e. by {@link Collections#sort(List)})
+ * and is not reported.
+ *
+ * Created by k3b on 21.03.2020.
+ */
+public class TagList extends AbstractList<Tag> implements RandomAccess {
+    private final ArrayList<Tag> mItems = new ArrayList<Tag>();
+
+    /** key is {@link #getNameKey(String)}. values are in list order */
+    private final HashMap<String, List<Tag>> mNameIndex = new HashMap<String, List<Tag>>();
+
+    /** key is parent (null for root). values are in list order */
+    private final IdentityHashMap<Tag, List<Tag>> mChildrenIndex = new IdentityHashMap<Tag, List<Tag>>();
+
+    private boolean mIndexValid = true;
+
+    /** informed about added and removed tags and about tags that changed name or parent */
+    interface ChangeListener {
+        void onAdded(Tag tag);
+
+        void onRemoved(Tag tag);
+
+        /** name or parent of tag has changed. The children are moved together with tag. */
+        void onMoved(Tag tag, String oldPath);
+    }
+
+    private ChangeListener mChangeListener = null;
+
+    /** path before {@link Tag#setName(String)} or {@link Tag#setParent(Tag)} if there is a mChangeListener */
+    private String mChangingPath = null;
+
+    public TagList() {
+    }
+
+    public TagList(Collection<? extends Tag> items) {
+        addAll(items);
+    }
+
+    @Override
+    public Tag get(int index) {
+        return mItems.get(index);
+    }
+
+    @Override
+    public int size() {
+        return mItems.size();
+    }
+
+    @Override
+    public void add(int index, Tag tag) {
+        mItems.add(index, tag);
+        modCount++;
+        attach(tag);
+        if (mIndexValid) {
+            if (index == mItems.size() - 1) {
+                // append keeps the index in list order
+                register(tag);
+            } else {
+                mIndexValid = false;
+            }
+        }
+        if ((mChangeListener != null) && (tag != null)) mChangeListener.onAdded(tag);
+    }
+
+    @Override
+    public Tag set(int index, Tag tag) {
+        Tag old = mItems.set(index, tag);
+        attach(tag);
+        mIndexValid = false;
+        return old;
+    }
+
+    @Override
+    public Tag remove(int index) {
+        Tag old = mItems.remove(index);
+        modCount++;
+        if (mIndexValid) unregister(old);
+        detach(old);
+        if ((mChangeListener != null) && (old != null)) mChangeListener.onRemoved(old);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        for (Tag old : mItems) {
+            detach(old);
+            if ((mChangeListener != null) && (old != null)) mChangeListener.onRemoved(old);
+        }
+        mItems.clear();
+        modCount++;
+        mNameIndex.clear();
+        mChildrenIndex.clear();
+        mIndexValid = true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o instanceof Tag) {
+            // Tag.equals() requires same name ignoring case
+            for (Tag candidate : getByName(((Tag) o).getName())) {
+                if (o.equals(candidate)) return true;
+            }
+            return false;
+        }
+        return super.contains(o);
+    }
+
+    /** @return tags where name might be equal ignoring case, in list order. Never null. */
+    List<Tag> getByName(String name) {
+        if (name == null) return Collections.emptyList();
+        ensureIndex();
+        List<Tag> result = mNameIndex.get(getNameKey(name));
+        return (result == null) ? Collections.<Tag>emptyList() : result;
+    }
+
+    /** @return tags where parent might be parent, in list order. Never null. */
+    List<Tag> getByParent(Tag parent) {
+        ensureIndex();
+        List<Tag> result = mChildrenIndex.get(parent);
+        return (result == null) ? Collections.<Tag>emptyList() : result;
+    }
+
+    /** @return all that might have name. all if all is no {@link TagList} */
+    static List<Tag> getByName(List<Tag> all, String name) {
+        return (all instanceof TagList) ? ((TagList) all).getByName(name) : all;
+    }
+
+    /** @return all that might be children of parent. all if all is no {@link TagList} */
+    static List<Tag> getByParent(List<Tag> all, Tag parent) {
+        return (all instanceof TagList) ? ((TagList) all).getByParent(parent) : all;
+    }
+
+    /** sorts without informing the {@link ChangeListener} */
+    void reorder(Comparator<Tag> comparator) {
+        Collections.sort(mItems, comparator);
+        modCount++;
+        mIndexValid = false;
+    }
+
+    void setChangeListener(ChangeListener changeListener) {
+        mChangeListener = changeListener;
+    }
+
+    /** called by {@link Tag} before name or parent changes */
+    void onChanging(Tag tag) {
+        mIndexValid = false;
+        if (mChangeListener != null) mChangingPath = tag.getPath();
+    }
+
+    /** called by {@link Tag} after name or parent has changed */
+    void onChanged(Tag tag) {
+        if ((mChangeListener != null) && (mChangingPath != null)) {
+            String oldPath = mChangingPath;
+            mChangingPath = null;
+            if (!oldPath.equals(tag.getPath())) mChangeListener.onMoved(tag, oldPath);
+        }
+    }
+
+    private void attach(Tag tag) {
+        if (tag != null) tag.setOwner(this);
+    }
+
+    /** removed tag: later changes of name or parent are not relevant for this any more */
+    private void detach(Tag tag) {
+        if ((tag != null) && (tag.getOwner() == this)) tag.setOwner(null);
+    }
+
+    private void ensureIndex() {
+        if (!mIndexValid) {
+            mNameIndex.clear();
+            mChildrenIndex.clear();
+            for (Tag tag : mItems) {
+                register(tag);
+            }
+            mIndexValid = true;
+        }
+    }
+
+    private void register(Tag tag) {
+        if (tag != null) {
+            add(mNameIndex, getNameKey(tag.getName()), tag);
+
+            List<Tag> children = mChildrenIndex.get(tag.getParent());
+            if (children == null) {
+                children = new ArrayList<Tag>();
+                mChildrenIndex.put(tag.getParent(), children);
+            }
+            children.add(tag);
+        }
+    }
+
+    private void unregister(Tag tag) {
+        if (tag != null) {
+            removeSame(mNameIndex.get(getNameKey(tag.getName())), tag);
+            removeSame(mChildrenIndex.get(tag.getParent()), tag);
+        }
+    }
+
+    private static void add(HashMap<String, List<Tag>> index, String key, Tag tag) {
+        List<Tag> values = index.get(key);
+        if (values == null) {
+            values = new ArrayList<Tag>(1);
+            index.put(key, values);
+        }
+        values.add(tag);
+    }
+
+    /** removes the first entry that is the same instance (not equals) as tag */
+    private static void removeSame(List<Tag> values, Tag tag) {
+        if (values != null) {
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) == tag) {
+                    values.remove(i);
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Key where two names get the same key if {@link String#equalsIgnoreCase(String)}. */
+    static String getNameKey(String name) {
+        return StringUtils.toIgnoreCaseKey(name);
+    }
+}
@@ -24,20 +24,34 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.k3b.LibGlobal;
+import de.k3b.io.FileUtils;
 
 /**
  * Persistence for all known tags.
  *
+ * In journal mode every change of the loaded tags is recorded when it happens.
+ * {@link #save()} only appends the recorded changes to a journal file.
+ * {@link #load()} replays the journal in the same order. If the journal becomes
+ * bigger than {@link #setJournalCompactSize(long)} the repository-file is rewritten
+ * in a background thread and the journal is cleared.
+ *
  * Created by k3b on 04.10.2016.
  */
 
@@ -52,6 +66,18 @@ public class TagRepository {
     private static final String IMPORT_ROOT = "unsorted";
     public static final String INDENT = "\t";
 
+    /** journal line: JOURNAL_ADD path */
+    private static final String JOURNAL_ADD = "+";
+    /** journal line: JOURNAL_MOVE oldPath newPath. Children are moved, too. */
+    private static final String JOURNAL_MOVE = "=";
+    /** journal line: JOURNAL_DELETE path. Only the tag, not its children. */
+    private static final String JOURNAL_DELETE = "-";
+    private static final String JOURNAL_DELIMITER = "\t";
+    private static final String JOURNAL_EXT = ".journal";
+    private static final String TEMP_EXT = ".tmp";
+    private static final String BACKUP_EXT = ".bak";
+    private static final long DEFAULT_JOURNAL_COMPACT_SIZE = 64 * 1024;
+
     private static TagRepository sInstance = null;
 
     /** Where data is loaded from/saved to */
@@ -63,9 +89,48 @@ public class TagRepository {
     /** where new, unknown items are added to */
     private Tag mImportRoot = null;
 
+    /** if not null: save() appends changes to this file instead of rewriting mFile */
+    private final File mJournalFile;
+
+    /** journal mode: changes since last save in journal format */
+    private final StringBuilder mJournalChanges = new StringBuilder();
+
+    /** mJournalFile and mFile must not be modified concurrently. */
+    private final Object mJournalLock = new Object();
+    private long mJournalCompactSize = DEFAULT_JOURNAL_COMPACT_SIZE;
+    private boolean mCompacting = false;
+
+    /** journal mode: records changes of mItemList into mJournalChanges */
+    private final TagList.ChangeListener mJournalRecorder = new TagList.ChangeListener() {
+        @Override
+        public void onAdded(Tag tag) {
+            addJournalRecord(JOURNAL_ADD, tag.getPath());
+        }
+
+        @Override
+        public void onRemoved(Tag tag) {
+            addJournalRecord(JOURNAL_DELETE, tag.getPath());
+        }
+
+        @Override
+        public void onMoved(Tag tag, String oldPath) {
+            addJournalRecord(JOURNAL_MOVE, oldPath, tag.getPath());
+        }
+    };
+
     /** Connect repository to a {@link File}. */
     public TagRepository(File file) {
+        this(file, false);
+    }
+
+    /**
+     * Connect repository to a {@link File}.
+     *
+     * @param useJournal true: {@link #save()} appends changes to file.journal.
+     */
+    public TagRepository(File file, boolean useJournal) {
         this.mFile = file;
+        this.mJournalFile = (useJournal) ? new File(file.getAbsolutePath() + JOURNAL_EXT) : null;
     }
 
     public static TagRepository getInstance() {
@@ -87,7 +152,7 @@ public class TagRepository {
 
             old = TagRepository.sInstance.load();
         }
-        TagRepository.sInstance = new TagRepository(newFile);
+        TagRepository.sInstance = new TagRepository(newFile, true);
 
         if ((old != null) && (TagRepository.sInstance.merge(old) > 0)) {
             TagRepository.sInstance.save();
@@ -203,16 +268,29 @@ public class TagRepository {
      */
     public List<Tag> load() {
         if (mItemList == null) {
-            mItemList = new ArrayList<>();
-            if (this.mFile.exists()) {
+            TagList itemList = new TagList();
+            synchronized (mJournalLock) {
                 try {
-                    load(mItemList, new FileReader(this.mFile));
+                    File file = getExistingOrLeftOver(this.mFile);
+                    if (file != null) {
+                        load(itemList, new FileReader(file));
+                    }
+                    File journalFile = getExistingOrLeftOver(mJournalFile);
+                    if (journalFile != null) {
+                        replayJournal(itemList, new FileReader(journalFile));
+                    }
 
-                    sortByFullPathIgnoreCase();
+                    sortByFullPathIgnoreCase(itemList);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
+                if (mJournalFile != null) {
+                    // unsaved changes of a previous load are lost
+                    mJournalChanges.setLength(0);
+                    itemList.setChangeListener(mJournalRecorder);
+                }
             }
+            mItemList = itemList;
 
             logger.debug(dbg_context + "load(): " + mItemList.size() + " items from " + this.mFile);
 
@@ -227,7 +305,12 @@ public class TagRepository {
     }
 
     private static void sortByFullPathIgnoreCase(List<Tag> mItemList) {
-        Collections.sort(mItemList, Tag.COMPARATOR_HIERARCHY);
+        if (mItemList instanceof TagList) {
+            // reordering is no change for the journal
+            ((TagList) mItemList).reorder(Tag.COMPARATOR_HIERARCHY);
+        } else {
+            Collections.sort(mItemList, Tag.COMPARATOR_HIERARCHY);
+        }
     }
 
     /**
@@ -261,6 +344,10 @@ public class TagRepository {
      * @return false: error.
      */
     public TagRepository save() {
+        if (mJournalFile != null) {
+            saveJournal();
+            return this;
+        }
         try {
             if ((mItemList != null) && (mItemList.size() > 0)) {
                 if (!this.mFile.exists()) {
@@ -280,6 +367,228 @@ public class TagRepository {
         return this;
     }
 
+    /** journal mode: appends changes since last save to journal */
+    private void saveJournal() {
+        if (mItemList == null) return; // not loaded: no changes
+
+        boolean mustCompact = false;
+        synchronized (mJournalLock) {
+            if (mJournalChanges.length() > 0) {
+                try {
+                    if (!mJournalFile.exists()) {
+                        mJournalFile.getParentFile().mkdirs();
+                    }
+                    Writer writer = new FileWriter(mJournalFile, true);
+                    try {
+                        writer.write(COMMENT + " " + new Date() + "\n");
+                        writer.write(mJournalChanges.toString());
+                    } finally {
+                        writer.close();
+                    }
+                    mJournalChanges.setLength(0);
+                    logger.debug(dbg_context + "saveJournal(): " + mItemList.size() + " items to " + this.mJournalFile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            mustCompact = !mCompacting && (mJournalFile.length() > mJournalCompactSize);
+            if (mustCompact) mCompacting = true;
+        }
+
+        if (mustCompact) {
+            final List<Tag> snapshot = copy(mItemList);
+            final long journalLength = mJournalFile.length();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    compact(snapshot, journalLength);
+                }
+            }, "TagRepository-compact").start();
+        }
+    }
+
+    /** journal mode: rewrites repository-file and clears the journal. */
+    public void compact() {
+        if ((mJournalFile == null) || (mItemList == null)) return;
+        save();
+
+        synchronized (mJournalLock) {
+            if (mCompacting) return; // already running in background
+            mCompacting = true;
+        }
+        compact(copy(mItemList), mJournalFile.length());
+    }
+
+    /**
+     * @param snapshot content of repository-file + the first journalLength bytes of the journal.
+     */
+    private void compact(List<Tag> snapshot, long journalLength) {
+        File tempFile = new File(mFile.getAbsolutePath() + TEMP_EXT);
+        try {
+            save(snapshot, new FileWriter(tempFile, false), INDENT);
+
+            synchronized (mJournalLock) {
+                replace(tempFile, mFile);
+
+                // journal entries written while compacting are not in snapshot yet
+                removeJournalStart(journalLength);
+            }
+            logger.debug(dbg_context + "compact(): " + snapshot.size() + " items to " + this.mFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (mJournalLock) {
+                mCompacting = false;
+            }
+        }
+    }
+
+    /** removes the first length bytes of journal. */
+    private void removeJournalStart(long length) throws IOException {
+        if (mJournalFile.length() <= length) {
+            mJournalFile.delete();
+            return;
+        }
+
+        File tempFile = new File(mJournalFile.getAbsolutePath() + TEMP_EXT);
+        InputStream in = new FileInputStream(mJournalFile);
+        OutputStream out = null;
+        try {
+            long skipped = 0;
+            while (skipped < length) {
+                long count = in.skip(length - skipped);
+                if (count <= 0) throw new IOException("Cannot skip in " + mJournalFile);
+                skipped += count;
+            }
+            out = new FileOutputStream(tempFile);
+            FileUtils.copy(in, out);
+        } finally {
+            FileUtils.close(in, mJournalFile);
+            FileUtils.close(out, tempFile);
+        }
+        replace(tempFile, mJournalFile);
+    }
+
+    /**
+     * Replaces dest with the completely written tempFile.
+     *
+     * On file systems where rename replaces an existing file (i.e. android) this is atomic.
+     * Else dest is renamed to a backup first so that there is always a complete
+     * version that {@link #getExistingOrLeftOver(File)} can find.
+     */
+    private static void replace(File tempFile, File dest) throws IOException {
+        if (tempFile.renameTo(dest)) return;
+
+        File backup = new File(dest.getAbsolutePath() + BACKUP_EXT);
+        backup.delete();
+        if (dest.exists() && !dest.renameTo(backup)) {
+            throw new IOException("Cannot rename " + dest + " to " + backup);
+        }
+        if (!tempFile.renameTo(dest)) {
+            throw new IOException("Cannot rename " + tempFile + " to " + dest);
+        }
+        backup.delete();
+    }
+
+    /**
+     * @return file if it exists. Else the left over of an interrupted {@link #replace(File, File)}:
+     * the backup of the old content or the new content. null if there is none of them.
+     */
+    private static File getExistingOrLeftOver(File file) {
+        if (file == null) return null;
+        if (file.exists()) return file;
+
+        File leftOver = new File(file.getAbsolutePath() + BACKUP_EXT);
+        if (leftOver.exists()) return leftOver;
+
+        leftOver = new File(file.getAbsolutePath() + TEMP_EXT);
+        if (leftOver.exists()) {
+            logger.warn(dbg_context + "using interrupted " + leftOver);
+            return leftOver;
+        }
+        return null;
+    }
+
+    /** journal mode: compaction starts after journal has more than size bytes */
+    public TagRepository setJournalCompactSize(long size) {
+        mJournalCompactSize = size;
+        return this;
+    }
+
+    private void addJournalRecord(String command, String... paths) {
+        synchronized (mJournalLock) {
+            mJournalChanges.append(command);
+            for (String path : paths) {
+                mJournalChanges.append(JOURNAL_DELIMITER).append(path);
+            }
+            mJournalChanges.append("\n");
+        }
+    }
+
+    /** copy of all tags with copied parents, so that the copy can be saved in a background thread */
+    private static List<Tag> copy(List<Tag> tags) {
+        IdentityHashMap<Tag, Tag> copies = new IdentityHashMap<Tag, Tag>();
+        List<Tag> result = new ArrayList<Tag>(tags.size());
+        for (Tag tag : tags) {
+            if (tag != null) result.add(copy(copies, tag));
+        }
+        return result;
+    }
+
+    private static Tag copy(Map<Tag, Tag> copies, Tag tag) {
+        if (tag == null) return null;
+        Tag result = copies.get(tag);
+        if (result == null) {
+            result = new Tag().setName(tag.getName());
+            copies.put(tag, result);
+            result.setParent(copy(copies, tag.getParent()));
+        }
+        return result;
+    }
+
+    /** Apply journal changes from reader to all in the order they were recorded */
+    private static void replayJournal(List<Tag> all, Reader reader) throws IOException {
+        String rawLine;
+        BufferedReader br = new BufferedReader(reader);
+        try {
+            while ((rawLine = br.readLine()) != null) {
+                if ((rawLine.length() > 0) && !rawLine.startsWith(COMMENT)) {
+                    replayJournalRecord(all, rawLine.split(JOURNAL_DELIMITER));
+                }
+            }
+        } finally {
+            br.close();
+        }
+    }
+
+    /** Apply one change. Paths are relative to the state after the previous change. */
+    private static void replayJournalRecord(List<Tag> all, String[] record) {
+        if (JOURNAL_ADD.equals(record[0]) && (record.length == 2)) {
+            includePath(all, null, null, record[1]);
+        } else if (JOURNAL_MOVE.equals(record[0]) && (record.length == 3)) {
+            Tag tag = Tag.findByPath(all, null, record[1]);
+            if (tag != null) {
+                String[] elements = TagExpression.getPathElemens(record[2]);
+                int last = elements.length - 1;
+                Tag parent = null;
+                if (last > 1) {
+                    String parentPath = record[2].substring(0, record[2].lastIndexOf('/'));
+                    includePath(all, null, null, parentPath);
+                    parent = Tag.findByPath(all, null, parentPath);
+                }
+                tag.setName(elements[last]).setParent(parent);
+            }
+        } else if (JOURNAL_DELETE.equals(record[0]) && (record.length == 2)) {
+            Tag tag = Tag.findByPath(all, null, record[1]);
+            for (int i = all.size() - 1; (tag != null) && (i >= 0); i--) {
+                if (all.get(i) == tag) {
+                    all.remove(i);
+                    break;
+                }
+            }
+        }
+    }
+
     // Load(new InputStreamReader(inputStream, "UTF-8"))
     /** Load points from reader */
     public void load(List<Tag> result, Reader reader) throws IOException {
@@ -311,6 +620,8 @@ public class TagRepository {
     }
 
     private void inferParentsFromIndents(List<Tag> result, int initialResultSize, List<Integer> indents) {
+        if (indents.isEmpty()) return;
+
         Tag lastTag     = null;
         int lastIndent  = indents.get(0);
         Tag lastParent     = null;
@@ -424,7 +735,7 @@ public class TagRepository {
 
     public static Tag findFirstByName(List<Tag> items, String name) {
         if (items != null) {
-            for (Tag item : items) {
+            for (Tag item : TagList.getByName(items, name)) {
                 if (name.equalsIgnoreCase(item.getName())) return item;
             }
         }
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.transactionlog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import de.k3b.LibGlobal;
+import de.k3b.io.FileUtils;
+
+/**
+ * Streaming reader for the compact binary transaction log written by {@link BinaryTransactionLogWriter}.
+ *
+ * Entries are returned one by one in file (= chronological) order so that
+ * millions of entries can be replayed (i.e. with {@link TransactionLogParser#writeBatch})
+ * while only the path dictionary is kept in memory.
+ *
+ * File format: header (MAGIC int, VERSION byte) followed by records
+ * <ul>
+ *     <li>RECORD_PATH string: defines the next path id (0, 1, 2, ...)</li>
+ *     <li>RECORD_ENTRY pathId mediaID modificationDate-delta command commandData:
+ *     numbers are (zigzag) varints, the date is relative to the previous entry.</li>
+ *     <li>RECORD_CLEAR_PATHS: the following RECORD_PATHs start again with path id 0.
+ *     Keeps the path dictionary of writer and reader bounded.</li>
+ * </ul>
+ * A record that was cut off at the end of the log (i.e. app crashed while writing) ends the log.
+ * Any other invalid content (unknown record type or command, invalid path id) is a corrupt log:
+ * {@link #hasNext()} throws an {@link IllegalStateException}.
+ *
+ * Created by k3b on 27.03.2020.
+ */
+public class BinaryTransactionLogReader implements Iterator<IMediaTransactionLogEntry>, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(LibGlobal.LOG_TAG);
+
+    static final int MAGIC = 0x41504d54; // "APMT"
+    static final int VERSION = 1;
+
+    static final int RECORD_PATH = 1;
+    static final int RECORD_ENTRY = 2;
+    static final int RECORD_CLEAR_PATHS = 3;
+
+    /** longer strings are treated as corrupt length */
+    static final int MAX_STRING_BYTES = 1024 * 1024;
+
+    /** Command codes in the file are indexes into this array. New types must be appended. */
+    static final MediaTransactionLogEntryType[] COMMANDS = {
+            MediaTransactionLogEntryType.DELETE,
+            MediaTransactionLogEntryType.MOVE,
+            MediaTransactionLogEntryType.COPY,
+            MediaTransactionLogEntryType.GPS,
+            MediaTransactionLogEntryType.TAGSADD,
+            MediaTransactionLogEntryType.TAGSREMOVE,
+            MediaTransactionLogEntryType.TAGS,
+            MediaTransactionLogEntryType.DESCRIPTION,
+            MediaTransactionLogEntryType.HEADER,
+            MediaTransactionLogEntryType.RATING,
+            MediaTransactionLogEntryType.VISIBILITY,
+            MediaTransactionLogEntryType.DATE,
+            MediaTransactionLogEntryType.COMMENT,
+            MediaTransactionLogEntryType.MOVE_DIR,
+    };
+
+    private final Object mSource;
+    private final CountingInputStream mCounter;
+    private final DataInputStream mIn;
+
+    private final List<String> mPaths = new ArrayList<String>();
+    private long mLastModificationDate = 0;
+
+    /** file position after the last complete record */
+    private long mValidLength;
+
+    private IMediaTransactionLogEntry mNext = null;
+    private boolean mEof = false;
+
+    public BinaryTransactionLogReader(File logFile) throws IOException {
+        this(new FileInputStream(logFile), logFile);
+    }
+
+    /** @param source for error messages */
+    public BinaryTransactionLogReader(InputStream in, Object source) throws IOException {
+        mSource = source;
+        mCounter = new CountingInputStream(new BufferedInputStream(in));
+        mIn = new DataInputStream(mCounter);
+        try {
+            if ((mIn.readInt() != MAGIC) || (mIn.readByte() != VERSION)) {
+                throw new IOException("unsupported transaction log format " + source);
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+        mValidLength = mCounter.getCount();
+    }
+
+    /** @throws IllegalStateException if the log is corrupt */
+    @Override
+    public boolean hasNext() {
+        if ((mNext == null) && !mEof) {
+            try {
+                mNext = read();
+            } catch (IOException ex) {
+                throw new IllegalStateException("BinaryTransactionLogReader: " + mSource + " " + ex.getMessage(), ex);
+            }
+        }
+        return mNext != null;
+    }
+
+    @Override
+    public IMediaTransactionLogEntry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        IMediaTransactionLogEntry result = mNext;
+        mNext = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return next entry or null if end of log. An incomplete last record is ignored.
+     * @throws IOException if the log is corrupt
+     */
+    IMediaTransactionLogEntry read() throws IOException {
+        try {
+            while (true) {
+                int recordType = mIn.read();
+                if (recordType < 0) break;
+                if (recordType == RECORD_PATH) {
+                    String path = readString(mIn);
+                    mValidLength = mCounter.getCount();
+                    mPaths.add(path);
+                } else if (recordType == RECORD_CLEAR_PATHS) {
+                    mValidLength = mCounter.getCount();
+                    mPaths.clear();
+                } else if (recordType == RECORD_ENTRY) {
+                    int pathId = (int) readVarLong(mIn);
+                    long mediaID = readSignedVarLong(mIn);
+                    long modificationDate = mLastModificationDate + readSignedVarLong(mIn);
+                    int command = mIn.readUnsignedByte();
+                    String commandData = readString(mIn);
+                    if ((pathId < 0) || (pathId >= mPaths.size())) {
+                        throw new IOException("invalid path id " + pathId + " at " + mValidLength);
+                    }
+                    if (command >= COMMANDS.length) {
+                        throw new IOException("unknown command " + command + " at " + mValidLength);
+                    }
+                    mValidLength = mCounter.getCount();
+                    mLastModificationDate = modificationDate;
+                    return new MediaTransactionLogEntryDto(mediaID, mPaths.get(pathId),
+                            modificationDate, COMMANDS[command], commandData);
+                } else {
+                    throw new IOException("invalid record type " + recordType + " at " + mValidLength);
+                }
+            }
+        } catch (EOFException ignore) {
+            // end of file inside the last record: app crashed while writing it
+            logger.warn("BinaryTransactionLogReader: " + mSource + " ignoring incomplete last record at " + mValidLength);
+        } catch (IOException ex) {
+            mEof = true;
+            close();
+            throw ex;
+        }
+        mEof = true;
+        close();
+        return null;
+    }
+
+    /** paths known so far (since the last RECORD_CLEAR_PATHS). index is path id. */
+    List<String> getPaths() {
+        return mPaths;
+    }
+
+    long getLastModificationDate() {
+        return mLastModificationDate;
+    }
+
+    /** file position after the last complete record. */
+    long getValidLength() {
+        return mValidLength;
+    }
+
+    @Override
+    public void close() {
+        FileUtils.close(mIn, mSource);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63) throw new IOException("invalid varint");
+            b = in.readUnsignedByte();
+            result |= ((long) (b & 0x7f)) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    static long readSignedVarLong(DataInputStream in) throws IOException {
+        long zigzag = readVarLong(in);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /** length+1 as varint (0 means null) followed by utf-8 bytes */
+    static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) return null;
+        if (length - 1 > MAX_STRING_BYTES) throw new IOException("invalid string length " + length);
+        byte[] bytes = new byte[(int) length - 1];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /** counts the bytes consumed so far */
+    private static class CountingInputStream extends FilterInputStream {
+        private long mCount = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) mCount++;
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result > 0) mCount += result;
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            mCount += result;
+            return result;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+    }
+}
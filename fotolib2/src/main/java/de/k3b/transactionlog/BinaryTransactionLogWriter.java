@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.transactionlog;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import de.k3b.io.FileUtils;
+
+/**
+ * Appends {@link IMediaTransactionLogEntry}s to a compact binary transaction log.
+ *
+ * Every path is written only once (path dictionary): an entry only contains the path id,
+ * the media id, the modification date relative to the previous entry, a one byte command
+ * and the command data. See {@link BinaryTransactionLogReader} for the format.
+ *
+ * The path dictionary is cleared when it contains {@link #setMaxPaths(int)} paths, so that
+ * writer and reader need bounded memory for logs with any number of different paths.
+ *
+ * Created by k3b on 27.03.2020.
+ */
+public class BinaryTransactionLogWriter implements Closeable {
+    private final Object mDestination;
+    private DataOutputStream mOut;
+
+    static final int DEFAULT_MAX_PATHS = 100000;
+
+    /** path dictionary: path to path id */
+    private final HashMap<String, Integer> mPathIds = new HashMap<String, Integer>();
+    private int mMaxPaths = DEFAULT_MAX_PATHS;
+    private long mLastModificationDate = 0;
+    private int mCount = 0;
+
+    /**
+     * Opens logFile for appending or creates a new one.
+     * An incomplete last record of an existing log (i.e. after crash) is removed.
+     *
+     * @throws IOException if logFile exists but is not a binary transaction log or is corrupt.
+     * A corrupt log is not modified.
+     */
+    public BinaryTransactionLogWriter(File logFile) throws IOException {
+        mDestination = logFile;
+        boolean append = logFile.exists() && (logFile.length() > 0);
+        if (append) {
+            loadDictionary(logFile);
+        }
+        mOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, append)));
+        if (!append) writeHeader();
+    }
+
+    /** writes a new log into out. */
+    public BinaryTransactionLogWriter(OutputStream out) throws IOException {
+        mDestination = out;
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        mOut.writeInt(BinaryTransactionLogReader.MAGIC);
+        mOut.writeByte(BinaryTransactionLogReader.VERSION);
+    }
+
+    /** reads all existing entries to get the path dictionary and the last date */
+    private void loadDictionary(File logFile) throws IOException {
+        BinaryTransactionLogReader reader = new BinaryTransactionLogReader(logFile);
+        try {
+            while (reader.read() != null) {
+                // only dictionary and date are needed
+            }
+        } finally {
+            reader.close();
+        }
+
+        List<String> paths = reader.getPaths();
+        for (int i = 0; i < paths.size(); i++) {
+            mPathIds.put(paths.get(i), i);
+        }
+        mLastModificationDate = reader.getLastModificationDate();
+
+        // only an incomplete last record remains after the valid content
+        if (logFile.length() > reader.getValidLength()) {
+            RandomAccessFile truncate = new RandomAccessFile(logFile, "rw");
+            try {
+                truncate.setLength(reader.getValidLength());
+            } finally {
+                truncate.close();
+            }
+        }
+    }
+
+    public BinaryTransactionLogWriter add(IMediaTransactionLogEntry entry) throws IOException {
+        return add(entry.getMediaID(), entry.getFullPath(), entry.getModificationDate(),
+                entry.getCommand(), entry.getCommandData());
+    }
+
+    /** @param fullPath null is stored as "" */
+    public BinaryTransactionLogWriter add(long mediaID, String fullPath, long modificationDate,
+                                          MediaTransactionLogEntryType command, String commandData) throws IOException {
+        int commandCode = getCommandCode(command);
+        if (fullPath == null) fullPath = "";
+        // check before anything is written so that there are only complete records
+        checkLength(fullPath);
+        checkLength(commandData);
+
+        Integer pathId = mPathIds.get(fullPath);
+        if (pathId == null) {
+            if (mPathIds.size() >= mMaxPaths) {
+                mPathIds.clear();
+                mOut.writeByte(BinaryTransactionLogReader.RECORD_CLEAR_PATHS);
+            }
+            pathId = mPathIds.size();
+            mPathIds.put(fullPath, pathId);
+            mOut.writeByte(BinaryTransactionLogReader.RECORD_PATH);
+            writeString(mOut, fullPath);
+        }
+
+        mOut.writeByte(BinaryTransactionLogReader.RECORD_ENTRY);
+        writeVarLong(mOut, pathId);
+        writeSignedVarLong(mOut, mediaID);
+        writeSignedVarLong(mOut, modificationDate - mLastModificationDate);
+        mOut.writeByte(commandCode);
+        writeString(mOut, commandData);
+
+        mLastModificationDate = modificationDate;
+        mCount++;
+        return this;
+    }
+
+    /**
+     * Converter: appends all entries, i.e. from {@link TextTransactionLogReader}
+     * or from the database.
+     *
+     * @return number of added entries
+     */
+    public int addAll(Iterator<IMediaTransactionLogEntry> entries) throws IOException {
+        int count = 0;
+        while (entries.hasNext()) {
+            add(entries.next());
+            count++;
+        }
+        return count;
+    }
+
+    /** max number of paths in the path dictionary. Default {@link #DEFAULT_MAX_PATHS} */
+    public BinaryTransactionLogWriter setMaxPaths(int maxPaths) {
+        mMaxPaths = Math.max(1, maxPaths);
+        return this;
+    }
+
+    /** number of entries added since open */
+    public int getCount() {
+        return mCount;
+    }
+
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mOut != null) {
+            try {
+                mOut.flush();
+            } finally {
+                FileUtils.close(mOut, mDestination);
+                mOut = null;
+            }
+        }
+    }
+
+    private static int getCommandCode(MediaTransactionLogEntryType command) {
+        MediaTransactionLogEntryType[] commands = BinaryTransactionLogReader.COMMANDS;
+        for (int i = 0; i < commands.length; i++) {
+            if (commands[i] == command) return i;
+        }
+        throw new IllegalArgumentException("BinaryTransactionLogWriter: unsupported command " + command);
+    }
+
+    private static void checkLength(String value) throws IOException {
+        // utf-8 has at most 3 bytes per char
+        if ((value != null) && (value.length() * 3 > BinaryTransactionLogReader.MAX_STRING_BYTES)
+                && (value.getBytes("UTF-8").length > BinaryTransactionLogReader.MAX_STRING_BYTES)) {
+            throw new IllegalArgumentException("BinaryTransactionLogWriter: string too long " + value.length());
+        }
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static void writeSignedVarLong(DataOutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            writeVarLong(out, bytes.length + 1);
+            out.write(bytes);
+        }
+    }
+}
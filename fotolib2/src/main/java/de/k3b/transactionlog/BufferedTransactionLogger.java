@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of #APhotoManager (https://github.com/k3b/APhotoManager/)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *
+ * for more details.
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.transactionlog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the log entries of one photo in memory so that photos can be processed in
+ * parallel while the entries are written to the real log in the original order
+ * via {@link #flushTo(TransactionLoggerBase)}.
+ *
+ * Created by k3b on 20.03.2020.
+ */
+public class BufferedTransactionLogger extends TransactionLoggerBase {
+    private static class Entry {
+        private final long id;
+        private final String path;
+        private final MediaTransactionLogEntryType command;
+        private final String parameter;
+        private final boolean quoteParam;
+
+        Entry(long id, String path, MediaTransactionLogEntryType command, String parameter, boolean quoteParam) {
+            this.id = id;
+            this.path = path;
+            this.command = command;
+            this.parameter = parameter;
+            this.quoteParam = quoteParam;
+        }
+    }
+
+    private final List<Entry> mEntries = new ArrayList<Entry>();
+
+    public BufferedTransactionLogger(long now) {
+        super(null, now);
+    }
+
+    @Override
+    protected void addChanges(MediaTransactionLogEntryType command, String parameter, boolean quoteParam) {
+        mEntries.add(new Entry(id, path, command, parameter, quoteParam));
+    }
+
+    /** writes all collected entries to destination and clears this buffer */
+    public void flushTo(TransactionLoggerBase destination) {
+        for (Entry entry : mEntries) {
+            destination.set(entry.id, entry.path);
+            destination.addChanges(entry.command, entry.parameter, entry.quoteParam);
+        }
+        mEntries.clear();
+        destination.set(id, path);
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+}
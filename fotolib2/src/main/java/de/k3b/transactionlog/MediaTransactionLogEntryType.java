@@ -53,6 +53,8 @@ public enum MediaTransactionLogEntryType {
     private final boolean mustQuoteParam;
 
     public String getId() {return id;}
+    public String getBatCommand() {return batCommand;}
+    public boolean isMustQuoteParam() {return mustQuoteParam;}
 
     private static HashMap<String,MediaTransactionLogEntryType> ids = null;
 
@@ -80,6 +82,16 @@ public enum MediaTransactionLogEntryType {
         return result;
     }
 
+    /** @return type where batCommand is equal ignoring case or null if not found */
+    public static MediaTransactionLogEntryType getByBatCommand(String batCommand) {
+        if (batCommand != null) {
+            for (MediaTransactionLogEntryType e : MediaTransactionLogEntryType.values()) {
+                if (batCommand.equalsIgnoreCase(e.batCommand)) return e;
+            }
+        }
+        return null;
+    }
+
     public Object[] getCommand(String path, String parameter) {
         Object r[] = new Object[10];
         int i =0;
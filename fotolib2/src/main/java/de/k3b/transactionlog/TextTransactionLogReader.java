@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.transactionlog;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import de.k3b.io.FileUtils;
+
+/**
+ * Streaming reader for the text log (apmLog.log) that is written by
+ * {@link de.k3b.io.FileCommandLogger}. Used to convert the text log into
+ * the binary format with {@link BinaryTransactionLogWriter#addAll(Iterator)}.
+ *
+ * The text log has no media ids: every path gets a generated id that
+ * stays the same after the file was moved. The modification date is taken from the
+ * last "rem date" line. Comments and continuation lines of multi line
+ * descriptions cannot be converted and are skipped.
+ *
+ * Created by k3b on 27.03.2020.
+ */
+public class TextTransactionLogReader implements Iterator<IMediaTransactionLogEntry>, Closeable {
+    private static final String CALL = "call ";
+    private static final String CMD = ".cmd \"";
+    private static final String REM = "rem ";
+
+    /** format of "rem " + new Date() */
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
+
+    private final Object mSource;
+    private final BufferedReader mReader;
+
+    /** current path to generated media id */
+    private final HashMap<String, Long> mMediaIds = new HashMap<String, Long>();
+    private long mNextMediaId = 1;
+    private long mModificationDate = 0;
+
+    private IMediaTransactionLogEntry mNext = null;
+    private boolean mEof = false;
+
+    public TextTransactionLogReader(File logFile) throws IOException {
+        this(new InputStreamReader(new FileInputStream(logFile), "UTF-8"), logFile);
+    }
+
+    /** @param source for error messages */
+    public TextTransactionLogReader(Reader reader, Object source) {
+        mSource = source;
+        mReader = new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if ((mNext == null) && !mEof) {
+            mNext = readEntry();
+        }
+        return mNext != null;
+    }
+
+    @Override
+    public IMediaTransactionLogEntry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        IMediaTransactionLogEntry result = mNext;
+        mNext = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private IMediaTransactionLogEntry readEntry() {
+        try {
+            String line;
+            while ((line = mReader.readLine()) != null) {
+                MediaTransactionLogEntryDto result = parse(line.trim());
+                if (result != null) {
+                    return updateMediaId(result);
+                }
+            }
+        } catch (IOException ex) {
+            // handled like end of log
+        }
+        mEof = true;
+        close();
+        return null;
+    }
+
+    /** @return entry without media id or null if line is not a media change */
+    private MediaTransactionLogEntryDto parse(String line) {
+        String batCommand;
+        String rest;
+        if (line.startsWith(CALL)) {
+            int end = line.indexOf(CMD);
+            if (end < 0) return null;
+            batCommand = line.substring(CALL.length(), end);
+            rest = line.substring(end + CMD.length() - 1);
+        } else if (line.startsWith(REM)) {
+            // some commands are written as comment: "rem apmTagsSet "path" tags"
+            int end = line.indexOf(" \"", REM.length());
+            if (end < 0) {
+                parseDate(line.substring(REM.length()));
+                return null;
+            }
+            batCommand = line.substring(0, end);
+            rest = line.substring(end + 1);
+        } else {
+            return null;
+        }
+
+        MediaTransactionLogEntryType command = MediaTransactionLogEntryType.getByBatCommand(batCommand);
+        if ((command == null) || (MediaTransactionLogEntryType.isComment(command)
+                && (command != MediaTransactionLogEntryType.TAGS)
+                && (command != MediaTransactionLogEntryType.VISIBILITY))) {
+            return null;
+        }
+
+        // rest is '"path" parameter'
+        String path;
+        String parameter = null;
+        int pathEnd = rest.indexOf("\" ", 1);
+        if (pathEnd > 0) {
+            path = rest.substring(1, pathEnd);
+            parameter = rest.substring(pathEnd + 2);
+            if (command.isMustQuoteParam() && (parameter.length() >= 2)
+                    && parameter.startsWith("\"") && parameter.endsWith("\"")) {
+                parameter = parameter.substring(1, parameter.length() - 1);
+            }
+            if (parameter.length() == 0) parameter = null;
+        } else if ((rest.length() >= 2) && rest.endsWith("\"")) {
+            path = rest.substring(1, rest.length() - 1);
+        } else {
+            return null;
+        }
+
+        return new MediaTransactionLogEntryDto(0, path, mModificationDate, command, parameter);
+    }
+
+    private void parseDate(String dateString) {
+        Date date = mDateFormat.parse(dateString, new ParsePosition(0));
+        if (date != null) mModificationDate = date.getTime();
+    }
+
+    /** sets the generated media id and remembers the new path after move or delete */
+    private IMediaTransactionLogEntry updateMediaId(MediaTransactionLogEntryDto entry) {
+        String path = entry.getFullPath();
+        Long mediaId = mMediaIds.get(path);
+        if (mediaId == null) {
+            mediaId = mNextMediaId++;
+            mMediaIds.put(path, mediaId);
+        }
+        entry.setMediaID(mediaId);
+
+        MediaTransactionLogEntryType command = entry.getCommand();
+        if (command == MediaTransactionLogEntryType.DELETE) {
+            mMediaIds.remove(path);
+        } else if ((command == MediaTransactionLogEntryType.MOVE) && (entry.getCommandData() != null)) {
+            mMediaIds.remove(path);
+            mMediaIds.put(entry.getCommandData(), mediaId);
+        }
+        return entry;
+    }
+
+    @Override
+    public void close() {
+        FileUtils.close(mReader, mSource);
+    }
+}
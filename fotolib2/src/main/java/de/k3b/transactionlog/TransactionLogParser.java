@@ -79,6 +79,30 @@ public class TransactionLogParser {
         this.fileUpdateBatch = fileUpdateBatch;
     }
 
+    /**
+     * Streaming export: writes one batch line per entry in log order.
+     * Unlike {@link #getNext()} the entries need not be sorted by media so
+     * memory usage does not depend on the size of the log.
+     *
+     * @return number of written lines
+     */
+    public static int writeBatch(Iterator<IMediaTransactionLogEntry> transactions, BufferedWriter fileUpdateBatch) throws IOException {
+        int count = 0;
+        StringBuilder line = new StringBuilder();
+        while (transactions.hasNext()) {
+            IMediaTransactionLogEntry log = transactions.next();
+            line.setLength(0);
+            for (Object part : log.getCommand().getCommand(log.getFullPath(), log.getCommandData())) {
+                if (part != null) line.append(part);
+            }
+            fileUpdateBatch.write(line.toString());
+            fileUpdateBatch.newLine();
+            count++;
+        }
+        fileUpdateBatch.flush();
+        return count;
+    }
+
     protected IMediaTransactionLogEntry getNextLog() {
         IMediaTransactionLogEntry result = this.lastLog;
         this.lastLog = null;
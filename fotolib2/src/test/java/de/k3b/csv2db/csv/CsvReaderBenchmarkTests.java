@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.csv2db.csv;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * Compares {@link CsvReader} with the previous char by char implementation {@link LegacyCsvReader}:
+ * both must return the same records. The runtime of both is logged.
+ *
+ * Created by k3b on 23.03.2020.
+ */
+public class CsvReaderBenchmarkTests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvReaderBenchmarkTests.class);
+
+    @Test
+    public void shouldReadSameAsLegacy10kRows() {
+        benchmark(10000);
+    }
+
+    @Test
+    @Ignore("benchmark: takes some seconds")
+    public void shouldReadSameAsLegacy300kRows() {
+        benchmark(300000);
+    }
+
+    @Test
+    public void shouldReadSameAsLegacyForSpecialCases() {
+        assertSameAsLegacy("");
+        assertSameAsLegacy("\n\n");
+        assertSameAsLegacy("a;");
+        assertSameAsLegacy("a,b\r\n,,\r\n\"x\"\"y\",\"\"\n");
+        assertSameAsLegacy("a\tb;c,d\n\"multi\nline\";\"no end");
+    }
+
+    private static void assertSameAsLegacy(String csv) {
+        LegacyCsvReader expected = new LegacyCsvReader(new StringReader(csv));
+        CsvReader sut = new CsvReader(new StringReader(csv));
+
+        int row = 0;
+        String[] expectedLine;
+        do {
+            expectedLine = expected.readLine();
+            Assert.assertEquals("row " + row, Arrays.toString(expectedLine), Arrays.toString(sut.readLine()));
+            row++;
+        } while (expectedLine != null);
+        Assert.assertEquals("lines", expected.lineNumber, sut.getLineNumner());
+        Assert.assertEquals("records", expected.recordNumber, sut.getRecordNumber());
+        Assert.assertEquals("delimiter", expected.fieldDelimiter, sut.getFieldDelimiter());
+    }
+
+    private static void benchmark(int rowCount) {
+        String csv = createCsv(rowCount);
+
+        long start = System.nanoTime();
+        LegacyCsvReader legacy = new LegacyCsvReader(new StringReader(csv));
+        int legacyCount = 0;
+        while (legacy.readLine() != null) legacyCount++;
+        long legacyEnd = System.nanoTime();
+
+        CsvReader sut = new CsvReader(new StringReader(csv));
+        int count = 0;
+        while (sut.readLine() != null) count++;
+        long end = System.nanoTime();
+
+        CsvReader sutRecord = new CsvReader(new StringReader(csv));
+        while (sutRecord.readRecord() != null) {}
+        long recordEnd = System.nanoTime();
+
+        LOGGER.info("csv {} rows: legacy {} ms, readLine {} ms, readRecord {} ms",
+                rowCount, (legacyEnd - start) / 1000000, (end - legacyEnd) / 1000000,
+                (recordEnd - end) / 1000000);
+
+        Assert.assertEquals(legacyCount, count);
+        assertSameAsLegacy(csv);
+    }
+
+    /** @return csv similar to changes.csv with multiline and empty fields */
+    private static String createCsv(int rowCount) {
+        StringBuilder result = new StringBuilder();
+        result.append("SourceFile;DateTimeOriginal;Title;Description;Keywords;Rating\r\n");
+        for (int i = 0; i < rowCount; i++) {
+            result.append("/storage/emulated/0/DCIM/Camera/IMG_").append(i).append(".jpg;")
+                    .append("2020-03-23T12:").append(i % 60).append(";")
+                    .append("Title ").append(i).append(";");
+            if (i % 10 == 0) {
+                result.append("\"multi;line\r\ndescription ").append(i).append("\"");
+            }
+            result.append(";\"tag").append(i % 100).append(",tag2\";");
+            if (i % 3 == 0) result.append(i % 5);
+            result.append("\r\n");
+        }
+        return result.toString();
+    }
+
+    /** Implementation of {@link CsvReader#readLine()} before it became buffered. */
+    private static class LegacyCsvReader {
+        private static final String POSSIBLE_DELIMITER_CHARS = ",;\t";
+        private static final char CHAR_IGNORE = '\r';
+
+        private char fieldDelimiter = 0;
+        private Reader reader;
+        private int lineNumber = 0;
+        private int recordNumber = 0;
+
+        LegacyCsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        String[] readLine() {
+            Vector<String> result = new Vector<String>();
+            StringBuffer content = new StringBuffer();
+            int fieldSurrounder = 0;
+
+            try {
+                int ch;
+                while ((ch = this.reader.read()) != -1) {
+                    if (ch == CsvItem.DEFAULT_CHAR_LINE_DELIMITER) this.lineNumber++;
+
+                    if (fieldSurrounder == 0) {
+                        if ((fieldDelimiter == 0) && POSSIBLE_DELIMITER_CHARS.indexOf(ch) >= 0) {
+                            fieldDelimiter = (char) ch;
+                        }
+                        if (ch == fieldDelimiter) {
+                            result.addElement(getStringWithoutDelimiters(content));
+                            content.setLength(0);
+                        } else if (ch == CsvItem.DEFAULT_CHAR_LINE_DELIMITER) {
+                            result.addElement(getStringWithoutDelimiters(content));
+                            this.recordNumber++;
+                            return toStringArray(result);
+                        } else if (ch != CHAR_IGNORE) {
+                            content.append((char) ch);
+                        }
+
+                        if (ch == CsvItem.CHAR_FIELD_SURROUNDER)
+                            fieldSurrounder = (char) ch;
+                    } else {
+                        if (ch != CHAR_IGNORE) {
+                            content.append((char) ch);
+                            if (ch == fieldSurrounder)
+                                fieldSurrounder = 0;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (content.length() > 0) {
+                result.addElement(getStringWithoutDelimiters(content));
+            }
+
+            if (result.isEmpty()) {
+                return null;
+            } else {
+                this.recordNumber++;
+                return toStringArray(result);
+            }
+        }
+
+        private String[] toStringArray(Vector<String> result) {
+            String[] array = new String[result.size()];
+            result.copyInto(array);
+            return array;
+        }
+
+        private static String getStringWithoutDelimiters(StringBuffer content) {
+            if ((content.length() > 0) && (content.charAt(0) == CsvItem.CHAR_FIELD_SURROUNDER))
+                content.deleteCharAt(0);
+            if ((content.length() > 0) && (content.charAt(content.length() - 1) == CsvItem.CHAR_FIELD_SURROUNDER))
+                content.deleteCharAt(content.length() - 1);
+            if (content.length() > 0)
+                return content.toString();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+ 
+package de.k3b.database;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Created by k3b on 28.03.2020.
+ */
+public class CompiledQueryTests {
+    // simplified copies of the query shapes in android FotoSql
+    private static final String FROM = "content://media/external/file";
+    private static final String WHERE_PRIVATE_PUBLIC = "(media_type in (1,1001))";
+    private static final String EXPR_DAY = "strftime('/%Y/%m/%d/', datetaken / 1000, 'unixepoch', 'localtime')";
+    private static final String EXPR_FOLDER = "substr(_data,1,length(_data) - length(_display_name))";
+    private static final String EXPR_LAT = "((round((latitude * 100.0) - 0.5) /100.0) + 0.005)";
+    private static final String EXPR_LON = "((round((longitude * 100.0) - 0.5) /100.0) + 0.005)";
+
+    @Test
+    public void shouldRenderLikeQueryParameter() {
+        QueryParameter query = createQueryGroupByPlace(4711);
+        CompiledQuery sut = query.compile();
+
+        Assert.assertArrayEquals(query.toColumns(), sut.toColumns());
+        Assert.assertEquals(query.toFrom(), sut.toFrom());
+        Assert.assertEquals(query.toWhere(), sut.toWhere());
+        Assert.assertEquals(query.toAndroidWhere(), sut.toAndroidWhere());
+        Assert.assertArrayEquals(query.toAndroidParameters(), sut.toAndroidParameters());
+        Assert.assertEquals(query.toGroupBy(), sut.toGroupBy());
+        Assert.assertEquals(query.toHaving(), sut.toHaving());
+        Assert.assertEquals(query.toOrderBy(), sut.toOrderBy());
+        Assert.assertEquals(query.toSqlString(), sut.toSqlString());
+        Assert.assertEquals(query.getID(), sut.getID());
+    }
+
+    @Test
+    public void shouldBeEqualForEqualQueries() {
+        CompiledQuery first = createQueryGroupByDate(4711).compile();
+        CompiledQuery second = createQueryGroupByDate(4711).compile();
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first.hashCode(), second.hashCode());
+    }
+
+    @Test
+    public void shouldDistinguishDifferentQueries() {
+        CompiledQuery sut = createQueryGroupByDate(4711).compile();
+
+        Assert.assertFalse(sut.equals(createQueryGroupByDate(4712).compile()));
+        Assert.assertFalse(sut.equals(createQueryGroupByDate(4711).setID(99).compile()));
+        Assert.assertFalse(sut.equals(createQueryGroupByDate(4711).addOrderBy("x").compile()));
+
+        // same sql text but different parameter boundaries
+        Assert.assertFalse(new QueryParameter().addWhere("a=? or a=?", "1, 2", "3").compile()
+                .equals(new QueryParameter().addWhere("a=? or a=?", "1", "2, 3").compile()));
+
+        // same strings but in different parts
+        Assert.assertFalse(new QueryParameter().addWhere("a").addWhere("b").compile()
+                .equals(new QueryParameter().addWhere("a").addHaving("b").compile()));
+    }
+
+    @Test
+    public void shouldNotChangeAfterQueryParameterWasModified() {
+        QueryParameter query = createQueryGroupByDir(4711);
+        CompiledQuery sut = query.compile();
+        String expected = sut.toSqlString();
+
+        query.addWhere("modified=?", "1");
+
+        Assert.assertEquals(expected, sut.toSqlString());
+        Assert.assertFalse(sut.equals(query.compile()));
+    }
+
+    private static QueryParameter addFilter(QueryParameter query, int filterNo) {
+        return query.addWhere("_data like ?", "/storage/emulated/0/DCIM/" + filterNo + "/%")
+                .addWhere("datetaken >= ?", "" + (1585300000000L + filterNo))
+                .addWhere("latitude >= ? and latitude < ?", "50." + filterNo, "51." + filterNo);
+    }
+
+    private static QueryParameter createQueryGroupByDate(int filterNo) {
+        return addFilter(new QueryParameter()
+                .setID(2)
+                .addColumn("max(_id) AS _id", EXPR_DAY + " AS disp_txt", "count(*) AS count",
+                        "max(latitude) AS gps", "max(_data) AS _data")
+                .addFrom(FROM)
+                .addWhere(WHERE_PRIVATE_PUBLIC)
+                .addGroupBy(EXPR_DAY)
+                .addOrderBy(EXPR_DAY), filterNo);
+    }
+
+    private static QueryParameter createQueryGroupByDir(int filterNo) {
+        return addFilter(new QueryParameter()
+                .setID(3)
+                .addColumn("max(_id) AS _id", EXPR_FOLDER + " AS disp_txt", "count(*) AS count",
+                        "max(latitude) AS gps")
+                .addFrom(FROM)
+                .addWhere(WHERE_PRIVATE_PUBLIC)
+                .addGroupBy(EXPR_FOLDER)
+                .addOrderBy(EXPR_FOLDER), filterNo);
+    }
+
+    private static QueryParameter createQueryGroupByPlace(int filterNo) {
+        return addFilter(new QueryParameter()
+                .setID(4)
+                .addColumn("max(_id) AS _id", EXPR_LAT + " AS latitude", EXPR_LON + " AS longitude",
+                        "count(*) AS count")
+                .addFrom(FROM)
+                .addWhere(WHERE_PRIVATE_PUBLIC)
+                .addGroupBy(EXPR_LAT, EXPR_LON)
+                .addOrderBy(EXPR_LAT, EXPR_LON), filterNo);
+    }
+
+    private static QueryParameter createQueryDetail(int filterNo) {
+        return addFilter(new QueryParameter()
+                .setID(1)
+                .addColumn("_id", "_data AS disp_txt", "max(width,height) AS width", "latitude",
+                        "datetaken", "_data", "orientation")
+                .addFrom(FROM)
+                .addWhere(WHERE_PRIVATE_PUBLIC)
+                .addOrderBy("datetaken desc"), filterNo);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.database;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Created by k3b on 04.04.2020.
+ */
+public class MediaSyncDiffTests {
+    @Test
+    public void shouldFindInsertedUpdatedDeleted() {
+        List<MediaFingerprint> source = Arrays.asList(
+                new MediaFingerprint(1, "/a/1.jpg", 100, 1000),
+                new MediaFingerprint(2, "/a/2.jpg", 200, 2001), // modified
+                new MediaFingerprint(4, "/b/3.jpg", 300, 3000), // renamed
+                new MediaFingerprint(6, "/a/6.jpg", 600, 6000)); // new
+        List<MediaFingerprint> copy = Arrays.asList(
+                new MediaFingerprint(1, "/a/1.jpg", 100, 1000),
+                new MediaFingerprint(2, "/a/2.jpg", 200, 2000),
+                new MediaFingerprint(3, "/a/deleted.jpg", 300, 3000),
+                new MediaFingerprint(4, "/a/3.jpg", 300, 3000),
+                new MediaFingerprint(7, "/a/deleted2.jpg", 700, 7000));
+
+        MediaSyncDiff sut = new MediaSyncDiff();
+        MediaSyncStatistics statistics = sut.diff(source.iterator(), copy.iterator());
+
+        Assert.assertEquals("[6]", sut.getInserted().toString());
+        Assert.assertEquals("[2, 4]", sut.getUpdated().toString());
+        Assert.assertEquals("[3, 7]", sut.getDeleted().toString());
+        Assert.assertEquals(1, statistics.getUnchanged());
+        Assert.assertEquals(5, statistics.getModified());
+        Assert.assertEquals(4, statistics.getSourceCount());
+        Assert.assertEquals(5, statistics.getCopyCount());
+        Assert.assertEquals(new MediaSyncWatermark(4, 6, 6000), sut.getSourceWatermark());
+    }
+
+    @Test
+    public void shouldInsertAllIntoEmptyCopy() {
+        List<MediaFingerprint> source = Arrays.asList(
+                new MediaFingerprint(1, "/a/1.jpg", 100, 1000),
+                new MediaFingerprint(2, null, 0, 0));
+
+        MediaSyncDiff sut = new MediaSyncDiff();
+        sut.diff(source.iterator(), null);
+
+        Assert.assertEquals("[1, 2]", sut.getInserted().toString());
+        Assert.assertEquals(0, sut.getDeleted().size());
+    }
+
+    @Test
+    public void shouldStreamWithReusedFingerprint() {
+        int count = 100000;
+        MediaSyncDiff sut = new MediaSyncDiff();
+        MediaSyncStatistics statistics = sut.diff(
+                createItems(1, 1, count, 0), createItems(2, 2, count + 10, 1));
+
+        // source has all ids below count, copy has modified items with even ids below count + 10
+        Assert.assertEquals(count / 2, statistics.getInserted());
+        Assert.assertEquals(count / 2 - 1, statistics.getUpdated());
+        Assert.assertEquals(5, statistics.getDeleted());
+        Assert.assertEquals(0, statistics.getUnchanged());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsortedSource() {
+        List<MediaFingerprint> source = Arrays.asList(
+                new MediaFingerprint(2, "/a/2.jpg", 200, 2000),
+                new MediaFingerprint(1, "/a/1.jpg", 100, 1000));
+        new MediaSyncDiff().diff(source.iterator(), new ArrayList<MediaFingerprint>().iterator());
+    }
+
+    @Test
+    public void shouldParseWatermark() {
+        MediaSyncWatermark watermark = new MediaSyncWatermark(3, 42, 1585990000L);
+        Assert.assertEquals(watermark, MediaSyncWatermark.parse(watermark.toString()));
+        Assert.assertNull(MediaSyncWatermark.parse(null));
+        Assert.assertNull(MediaSyncWatermark.parse("1;x;3"));
+    }
+
+    /** ids from, from+step, from+2*step, ... below max. every call of next() returns the same instance */
+    private static Iterator<MediaFingerprint> createItems(final int from, final int step, final int max, final int modified) {
+        return new Iterator<MediaFingerprint>() {
+            private final MediaFingerprint mItem = new MediaFingerprint();
+            private int mNextId = from;
+
+            @Override
+            public boolean hasNext() {
+                return mNextId < max;
+            }
+
+            @Override
+            public MediaFingerprint next() {
+                int id = mNextId;
+                mNextId += step;
+                return mItem.set(id, "/a/" + (id / 3) + ".jpg", id, 1000 + modified);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+ 
+package de.k3b.database;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Created by k3b on 31.03.2020.
+ */
+public class SearchTokenizerTests {
+    @Test
+    public void shouldTokenizePath() {
+        Assert.assertEquals("[storage, emulated, 0, dcim, camera, img, 20200331, jpg]",
+                SearchTokenizer.tokenize("/storage/emulated/0/DCIM/Camera/IMG_20200331.jpg").toString());
+    }
+
+    @Test
+    public void shouldTokenizeDbTags() {
+        Assert.assertEquals("[holiday, kölner, dom]",
+                SearchTokenizer.tokenize(";Holiday;Kölner Dom;").toString());
+    }
+
+    @Test
+    public void shouldRemoveDuplicatesAndNulls() {
+        Assert.assertEquals("my title camera", SearchTokenizer.toIndexText("My Title", null, "/Camera/my.title"));
+    }
+
+    @Test
+    public void shouldReturnNullWithoutTokens() {
+        Assert.assertNull(SearchTokenizer.toIndexText(null, "", " ;/. "));
+        Assert.assertNull(SearchTokenizer.toPrefixMatch("%"));
+    }
+
+    @Test
+    public void shouldCreatePrefixMatch() {
+        Assert.assertEquals("img* 2020*", SearchTokenizer.toPrefixMatch("IMG_2020"));
+        Assert.assertEquals("img 2020", SearchTokenizer.fromPrefixMatch("img* 2020*"));
+    }
+
+    @Test
+    public void shouldTokenizeQueryLikeIndex() {
+        String index = " " + SearchTokenizer.toIndexText("/DCIM/Urlaub-2019/IMG_0815.JPG", "Ärger am Strand") + " ";
+        for (String token : SearchTokenizer.toPrefixMatch("urlaub ärger img_08").split(" ")) {
+            String prefix = " " + token.replace("*", "");
+            Assert.assertTrue(token, index.contains(prefix));
+        }
+    }
+}
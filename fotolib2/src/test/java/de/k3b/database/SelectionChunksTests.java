@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.database;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by k3b on 03.04.2020.
+ */
+public class SelectionChunksTests {
+    @Test
+    public void shouldCreateWhereIn() {
+        Assert.assertEquals("_id in (?,?,?)", SelectionChunks.getWhereIn("_id", 3));
+    }
+
+    @Test
+    public void shouldSplitIntoChunks() {
+        List<String[]> chunks = SelectionChunks.split(Arrays.asList("a", null, "b", "c", "d", "e"), 2);
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals("[a, b]", Arrays.toString(chunks.get(0)));
+        Assert.assertEquals("[e]", Arrays.toString(chunks.get(2)));
+
+        Assert.assertEquals(0, SelectionChunks.split(null, 2).size());
+    }
+
+    @Test
+    public void shouldSplitIds() {
+        List<String[]> chunks = SelectionChunks.splitIds("1, 2,3,", 2);
+        Assert.assertEquals(2, chunks.size());
+        Assert.assertEquals("[1, 2]", Arrays.toString(chunks.get(0)));
+        Assert.assertEquals("[3]", Arrays.toString(chunks.get(1)));
+    }
+
+    @Test
+    public void shouldCombineConsecutiveIds() {
+        Assert.assertEquals("(_id between 1 and 120000)",
+                SelectionChunks.getWhereInIds("_id", range(1, 120000)));
+        Assert.assertEquals("_id in (1,2,5)",
+                SelectionChunks.getWhereInIds("_id", new long[]{1, 2, 5}));
+        Assert.assertEquals("((_id between 1 and 3) OR (_id between 7 and 9) OR _id in (5))",
+                SelectionChunks.getWhereInIds("_id", new long[]{1, 2, 3, 5, 7, 8, 9}));
+        Assert.assertEquals(null, SelectionChunks.getWhereInIds("_id", new long[0]));
+    }
+
+    @Test
+    public void shouldAddWhereInIdsWithParameters() {
+        QueryParameter query = SelectionChunks.addWhereInIds(new QueryParameter(), "_id", new long[]{1, 2, 3, 5, 7, 8, 9});
+        Assert.assertEquals("(((_id between ? and ?) OR (_id between ? and ?) OR _id in (?)))", query.toAndroidWhere());
+        Assert.assertEquals("[1, 3, 7, 9, 5]", Arrays.toString(query.toAndroidParameters()));
+    }
+
+    /** more than SQLITE_MAX_EXPR_DEPTH (1000) ranges must not create a deeper expression */
+    @Test
+    public void shouldLimitExpressionDepthOfManyRanges() {
+        // 2000 ranges of 3 ids with gaps in between
+        long[] ids = new long[2000 * 3];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (i / 3) * 10 + (i % 3);
+        }
+
+        String where = SelectionChunks.getWhereInIds("_id", ids);
+        Assert.assertEquals(2000, count(where, " between "));
+        Assert.assertTrue(where, getExpressionDepth(where) < 100);
+
+        // too many parameters: ids become literals
+        QueryParameter query = SelectionChunks.addWhereInIds(new QueryParameter(), "_id", ids);
+        Assert.assertEquals("(" + where + ")", query.toAndroidWhere());
+        Assert.assertNull(query.toAndroidParameters());
+    }
+
+    @Test
+    public void shouldBindManyNonAdjacentIdsInChunks() {
+        // 2000 ids without neighbours
+        long[] ids = new long[2000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i * 2;
+        }
+
+        String where = SelectionChunks.getWhereInIds("_id", ids);
+        Assert.assertEquals(4, count(where, " in ("));
+        Assert.assertTrue(where, getExpressionDepth(where) < 100);
+
+        QueryParameter query = SelectionChunks.addWhereInIds(new QueryParameter(), "_id", ids);
+        Assert.assertEquals("(" + where + ")", query.toAndroidWhere());
+
+        long[] fewIds = new long[SelectionChunks.MAX_PARAMETERS];
+        System.arraycopy(ids, 0, fewIds, 0, fewIds.length);
+        query = SelectionChunks.addWhereInIds(new QueryParameter(), "_id", fewIds);
+        Assert.assertEquals("(" + SelectionChunks.getWhereIn("_id", fewIds.length) + ")", query.toAndroidWhere());
+        Assert.assertEquals(fewIds.length, query.toAndroidParameters().length);
+    }
+
+    private static int count(String text, String part) {
+        int result = 0;
+        int pos = -1;
+        while ((pos = text.indexOf(part, pos + 1)) >= 0) result++;
+        return result;
+    }
+
+    /** like sqlite: every "OR" adds one level to the parse tree of its parenthesis */
+    private static int getExpressionDepth(String sql) {
+        return getExpressionDepth(sql, new int[]{0});
+    }
+
+    private static int getExpressionDepth(String sql, int[] pos) {
+        int ors = 0;
+        int maxChildDepth = 0;
+        while (pos[0] < sql.length()) {
+            char c = sql.charAt(pos[0]);
+            if (sql.startsWith(" OR ", pos[0])) ors++;
+            pos[0]++;
+            if (c == '(') {
+                maxChildDepth = Math.max(maxChildDepth, getExpressionDepth(sql, pos));
+            } else if (c == ')') {
+                break;
+            }
+        }
+        return ors + 1 + maxChildDepth;
+    }
+
+    private static long[] range(long first, long last) {
+        long[] result = new long[(int) (last - first + 1)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = first + i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures build time of {@link DirectoryBuilder} and lookup time of {@link Directory#find(String)}
+ * for wide folder trees where every folder has up to 1000 sub folders.
+ *
+ * Created by k3b on 22.03.2020.
+ */
+public class DirectoryBuilderBenchmarkTests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuilderBenchmarkTests.class);
+
+    @Test
+    public void shouldBuild10kPaths() {
+        benchmark(10000);
+    }
+
+    @Test
+    @Ignore("benchmark: takes some seconds")
+    public void shouldBuild100kPaths() {
+        benchmark(100000);
+    }
+
+    @Test
+    @Ignore("benchmark: takes some seconds and needs a big heap")
+    public void shouldBuild1MPaths() {
+        benchmark(1000000);
+    }
+
+    private static void benchmark(int pathCount) {
+        long start = System.nanoTime();
+        DirectoryBuilder builder = new DirectoryBuilder();
+        for (int i = 0; i < pathCount; i++) {
+            builder.add(getPath(i, i % 2 == 0), 1, 0);
+        }
+        IDirectory root = builder.getRoot();
+        long built = System.nanoTime();
+
+        for (int i = 0; i < pathCount; i++) {
+            IDirectory found = root.find(getPath(i, true));
+            if (found == null) Assert.fail("not found " + getPath(i, true));
+        }
+        long end = System.nanoTime();
+
+        LOGGER.info("DirectoryBuilder {} paths: build {} ms, find {} ms",
+                pathCount, (built - start) / 1000000, (end - built) / 1000000);
+    }
+
+    /** @return unique path where every folder has up to 1000 sub folders. */
+    private static String getPath(int i, boolean upperCase) {
+        String top = upperCase ? "/DCIM/F" : "/dcim/f";
+        return top + (i / 1000000) + "/d" + ((i / 1000) % 1000) + "/d" + (i % 1000);
+    }
+}
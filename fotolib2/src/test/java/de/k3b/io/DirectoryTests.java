@@ -124,6 +124,75 @@ public class DirectoryTests {
         Assert.assertEquals(expected, root.find("/a/b/c/d/"));
     }
 
+    @Test
+    public void shoudMergeChildrenIgnoringCase() {
+        DirectoryBuilder builder = new DirectoryBuilder();
+        builder.add("/a/B/c1", 0, 0);
+        builder.add("/A/b/c2", 0, 0);
+        IDirectory root = builder.getRoot().getChildren().get(0);
+        assertTree("a/B(2)|c1|c2|", root);
+    }
+
+    @Test
+    public void shoudFindCaseSensitive() {
+        Directory root = new Directory("", null, 0);
+        Directory upper = new Directory("A", root, 0);
+        Directory lower = new Directory("a", root, 0);
+
+        Assert.assertEquals(upper, root.find("/A"));
+        Assert.assertEquals(lower, root.find("/a"));
+        Assert.assertEquals(null, root.find("/b"));
+    }
+
+    @Test
+    public void shoudFindAfterRename() {
+        Directory root = new Directory("", null, 0);
+        Directory child = new Directory("a", root, 0);
+        Assert.assertEquals(child, root.find("/a"));
+
+        child.rename("a", "b");
+
+        Assert.assertEquals(null, root.find("/a"));
+        Assert.assertEquals(child, root.find("/b"));
+        Assert.assertEquals(child, root.findChildIgnoreCase("B"));
+    }
+
+    @Test
+    public void shoudNotFindRemovedChild() {
+        Directory root = new Directory("", null, 0);
+        Directory child = new Directory("a", root, 0);
+        Assert.assertEquals(child, root.find("/a"));
+
+        root.getChildren().remove(child);
+
+        Assert.assertEquals(null, root.find("/a"));
+    }
+
+    @Test
+    public void shoudNotFindReplacedChild() {
+        Directory root = new Directory("", null, 0);
+        Directory child = new Directory("a", root, 0);
+        Assert.assertEquals(child, root.find("/a"));
+
+        // same number of children as before
+        Directory other = new Directory("b", null, 0);
+        root.getChildren().set(0, other);
+
+        Assert.assertEquals(null, root.find("/a"));
+        Assert.assertEquals(other, root.find("/b"));
+    }
+
+    @Test
+    public void shoudFindAfterCompress() {
+        DirectoryBuilder builder = new DirectoryBuilder();
+        builder.add("/a/b/c/d1", 0, 0);
+        builder.add("/a/b/c/d2", 0, 0);
+        IDirectory root = builder.getRoot();
+
+        Assert.assertEquals("/a/b/c/d2", root.find("/a/b/c/d2").getAbsolute());
+        Assert.assertEquals(null, root.find("/a/b"));
+    }
+
     protected void assertTree(String expected, IDirectory root) {
         Assert.assertEquals(expected, Directory.toTreeString(new StringBuilder(),(Directory) root, "|", Directory.OPT_ALL - Directory.OPT_AS_HTML).toString());
     }
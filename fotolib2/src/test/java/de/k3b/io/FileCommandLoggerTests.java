@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.k3b.LibGlobal;
+import de.k3b.TestUtil;
+
+/**
+ * Created by k3b on 24.03.2020.
+ */
+public class FileCommandLoggerTests {
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "FileCommandLoggerTests").getAbsoluteFile();
+
+    @BeforeClass
+    public static void initDirectories() {
+        FileUtils.delete(OUTDIR, null);
+        OUTDIR.mkdirs();
+    }
+
+    @Test
+    public void shouldWriteEveryLineWithoutGroupCommit() {
+        File logFile = new File(OUTDIR, "shouldWriteEveryLineWithoutGroupCommit.log");
+        FileCommandLogger sut = createLogger(logFile);
+        long emptyLength = logFile.length();
+
+        sut.log("rem hello");
+
+        Assert.assertEquals(true, logFile.length() > emptyLength);
+        sut.closeLogFile();
+    }
+
+    @Test
+    public void shouldBufferWithGroupCommitUntilSync() {
+        File logFile = new File(OUTDIR, "shouldBufferWithGroupCommitUntilSync.log");
+        FileCommandLogger sut = createLogger(logFile);
+        long emptyLength = logFile.length();
+
+        sut.beginGroupCommit();
+        sut.log("rem hello");
+        Assert.assertEquals("buffered", emptyLength, logFile.length());
+
+        sut.sync();
+        Assert.assertEquals("after sync", true, logFile.length() > emptyLength);
+        sut.closeLogFile();
+    }
+
+    @Test
+    public void shouldWriteAllOnClose() throws IOException {
+        File logFile = new File(OUTDIR, "shouldWriteAllOnClose.log");
+        FileCommandLogger sut = createLogger(logFile);
+
+        sut.beginGroupCommit();
+        for (int i = 0; i < LibGlobal.logGroupCommitMaxLines + 5; i++) {
+            sut.log("rem line ", i);
+        }
+        sut.closeLogFile();
+
+        String content = FileUtils.readFile(logFile);
+        // PrintWriter.println() uses the platform line separator
+        String lineSeparator = System.getProperty("line.separator");
+        Assert.assertEquals(true, content.contains("rem line " + (LibGlobal.logGroupCommitMaxLines + 4) + lineSeparator));
+    }
+
+    private static FileCommandLogger createLogger(File logFile) {
+        FileCommandLogger sut = new FileCommandLogger();
+        sut.setLogFilePath(logFile.getAbsolutePath());
+        sut.openLogfile();
+        return sut;
+    }
+}
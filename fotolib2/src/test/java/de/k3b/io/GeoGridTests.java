@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+ 
+package de.k3b.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Created by k3b on 01.04.2020.
+ */
+public class GeoGridTests {
+    private static final double DELTA = 0.000001;
+
+    @Test
+    public void shouldConvertCellToBorder() {
+        long cell = GeoGrid.getLatitudeCell(50.123456);
+        Assert.assertTrue(GeoGrid.getLatitude(cell) <= 50.123456);
+        Assert.assertTrue(GeoGrid.getLatitude(cell + 1) > 50.123456);
+
+        cell = GeoGrid.getLongitudeCell(-7.5);
+        Assert.assertTrue(GeoGrid.getLongitude(cell) <= -7.5);
+        Assert.assertTrue(GeoGrid.getLongitude(cell + 1) > -7.5);
+    }
+
+    @Test
+    public void shouldNeverBeNegative() {
+        Assert.assertEquals(0, GeoGrid.getLatitudeCell(-90));
+        Assert.assertEquals(0, GeoGrid.getLongitudeCell(-180));
+    }
+
+    @Test
+    public void shouldGetShiftFromGroupingFactor() {
+        Assert.assertEquals(GeoGrid.BASE_ZOOM, GeoGrid.getShift(GeoGrid.GROUPFACTOR_FOR_Z0));
+        Assert.assertEquals(GeoGrid.BASE_ZOOM - 3, GeoGrid.getShift(GeoGrid.GROUPFACTOR_FOR_Z0 * 8));
+        Assert.assertEquals(0, GeoGrid.getShift(GeoGrid.BASE_FACTOR * 4));
+
+        // 100 = 0.025 * 4000 ~ 0.025 * 2^12
+        Assert.assertEquals(GeoGrid.BASE_ZOOM - 12, GeoGrid.getShift(100));
+    }
+
+    @Test
+    public void shouldGroupLikeRoundedGroupingFactor() {
+        // same as old sql: (round((lat * factor) - 0.5) / factor) + 1/factor/2
+        double factor = GeoGrid.GROUPFACTOR_FOR_Z0 * (1 << 10);
+        int shift = GeoGrid.getShift(factor);
+        for (double lat = -80; lat < 80; lat += 3.17) {
+            long group = GeoGrid.getLatitudeCell(lat) >> shift;
+            double center = (group + 0.5) / (GeoGrid.BASE_FACTOR / (1L << shift)) - 90;
+            double expected = (Math.floor(lat * factor) / factor) + (1 / factor / 2);
+            Assert.assertEquals("lat " + lat, expected, center, DELTA);
+        }
+    }
+
+    @Test
+    public void shouldCreateSql() {
+        Assert.assertEquals("(geo_lat_cell >> 12)", GeoGrid.getSqlGroupCell("geo_lat_cell", 12));
+        Assert.assertEquals("CAST(((latitude + 90) * " + GeoGrid.BASE_FACTOR + ") AS INTEGER)",
+                GeoGrid.getSqlLatitudeCell("latitude"));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import de.k3b.TestUtil;
+
+/**
+ * Created by k3b on 18.03.2020.
+ */
+public class MappedFilePoolTests {
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "MappedFilePoolTests").getAbsoluteFile();
+
+    @BeforeClass
+    public static void initDirectories() {
+        FileUtils.delete(OUTDIR, null);
+        OUTDIR.mkdirs();
+    }
+
+    @Test
+    public void shouldGetSliceContent() throws IOException {
+        File file = createFile("shouldGetSliceContent.bin", "0123456789", 1000000L);
+        MappedFilePool sut = new MappedFilePool(2);
+
+        Assert.assertEquals("345", toString(sut.getSlice(file, 3, 3)));
+        Assert.assertEquals("readonly", true, sut.getSlice(file, 3, 3).isReadOnly());
+    }
+
+    @Test
+    public void shouldRemapAfterFileChange() throws IOException {
+        File file = createFile("shouldRemapAfterFileChange.bin", "0123456789", 1000000L);
+        MappedFilePool sut = new MappedFilePool(2);
+        Assert.assertEquals("345", toString(sut.getSlice(file, 3, 3)));
+
+        createFile("shouldRemapAfterFileChange.bin", "abcdefghij", 2000000L);
+        Assert.assertEquals("def", toString(sut.getSlice(file, 3, 3)));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws IOException {
+        MappedFilePool sut = new MappedFilePool(2);
+        for (int i = 0; i < 5; i++) {
+            sut.getSlice(createFile("shouldEvictLeastRecentlyUsed" + i + ".bin", "0123456789", 1000000L), 0, 1);
+        }
+        Assert.assertEquals(2, sut.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailBeyondEndOfFile() throws IOException {
+        File file = createFile("shouldFailBeyondEndOfFile.bin", "0123456789", 1000000L);
+        new MappedFilePool(2).getSlice(file, 8, 3);
+    }
+
+    private static File createFile(String name, String content, long lastModified) throws IOException {
+        File file = new File(OUTDIR, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("US-ASCII"));
+        FileUtils.close(out, file);
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    private static String toString(ByteBuffer slice) {
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        return new String(bytes);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.k3b.TestUtil;
+
+/**
+ * Compares {@link FileOSDirectoryLister} with {@link Nio2OSDirectoryLister}:
+ * both must return the same entries. The runtime of both is logged.
+ *
+ * Created by k3b on 25.03.2020.
+ */
+public class OSDirectoryListerTests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OSDirectoryListerTests.class);
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "OSDirectoryListerTests").getAbsoluteFile();
+
+    @BeforeClass
+    public static void initDirectories() {
+        FileUtils.delete(OUTDIR, null);
+        OUTDIR.mkdirs();
+    }
+
+    @Test
+    public void shouldListSameAsFileLister() throws IOException {
+        File dir = createTestDir("shouldListSameAsFileLister", 3);
+
+        String expected = toString(new FileOSDirectoryLister().listVisible(dir));
+        Assert.assertEquals(expected, toString(new Nio2OSDirectoryLister().listVisible(dir)));
+        Assert.assertEquals("[dir0/, dir1/, dir2/, file0.jpg, file1.jpg, file2.jpg]", expected);
+    }
+
+    @Test
+    public void shouldReturnNullIfNoDir() {
+        File dir = new File(OUTDIR, "shouldReturnNullIfNoDir");
+        Assert.assertNull(new FileOSDirectoryLister().listVisible(dir));
+        Assert.assertNull(new Nio2OSDirectoryLister().listVisible(dir));
+    }
+
+    @Test
+    public void shouldList1000Entries() throws IOException {
+        benchmark("shouldList1000Entries", 500);
+    }
+
+    @Test
+    @Ignore("benchmark: takes some seconds")
+    public void shouldList20000Entries() throws IOException {
+        benchmark("shouldList20000Entries", 10000);
+    }
+
+    private static void benchmark(String name, int count) throws IOException {
+        File dir = createTestDir(name, count);
+
+        long start = System.nanoTime();
+        List<OSDirectoryEntry> expected = new FileOSDirectoryLister().listVisible(dir);
+        long fileEnd = System.nanoTime();
+        List<OSDirectoryEntry> actual = new Nio2OSDirectoryLister().listVisible(dir);
+        long end = System.nanoTime();
+
+        LOGGER.info("list {} entries: java.io.File {} ms, java.nio.file {} ms",
+                2 * count, (fileEnd - start) / 1000000, (end - fileEnd) / 1000000);
+        Assert.assertEquals(toString(expected), toString(actual));
+    }
+
+    /** creates count dirs, count files, one hidden dir and symlinks if supported */
+    private static File createTestDir(String name, int count) throws IOException {
+        // canonical: java.io.File lister treats every entry below a symlinked path as symlink
+        File dir = new File(OUTDIR, name).getCanonicalFile();
+        dir.mkdirs();
+        for (int i = 0; i < count; i++) {
+            new File(dir, "dir" + i).mkdirs();
+            new File(dir, "file" + i + ".jpg").createNewFile();
+        }
+        new File(dir, ".hidden").mkdirs();
+        try {
+            Files.createSymbolicLink(new File(dir, "linkToDir").toPath(), new File(dir, "dir0").toPath());
+        } catch (Exception ignore) {
+            // file system without symlinks
+        }
+        return dir;
+    }
+
+    private static String toString(List<OSDirectoryEntry> entries) {
+        List<String> result = new ArrayList<String>();
+        for (OSDirectoryEntry entry : entries) {
+            result.add(entry.getFile().getName() + (entry.isDirectory() ? "/" : ""));
+        }
+        Collections.sort(result);
+        return result.toString();
+    }
+}
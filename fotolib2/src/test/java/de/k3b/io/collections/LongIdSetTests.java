@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.io.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Created by k3b on 02.04.2020.
+ */
+public class LongIdSetTests {
+    @Test
+    public void shouldBehaveLikeTreeSet() {
+        Random random = new Random(4711);
+        TreeSet<Long> expected = new TreeSet<Long>();
+        LongIdSet sut = new LongIdSet();
+        for (int i = 0; i < 200000; i++) {
+            // some dense and some sparse areas
+            long id = (i % 3 == 0) ? random.nextInt(1000000) : random.nextInt(70000);
+            if (random.nextInt(4) == 0) {
+                Assert.assertEquals("remove " + id, expected.remove(id), sut.remove(id));
+            } else {
+                Assert.assertEquals("add " + id, expected.add(id), sut.add(id));
+            }
+        }
+        assertSame(expected, sut);
+        Assert.assertEquals(expected.first().longValue(), sut.first());
+        Assert.assertEquals(expected.last().longValue(), sut.last());
+
+        sut.runOptimize();
+        assertSame(expected, sut);
+    }
+
+    @Test
+    public void shouldUnionAndDifference() {
+        LongIdSet all = range(0, 120000);
+        LongIdSet some = new LongIdSet(Arrays.asList(5L, 70000L, 200000L));
+
+        LongIdSet sut = new LongIdSet(some);
+        Assert.assertEquals(true, sut.addAll(all));
+        Assert.assertEquals(120001, sut.size());
+        Assert.assertEquals(false, sut.addAll(all));
+
+        Assert.assertEquals(true, sut.removeAll(all));
+        Assert.assertEquals(Arrays.asList(200000L), Arrays.asList(sut.toArray()));
+
+        sut = new LongIdSet(all);
+        Assert.assertEquals(true, sut.retainAll(some));
+        Assert.assertEquals(Arrays.asList(5L, 70000L), Arrays.asList(sut.toArray()));
+    }
+
+    @Test
+    public void shouldSerializeCompact() {
+        LongIdSet sut = range(1, 120000);
+        sut.add(300000L);
+        sut.add(Long.MAX_VALUE);
+
+        byte[] data = sut.toByteArray();
+        Assert.assertEquals("few bytes for consecutive ids", true, data.length < 20);
+
+        LongIdSet actual = new LongIdSet().parse(data);
+        Assert.assertEquals(sut, actual);
+        Assert.assertEquals(Long.MAX_VALUE, actual.last());
+        Assert.assertEquals(0, new LongIdSet().parse(new LongIdSet().toByteArray()).size());
+    }
+
+    @Test
+    public void shouldRemoveWhileIterating() {
+        LongIdSet sut = range(0, 200000);
+        sut.runOptimize();
+        Iterator<Long> iter = sut.iterator();
+        while (iter.hasNext()) {
+            if (iter.next() % 2 == 0) iter.remove();
+        }
+        Assert.assertEquals(100000, sut.size());
+        Assert.assertEquals(1L, sut.first());
+        Assert.assertEquals(false, sut.contains(65536L));
+        Assert.assertEquals(true, sut.contains(65537L));
+    }
+
+    @Test
+    public void shouldEqualTreeSet() {
+        TreeSet<Long> expected = new TreeSet<Long>(Arrays.asList(3L, 1L, 2L));
+        LongIdSet sut = new LongIdSet(expected);
+        Assert.assertEquals(expected, sut);
+        Assert.assertEquals(sut, expected);
+        Assert.assertEquals(expected.hashCode(), sut.hashCode());
+        Assert.assertEquals(false, sut.contains("1"));
+    }
+
+    private static LongIdSet range(long first, long lastExclusive) {
+        LongIdSet result = new LongIdSet();
+        for (long id = first; id < lastExclusive; id++) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static void assertSame(TreeSet<Long> expected, LongIdSet actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        Iterator<Long> actualIter = actual.iterator();
+        for (Long id : expected) {
+            Assert.assertEquals(id, actualIter.next());
+            Assert.assertEquals(true, actual.contains(id.longValue()));
+        }
+        Assert.assertEquals(false, actualIter.hasNext());
+        long[] ids = actual.toLongArray();
+        Assert.assertEquals(expected.size(), ids.length);
+    }
+}
@@ -26,11 +26,14 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import de.k3b.LibGlobal;
@@ -131,6 +134,60 @@ public class ExifInterfaceIntegrationTests {
         LOGGER.info(sutRead.toString());
     }
 
+    @Test
+    public void shouldSaveInPlaceIfExifFits() throws IOException
+    {
+        File sutFile = TestUtil.saveTestResourceAs(TestUtil.TEST_FILE_JPG_WITH_EXIF,
+                new File(OUTDIR, "shouldSaveInPlaceIfExifFits.jpg"));
+        long oldLength = sutFile.length();
+        byte[] oldImageData = getImageData(sutFile);
+
+        ExifInterface sutWrite = new ExifInterface(sutFile.getAbsolutePath());
+        sutWrite.setAttribute(ExifInterface.TAG_ARTIST, "a");
+        sutWrite.saveAttributes();
+
+        ExifInterface sutRead = new ExifInterface(sutFile.getAbsolutePath());
+        Assert.assertEquals("a", sutRead.getAttribute(ExifInterface.TAG_ARTIST));
+        Assert.assertEquals("file length", oldLength, sutFile.length());
+        Assert.assertEquals("image data", true, Arrays.equals(oldImageData, getImageData(sutFile)));
+        Assert.assertEquals("no tmp file", false, new File(sutFile.getAbsolutePath() + ".tmp").exists());
+    }
+
+    @Test
+    public void shouldSaveCopyIfExifGrows() throws IOException
+    {
+        File sutFile = TestUtil.saveTestResourceAs(TestUtil.TEST_FILE_JPG_WITH_EXIF,
+                new File(OUTDIR, "shouldSaveCopyIfExifGrows.jpg"));
+        long oldLength = sutFile.length();
+        byte[] oldImageData = getImageData(sutFile);
+
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 20000) description.append("ImageDescription ");
+
+        ExifInterface sutWrite = new ExifInterface(sutFile.getAbsolutePath());
+        sutWrite.setAttribute(ExifInterface.TAG_IMAGE_DESCRIPTION, description.toString());
+        sutWrite.saveAttributes();
+
+        ExifInterface sutRead = new ExifInterface(sutFile.getAbsolutePath());
+        Assert.assertEquals(description.toString(), sutRead.getAttribute(ExifInterface.TAG_IMAGE_DESCRIPTION));
+        Assert.assertEquals("file length grows", true, sutFile.length() > oldLength);
+        Assert.assertEquals("image data", true, Arrays.equals(oldImageData, getImageData(sutFile)));
+    }
+
+    /** @return everything behind the jpg header (start of scan) */
+    private static byte[] getImageData(File jpg) throws IOException {
+        JpegSegmentScanner header = JpegSegmentScanner.scan(jpg);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(jpg);
+        try {
+            FileUtils.copy(in, out);
+        } finally {
+            FileUtils.close(in, jpg);
+        }
+        byte[] content = out.toByteArray();
+        return Arrays.copyOfRange(content, header.getEndOfHeader(), content.length);
+    }
+
     @Test
     public void shouldHandlePrefixStringAscii() {
         String expected = "Hello ascii";
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import de.k3b.TestUtil;
+import de.k3b.io.FileUtils;
+
+/**
+ * Created by k3b on 26.03.2020.
+ */
+public class ImageGeometryTests {
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "ImageGeometryTests").getAbsoluteFile();
+
+    @BeforeClass
+    public static void initDirectories() {
+        FileUtils.delete(OUTDIR, null);
+        OUTDIR.mkdirs();
+    }
+
+    @Test
+    public void shouldProbeJpgFile() throws IOException {
+        File jpg = TestUtil.saveTestResourceAs(TestUtil.TEST_FILE_JPG_WITH_EXIF,
+                new File(OUTDIR, "shouldProbeJpgFile.jpg"));
+
+        assertGeometry("image/jpeg 167x65 rotated 0", ImageGeometry.probe(jpg));
+    }
+
+    @Test
+    public void shouldGetSameGeometryFromSinglePassReader() throws IOException {
+        File jpg = TestUtil.saveTestResourceAs(TestUtil.TEST_FILE_JPG_WITH_NO_EXIF,
+                new File(OUTDIR, "shouldGetSameGeometryFromSinglePassReader.jpg"));
+
+        PhotoPropertiesSinglePassReader reader = PhotoPropertiesSinglePassReader.load(jpg.getAbsolutePath(), null, "JUnit");
+
+        assertGeometry("image/jpeg 59x17 rotated 0", reader.getGeometry());
+        assertGeometry("image/jpeg 59x17 rotated 0", ImageGeometry.probe(jpg));
+    }
+
+    @Test
+    public void shouldProbeJpgOrientation() throws IOException {
+        assertGeometry("image/jpeg 4000x3000 rotated 90", probe(createJpg(4000, 3000, 6, true)));
+        assertGeometry("image/jpeg 4000x3000 rotated 270", probe(createJpg(4000, 3000, 8, false)));
+    }
+
+    @Test
+    public void shouldProbePng() throws IOException {
+        byte[] png = bytes(0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n',
+                0, 0, 0, 13, 'I', 'H', 'D', 'R',
+                0, 0, 0x07, 0x80, 0, 0, 0x04, 0x38,
+                8, 6, 0, 0, 0);
+        assertGeometry("image/png 1920x1080 rotated 0", probe(png));
+    }
+
+    @Test
+    public void shouldProbeGif() throws IOException {
+        byte[] gif = bytes('G', 'I', 'F', '8', '9', 'a', 0x40, 0x01, 0xc8, 0x00, 0, 0, 0);
+        assertGeometry("image/gif 320x200 rotated 0", probe(gif));
+    }
+
+    @Test
+    public void shouldProbeWebpLossy() throws IOException {
+        byte[] webp = webp("VP8 ", bytes(0x10, 0x02, 0x00, 0x9d, 0x01, 0x2a, 0x80, 0x02, 0xe0, 0x01));
+        assertGeometry("image/webp 640x480 rotated 0", probe(webp));
+    }
+
+    @Test
+    public void shouldProbeWebpLossless() throws IOException {
+        // width-1 = 639 = 0x27f, height-1 = 479 = 0x1df in 14 bit fields
+        int bits = 639 | (479 << 14);
+        byte[] webp = webp("VP8L", bytes(0x2f, bits & 0xff, (bits >> 8) & 0xff, (bits >> 16) & 0xff, (bits >> 24) & 0xff, 0, 0, 0, 0, 0));
+        assertGeometry("image/webp 640x480 rotated 0", probe(webp));
+    }
+
+    @Test
+    public void shouldProbeWebpExtended() throws IOException {
+        byte[] webp = webp("VP8X", bytes(0x08, 0, 0, 0, 0x7f, 0x02, 0x00, 0xdf, 0x01, 0x00));
+        assertGeometry("image/webp 640x480 rotated 0", probe(webp));
+    }
+
+    @Test
+    public void shouldNotProbeUnknown() throws IOException {
+        Assert.assertNull(probe("no image".getBytes("UTF-8")));
+        Assert.assertNull(probe(new byte[0]));
+        Assert.assertNull(ImageGeometry.probe(new File(OUTDIR, "doesNotExist.jpg")));
+    }
+
+    private static void assertGeometry(String expected, ImageGeometry actual) {
+        Assert.assertEquals("ImageGeometry[" + expected + "]", String.valueOf(actual));
+    }
+
+    private static ImageGeometry probe(byte[] content) throws IOException {
+        return ImageGeometry.probe(new ByteArrayInputStream(content));
+    }
+
+    /** jpg header with exif orientation in IFD0, SOF0 and SOS without image data */
+    private static byte[] createJpg(int width, int height, int orientationCode, boolean littleEndian) throws IOException {
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        if (littleEndian) {
+            tiff.write(bytes('I', 'I', 42, 0, 8, 0, 0, 0,
+                    1, 0,
+                    0x12, 0x01, 3, 0, 1, 0, 0, 0, orientationCode, 0, 0, 0,
+                    0, 0, 0, 0));
+        } else {
+            tiff.write(bytes('M', 'M', 0, 42, 0, 0, 0, 8,
+                    0, 1,
+                    0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, orientationCode, 0, 0,
+                    0, 0, 0, 0));
+        }
+        byte[] exif = tiff.toByteArray();
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write(bytes(0xff, 0xd8));
+        result.write(bytes(0xff, 0xe1, 0, 2 + 6 + exif.length, 'E', 'x', 'i', 'f', 0, 0));
+        result.write(exif);
+        result.write(bytes(0xff, 0xc0, 0, 17, 8, height >> 8, height & 0xff, width >> 8, width & 0xff, 3,
+                1, 0x22, 0, 2, 0x11, 1, 3, 0x11, 1));
+        result.write(bytes(0xff, 0xda));
+        return result.toByteArray();
+    }
+
+    private static byte[] webp(String chunkType, byte[] chunkData) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write("RIFF".getBytes("US-ASCII"));
+        result.write(bytes(100, 0, 0, 0));
+        result.write("WEBP".getBytes("US-ASCII"));
+        result.write(chunkType.getBytes("US-ASCII"));
+        result.write(bytes(chunkData.length, 0, 0, 0));
+        result.write(chunkData);
+        return result.toByteArray();
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
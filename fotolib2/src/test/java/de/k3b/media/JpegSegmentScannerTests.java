@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.k3b.TestUtil;
+import de.k3b.io.FileUtils;
+
+/**
+ * Created by k3b on 18.03.2020.
+ */
+public class JpegSegmentScannerTests {
+    @Test
+    public void shouldFindSegmentsBeforeImageData() throws IOException {
+        JpegSegmentScanner sut = scan(TestUtil.TEST_FILE_JPG_WITH_EXIF);
+
+        Assert.assertEquals("end marker", JpegSegmentScanner.MARKER_SOS, sut.getEndMarker());
+        Assert.assertEquals("#APP1 (exif + xmp)", 2, sut.getSegments(JpegSegmentScanner.MARKER_APP1).size());
+        Assert.assertNotNull("COM", sut.getFirstSegment(JpegSegmentScanner.MARKER_COM));
+        Assert.assertNotNull("APP13 (iptc)", sut.getFirstSegment(JpegSegmentScanner.MARKER_APP13));
+
+        JpegSegmentScanner.Segment exif = sut.getFirstSegment(JpegSegmentScanner.MARKER_APP1);
+        Assert.assertEquals(true, sut.startsWith(exif, "Exif\0\0".getBytes("US-ASCII")));
+    }
+
+    @Test
+    public void shouldGetImageSizeFromStartOfFrame() throws IOException {
+        JpegSegmentScanner sut = scan(TestUtil.TEST_FILE_JPG_WITH_NO_EXIF);
+
+        JpegSegmentScanner.Segment sof = null;
+        for (JpegSegmentScanner.Segment segment : sut.getSegments()) {
+            if (JpegSegmentScanner.isStartOfFrame(segment.getMarker())) sof = segment;
+        }
+        Assert.assertNotNull("SOFx", sof);
+
+        ExifInterface exif = new ExifInterface("dummy.jpg", TestUtil.getResourceInputStream(TestUtil.TEST_FILE_JPG_WITH_NO_EXIF));
+        Assert.assertEquals("height", exif.getAttributeInt(ExifInterface.TAG_IMAGE_LENGTH, -1),
+                sut.getUnsignedShort(sof.getOffset() + 1));
+        Assert.assertEquals("width", exif.getAttributeInt(ExifInterface.TAG_IMAGE_WIDTH, -1),
+                sut.getUnsignedShort(sof.getOffset() + 3));
+    }
+
+    @Test
+    public void shouldHeaderStreamEndWithStartOfScan() throws IOException {
+        JpegSegmentScanner sut = scan(TestUtil.TEST_FILE_JPG_WITH_EXIF);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileUtils.copy(sut.createHeaderInputStream(), out);
+        byte[] header = out.toByteArray();
+
+        Assert.assertEquals("length", sut.getEndOfHeader(), header.length);
+        Assert.assertEquals("last marker", JpegSegmentScanner.MARKER_SOS, header[header.length - 1] & 0xff);
+    }
+
+    @Test(expected = JpegSegmentScanner.InvalidJpegException.class)
+    public void shouldFailOnNonJpg() throws IOException {
+        JpegSegmentScanner.scan(new ByteArrayInputStream("GIF89a...".getBytes("US-ASCII")));
+    }
+
+    private static JpegSegmentScanner scan(String resourceName) throws IOException {
+        InputStream in = TestUtil.getResourceInputStream(resourceName);
+        try {
+            return JpegSegmentScanner.scan(in);
+        } finally {
+            FileUtils.close(in, resourceName);
+        }
+    }
+}
@@ -19,18 +19,28 @@
 
 package de.k3b.media;
 
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 import de.k3b.LibGlobal;
 import de.k3b.TestUtil;
+import de.k3b.io.FileProcessor;
 import de.k3b.io.FileUtils;
+import de.k3b.io.IProgessListener;
+import de.k3b.io.ListUtils;
+import de.k3b.io.collections.SelectedFiles;
+import de.k3b.transactionlog.MediaTransactionLogEntryType;
+import de.k3b.transactionlog.TransactionLoggerBase;
 
 
 /**
@@ -77,6 +87,109 @@ public class PhotoPropertiesBulkUpdateServiceIntegratoinTests {
 
     }
 
+    @Test
+    public void shouldApplyChangesInParallelSameAsSequential() throws IOException
+    {
+        LibGlobal.mediaUpdateStrategy = "J";
+        final int numberOfFiles = 12;
+        File sequentialDir = new File(OUTDIR, "sequential");
+        File parallelDir = new File(OUTDIR, "parallel");
+
+        IPhotoProperties testData = new PhotoPropertiesDTO().setTitle("title").setRating(3);
+
+        // sequential
+        List<String> sequentialLog = new ArrayList<String>();
+        PhotoPropertiesBulkUpdateService sut = new PhotoPropertiesBulkUpdateService(createLogger(sequentialLog, sequentialDir));
+        PhotoPropertiesDiffCopy diff = new PhotoPropertiesDiffCopy(true, true).setDiff(testData,
+                MediaFormatter.FieldID.title, MediaFormatter.FieldID.rating);
+        SelectedFiles sequentialFiles = createFiles(sequentialDir, numberOfFiles);
+        for (int i = 0; i < numberOfFiles; i++) {
+            File file = sequentialFiles.getFile(i).getCanonicalFile();
+            Assert.assertNotNull(sut.applyChanges(file, file.getAbsolutePath(), sequentialFiles.getId(i), false, diff));
+        }
+
+        // parallel
+        List<String> parallelLog = new ArrayList<String>();
+        sut = new PhotoPropertiesBulkUpdateService(createLogger(parallelLog, parallelDir));
+        SelectedFiles parallelFiles = createFiles(parallelDir, numberOfFiles);
+        PhotoPropertiesUpdateHandler[] result = sut.applyChanges(parallelFiles, diff, 4, null);
+
+        for (int i = 0; i < numberOfFiles; i++) {
+            Assert.assertNotNull("result #" + i, result[i]);
+            Assert.assertEquals("exif #" + i,
+                    new ExifInterfaceEx(sequentialFiles.getFileName(i), null, null, "JUnit").getDebugString(" "),
+                    new ExifInterfaceEx(parallelFiles.getFileName(i), null, null, "JUnit").getDebugString(" "));
+        }
+        Assert.assertEquals(ListUtils.toString("\n", sequentialLog), ListUtils.toString("\n", parallelLog));
+    }
+
+    @Test
+    public void shouldCancelParallelChanges() throws IOException
+    {
+        LibGlobal.mediaUpdateStrategy = "J";
+        final int numberOfFiles = 3 * LibGlobal.itemsPerProgress;
+        File dir = new File(OUTDIR, "canceled");
+
+        PhotoPropertiesDiffCopy diff = new PhotoPropertiesDiffCopy(true, true).setDiff(
+                new PhotoPropertiesDTO().setTitle("title"), MediaFormatter.FieldID.title);
+        PhotoPropertiesUpdateHandler[] result = new PhotoPropertiesBulkUpdateService(null).applyChanges(
+                createFiles(dir, numberOfFiles), diff, 2, new IProgessListener() {
+                    @Override
+                    public boolean onProgress(int itemcount, int size, String message) {
+                        return false;
+                    }
+                });
+
+        Assert.assertNotNull("first is processed", result[0]);
+        Assert.assertNull("last is canceled", result[numberOfFiles - 1]);
+    }
+
+    @Test
+    public void shouldStopParallelChangesOnFirstError() throws IOException
+    {
+        LibGlobal.mediaUpdateStrategy = "J";
+        final int numberOfFiles = 3 * LibGlobal.itemsPerProgress;
+        File dir = new File(OUTDIR, "error");
+        SelectedFiles files = createFiles(dir, numberOfFiles);
+
+        // first file is not a valid jpg: its changes go to a xmp sidecar that cannot be written
+        // because a directory with the name of the sidecar exists.
+        FileUtils.copyReplace(new ByteArrayInputStream("no jpg".getBytes()), files.getFile(0));
+        FileProcessor.getSidecar(files.getFile(0), false).mkdirs();
+        FileProcessor.getSidecar(files.getFile(0), true).mkdirs();
+
+        PhotoPropertiesDiffCopy diff = new PhotoPropertiesDiffCopy(true, true).setDiff(
+                new PhotoPropertiesDTO().setTitle("title"), MediaFormatter.FieldID.title);
+        PhotoPropertiesUpdateHandler[] result = new PhotoPropertiesBulkUpdateService(null).applyChanges(
+                files, diff, 2, null);
+
+        Assert.assertNull("first has error", result[0]);
+        Assert.assertNull("last is skipped", result[numberOfFiles - 1]);
+    }
+
+    private static SelectedFiles createFiles(File dir, int numberOfFiles) throws IOException {
+        dir.mkdirs();
+        String[] names = new String[numberOfFiles];
+        Long[] ids = new Long[numberOfFiles];
+        for (int i = 0; i < numberOfFiles; i++) {
+            File file = TestUtil.saveTestResourceAs(TestUtil.TEST_FILE_JPG_WITH_EXIF, new File(dir, "file" + i + ".jpg"));
+            names[i] = file.getCanonicalPath();
+            ids[i] = Long.valueOf(i + 1);
+        }
+        return new SelectedFiles(names, ids, null);
+    }
+
+    /** log entries without the directory so that logs of different dirs can be compared */
+    private static TransactionLoggerBase createLogger(final List<String> log, final File dir) throws IOException {
+        final String dirPath = dir.getCanonicalPath();
+        return new TransactionLoggerBase(null, 0) {
+            @Override
+            protected void addChanges(MediaTransactionLogEntryType command, String parameter, boolean quoteParam) {
+                log.add(id + ":" + ListUtils.toString(" ", command.getCommand(path, parameter)).replace(dirPath, "."));
+            }
+        };
+    }
+
     private static File copy(String resourceName, String fileNameDest) throws IOException {
         final File sutFile = new File(OUTDIR, fileNameDest);
         TestUtil.saveTestResourceAs(resourceName, sutFile);
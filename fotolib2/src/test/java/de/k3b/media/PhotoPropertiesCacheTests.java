@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import de.k3b.TestUtil;
+import de.k3b.io.FileProcessor;
+import de.k3b.io.FileUtils;
+import de.k3b.io.VISIBILITY;
+
+/**
+ * Created by k3b on 25.03.2020.
+ */
+public class PhotoPropertiesCacheTests {
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "PhotoPropertiesCacheTests").getAbsoluteFile();
+
+    @BeforeClass
+    public static void initDirectories() {
+        FileUtils.delete(OUTDIR, null);
+        OUTDIR.mkdirs();
+    }
+
+    @Test
+    public void shouldHitIfUnchanged() throws IOException {
+        File jpg = createFile("shouldHitIfUnchanged.jpg", "jpg");
+        PhotoPropertiesCache sut = new PhotoPropertiesCache(null);
+
+        sut.put(jpg, jpg.getPath(), createEntry());
+
+        Assert.assertNotNull(sut.get(jpg, jpg.getPath()));
+    }
+
+    @Test
+    public void shouldMissIfFileChanged() throws IOException {
+        File jpg = createFile("shouldMissIfFileChanged.jpg", "jpg");
+        PhotoPropertiesCache sut = new PhotoPropertiesCache(null);
+        sut.put(jpg, jpg.getPath(), createEntry());
+
+        jpg.setLastModified(jpg.lastModified() - 10000);
+
+        Assert.assertNull(sut.get(jpg, jpg.getPath()));
+        Assert.assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void shouldMissIfSidecarCreated() throws IOException {
+        File jpg = createFile("shouldMissIfSidecarCreated.jpg", "jpg");
+        PhotoPropertiesCache sut = new PhotoPropertiesCache(null);
+        sut.put(jpg, jpg.getPath(), createEntry());
+
+        createFile(FileProcessor.getSidecar(jpg.getPath(), false).getName(), "xmp");
+
+        Assert.assertNull(sut.get(jpg, jpg.getPath()));
+    }
+
+    @Test
+    public void shouldDiscardOnVariantChange() throws IOException {
+        File jpg = createFile("shouldDiscardOnVariantChange.jpg", "jpg");
+        PhotoPropertiesCache sut = new PhotoPropertiesCache(null).setVariant("JX");
+        sut.put(jpg, jpg.getPath(), createEntry());
+
+        sut.setVariant("JX");
+        Assert.assertEquals(1, sut.size());
+        sut.setVariant("X");
+        Assert.assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void shouldLoadWhatWasSaved() throws IOException {
+        File jpg = createFile("shouldLoadWhatWasSaved.jpg", "jpg");
+        File empty = createFile("shouldLoadWhatWasSaved-empty.jpg", "jpg");
+        File cacheFile = new File(OUTDIR, "shouldLoadWhatWasSaved.cache");
+
+        PhotoPropertiesCache sut = new PhotoPropertiesCache(cacheFile).setVariant("JX");
+        sut.put(jpg, jpg.getPath(), createEntry());
+        sut.put(empty, empty.getPath(), new PhotoPropertiesCache.Entry());
+        sut.save();
+
+        PhotoPropertiesCache loaded = new PhotoPropertiesCache(cacheFile).setVariant("JX");
+        Assert.assertEquals(2, loaded.size());
+
+        PhotoPropertiesCache.Entry expected = createEntry();
+        PhotoPropertiesCache.Entry actual = loaded.get(jpg, jpg.getPath());
+        Assert.assertEquals(expected.getWidth(), actual.getWidth());
+        Assert.assertEquals(expected.getHeight(), actual.getHeight());
+        Assert.assertEquals(expected.getOrientation(), actual.getOrientation());
+        Assert.assertEquals(expected.getMimeType(), actual.getMimeType());
+        Assert.assertEquals(expected.getXmpFilelastModified(), actual.getXmpFilelastModified());
+        Assert.assertEquals(expected.getProperties().toString(), actual.getProperties().toString());
+        Assert.assertEquals(VISIBILITY.PRIVATE, actual.getProperties().getVisibility());
+
+        PhotoPropertiesCache.Entry actualEmpty = loaded.get(empty, empty.getPath());
+        Assert.assertNull(actualEmpty.getProperties());
+        Assert.assertNull(actualEmpty.getOrientation());
+        Assert.assertNull(actualEmpty.getMimeType());
+    }
+
+    @Test
+    public void shouldBeEmptyIfCacheFileIsInvalid() throws IOException {
+        File cacheFile = createFile("shouldBeEmptyIfCacheFileIsInvalid.cache", "no cache");
+
+        PhotoPropertiesCache sut = new PhotoPropertiesCache(cacheFile);
+
+        Assert.assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void shouldBeEmptyIfStringLengthIsCorrupt() throws IOException {
+        // length of title "title" becomes Integer.MAX_VALUE
+        assertEmptyIfCorrupt("shouldBeEmptyIfStringLengthIsCorrupt",
+                new byte[]{0, 0, 0, 5, 't', 'i', 't', 'l', 'e'}, 0, new byte[]{0x7f, -1, -1, -1});
+    }
+
+    @Test
+    public void shouldBeEmptyIfNegativeStringLength() throws IOException {
+        assertEmptyIfCorrupt("shouldBeEmptyIfNegativeStringLength",
+                new byte[]{0, 0, 0, 5, 't', 'i', 't', 'l', 'e'}, 0, new byte[]{-1, -1, -1, -5});
+    }
+
+    @Test
+    public void shouldBeEmptyIfTagCountIsCorrupt() throws IOException {
+        // tag count in front of tags "a", "b" becomes Integer.MAX_VALUE
+        assertEmptyIfCorrupt("shouldBeEmptyIfTagCountIsCorrupt",
+                new byte[]{0, 0, 0, 1, 'a', 0, 0, 0, 1, 'b'}, -4, new byte[]{0x7f, -1, -1, -1});
+    }
+
+    /** saves a cache, overwrites the bytes at pattern + offset in the cache file with replacement and loads it again */
+    private static void assertEmptyIfCorrupt(String name, byte[] pattern, int offset, byte[] replacement)
+            throws IOException {
+        File jpg = createFile(name + ".jpg", "jpg");
+        File cacheFile = new File(OUTDIR, name + ".cache");
+        PhotoPropertiesCache sut = new PhotoPropertiesCache(cacheFile);
+        sut.put(jpg, jpg.getPath(), createEntry());
+        sut.save();
+
+        byte[] content = readAll(cacheFile);
+        int pos = indexOf(content, pattern);
+        Assert.assertTrue("pattern not found", pos >= 0);
+        System.arraycopy(replacement, 0, content, pos + offset, replacement.length);
+        FileOutputStream out = new FileOutputStream(cacheFile);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+
+        Assert.assertEquals(0, new PhotoPropertiesCache(cacheFile).size());
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        byte[] result = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(result);
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    private static int indexOf(byte[] content, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= content.length; i++) {
+            int j = 0;
+            while ((j < pattern.length) && (content[i + j] == pattern[j])) j++;
+            if (j == pattern.length) return i;
+        }
+        return -1;
+    }
+
+    private static PhotoPropertiesCache.Entry createEntry() {
+        PhotoPropertiesDTO properties = new PhotoPropertiesDTO();
+        properties.setTitle("title")
+                .setDescription("multi\nline description")
+                .setDateTimeTaken(new Date(1585090800000L))
+                .setLatitudeLongitude(50.5, -7.25)
+                .setTags(Arrays.asList("a", "b"))
+                .setRating(3)
+                .setVisibility(VISIBILITY.PRIVATE);
+        return new PhotoPropertiesCache.Entry()
+                .setWidth(4000).setHeight(3000).setOrientation(90).setMimeType("image/jpeg")
+                .setXmpFilelastModified(1585090801L)
+                .setProperties(properties);
+    }
+
+    private static File createFile(String name, String content) throws IOException {
+        File result = new File(OUTDIR, name);
+        FileWriter out = new FileWriter(result, false);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return result;
+    }
+}
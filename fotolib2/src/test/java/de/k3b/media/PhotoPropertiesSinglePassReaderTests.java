@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.k3b.TestUtil;
+import de.k3b.io.FileUtils;
+
+/**
+ * Created by k3b on 19.03.2020.
+ */
+public class PhotoPropertiesSinglePassReaderTests {
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "PhotoPropertiesSinglePassReaderTests").getAbsoluteFile();
+
+    @BeforeClass
+    public static void initDirectories() {
+        FileUtils.delete(OUTDIR, null);
+        OUTDIR.mkdirs();
+    }
+
+    @Test
+    public void shouldReadSameExifAsExifInterface() throws IOException {
+        File jpg = TestUtil.saveTestResourceAs(TestUtil.TEST_FILE_JPG_WITH_EXIF,
+                new File(OUTDIR, "shouldReadSameExifAsExifInterface.jpg"));
+
+        PhotoPropertiesSinglePassReader sut = PhotoPropertiesSinglePassReader.load(jpg.getAbsolutePath(), null, "JUnit");
+        ExifInterfaceEx expected = new ExifInterfaceEx(jpg.getAbsolutePath(), null, null, "JUnit");
+
+        Assert.assertEquals(true, sut.isValidJpg());
+        Assert.assertEquals(expected.getDebugString("\n"), sut.getExif().getDebugString("\n"));
+        Assert.assertEquals(expected.getPath(), sut.getExif().getPath());
+    }
+
+    @Test
+    public void shouldHandleNonJpg() throws IOException {
+        File file = new File(OUTDIR, "shouldHandleNonJpg.jpg");
+        FileUtils.copyReplace(FileUtils.streamFromStringContent("no jpg"), file);
+
+        PhotoPropertiesSinglePassReader sut = PhotoPropertiesSinglePassReader.load(file.getAbsolutePath(), null, "JUnit");
+
+        Assert.assertEquals(false, sut.isValidJpg());
+        Assert.assertNull(sut.getExif());
+        Assert.assertNull(sut.getPhotoProperties());
+    }
+}
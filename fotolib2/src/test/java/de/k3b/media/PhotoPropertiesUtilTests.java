@@ -26,11 +26,13 @@ package de.k3b.media;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
 import de.k3b.TestUtil;
+import de.k3b.io.FileUtils;
 import de.k3b.io.ListUtils;
 import de.k3b.io.VISIBILITY;
 
@@ -203,4 +205,18 @@ public class PhotoPropertiesUtilTests {
                 ",,ImageDescription,,27.818611,-15.764444,\"Marker1, Marker2\"", result.toString());
     }
 
+    @Test
+    public void shouldLoadXmpSidecarOfNonJpg() throws IOException {
+        INDIR.mkdirs();
+        File nonJpg = new File(INDIR, "shouldLoadXmpSidecarOfNonJpg.png");
+        FileUtils.copyReplace(new ByteArrayInputStream("no jpg".getBytes()), nonJpg);
+        TestUtil.saveTestResourceAs(TestUtil.TEST_FILE_XMP_WITH_EXIF,
+                new File(INDIR, "shouldLoadXmpSidecarOfNonJpg.xmp"));
+
+        IPhotoProperties result = PhotoPropertiesUtil.loadExifAndXmp(nonJpg.getAbsolutePath(), "test");
+
+        Assert.assertNotNull("xmp sidecar of non jpg", result);
+        Assert.assertEquals("Marker1, Marker2", ListUtils.toString(", ", result.getTags()));
+    }
+
 }
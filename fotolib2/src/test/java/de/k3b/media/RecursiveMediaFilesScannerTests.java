@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.media;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.k3b.TestUtil;
+import de.k3b.io.FileUtils;
+
+/**
+ * Created by k3b on 26.03.2020.
+ */
+public class RecursiveMediaFilesScannerTests {
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "RecursiveMediaFilesScannerTests").getAbsoluteFile();
+    private static File sRoot;
+
+    @BeforeClass
+    public static void initDirectories() throws IOException {
+        FileUtils.delete(OUTDIR, null);
+        sRoot = new File(OUTDIR, "root").getCanonicalFile();
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 4; b++) {
+                File dir = new File(sRoot, "a" + a + "/b" + b);
+                dir.mkdirs();
+                for (int i = 0; i < 5; i++) {
+                    new File(dir, "img" + i + ".jpg").createNewFile();
+                }
+                new File(dir, "readme.txt").createNewFile();
+            }
+        }
+        File hidden = new File(sRoot, ".hidden");
+        hidden.mkdirs();
+        new File(hidden, "hidden.jpg").createNewFile();
+    }
+
+    @Test
+    public void shouldFindSameSequentialAndParallel() {
+        Sut sequential = new Sut(1, 100);
+        Sut parallel = new Sut(4, 2);
+
+        Assert.assertEquals(60, sequential.scan(sRoot.getPath()));
+        Assert.assertEquals(60, parallel.scan(sRoot.getPath()));
+        Assert.assertEquals(sequential.getFound(), parallel.getFound());
+        Assert.assertEquals(false, sequential.getFound().toString().contains("hidden"));
+    }
+
+    @Test
+    public void shouldBatch() {
+        Sut sut = new Sut(1, 2);
+        sut.scan(sRoot.getPath());
+
+        // 12 folders with 5 photos each: 2+2+1
+        Assert.assertEquals(36, sut.mBatchCount);
+    }
+
+    @Test
+    public void shouldScanSinglePhoto() {
+        Sut sut = new Sut(1, 100);
+        File photo = new File(sRoot, "a0/b0/img0.jpg");
+
+        Assert.assertEquals(1, sut.scan(photo.getPath(), new File(sRoot, "a0/b0/readme.txt").getPath()));
+    }
+
+    @Test
+    public void shouldResumeSkippedAfterCancel() {
+        Sut complete = new Sut(1, 100);
+        complete.scan(sRoot.getPath());
+
+        Sut canceled = new Sut(4, 100);
+        canceled.mCancelAfterBatches = 3;
+        canceled.scan(sRoot.getPath());
+        Assert.assertEquals(false, canceled.mSkipped.isEmpty());
+
+        Sut resumed = new Sut(4, 100);
+        resumed.scan(canceled.mSkipped.toArray(new String[canceled.mSkipped.size()]));
+
+        List<String> all = new ArrayList<String>(canceled.getFound());
+        all.addAll(resumed.getFound());
+        Collections.sort(all);
+        Assert.assertEquals(complete.getFound(), all);
+    }
+
+    @Test
+    public void shouldScanSymlinkedFolderOnceUnderCanonicalPath() throws IOException {
+        File root = new File(OUTDIR, "symlinks").getCanonicalFile();
+        File photos = new File(root, "photos");
+        photos.mkdirs();
+        new File(photos, "img.jpg").createNewFile();
+        Path link = new File(root, "link").toPath();
+        Path loop = new File(photos, "loop").toPath();
+        try {
+            Files.createSymbolicLink(link, photos.toPath());
+            Files.createSymbolicLink(loop, root.toPath());
+
+            Sut sut = new Sut(1, 100);
+
+            Assert.assertEquals(1, sut.scan(root.getPath()));
+            Assert.assertEquals(new File(photos, "img.jpg").getPath(), sut.getFound().get(0));
+        } finally {
+            // FileUtils.delete follows symlinks
+            Files.deleteIfExists(loop);
+            Files.deleteIfExists(link);
+        }
+    }
+
+    private static class Sut extends RecursiveMediaFilesScanner {
+        private final List<String> mFound = new ArrayList<String>();
+        private final List<String> mSkipped = Collections.synchronizedList(new ArrayList<String>());
+        private int mBatchCount = 0;
+        private int mCancelAfterBatches = -1;
+
+        Sut(int threadCount, int batchSize) {
+            super(threadCount, batchSize);
+        }
+
+        @Override
+        protected int onMediaFiles(String folderPath, String[] fullPaths) {
+            mFound.addAll(Arrays.asList(fullPaths));
+            mBatchCount++;
+            if (mBatchCount == mCancelAfterBatches) cancel();
+            return fullPaths.length;
+        }
+
+        @Override
+        protected void onSkipped(String fullPath) {
+            mSkipped.add(fullPath);
+        }
+
+        List<String> getFound() {
+            List<String> result = new ArrayList<String>(mFound);
+            Collections.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.tagDB;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by k3b on 21.03.2020.
+ */
+public class TagListTests {
+    @Test
+    public void shouldFindByNameIgnoringCase() {
+        List<Tag> sut = createList("/a/b/c");
+
+        Assert.assertEquals("/a/b", TagRepository.findFirstByName(sut, "B").getPath());
+        Assert.assertNull(TagRepository.findFirstByName(sut, "d"));
+    }
+
+    @Test
+    public void shouldFindAfterRename() {
+        List<Tag> sut = createList("/a/b/c");
+        Tag b = TagRepository.findFirstByName(sut, "b");
+
+        b.setName("x");
+
+        Assert.assertNull(TagRepository.findFirstByName(sut, "b"));
+        Assert.assertEquals("/a/x/c", Tag.findByPath(sut, null, "/a/x/c").getPath());
+    }
+
+    @Test
+    public void shouldFindChildrenAfterMove() {
+        List<Tag> sut = createList("/a/b/c,/d");
+        Tag c = TagRepository.findFirstByName(sut, "c");
+        Tag d = TagRepository.findFirstByName(sut, "d");
+
+        c.setParent(d);
+
+        Assert.assertEquals("[c]", d.getChildren(sut, false, false).toString());
+        Assert.assertNull(TagRepository.findFirstByName(sut, "b").getChildren(sut, false, false));
+    }
+
+    @Test
+    public void shouldFindFirstInListOrderAfterSort() {
+        List<Tag> sut = createList("/z/same,/a/same");
+        Assert.assertEquals("/z/same", TagRepository.findFirstByName(sut, "same").getPath());
+
+        Collections.sort(sut, Tag.COMPARATOR_HIERARCHY);
+        Assert.assertEquals("/a/same", TagRepository.findFirstByName(sut, "same").getPath());
+    }
+
+    @Test
+    public void shouldNotFindRemoved() {
+        List<Tag> sut = createList("/a/b");
+        Tag b = TagRepository.findFirstByName(sut, "b");
+
+        sut.remove(b);
+
+        Assert.assertNull(TagRepository.findFirstByName(sut, "b"));
+        Assert.assertEquals(false, sut.contains(b));
+    }
+
+    @Test
+    public void shouldGetSameKeyIfEqualsIgnoreCase() {
+        Assert.assertEquals(TagList.getNameKey("Straße"), TagList.getNameKey("STRAßE"));
+        Assert.assertEquals(TagList.getNameKey("İ"), TagList.getNameKey("i"));
+    }
+
+    private static List<Tag> createList(String paths) {
+        List<Tag> result = new TagList();
+        TagRepository.includePaths(result, null, null, paths);
+        return result;
+    }
+}
@@ -29,6 +29,7 @@ import java.io.File;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import de.k3b.TestUtil;
@@ -364,6 +365,110 @@ public class TagRepositoryTests {
         Assert.assertEquals("wrong root", null, found);
     }
 
+    @Test
+    public void shouldReplayJournal() {
+        File file = new File(OUTDIR, "shouldReplayJournal-repo.txt");
+        file.delete();
+        new File(file.getAbsolutePath() + ".journal").delete();
+
+        TagRepository sut = new TagRepository(file, true);
+        sut.includePaths(null, "a/b/old/c,x/old/y,d/e,q");
+        sut.save();
+
+        sut.renameTags("old", "new");
+        Tag d = sut.findFirstByName("d");
+        d.delete(sut.load(), false);
+        Tag.findByPath(sut.load(), null, "/q").setParent(sut.findFirstByName("x"));
+        sut.includePaths(null, "x/new/z");
+        sut.save();
+
+        Assert.assertEquals("main file is not written", false, file.exists());
+        Assert.assertEquals(getPaths(sut.load()), getPaths(new TagRepository(file, true).load()));
+    }
+
+    @Test
+    public void shouldCompactJournal() {
+        File file = new File(OUTDIR, "shouldCompactJournal-repo.txt");
+        File journal = new File(file.getAbsolutePath() + ".journal");
+        file.delete();
+        journal.delete();
+
+        TagRepository sut = new TagRepository(file, true);
+        sut.includePaths(null, "a/b/c,x/y");
+        sut.save();
+        sut.renameTags("b", "b2");
+        sut.compact();
+
+        Assert.assertEquals("journal cleared", false, journal.exists());
+        Assert.assertEquals(getPaths(sut.load()), getPaths(new TagRepository(file, false).load()));
+
+        sut.includePaths(null, "x/z");
+        sut.save();
+        Assert.assertEquals(getPaths(sut.load()), getPaths(new TagRepository(file, true).load()));
+    }
+
+    @Test
+    public void shouldReplayJournalDeleteThenAddSamePath() {
+        File file = new File(OUTDIR, "shouldReplayJournalDeleteThenAddSamePath-repo.txt");
+        file.delete();
+        new File(file.getAbsolutePath() + ".journal").delete();
+
+        TagRepository sut = new TagRepository(file, true);
+        sut.includePaths(null, "a/b");
+        sut.save();
+
+        sut.load().remove(sut.findFirstByName("b"));
+        sut.includePaths(null, "a/b");
+        sut.save();
+
+        Assert.assertEquals("/a /a/b", getPaths(new TagRepository(file, true).load()));
+    }
+
+    @Test
+    public void shouldReplayJournalAddThenDeleteSamePath() {
+        File file = new File(OUTDIR, "shouldReplayJournalAddThenDeleteSamePath-repo.txt");
+        file.delete();
+        new File(file.getAbsolutePath() + ".journal").delete();
+
+        TagRepository sut = new TagRepository(file, true);
+        sut.includePaths(null, "a/b");
+        sut.save();
+
+        sut.includePaths(null, "a/c");
+        sut.load().remove(sut.findFirstByName("c"));
+        sut.save();
+
+        Assert.assertEquals("/a /a/b", getPaths(new TagRepository(file, true).load()));
+    }
+
+    @Test
+    public void shouldLoadLeftOverOfInterruptedCompact() {
+        File file = new File(OUTDIR, "shouldLoadLeftOverOfInterruptedCompact-repo.txt");
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        file.delete();
+        tempFile.delete();
+        new File(file.getAbsolutePath() + ".journal").delete();
+
+        TagRepository sut = new TagRepository(file, true);
+        sut.includePaths(null, "a/b/c,x/y");
+        sut.save();
+        sut.compact();
+
+        // interrupted after the new content was written but before it replaced the old file
+        Assert.assertEquals(true, file.renameTo(tempFile));
+
+        Assert.assertEquals(getPaths(sut.load()), getPaths(new TagRepository(file, true).load()));
+    }
+
+    private static String getPaths(List<Tag> tags) {
+        List<String> paths = new ArrayList<String>();
+        for (Tag tag : tags) {
+            paths.add(tag.getPath());
+        }
+        Collections.sort(paths);
+        return ListUtils.toString(" ", paths);
+    }
+
     @Test
     public void shouldGetPathElements() {
         String[] pathElemens = TagExpression.getPathElemens("/a");
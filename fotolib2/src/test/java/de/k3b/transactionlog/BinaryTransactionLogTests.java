@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2020 by k3b.
+ *
+ * This file is part of AndroFotoFinder / #APhotoManager.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package de.k3b.transactionlog;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import de.k3b.TestUtil;
+import de.k3b.io.FileUtils;
+
+/**
+ * Created by k3b on 27.03.2020.
+ */
+public class BinaryTransactionLogTests {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryTransactionLogTests.class);
+    private static final File OUTDIR = new File(TestUtil.OUTDIR_ROOT, "BinaryTransactionLogTests").getAbsoluteFile();
+
+    @BeforeClass
+    public static void initDirectories() {
+        FileUtils.delete(OUTDIR, null);
+        OUTDIR.mkdirs();
+    }
+
+    @Test
+    public void shouldReadWhatWasWritten() throws IOException {
+        List<IMediaTransactionLogEntry> expected = createEntries();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryTransactionLogWriter sut = new BinaryTransactionLogWriter(out);
+        Assert.assertEquals(expected.size(), sut.addAll(expected.iterator()));
+        sut.close();
+
+        assertEquals(expected, read(new BinaryTransactionLogReader(new ByteArrayInputStream(out.toByteArray()), "JUnit")));
+    }
+
+    @Test
+    public void shouldAppendToExistingLog() throws IOException {
+        File logFile = new File(OUTDIR, "shouldAppendToExistingLog.bin");
+        List<IMediaTransactionLogEntry> expected = createEntries();
+
+        BinaryTransactionLogWriter sut = new BinaryTransactionLogWriter(logFile);
+        sut.addAll(expected.subList(0, 3).iterator());
+        sut.close();
+
+        sut = new BinaryTransactionLogWriter(logFile);
+        sut.addAll(expected.subList(3, expected.size()).iterator());
+        sut.close();
+
+        assertEquals(expected, read(new BinaryTransactionLogReader(logFile)));
+
+        // path of first entry is already in dictionary: smaller than same entry with new path
+        IMediaTransactionLogEntry first = expected.get(0);
+        appendSize(logFile, first); // so that all following entries have the same date delta
+        long knownPathSize = appendSize(logFile, first);
+        long newPathSize = appendSize(logFile, new MediaTransactionLogEntryDto().get(first).setFullPath("/a/9.jpg"));
+        Assert.assertEquals(1 + 1 + "/a/9.jpg".length(), newPathSize - knownPathSize);
+    }
+
+    private static long appendSize(File logFile, IMediaTransactionLogEntry entry) throws IOException {
+        long lengthBefore = logFile.length();
+        BinaryTransactionLogWriter sut = new BinaryTransactionLogWriter(logFile);
+        sut.add(entry);
+        sut.close();
+        return logFile.length() - lengthBefore;
+    }
+
+    @Test
+    public void shouldIgnoreAndRemoveIncompleteLastRecord() throws IOException {
+        File logFile = new File(OUTDIR, "shouldIgnoreAndRemoveIncompleteLastRecord.bin");
+        List<IMediaTransactionLogEntry> expected = createEntries();
+
+        BinaryTransactionLogWriter sut = new BinaryTransactionLogWriter(logFile);
+        sut.addAll(expected.iterator());
+        sut.close();
+
+        // simulate crash while writing the last record
+        RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+        file.setLength(file.length() - 2);
+        file.close();
+
+        List<IMediaTransactionLogEntry> withoutLast = expected.subList(0, expected.size() - 1);
+        assertEquals(withoutLast, read(new BinaryTransactionLogReader(logFile)));
+
+        sut = new BinaryTransactionLogWriter(logFile);
+        sut.add(expected.get(expected.size() - 1));
+        sut.close();
+        assertEquals(expected, read(new BinaryTransactionLogReader(logFile)));
+    }
+
+    @Test
+    public void shouldNotAppendToCorruptLog() throws IOException {
+        File logFile = new File(OUTDIR, "shouldNotAppendToCorruptLog.bin");
+        assertCorrupt(logFile, new byte[] {(byte) 0x7f}); // unknown record type
+    }
+
+    @Test
+    public void shouldNotAppendToLogWithUnknownCommand() throws IOException {
+        File logFile = new File(OUTDIR, "shouldNotAppendToLogWithUnknownCommand.bin");
+        // RECORD_ENTRY pathId=0 mediaID=0 date=0 command=99 commandData=null
+        assertCorrupt(logFile, new byte[] {BinaryTransactionLogReader.RECORD_ENTRY, 0, 0, 0, 99, 0});
+    }
+
+    /** valid log followed by invalid followed by valid records */
+    private void assertCorrupt(File logFile, byte[] invalidRecord) throws IOException {
+        List<IMediaTransactionLogEntry> entries = createEntries();
+        BinaryTransactionLogWriter sut = new BinaryTransactionLogWriter(logFile);
+        sut.addAll(entries.iterator());
+        sut.close();
+        ByteArrayOutputStream validRecords = new ByteArrayOutputStream();
+        sut = new BinaryTransactionLogWriter(validRecords);
+        sut.addAll(entries.iterator());
+        sut.close();
+
+        FileOutputStream out = new FileOutputStream(logFile, true);
+        out.write(invalidRecord);
+        // without header (int MAGIC, byte VERSION)
+        out.write(validRecords.toByteArray(), 5, validRecords.size() - 5);
+        out.close();
+        long length = logFile.length();
+
+        try {
+            read(new BinaryTransactionLogReader(logFile));
+            Assert.fail("reader should fail");
+        } catch (IllegalStateException expected) {
+        }
+
+        try {
+            new BinaryTransactionLogWriter(logFile).close();
+            Assert.fail("writer should fail");
+        } catch (IOException expected) {
+        }
+        Assert.assertEquals("corrupt log is not truncated", length, logFile.length());
+    }
+
+    @Test
+    public void shouldClearPathDictionary() throws IOException {
+        File logFile = new File(OUTDIR, "shouldClearPathDictionary.bin");
+        List<IMediaTransactionLogEntry> expected = new ArrayList<IMediaTransactionLogEntry>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(new MediaTransactionLogEntryDto(i, "/a/" + (i % 5) + ".jpg", i,
+                    MediaTransactionLogEntryType.TAGSADD, "tag" + i));
+        }
+
+        BinaryTransactionLogWriter sut = new BinaryTransactionLogWriter(logFile).setMaxPaths(2);
+        sut.addAll(expected.subList(0, 10).iterator());
+        sut.close();
+
+        sut = new BinaryTransactionLogWriter(logFile).setMaxPaths(2);
+        sut.addAll(expected.subList(10, expected.size()).iterator());
+        sut.close();
+
+        BinaryTransactionLogReader reader = new BinaryTransactionLogReader(logFile);
+        assertEquals(expected, read(reader));
+        Assert.assertEquals(true, reader.getPaths().size() <= 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldNotAppendToOtherFile() throws IOException {
+        File logFile = new File(OUTDIR, "shouldNotAppendToOtherFile.log");
+        FileOutputStream out = new FileOutputStream(logFile);
+        out.write("rem some text log".getBytes("UTF-8"));
+        out.close();
+
+        new BinaryTransactionLogWriter(logFile);
+    }
+
+    @Test
+    public void shouldConvertTextLog() throws IOException {
+        String textLog = "rem Fri Mar 27 10:11:12 CET 2020\n" +
+                "call apmGps.cmd \"/a/1.jpg\" 50.1 7.2\n" +
+                "call apmMove.cmd \"/a/1.jpg\" \"/b/1.jpg\"\n" +
+                "rem apmTagsSet \"/b/1.jpg\" x,y\n" +
+                "call apmDescription.cmd \"/b/1.jpg\" \"my description\"\n" +
+                "rem \"/b/1.jpg\" \"some debug comment\"\n" +
+                "call apmDelete.cmd \"/a/2.jpg\" \n" +
+                "continuation of multi line description\n";
+
+        List<IMediaTransactionLogEntry> actual = read(new TextTransactionLogReader(new StringReader(textLog), "JUnit"));
+
+        Assert.assertEquals(5, actual.size());
+        assertEntry("/a/1.jpg:GPS-50.1 7.2", actual.get(0));
+        assertEntry("/a/1.jpg:MOVE-/b/1.jpg", actual.get(1));
+        assertEntry("/b/1.jpg:TAGS-x,y", actual.get(2));
+        assertEntry("/b/1.jpg:DESCRIPTION-my description", actual.get(3));
+        assertEntry("/a/2.jpg:DELETE-null", actual.get(4));
+
+        Assert.assertEquals("same id after move", actual.get(0).getMediaID(), actual.get(3).getMediaID());
+        Assert.assertEquals(false, actual.get(0).getMediaID() == actual.get(4).getMediaID());
+        Assert.assertEquals(true, actual.get(0).getModificationDate() > 0);
+    }
+
+    @Test
+    public void shouldExportSameBatchAsTextLog() throws IOException {
+        String textLog = "call apmGps.cmd \"/a/1.jpg\" 50.1 7.2\n" +
+                "call apmMove.cmd \"/a/1.jpg\" \"/b/1.jpg\"\n" +
+                "rem apmTagsSet \"/b/1.jpg\" x,y\n";
+
+        StringWriter batch = new StringWriter();
+        BufferedWriter writer = new BufferedWriter(batch);
+        int count = TransactionLogParser.writeBatch(new TextTransactionLogReader(new StringReader(textLog), "JUnit"), writer);
+
+        Assert.assertEquals(3, count);
+        Assert.assertEquals(textLog, batch.toString().replace(System.getProperty("line.separator"), "\n"));
+    }
+
+    @Test
+    public void shouldReplay100kEntriesStreaming() throws IOException {
+        replay(100000);
+    }
+
+    @Test
+    @Ignore("benchmark: takes some seconds")
+    public void shouldReplay5MillionEntriesStreaming() throws IOException {
+        replay(5000000);
+    }
+
+    private void replay(int count) throws IOException {
+        File logFile = new File(OUTDIR, "replay" + count + ".bin");
+        logFile.delete();
+
+        long start = System.nanoTime();
+        BinaryTransactionLogWriter writer = new BinaryTransactionLogWriter(logFile);
+        long date = 1585300000000L;
+        for (int i = 0; i < count; i++) {
+            int mediaId = i % 20000;
+            writer.add(mediaId, "/storage/emulated/0/DCIM/Camera/IMG_" + mediaId + ".jpg",
+                    date + i * 1000L, MediaTransactionLogEntryType.TAGSADD, "tag" + (i % 50));
+        }
+        writer.close();
+        long written = System.nanoTime();
+
+        Writer nullWriter = new Writer() {
+            @Override public void write(char[] chars, int offset, int length) {}
+            @Override public void flush() {}
+            @Override public void close() {}
+        };
+        int exported = TransactionLogParser.writeBatch(new BinaryTransactionLogReader(logFile), new BufferedWriter(nullWriter));
+        long end = System.nanoTime();
+
+        LOGGER.info("binary transaction log {} entries: {} bytes ({} bytes/entry), write {} ms, export {} ms",
+                count, logFile.length(), logFile.length() / count,
+                (written - start) / 1000000, (end - written) / 1000000);
+        Assert.assertEquals(count, exported);
+    }
+
+    private static List<IMediaTransactionLogEntry> createEntries() {
+        List<IMediaTransactionLogEntry> result = new ArrayList<IMediaTransactionLogEntry>();
+        long date = 1585300000000L;
+        result.add(new MediaTransactionLogEntryDto(1, "/a/1.jpg", date, MediaTransactionLogEntryType.GPS, "50.1 7.2"));
+        result.add(new MediaTransactionLogEntryDto(1, "/a/1.jpg", date + 10, MediaTransactionLogEntryType.DESCRIPTION, "multi\nline äöü €"));
+        result.add(new MediaTransactionLogEntryDto(2, "/a/2.jpg", date - 5000, MediaTransactionLogEntryType.DELETE, null));
+        result.add(new MediaTransactionLogEntryDto(-1, "/a", date, MediaTransactionLogEntryType.MOVE_DIR, "/b"));
+        result.add(new MediaTransactionLogEntryDto(1, "/a/1.jpg", 0, MediaTransactionLogEntryType.MOVE, "/b/1.jpg"));
+        result.add(new MediaTransactionLogEntryDto(Long.MAX_VALUE, "/b/1.jpg", Long.MAX_VALUE, MediaTransactionLogEntryType.HEADER, ""));
+        return result;
+    }
+
+    private static List<IMediaTransactionLogEntry> read(Iterator<IMediaTransactionLogEntry> reader) {
+        List<IMediaTransactionLogEntry> result = new ArrayList<IMediaTransactionLogEntry>();
+        while (reader.hasNext()) {
+            result.add(reader.next());
+        }
+        return result;
+    }
+
+    private static void assertEquals(List<IMediaTransactionLogEntry> expected, List<IMediaTransactionLogEntry> actual) {
+        Assert.assertEquals(toString(expected), toString(actual));
+    }
+
+    private static void assertEntry(String expected, IMediaTransactionLogEntry actual) {
+        Assert.assertEquals(expected, actual.getFullPath() + ":" + actual.getCommand() + "-" + actual.getCommandData());
+    }
+
+    private static String toString(List<IMediaTransactionLogEntry> entries) {
+        StringBuilder result = new StringBuilder();
+        for (IMediaTransactionLogEntry entry : entries) {
+            result.append(entry.getMediaID()).append(" ").append(entry.getModificationDate()).append(" ")
+                    .append(entry.getFullPath()).append(" ").append(entry.getCommand()).append(" ")
+                    .append(entry.getCommandData()).append("\n");
+        }
+        return result.toString();
+    }
+}
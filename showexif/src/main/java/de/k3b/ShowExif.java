@@ -18,14 +18,10 @@
  */
 package de.k3b;
 
-import java.io.IOException;
-
-import de.k3b.media.ExifInterfaceEx;
 import de.k3b.media.IPhotoProperties;
 import de.k3b.media.MediaFormatter;
 import de.k3b.media.PhotoPropertiesFormatter;
-import de.k3b.media.PhotoPropertiesImageReader;
-import de.k3b.media.PhotoPropertiesXmpSegment;
+import de.k3b.media.PhotoPropertiesSinglePassReader;
 
 /** simple commandline tool to show  */
 public class ShowExif {
@@ -52,19 +48,12 @@ public class ShowExif {
         System.out.println("------");
         System.out.println(fileName);
 
-        try {
-            PhotoPropertiesXmpSegment xmp = PhotoPropertiesXmpSegment.loadXmpSidecarContentOrNull(fileName, dbg_context);
-
-            ExifInterfaceEx exif = new ExifInterfaceEx(fileName, null, xmp, dbg_context);
-            PhotoPropertiesImageReader jpg = new PhotoPropertiesImageReader().load(fileName, null, xmp, dbg_context);
-            show(jpg, debug);
-            if (exif.isValidJpgExifFormat()) show(exif, debug);
-            show(xmp, debug);
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // jpg header and xmp sidecar are read only once and shared by all meta data decoders
+        PhotoPropertiesSinglePassReader reader = PhotoPropertiesSinglePassReader.load(fileName, dbg_context);
 
+        show(reader.getImageReader(), debug);
+        show(reader.getExif(), debug);
+        show(reader.getXmpSidecar(), debug);
     }
 
     private static void show(IPhotoProperties item, boolean debug) {